@@ -6,6 +6,8 @@ package spread;
 
 import java.util.List;
 
+import spread.util.PropaguleBuffer;
+
 import com.vividsolutions.jts.geom.Coordinate;
 
 /**
@@ -28,6 +30,16 @@ public interface Disperser {
 
 	public List<Coordinate> disperse();
 
+	/**
+	 * Generates propagule locations as for disperse(), replacing the contents
+	 * of a buffer rather than allocating a List of Coordinates.
+	 * 
+	 * @param buffer
+	 *            - the buffer receiving the propagule locations.
+	 */
+
+	public void disperse(PropaguleBuffer buffer);
+
 	/**
 	 * Returns the current level of the Disperser. Used to change parameter
 	 * values using a String.
@@ -14,6 +14,7 @@ import spread.impl.output.MosaicWriter_Raster;
 import spread.impl.output.MosaicWriter_Raster_WasMonitored;
 import spread.impl.output.MosaicWriter_Raster_Stage;
 import spread.impl.output.StatsWriter_Text;
+import spread.util.RandomService;
 
 /**
  * This class is used to apply Processes to a Mosaic over time. Time is handled
@@ -41,6 +42,7 @@ public class Experiment implements Cloneable {
 	private boolean writeEachMgtStep = false;
 	private boolean writeEachCostStep = true;
 	private boolean writeTraceFile = false;
+	private RandomService random;
 
 	/**
 	 * Returns a clone/copy of the instance
@@ -63,6 +65,7 @@ public class Experiment implements Cloneable {
 		ex.writeEachMgtStep=writeEachMgtStep;
 		ex.writeEachCostStep=writeEachCostStep;
 		ex.writeTraceFile=writeTraceFile;
+		ex.random=random;
 		return ex;
 	}
 
@@ -170,9 +173,23 @@ public class Experiment implements Cloneable {
 		return timeIncrement;
 	}
 
+	/**
+	 * Retrieves the random number service of the Experiment.
+	 * 
+	 * @return - the random number service (null if the Experiment draws from
+	 *         the service of the thread it runs on).
+	 */
+
+	public RandomService getRandomService() {
+		return random;
+	}
+
 	/**
 	 * Runs step() multiple times from startTime to endTime spaced by
-	 * timeIncrement.
+	 * timeIncrement. If the Experiment has a random number service, it is
+	 * bound to the running thread for the duration of the run. The results
+	 * are written by the ExperimentWriter, if one has been set; replicates
+	 * run in parallel leave writing to the submitting thread instead.
 	 */
 
 	public void run() {
@@ -183,15 +200,23 @@ public class Experiment implements Cloneable {
 			return;
 		}
 
-		for (long t = startTime; t < endTime; t += timeIncrement) {
-			time = t;
-			///////////////////////////////////////////////////////////////////////
-			step();
+		RandomService previous = RandomService.current();
+		if (random != null) {
+			RandomService.bind(random);
+		}
+		try {
+			for (long t = startTime; t < endTime; t += timeIncrement) {
+				time = t;
+				///////////////////////////////////////////////////////////////////////
+				step();
+			}
+		} finally {
+			RandomService.bind(previous);
 		}
 
-		ew.write(this);
-
-		System.gc();
+		if (ew != null) {
+			ew.write(this);
+		}
 	}
 
 	/**
@@ -297,6 +322,18 @@ public class Experiment implements Cloneable {
 		this.ms = mw;
 	}
 
+	/**
+	 * Sets the random number service of the Experiment, from which all
+	 * Processes, Dispersers and generators draw while it runs.
+	 * 
+	 * @param random
+	 *            - the random number service.
+	 */
+
+	public void setRandomService(RandomService random) {
+		this.random = random;
+	}
+
 	/**
 	 * Sets the start time of the Experiment (as a long value)
 	 * 
@@ -4,12 +4,12 @@
  *******************************************************************************/
 package spread;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
 import spread.util.ControlType;
+import spread.util.PropaguleBuffer;
 
 import com.vividsolutions.jts.geom.Coordinate;
 
@@ -31,8 +31,9 @@ public class Infestation implements Cloneable {
 	private int stageOfInfestation = -98;
 	private int maxInfestation = -99;
 	private Disperser disperser;
-	private List<Coordinate> propagules = new ArrayList<Coordinate>();
-	private Map<ControlType, Long> controls = new TreeMap<ControlType, Long>();
+	private PropaguleBuffer propagules;
+	private int controls = 0; // bitmask, see ControlType.mask()
+	private long[] controlTimes; // by ordinal, null while all times are zero
 	private ControlType maxControl = ControlType.NONE;
 	private boolean wasControlled = false;
 	private boolean NODATA = false;
@@ -40,31 +41,89 @@ public class Infestation implements Cloneable {
 	private Patch parent;
 
 	public Infestation() {
+		propagules = new PropaguleBuffer();
 	}
 
 	public Infestation(String name) {
+		this();
 		this.species = name;
 	}
 
+	/**
+	 * Creates a deep copy of the state exposed by another Infestation. Only
+	 * the public accessors of the source are used, so any Infestation
+	 * implementation (including views over a Mosaic's internal storage) can
+	 * be copied.
+	 * 
+	 * @param infestation
+	 *            - the Infestation to be copied.
+	 */
+
+	public Infestation(Infestation infestation) {
+		this(infestation.getName());
+		infested = infestation.isInfested();
+		wasInfested = infestation.wasInfested();
+		visited = infestation.isVisited();
+		ageOfInfestation = infestation.getAgeOfInfestation();
+		cumulativeAgeOfInfestation = infestation.getCumulativeAgeOfInfestation();
+		stageOfInfestation = infestation.getStageOfInfestation();
+		maxInfestation = infestation.getMaxInfestation();
+		if (infestation.getDisperser() != null) {
+			disperser = infestation.getDisperser().clone();
+		}
+		propagules = new PropaguleBuffer(infestation.getPropaguleBuffer());
+		Map<ControlType, Long> sourceControls = infestation.getControls();
+		for (ControlType control : sourceControls.keySet()) {
+			controls |= control.mask();
+			putControlTime(control, sourceControls.get(control));
+		}
+		maxControl = ControlType.values()[infestation.getMaxControl()];
+		wasControlled = infestation.wasControlled();
+		NODATA = infestation.hasNoData();
+		freezeManagement = infestation.isManagementFrozen();
+		parent = infestation.getParent();
+	}
+
+	/**
+	 * Constructor for subclasses that hold their state outside of the
+	 * Infestation (e.g. lightweight views over a Mosaic's primitive layers).
+	 * No per-infestation collections are allocated, so all accessors must be
+	 * overridden.
+	 * 
+	 * @param parent
+	 *            - the Patch containing the Infestation.
+	 * @param species
+	 *            - the species name of the Infestation.
+	 */
+
+	protected Infestation(Patch parent, String species) {
+		this.parent = parent;
+		this.species = species;
+	}
+
 	/**
 	 * Applies a management control to the Occupant.
 	 * @param control
 	 */
 	
 	public void addControl(ControlType control) {
-		if (!controls.containsKey(control)) {
-			controls.put(control, 0l);
+		if ((controls & control.mask()) == 0) {
+			controls |= control.mask();
+			putControlTime(control, 0l);
 			if(control!=ControlType.NONE){
 				wasControlled=true;
 			}
 			if(control.ordinal()>maxControl.ordinal()){
 				maxControl=control;
 			}
+			notifyParent();
 		}
 	}
 	
 	public void clearControls(){
-		controls.clear();
+		controls = 0;
+		controlTimes = null;
+		notifyParent();
 	}
 	
 	/**
@@ -76,6 +135,7 @@ public class Infestation implements Cloneable {
 		this.stageOfInfestation = -8;
 		this.maxInfestation = 0;
 		this.freezeManagement=false;
+		notifyParent();
 	}
 	
 	/**
@@ -83,7 +143,7 @@ public class Infestation implements Cloneable {
 	 */
 
 	public void clearPropagules() {
-		propagules = new ArrayList<Coordinate>();
+		propagules.clear();
 	}
 
 	/**
@@ -106,24 +166,22 @@ public class Infestation implements Cloneable {
 		occ.species = species;
 		occ.parent=parent;
 		occ.freezeManagement=freezeManagement;
-		List<Coordinate> propagules_c = new ArrayList<Coordinate>();
-		for (Coordinate c : propagules) {
-			propagules_c.add((Coordinate) c.clone());
-		}
-		for (ControlType s : controls.keySet()) {
-			occ.controls.put(s, controls.get(s).longValue());
+		occ.controls = controls;
+		if (controlTimes != null) {
+			occ.controlTimes = controlTimes.clone();
 		}
-		occ.propagules = propagules_c;
+		occ.propagules = new PropaguleBuffer(propagules);
 		return occ;
 	}
 
 	/**
-	 * Performs dispersal operations associated with the Occupant.
+	 * Performs dispersal operations associated with the Occupant. The
+	 * propagules replace those of the previous dispersal, reusing the buffer.
 	 */
 	
 	public void disperse() {
 		try {
-			propagules = disperser.disperse();
+			disperser.disperse(propagules);
 		} catch (NullPointerException e) {
 			e.printStackTrace();
 		}
@@ -141,10 +199,24 @@ public class Infestation implements Cloneable {
 	/**
 	 * Returns the Map (as in Java Map) of ControlTypes associated with the occupant,
 	 * with values indicating the length of time the control has been in place.
+	 * The Map is a copy, and changes to it are not written back.
 	 * @return a map of ControlTypes and the length of time they have been in place.
 	 */
 
 	public Map<ControlType, Long> getControls() {
+		Map<ControlType, Long> map = new TreeMap<ControlType, Long>();
+		for (ControlType control : ControlType.toSet(controls)) {
+			map.put(control, getControlTime(control));
+		}
+		return map;
+	}
+
+	/**
+	 * Returns the ControlTypes associated with the occupant as a bitmask.
+	 * @return the bitmask of ControlTypes (see ControlType.mask()).
+	 */
+
+	public int getControlMask() {
 		return controls;
 	}
 	
@@ -155,8 +227,8 @@ public class Infestation implements Cloneable {
 	 */
 
 	public long getControlTime(ControlType control) {
-		if(controls.containsKey(control)){
-			return controls.get(control);
+		if(controlTimes != null && (controls & control.mask()) != 0){
+			return controlTimes[control.ordinal()];
 		}
 		return 0l;
 	}
@@ -219,6 +291,16 @@ public class Infestation implements Cloneable {
 	 */
 	
 	public List<Coordinate> getPropagules() {
+		return propagules.toCoordinates();
+	}
+
+	/**
+	 * Returns the buffer of propagule locations produced by this Infestation.
+	 * The buffer is reused by later dispersals, so it must not be retained.
+	 * @return the buffer of propagule locations.
+	 */
+
+	public PropaguleBuffer getPropaguleBuffer() {
 		return propagules;
 	}
 	
@@ -240,7 +322,7 @@ public class Infestation implements Cloneable {
 	 */
 	
 	public boolean hasControl(ControlType control) {
-		return controls.containsKey(control);
+		return (controls & control.mask()) != 0;
 	}
 	
 	/**
@@ -272,12 +354,7 @@ public class Infestation implements Cloneable {
 	 */
 	
 	public boolean isControlled(){
-		for(ControlType control:controls.keySet()){
-			if(control!=ControlType.NONE){
-				return true;
-			}
-		}
-		return false;
+		return (controls & ~ControlType.NONE.mask()) != 0;
 	}
 	
 	/**
@@ -310,7 +387,9 @@ public class Infestation implements Cloneable {
 	 */
 	
 	public void removeControl(ControlType control) {
-		controls.remove(control);
+		controls &= ~control.mask();
+		putControlTime(control, 0l);
+		notifyParent();
 	}
 	
 	/**
@@ -329,7 +408,28 @@ public class Infestation implements Cloneable {
 	 */
 	
 	public void setControlTime(ControlType control, long controlTime) {
-		controls.put(control, controlTime);
+		putControlTime(control, controlTime);
+		if ((controls & control.mask()) == 0) {
+			controls |= control.mask();
+			notifyParent();
+		}
+	}
+
+	/**
+	 * Stores the time of a control, only allocating the array of times once
+	 * a non-zero time is set.
+	 * @param control
+	 * @param controlTime
+	 */
+
+	private void putControlTime(ControlType control, long controlTime) {
+		if (controlTimes == null) {
+			if (controlTime == 0) {
+				return;
+			}
+			controlTimes = new long[ControlType.values().length];
+		}
+		controlTimes[control.ordinal()] = controlTime;
 	}
 
 	/**
@@ -361,6 +461,7 @@ public class Infestation implements Cloneable {
 		} else {
 			this.stageOfInfestation = 0;
 		}
+		notifyParent();
 	}
 	
 	/**
@@ -392,6 +493,15 @@ public class Infestation implements Cloneable {
 	 */
 	
 	public void setPropagules(List<Coordinate> propagules) {
+		this.propagules = PropaguleBuffer.fromCoordinates(propagules);
+	}
+
+	/**
+	 * Explicitly sets the buffer of propagules produced by the Occupant.
+	 * @param propagules
+	 */
+
+	public void setPropagules(PropaguleBuffer propagules) {
 		this.propagules = propagules;
 	}
 
@@ -418,6 +528,17 @@ public class Infestation implements Cloneable {
 		this.visited=visited;
 	}
 
+	/**
+	 * Notifies the parent Patch (if any) that the infestation or control
+	 * state of the Occupant has changed.
+	 */
+
+	private void notifyParent() {
+		if (parent != null) {
+			parent.notifyListener(species);
+		}
+	}
+
 	/**
 	 * @return whether the Occupant was ever controlled at some point in time.
 	 */
@@ -10,7 +10,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import spread.util.Components;
 import spread.util.ControlType;
+import spread.util.PropaguleBuffer;
+import spread.util.SpeciesRegistry;
+
+import cern.colt.function.IntProcedure;
 
 import com.vividsolutions.jts.geom.Coordinate;
 
@@ -77,6 +82,118 @@ public interface Mosaic {
 
 	public Set<Patch> fill(Collection<Patch> region, String species);
 
+	/**
+	 * Applies a procedure to the IDs of all Patches subject to a patch-level
+	 * control, in ascending order. Only the controlled Patches are visited.
+	 * 
+	 * @param control
+	 *            - the control of interest.
+	 * @param procedure
+	 *            - the procedure to be applied. Iteration stops if it returns
+	 *            false.
+	 * @return false if the procedure stopped before all IDs were visited,
+	 *         true otherwise.
+	 */
+
+	public boolean forEachControlled(ControlType control,
+			IntProcedure procedure);
+
+	/**
+	 * Applies a procedure to the IDs of all Patches where the Infestation of
+	 * the given species is subject to a control, in ascending order.
+	 * 
+	 * @param species
+	 *            - the species of interest.
+	 * @param control
+	 *            - the control of interest.
+	 * @param procedure
+	 *            - the procedure to be applied. Iteration stops if it returns
+	 *            false.
+	 * @return false if the procedure stopped before all IDs were visited,
+	 *         true otherwise.
+	 */
+
+	public boolean forEachControlled(String species, ControlType control,
+			IntProcedure procedure);
+
+	/**
+	 * Applies a procedure to the IDs of all Patches where the Infestation of
+	 * the given species is subject to a control, in ascending order.
+	 * 
+	 * @param species
+	 *            - the index of the species (see getSpeciesRegistry).
+	 * @param control
+	 *            - the control of interest.
+	 * @param procedure
+	 *            - the procedure to be applied. Iteration stops if it returns
+	 *            false.
+	 * @return false if the procedure stopped before all IDs were visited,
+	 *         true otherwise.
+	 */
+
+	public boolean forEachControlled(int species, ControlType control,
+			IntProcedure procedure);
+
+	/**
+	 * Applies a procedure to the IDs of all Patches infested by any species,
+	 * in ascending order. Only the infested Patches are visited. Changes made
+	 * by the procedure are seen by the iteration, as for a scan over all
+	 * Patches.
+	 * 
+	 * @param procedure
+	 *            - the procedure to be applied. Iteration stops if it returns
+	 *            false.
+	 * @return false if the procedure stopped before all IDs were visited,
+	 *         true otherwise.
+	 */
+
+	public boolean forEachInfested(IntProcedure procedure);
+
+	/**
+	 * Applies a procedure to the IDs of all Patches infested by the given
+	 * species, in ascending order.
+	 * 
+	 * @param species
+	 *            - the species of interest.
+	 * @param procedure
+	 *            - the procedure to be applied. Iteration stops if it returns
+	 *            false.
+	 * @return false if the procedure stopped before all IDs were visited,
+	 *         true otherwise.
+	 */
+
+	public boolean forEachInfested(String species, IntProcedure procedure);
+
+	/**
+	 * Applies a procedure to the IDs of all Patches infested by the given
+	 * species, in ascending order.
+	 * 
+	 * @param species
+	 *            - the index of the species (see getSpeciesRegistry).
+	 * @param procedure
+	 *            - the procedure to be applied. Iteration stops if it returns
+	 *            false.
+	 * @return false if the procedure stopped before all IDs were visited,
+	 *         true otherwise.
+	 */
+
+	public boolean forEachInfested(int species, IntProcedure procedure);
+
+	/**
+	 * Applies a procedure to the IDs of all Patches holding an Infestation
+	 * record (see Patch.wasInfestedBy) for any species, in ascending order.
+	 * Only these Patches can be changed by monitoring and by management of
+	 * infestations.
+	 * 
+	 * @param procedure
+	 *            - the procedure to be applied. Iteration stops if it returns
+	 *            false.
+	 * @return false if the procedure stopped before all IDs were visited,
+	 *         true otherwise.
+	 */
+
+	public boolean forEachRecorded(IntProcedure procedure);
+
 	/**
 	 * @param species
 	 *            - the species of interest.
@@ -170,12 +287,52 @@ public interface Mosaic {
 
 	public int getNumberInfestedPatches();
 
+	/**
+	 * @param control
+	 *            - the control type of interest.
+	 * @return the number of Patches under the (Patch-level) control.
+	 */
+
+	public int getNumberControlled(ControlType control);
+
+	/**
+	 * @param species
+	 *            - the species of interest.
+	 * @return the number of Patches under any control for the species.
+	 */
+
+	public int getNumberControlled(String species);
+
+	/**
+	 * @param species
+	 *            - the species of interest.
+	 * @param control
+	 *            - the control type of interest.
+	 * @return the number of Patches controlled in association with the
+	 *         species (as for getControlled(species, control)).
+	 */
+
+	public int getNumberControlled(String species, ControlType control);
+
+	/**
+	 * @return the number of Patches being monitored.
+	 */
+
+	public int getNumberMonitored();
+
 	/**
 	 * @return the number of cells marked as having NoData.
 	 */
 
 	public int getNumberNoData();
 
+	/**
+	 * @return the total number of Patches in the Mosaic. Patch IDs run from 0
+	 *         to getNumberPatches()-1.
+	 */
+
+	public int getNumberPatches();
+
 	/**
 	 * @return the number of cells containing undetected infestations.
 	 */
@@ -227,12 +384,43 @@ public interface Mosaic {
 
 	public Map<Integer, Patch> getPatches();
 
+	/**
+	 * Returns whether a Patch has NoData, without retrieving the Patch.
+	 * 
+	 * @param id
+	 *            - the ID of the Patch.
+	 * @return whether the Patch has NoData.
+	 */
+
+	public boolean hasNoData(int id);
+
+	/**
+	 * Returns whether a Patch is infested by a species, without retrieving
+	 * the Patch.
+	 * 
+	 * @param id
+	 *            - the ID of the Patch.
+	 * @param species
+	 *            - the species of interest.
+	 * @return whether the Patch is infested by the species.
+	 */
+
+	public boolean isInfestedBy(int id, String species);
+
 	/**
 	 * @return the set of species occupying the Mosaic
 	 */
 
 	public List<String> getSpeciesList();
 
+	/**
+	 * @return the registry assigning an int index to each species. Indices
+	 *         are shared by the Patches of the Mosaic and by its clones, and
+	 *         can be used in place of species names on hot paths.
+	 */
+
+	public SpeciesRegistry getSpeciesRegistry();
+
 	/**
 	 * @param patches
 	 *            - the collection of patches from which the core is to be
@@ -363,6 +551,29 @@ public interface Mosaic {
 
 	public void infest(String species, List<Coordinate> propagules);
 
+	/**
+	 * Infests the mosaic according to a List of coordinate values.
+	 * 
+	 * @param species
+	 *            - the index of the species (see getSpeciesRegistry).
+	 * @param propagules
+	 *            - the locations of the propagules.
+	 */
+
+	public void infest(int species, List<Coordinate> propagules);
+
+	/**
+	 * Infests the Mosaic from a buffer of propagule locations, for a species
+	 * given by its index (see SpeciesRegistry).
+	 * 
+	 * @param species
+	 *            - the index of the species.
+	 * @param propagules
+	 *            - the locations of the propagules.
+	 */
+
+	public void infest(int species, PropaguleBuffer propagules);
+
 	/**
 	 * Removes a control associated with a given species from the Collection of
 	 * patches.
@@ -535,6 +746,49 @@ public interface Mosaic {
 
 	public Set<Patch> getWeakRegion(Patch p, Set<String> speciesSet,
 			boolean condition);
+
+	/**
+	 * Labels all regions of connected Patches under containment (i.e.
+	 * CONTAINMENT or CONTAINMENT_CORE) in a single pass over the Mosaic.
+	 * 
+	 * @param weak
+	 *            - whether diagonal neighbours are connected.
+	 * @return the labelled regions, keyed by Patch ID.
+	 */
+
+	public Components labelContainment(boolean weak);
+
+	/**
+	 * Returns the region of Patches weakly connected to a Patch and infested
+	 * by any of a set of species. Regions are maintained as infestations
+	 * change, so repeated lookups are cheap.
+	 * 
+	 * @param id
+	 *            - the ID of the starting Patch.
+	 * @param speciesSet
+	 *            - the Set of species to be considered
+	 * @return the IDs of the Patches in the region, in ascending order.
+	 */
+
+	public int[] getTrackedRegionIds(int id, Set<String> speciesSet);
+
+	/**
+	 * Labels all regions of connected Patches having the given condition for
+	 * any of a set of species, in a single pass over the Mosaic. NoData
+	 * Patches are never part of a region.
+	 * 
+	 * @param speciesSet
+	 *            - the Set of species to be considered
+	 * @param condition
+	 *            - indicates whether the connected cells should be infested or
+	 *            not.
+	 * @param weak
+	 *            - whether diagonal neighbours are connected.
+	 * @return the labelled regions, keyed by Patch ID.
+	 */
+
+	public Components labelRegions(Set<String> speciesSet, boolean condition,
+			boolean weak);
 	
 	public void updateInfestationStages(Map<String, long[]> thresholds);
 }
@@ -5,7 +5,7 @@
 package spread;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -13,6 +13,7 @@ import java.util.TreeMap;
 import java.util.TreeSet;
 
 import spread.util.ControlType;
+import spread.util.SpeciesRegistry;
 
 import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.Geometry;
@@ -22,82 +23,193 @@ import com.vividsolutions.jts.geom.Geometry;
  * hold state variables that are then transformed by different classes. The
  * state variables have private access and are modified using getters and
  * setters.
- * 
+ *
+ * Per-species state (Infestations and habitat suitabilities) is held in
+ * arrays indexed by the species index assigned by a SpeciesRegistry, which is
+ * normally shared with the Mosaic holding the Patch. Methods taking a species
+ * name are adapters over the corresponding int-indexed methods.
+ *
  */
 
 public class Patch implements Cloneable, Comparable<Patch> {
 
+	private static final Infestation[] NO_INFESTATIONS = new Infestation[0];
+	private static final double[] NO_SUITABILITIES = new double[0];
+
 	private int id = -1;
 
 	private boolean visited = false;
 	private boolean monitored = false;
 	private boolean wasMonitored = false;
 	private Geometry geom;
-	private Map<String, Double> habitatSuitabilities = new TreeMap<String, Double>();
-	private Map<String, Infestation> infestations = new TreeMap<String, Infestation>();
-	private Set<ControlType> controls = new TreeSet<ControlType>();
+	private SpeciesRegistry registry;
+	private double[] habitatSuitabilities; // NaN where not set
+	private Infestation[] infestations; // null where absent
+	private int controls = 0; // bitmask, see ControlType.mask()
 
 	private boolean nodata = false;
+	private PatchListener listener;
+
+	// Collections that are shared with another Patch (see shallowClone) and
+	// must be copied before they are modified.
+
+	private static final int SHARED_HABITAT = 1;
+	private static final int SHARED_INFESTATIONS = 2;
+	private int shared = 0;
+
+	public Patch() {
+		this(new SpeciesRegistry());
+	}
+
+	/**
+	 * @param registry
+	 *            - the registry assigning indices to species names (usually
+	 *            that of the Mosaic holding the Patch).
+	 */
+
+	public Patch(SpeciesRegistry registry) {
+		this.registry = registry;
+		habitatSuitabilities = NO_SUITABILITIES;
+		infestations = NO_INFESTATIONS;
+	}
+
+	/**
+	 * Creates a deep copy of the state exposed by another Patch. Only the
+	 * public accessors of the source are used, so any Patch implementation
+	 * (including views over a Mosaic's internal storage) can be copied.
+	 *
+	 * @param patch
+	 *            - the Patch to be copied.
+	 */
+
+	public Patch(Patch patch) {
+		this(patch.getSpeciesRegistry());
+		id = patch.getID();
+		geom = patch.getGeometry();
+		nodata = patch.hasNoData();
+		visited = patch.isVisited();
+		monitored = patch.isMonitored();
+		wasMonitored = patch.wasMonitored();
+		setHabitatSuitabilities(patch.getHabitatSuitabilities());
+		Map<String, Infestation> source = patch.getInfestation();
+		for (String species : source.keySet()) {
+			Infestation o = new Infestation(source.get(species));
+			o.setParent(this);
+			int s = registry.register(species);
+			ensureCapacity(s);
+			infestations[s] = o;
+		}
+		controls = patch.getControlMask();
+	}
+
+	/**
+	 * Constructor for subclasses that hold their state outside of the Patch
+	 * (e.g. lightweight views over a Mosaic's primitive layers). No per-patch
+	 * collections are allocated, so all accessors must be overridden.
+	 *
+	 * @param id
+	 *            - the ID of the Patch.
+	 */
+
+	protected Patch(int id) {
+		this.id = id;
+	}
 
 	public void addControl(ControlType control){
-		controls.add(control);
+		controls |= control.mask();
+		notifyListener(-1);
 	}
-	
+
 	public void addControl(ControlType control, String species){
+		addControl(control, registry.indexOf(species));
+	}
+
+	/**
+	 * Adds a control to the Infestation of a species, if the Patch is
+	 * infested by it.
+	 *
+	 * @param control - the control to be added.
+	 * @param species - the index of the species.
+	 */
+
+	public void addControl(ControlType control, int species){
 		if(isInfestedBy(species)){
-			infestations.get(species).addControl(control);
+			getInfestation(species).addControl(control);
 		}
 	}
-	
+
 	public void clearControls(){
-		controls.clear();
-		for(String s:infestations.keySet()){
-			infestations.get(s).clearControls();
+		own(SHARED_INFESTATIONS);
+		controls = 0;
+		for(Infestation o:infestations){
+			if(o!=null){
+				o.clearControls();
+			}
 		}
+		notifyListener(-1);
 	}
-	
+
+	/**
+	 * @return the highest control applied to the Patch or to any of its
+	 *         Infestations.
+	 */
+
 	public ControlType getMaxControl(){
-		ControlType max = ControlType.NONE;
-		for(ControlType control:controls){
-			max=ControlType.values()[Math.max(max.ordinal(), control.ordinal())];
-		}
-		for(String species:infestations.keySet()){
-			for(ControlType control:infestations.get(species).getControls().keySet()){
-				max=ControlType.values()[Math.max(max.ordinal(), control.ordinal())];
+		int mask = controls;
+		for(Infestation o:infestations){
+			if(o!=null){
+				mask |= o.getControlMask();
 			}
 		}
-		return max;
+		return ControlType.highest(mask);
 	}
-	
+
 	public boolean hasControl(ControlType control){
-		return controls.contains(control);
+		return (controls & control.mask()) != 0;
 	}
-	
+
 	public boolean hasControl(ControlType control, String species){
-		return infestations.containsKey(species) && infestations.get(species).hasControl(control);
+		return hasControl(control, registry.indexOf(species));
+	}
+
+	/**
+	 * @param control - the control of interest.
+	 * @param species - the index of the species.
+	 * @return whether the Infestation of the species is subject to the control.
+	 */
+
+	public boolean hasControl(ControlType control, int species){
+		Infestation o = infestation(species);
+		return o != null && o.hasControl(control);
 	}
-	
+
 	public void removeControl(ControlType control){
-		controls.remove(control);
+		controls &= ~control.mask();
+		notifyListener(-1);
 	}
-	
+
 	public Set<String> getControlled(ControlType control){
 		Set<String> controlled = new TreeSet<String>();
-		for(String occupant:infestations.keySet()){
-			if(infestations.get(occupant).hasControl(control)){
-				controlled.add(occupant);
+		for(int s = 0; s < infestations.length; s++){
+			if(infestations[s] != null && infestations[s].hasControl(control)){
+				controlled.add(registry.getName(s));
 			}
 		}
 		return controlled;
 	}
-	
+
 	/**
 	 * Adds an Infestation to the Patch
 	 * @param infestation
 	 */
-	
+
 	public void addInfestation(Infestation infestation) {
-		infestations.put(infestation.getName(), infestation);
+		infestation.setParent(this);
+		int s = registry.register(infestation.getName());
+		own(SHARED_INFESTATIONS);
+		ensureCapacity(s);
+		infestations[s] = infestation;
+		notifyListener(s);
 	}
 
 	/**
@@ -105,60 +217,115 @@ public class Patch implements Cloneable, Comparable<Patch> {
 	 * with the given species name.
 	 * @param species
 	 */
-	
+
 	public void addInfestation(String species) {
+		addInfestation(registry.register(species));
+	}
+
+	/**
+	 * Adds a default Infestation to the patch associated
+	 * with the given species index.
+	 * @param species - the index of the species.
+	 */
+
+	public void addInfestation(int species) {
 		Infestation infestation = new Infestation();
-		infestation.setSpecies(species);
+		infestation.setSpecies(registry.getName(species));
 		infestation.setInfested(true);
 		infestation.setParent(this);
-		infestations.put(species, infestation);
+		own(SHARED_INFESTATIONS);
+		ensureCapacity(species);
+		infestations[species] = infestation;
+		notifyListener(species);
 	}
-	
+
 	/**
 	 * Clears the Patch of infestation by the given species.
 	 * @param species
 	 */
 
 	public void clearInfestation(String species) {
-		if(infestations.containsKey(species)){
-			infestations.get(species).clearInfestation();
+		clearInfestation(registry.indexOf(species));
+	}
+
+	/**
+	 * Clears the Patch of infestation by the given species.
+	 * @param species - the index of the species.
+	 */
+
+	public void clearInfestation(int species) {
+		if(infestation(species) != null){
+			getInfestation(species).clearInfestation();
 		}
 	}
 
 	/**
 	 * Returns a copy of the current instance of the class.
 	 */
-	
+
 	@Override
 	public Patch clone() {
-		Patch patch = new Patch();
+		Patch patch = new Patch(registry);
 		patch.geom = geom;
 		patch.nodata = nodata;
 		patch.visited = visited;
 		patch.monitored = monitored;
 		patch.wasMonitored=wasMonitored;
 		patch.id = id;
-		
-		Map<String,Double> hscopy = new TreeMap<String,Double>();
-		for (String s:habitatSuitabilities.keySet()){
-			hscopy.put(s, habitatSuitabilities.get(s));
-		}
-		
-		patch.habitatSuitabilities=hscopy;
-		
-		Map<String, Infestation> ocopy = new TreeMap<String, Infestation>();
-		for (String o : infestations.keySet()) {
-			ocopy.put(o, infestations.get(o).clone());
-		}
-		
+
+		patch.habitatSuitabilities=habitatSuitabilities.clone();
+
+		Infestation[] ocopy = new Infestation[infestations.length];
+		for (int s = 0; s < infestations.length; s++) {
+			if (infestations[s] != null) {
+				ocopy[s] = infestations[s].clone();
+				ocopy[s].setParent(patch);
+			}
+		}
+
 		patch.infestations = ocopy;
-		
-		Set<ControlType> ccontrols = new TreeSet<ControlType>(controls);
-		patch.controls=ccontrols;
+		patch.controls = controls;
+
+		return patch;
+	}
+
+	/**
+	 * Marks the collections of the Patch as shared, so that they are copied
+	 * before the Patch modifies them. Must be called before copies are made
+	 * with shallowClone, on the thread that made the Patch available to the
+	 * copies.
+	 */
+
+	public void markShared() {
+		shared = SHARED_HABITAT | SHARED_INFESTATIONS;
+	}
+
+	/**
+	 * Returns a copy of the Patch that shares its collections (habitat
+	 * suitabilities and Infestations) with this Patch. The copy copies each
+	 * collection before it first modifies it, or exposes it through a mutable
+	 * accessor, so the copy is cheap for Patches that are never changed. This
+	 * Patch is not modified (so copies may be made concurrently), and must
+	 * have been marked shared (see markShared). The listener is not copied.
+	 *
+	 * @return - a copy-on-write copy of the Patch.
+	 */
 
+	public Patch shallowClone() {
+		Patch patch = new Patch(id);
+		patch.geom = geom;
+		patch.nodata = nodata;
+		patch.visited = visited;
+		patch.monitored = monitored;
+		patch.wasMonitored = wasMonitored;
+		patch.registry = registry;
+		patch.habitatSuitabilities = habitatSuitabilities;
+		patch.infestations = infestations;
+		patch.controls = controls;
+		patch.shared = SHARED_HABITAT | SHARED_INFESTATIONS;
 		return patch;
 	}
-	
+
 	/**
 	 * Compares Patches on the basis of their id value.
 	 */
@@ -173,10 +340,10 @@ public class Patch implements Cloneable, Comparable<Patch> {
 		}
 		return 0;
 	}
-	
+
 	/**
 	 * Tests for equality of Patches (based on id value)
-	 * 
+	 *
 	 * @param p - the Patch for comparison.
 	 * @return - whether the current Patch and the given Patch are equal (based on ID)
 	 */
@@ -184,66 +351,102 @@ public class Patch implements Cloneable, Comparable<Patch> {
 	public boolean equals(Patch p) {
 		return this.getID() == p.getID();
 	}
-	
+
+	/**
+	 * Tests for equality of Patches (based on id value), consistent with
+	 * compareTo.
+	 */
+
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof Patch && equals((Patch) o);
+	}
+
+	/**
+	 * Returns a hash code based on the id value.
+	 */
+
+	@Override
+	public int hashCode() {
+		return getID();
+	}
+
 	/**
 	 * @return a Java map of species names and associated infestation times.
 	 */
 
 	public Map<String, Long> getAgesOfInfestation() {
 		Map<String, Long> agesOfInfestation = new TreeMap<String, Long>();
-		Iterator<String> it = infestations.keySet().iterator();
-		while (it.hasNext()) {
-			String key = it.next();
-			agesOfInfestation
-					.put(key, infestations.get(key).getAgeOfInfestation());
+		for (int s = 0; s < infestations.length; s++) {
+			if (infestations[s] != null) {
+				agesOfInfestation.put(registry.getName(s),
+						infestations[s].getAgeOfInfestation());
+			}
 		}
 		return agesOfInfestation;
 	}
-	
+
 	/**
 	 * @return the length of time occupying species have infested this Patch
 	 */
 
 	public long getAgeOfInfestation(String species) {
-		if(infestations.containsKey(species)){
-			return infestations.get(species).getAgeOfInfestation();
+		return getAgeOfInfestation(registry.indexOf(species));
+	}
+
+	/**
+	 * @param species - the index of the species.
+	 * @return the length of time the species has infested this Patch
+	 */
+
+	public long getAgeOfInfestation(int species) {
+		Infestation o = infestation(species);
+		if(o != null){
+			return o.getAgeOfInfestation();
 		}
 		return 0l;
 	}
 
 	/**
-	 * @return the set of controls currently associated with this Patch
+	 * @return the set of controls currently associated with this Patch (a
+	 *         copy; changes to it are not written back).
 	 */
-	
+
 	public Set<ControlType> getControls(){
+		return ControlType.toSet(controls);
+	}
+
+	/**
+	 * @return the controls currently associated with this Patch as a bitmask
+	 *         (see ControlType.mask()).
+	 */
+
+	public int getControlMask(){
 		return controls;
 	}
-	
+
 	/**
 	 * @param species - the species of interest.
 	 * @return the set of controls currently associated with this Patch and the given Species
 	 */
-	
+
 	public Set<ControlType> getControls(String species){
-		Set<ControlType> speciesControls = new TreeSet<ControlType>();
-			if(infestations.containsKey(species)){
-				speciesControls.addAll(infestations.get(species).getControls().keySet());
-			}
-		return speciesControls;
+		Infestation o = infestation(registry.indexOf(species));
+		return ControlType.toSet(o == null ? 0 : o.getControlMask());
 	}
-	
+
 	/**
 	 * @return the cumulative length of time occupying species have infested this Patch,
 	 * e.g. the species may have been eliminated and re-infested.
 	 */
-	
+
 	public Map<String, Long> getCumulativeAgesOfInfestation() {
 		Map<String, Long> cumulativeAgesOfInfestation = new TreeMap<String, Long>();
-		Iterator<String> it = infestations.keySet().iterator();
-		while (it.hasNext()) {
-			String key = it.next();
-			cumulativeAgesOfInfestation.put(key, infestations.get(key)
-					.getCumulativeAgeOfInfestation());
+		for (int s = 0; s < infestations.length; s++) {
+			if (infestations[s] != null) {
+				cumulativeAgesOfInfestation.put(registry.getName(s),
+						infestations[s].getCumulativeAgeOfInfestation());
+			}
 		}
 		return cumulativeAgesOfInfestation;
 	}
@@ -252,13 +455,15 @@ public class Patch implements Cloneable, Comparable<Patch> {
 	 * @return a list of dispersing propagules produced by the Patch.  This is the equivalent
 	 * of seeds produced by the Patch which have yet to be transported.
 	 */
-	
+
 	public Map<String, Disperser> getDispersers() {
 		Map<String, Disperser> dispersers = new TreeMap<String, Disperser>();
-		Iterator<String> it = infestations.keySet().iterator();
-		while (it.hasNext()) {
-			String key = it.next();
-			dispersers.put(key, infestations.get(key).getDisperser());
+		own(SHARED_INFESTATIONS);
+		for (int s = 0; s < infestations.length; s++) {
+			if (infestations[s] != null) {
+				dispersers.put(registry.getName(s),
+						infestations[s].getDisperser());
+			}
 		}
 		return dispersers;
 	}
@@ -266,27 +471,46 @@ public class Patch implements Cloneable, Comparable<Patch> {
 	/**
 	 * @return the shape of the patch as a geometry.
 	 */
-	
+
 	public Geometry getGeometry() {
 		return geom;
 	}
 
 	/**
-	 * @return the suitability of the Patch associated with species types.
+	 * @return a copy of the suitability of the Patch associated with species types.
 	 */
-	
+
 	public Map<String, Double> getHabitatSuitabilities() {
-		return habitatSuitabilities;
+		Map<String, Double> suitabilities = new TreeMap<String, Double>();
+		for (int s = 0; s < habitatSuitabilities.length; s++) {
+			if (!Double.isNaN(habitatSuitabilities[s])) {
+				suitabilities.put(registry.getName(s), habitatSuitabilities[s]);
+			}
+		}
+		return suitabilities;
 	}
-	
+
 	/**
 	 * @return the suitability of the Patch associated with species types.
 	 */
-	
+
 	public double getHabitatSuitability(String species) {
-		return habitatSuitabilities.get(species);
+		return getHabitatSuitability(registry.indexOf(species));
 	}
-	
+
+	/**
+	 * @param species - the index of the species.
+	 * @return the suitability of the Patch for the species (0 if not set).
+	 */
+
+	public double getHabitatSuitability(int species) {
+		if (species < 0 || species >= habitatSuitabilities.length
+				|| Double.isNaN(habitatSuitabilities[species])) {
+			return 0d;
+		}
+		return habitatSuitabilities[species];
+	}
+
 	/**
 	 * @return the id of the Patch.
 	 */
@@ -298,13 +522,14 @@ public class Patch implements Cloneable, Comparable<Patch> {
 	/**
 	 * @return the maximum infestation stage of the Patch
 	 */
-	
+
 	public Map<String, Integer> getMaxInfestations() {
 		Map<String, Integer> maxInfestations = new TreeMap<String, Integer>();
-		Iterator<String> it = infestations.keySet().iterator();
-		while (it.hasNext()) {
-			String key = it.next();
-			maxInfestations.put(key, infestations.get(key).getMaxInfestation());
+		for (int s = 0; s < infestations.length; s++) {
+			if (infestations[s] != null) {
+				maxInfestations.put(registry.getName(s),
+						infestations[s].getMaxInfestation());
+			}
 		}
 		return maxInfestations;
 	}
@@ -313,47 +538,76 @@ public class Patch implements Cloneable, Comparable<Patch> {
 	 * @param species - the name of the species
 	 * @return an infestation of the patch by its species name.
 	 */
-	
+
 	public Infestation getInfestation(String species) {
-		return infestations.get(species);
+		return getInfestation(registry.indexOf(species));
 	}
-	
+
+	/**
+	 * @param species - the index of the species
+	 * @return an infestation of the patch by its species index (or null if
+	 * there is none).
+	 */
+
+	public Infestation getInfestation(int species) {
+		own(SHARED_INFESTATIONS);
+		return infestation(species);
+	}
+
 	/**
-	 * @return  all Infestations in the Patch.
+	 * @return  all Infestations in the Patch, keyed by species name.  The map
+	 * is a copy, but the Infestations are those held by the Patch.
 	 */
 
 	public Map<String, Infestation> getInfestation() {
-		return infestations;
+		Map<String, Infestation> all = new TreeMap<String, Infestation>();
+		own(SHARED_INFESTATIONS);
+		for (int s = 0; s < infestations.length; s++) {
+			if (infestations[s] != null) {
+				all.put(registry.getName(s), infestations[s]);
+			}
+		}
+		return all;
 	}
-	
+
 	/**
 	 * @param species - the species of interest.
 	 * @return the set of Coordinates representing propagules associated with the given species.
 	 */
-	
+
 	public List<Coordinate> getPropagules(String species){
 		List<Coordinate> propagules = new ArrayList<Coordinate>();
-		if(infestations.containsKey(species)){
-			propagules.addAll(infestations.get(species).getPropagules());
+		Infestation o = infestation(registry.indexOf(species));
+		if(o != null){
+			propagules.addAll(o.getPropagules());
 		}
 		return propagules;
 	}
 
+	/**
+	 * @return the registry assigning indices to the species of the Patch.
+	 */
+
+	public SpeciesRegistry getSpeciesRegistry() {
+		return registry;
+	}
+
 	/**
 	 * @return the stages of infestation associated with each occupying species type.
 	 */
-	
+
 	public Map<String, Integer> getStagesOfInfestation() {
-		
+
 		Map<String, Integer> stages = new TreeMap<String, Integer>();
-		Iterator<String> it = infestations.keySet().iterator();
-		while (it.hasNext()) {
-			String key = it.next();
-			stages.put(key, infestations.get(key).getStageOfInfestation());
+		for (int s = 0; s < infestations.length; s++) {
+			if (infestations[s] != null) {
+				stages.put(registry.getName(s),
+						infestations[s].getStageOfInfestation());
+			}
 		}
 		return stages;
 	}
-	
+
 	/**
 	 * @return whether this Patch has 'NoData'.
 	 */
@@ -361,93 +615,121 @@ public class Patch implements Cloneable, Comparable<Patch> {
 	public boolean hasNoData() {
 		return nodata;
 	}
-	
+
 	/**
 	 * Increments all infestations by the given time increment
 	 * @param increment - the time increment size
 	 */
-	
+
 	public void incrementInfestationTime(long increment) {
-		Iterator<String> it = infestations.keySet().iterator();
-		while (it.hasNext()) {
-			infestations.get(it.next()).incrementInfestationTime(increment);
+		own(SHARED_INFESTATIONS);
+		for (Infestation o : infestations) {
+			if (o != null) {
+				o.incrementInfestationTime(increment);
+			}
 		}
 	}
-	
+
 	/**
 	 * @return whether the Patch is controlled in some manner.
 	 */
-	
+
 	public boolean isControlled(){
-		for(Infestation o:infestations.values()){
-			if (o.isControlled()){
+		for(Infestation o:infestations){
+			if (o != null && o.isControlled()){
 				return true;
 			}
 		}
 		return false;
 	}
-	
+
 	/**
 	 * @return whether the Patch is being monitored - which may be potentially
 	 * different than whether it is being controlled.
 	 */
-	
+
 	public boolean isMonitored() {
 		return monitored;
 	}
-	
+
 	/**
 	 * @return whether the patch is infested by any species.
 	 */
 
 	public boolean isInfested(){
-		for(String species:infestations.keySet()){
-			if(infestations.get(species).isInfested()){
+		for(Infestation o:infestations){
+			if(o != null && o.isInfested()){
 				return true;
 			}
 		}
 		return false;
 	}
-	
+
 	/**
 	 * @param species - the species of interest
 	 * @return whether the patch is infested by the provided species
 	 */
-	
+
 	public boolean isInfestedBy(String species) {
-		return infestations.containsKey(species) && infestations.get(species).isInfested();
+		return isInfestedBy(registry.indexOf(species));
+	}
+
+	/**
+	 * @param species - the index of the species of interest
+	 * @return whether the patch is infested by the provided species
+	 */
+
+	public boolean isInfestedBy(int species) {
+		Infestation o = infestation(species);
+		return o != null && o.isInfested();
 	}
-	
+
 	/**
 	 * @return whether the Patch was visited by an operation - used to prevent
-	 * duplicate processing during chain operations. 
+	 * duplicate processing during chain operations. Note that the region
+	 * searches of RasterMosaic track visited cells themselves, and do not set
+	 * this flag.
 	 */
 
 	public boolean isVisited() {
 		return visited;
 	}
-	
+
 	/**
 	 * @return the list of species currently occupying the Patch
 	 */
-	
+
 	public Set<String> getCurrentOccupants(){
 		Set<String> occupants = new TreeSet<String>();
-		for(String occupant:infestations.keySet()){
-			if(infestations.get(occupant).isInfested()){
-				occupants.add(occupant);
+		for(int s = 0; s < infestations.length; s++){
+			if(infestations[s] != null && infestations[s].isInfested()){
+				occupants.add(registry.getName(s));
 			}
 		}
 		return occupants;
 	}
-	
+
 	/**
 	 * Removes a given Infestation from the Patch.
 	 * @param key - the species name to be removed.
 	 */
 
 	public void removeInfestation(String key) {
-		infestations.remove(key);
+		removeInfestation(registry.indexOf(key));
+	}
+
+	/**
+	 * Removes a given Infestation from the Patch.
+	 * @param species - the index of the species to be removed.
+	 */
+
+	public void removeInfestation(int species) {
+		if (species < 0 || species >= infestations.length) {
+			return;
+		}
+		own(SHARED_INFESTATIONS);
+		infestations[species] = null;
+		notifyListener(species);
 	}
 
 	/**
@@ -455,9 +737,9 @@ public class Patch implements Cloneable, Comparable<Patch> {
 	 * @param species - the species of interest.
 	 * @param ageOfInfestation - the age of infestation to be set.
 	 */
-	
+
 	public void setAgeOfInfestation(String species, long ageOfInfestation) {
-		infestations.get(species).setAgeOfInfestation(ageOfInfestation);
+		getInfestation(species).setAgeOfInfestation(ageOfInfestation);
 	}
 
 	/**
@@ -465,11 +747,11 @@ public class Patch implements Cloneable, Comparable<Patch> {
 	 * @param species - the species of interest.
 	 * @param disperser - the Disperser to be set.
 	 */
-	
+
 	public void setDisperser(String species, Disperser disperser) {
-		infestations.get(species).setDisperser(disperser);
+		getInfestation(species).setDisperser(disperser);
 	}
-	
+
 	/**
 	 * Explicitly sets the geometry of the Patch
 	 * @param geom - the geometry of the Patch.
@@ -484,20 +766,36 @@ public class Patch implements Cloneable, Comparable<Patch> {
 	 * @param species - the species of interest.
 	 * @param habitatSuitability - the associated habitat suitability level.
 	 */
-	
+
 	public void setHabitatSuitability(String species, double habitatSuitability) {
-		habitatSuitabilities.put(species, habitatSuitability);
+		setHabitatSuitability(registry.register(species), habitatSuitability);
+	}
+
+	/**
+	 * Sets the habitat suitability of the Patch associated with a given species.
+	 * @param species - the index of the species of interest.
+	 * @param habitatSuitability - the associated habitat suitability level.
+	 */
+
+	public void setHabitatSuitability(int species, double habitatSuitability) {
+		own(SHARED_HABITAT);
+		ensureCapacity(species);
+		habitatSuitabilities[species] = habitatSuitability;
 	}
-	
+
 	/**
 	 * Sets the habitat suitability of the Patch associated with a given species.
 	 * @param habitatSuitabilities - a Map of species names and habitat suitability values.
 	 */
-	
+
 	public void setHabitatSuitabilities(Map<String,Double> habitatSuitabilities) {
-		this.habitatSuitabilities=habitatSuitabilities;
+		this.habitatSuitabilities = NO_SUITABILITIES;
+		shared &= ~SHARED_HABITAT;
+		for (String species : habitatSuitabilities.keySet()) {
+			setHabitatSuitability(species, habitatSuitabilities.get(species));
+		}
 	}
-	
+
 	/**
 	 * Sets the id of the Patch.
 	 * @param id - the ID of the Patch.
@@ -506,7 +804,7 @@ public class Patch implements Cloneable, Comparable<Patch> {
 	public void setID(int id) {
 		this.id = id;
 	}
-	
+
 	/**
 	 * Sets the infestation state of the Patch by a given species (assumes the Patch is already Infested)
 	 * @param species - the species of interest
@@ -514,9 +812,9 @@ public class Patch implements Cloneable, Comparable<Patch> {
 	 */
 
 	public void setInfested(String species, boolean infested) {
-		infestations.get(species).setInfested(infested);
+		getInfestation(species).setInfested(infested);
 	}
-	
+
 	/**
 	 * Sets whether the Patch is considered to be monitored.
 	 * @param monitored
@@ -525,38 +823,56 @@ public class Patch implements Cloneable, Comparable<Patch> {
 	public void setMonitored(boolean monitored) {
 		this.monitored = monitored;
 		if(monitored){wasMonitored=true;}
+		notifyListener(-1);
 	}
-	
+
 	public void clear(){
-		infestations = new TreeMap<String, Infestation>();
-		controls=new TreeSet<ControlType>();
+		infestations = NO_INFESTATIONS;
+		controls = 0;
+		shared &= ~SHARED_INFESTATIONS;
 		visited = false;
 		monitored = false;
 		wasMonitored = false;
+		notifyListener(-1);
 	}
 
 	/**
 	 * Sets whether this is a 'NoData' Patch.
 	 * @param nodata
 	 */
-	
+
 	public void setNoData(boolean nodata) {
 		this.nodata = nodata;
 		if(nodata){
 			clear();
+		} else {
+			notifyListener(-1);
 		}
 	}
-	
+
+	/**
+	 * Sets the listener to be notified of changes to the infestation or
+	 * control state of the Patch. The listener is not copied when the Patch
+	 * is cloned.
+	 *
+	 * @param listener
+	 *            - the listener (or null for none).
+	 */
+
+	public void setListener(PatchListener listener) {
+		this.listener = listener;
+	}
+
 	/**
 	 * Explicitly sets the propagules associated with the patch and given species
 	 * (i.e. settled seeds).
-	 * 
+	 *
 	 * @param species
 	 * @param propagules
 	 */
 
 	public void setPropagules(String species, List<Coordinate> propagules) {
-		infestations.get(species).setPropagules(propagules);
+		getInfestation(species).setPropagules(propagules);
 	}
 
 	/**
@@ -564,11 +880,11 @@ public class Patch implements Cloneable, Comparable<Patch> {
 	 * @param species
 	 * @param stageOfInfestation
 	 */
-	
+
 	public void setStageOfInfestation(String species, int stageOfInfestation) {
-		infestations.get(species).setStageOfInfestation(stageOfInfestation);
+		getInfestation(species).setStageOfInfestation(stageOfInfestation);
 	}
-	
+
 	/**
 	 * Sets whether the patch has been 'visited' to avoid reprocessing the Patch
 	 * during chain operations.
@@ -585,16 +901,101 @@ public class Patch implements Cloneable, Comparable<Patch> {
 
 	@Override
 	public String toString() {
-		return Integer.toString(id);
+		return Integer.toString(getID());
+	}
+
+	/**
+	 * Notifies the listener (if any) that the state of the Patch has changed.
+	 * Also called by the Infestations of the Patch.
+	 *
+	 * @param species
+	 *            - the species whose Infestation has changed, or null if the
+	 *            change applies to the Patch as a whole.
+	 */
+
+	protected void notifyListener(String species) {
+		notifyListener(species == null ? -1 : registry.indexOf(species));
 	}
-	
+
+	/**
+	 * Notifies the listener (if any) that the state of the Patch has changed.
+	 *
+	 * @param species
+	 *            - the index of the species whose Infestation has changed, or
+	 *            -1 if the change applies to the Patch as a whole.
+	 */
+
+	protected void notifyListener(int species) {
+		if (listener != null) {
+			listener.patchChanged(this, species);
+		}
+	}
+
+	/**
+	 * Grows the per-species arrays so that they can hold the given species
+	 * index. Must only be called once the arrays are owned.
+	 */
+
+	private void ensureCapacity(int species) {
+		if (species >= infestations.length) {
+			infestations = Arrays.copyOf(infestations, species + 1);
+		}
+		int n = habitatSuitabilities.length;
+		if (species >= n) {
+			habitatSuitabilities = Arrays.copyOf(habitatSuitabilities,
+					species + 1);
+			Arrays.fill(habitatSuitabilities, n, species + 1, Double.NaN);
+		}
+	}
+
+	/**
+	 * Returns the Infestation of a species without taking ownership of shared
+	 * Infestations, so must only be used for reading.
+	 */
+
+	private Infestation infestation(int species) {
+		if (species < 0 || species >= infestations.length) {
+			return null;
+		}
+		return infestations[species];
+	}
+
+	/**
+	 * Copies any of the given collections that are still shared with another
+	 * Patch, so that they can be safely modified.
+	 *
+	 * @param collections
+	 *            - a mask of the SHARED_ flags of the collections required.
+	 */
+
+	private void own(int collections) {
+		int copy = shared & collections;
+		if (copy == 0) {
+			return;
+		}
+		if ((copy & SHARED_HABITAT) != 0) {
+			habitatSuitabilities = habitatSuitabilities.clone();
+		}
+		if ((copy & SHARED_INFESTATIONS) != 0) {
+			Infestation[] ocopy = new Infestation[infestations.length];
+			for (int s = 0; s < infestations.length; s++) {
+				if (infestations[s] != null) {
+					ocopy[s] = infestations[s].clone();
+					ocopy[s].setParent(this);
+				}
+			}
+			infestations = ocopy;
+		}
+		shared &= ~copy;
+	}
+
 	/**
 	 * @return whether the Patch was ever under management control at some point.
 	 */
 
 	public boolean wasControlled(){
-		for(Infestation o:infestations.values()){
-			if (o.wasControlled()){
+		for(Infestation o:infestations){
+			if (o != null && o.wasControlled()){
 				return true;
 			}
 		}
@@ -605,16 +1006,25 @@ public class Patch implements Cloneable, Comparable<Patch> {
 	 * @param species - the species of interest.
 	 * @return whether the Patch was ever infested by he given Species at some point.
 	 */
-	
+
 	public boolean wasInfestedBy(String species){
-		return infestations.containsKey(species);
+		return wasInfestedBy(registry.indexOf(species));
 	}
-	
+
+	/**
+	 * @param species - the index of the species of interest.
+	 * @return whether the Patch was ever infested by he given Species at some point.
+	 */
+
+	public boolean wasInfestedBy(int species){
+		return infestation(species) != null;
+	}
+
 	/**
 	 * @return whether the Patch was ever monitored at some point.
 	 */
-	
+
 	public boolean wasMonitored(){
 		return wasMonitored;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,28 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.
+ * For review only, not for distribution.
+ *******************************************************************************/
+package spread;
+
+/**
+ * Receives notification when the infestation or control state of a Patch
+ * changes. Used by Mosaics to keep track of which Patches are active (e.g.
+ * infested or under control) without scanning all Patches.
+ */
+
+public interface PatchListener {
+
+	/**
+	 * Called after the state of a Patch has changed.
+	 *
+	 * @param patch
+	 *            - the Patch that has changed.
+	 * @param species
+	 *            - the index of the species whose Infestation has changed
+	 *            (see SpeciesRegistry), or -1 if the change applies to the
+	 *            Patch as a whole (e.g. patch-level controls, or the Patch
+	 *            being cleared).
+	 */
+
+	public void patchChanged(Patch patch, int species);
+}
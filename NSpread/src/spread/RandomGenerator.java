@@ -6,7 +6,8 @@ package spread;
 
 /**
  * Interface for random number generation. The clone method ensures that
- * independent copies of the generator can be made.
+ * independent copies of the generator can be made. Values can be drawn one at
+ * a time as primitives, or in batches into arrays, without boxing.
  * 
  */
 
@@ -23,4 +24,40 @@ public interface RandomGenerator {
 	 */
 
 	public Number getNext();
+
+	/**
+	 * Returns the next value from the generator as a double.
+	 */
+
+	public double nextDouble();
+
+	/**
+	 * Returns the next value from the generator as an int (truncated, as for
+	 * getNext().intValue()).
+	 */
+
+	public int nextInt();
+
+	/**
+	 * Fills the first n elements of an array with values from the generator.
+	 * 
+	 * @param out
+	 *            - the array receiving the values.
+	 * @param n
+	 *            - the number of values to draw.
+	 */
+
+	public void fill(double[] out, int n);
+
+	/**
+	 * Fills the first n elements of an array with values from the generator,
+	 * truncated to ints.
+	 * 
+	 * @param out
+	 *            - the array receiving the values.
+	 * @param n
+	 *            - the number of values to draw.
+	 */
+
+	public void fill(int[] out, int n);
 }
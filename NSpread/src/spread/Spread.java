@@ -15,7 +15,8 @@ import java.text.NumberFormat;
 import java.text.ParsePosition;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -28,21 +29,28 @@ import postprocess.CalibrationAnalysis;
 
 import spread.impl.Disperser_Continuous2D;
 import spread.impl.RasterMosaic;
+import spread.impl.RasterMosaic_Array;
 import spread.impl.output.ExperimentWriter_Text;
 import spread.impl.output.MosaicWriter_Raster;
 import spread.impl.output.StatsWriter_Text;
 import spread.impl.process.Process_Containment;
+import spread.impl.process.Process_Convolution;
 import spread.impl.process.Process_Costing;
 import spread.impl.process.Process_Dispersal;
 import spread.impl.process.Process_GroundControl;
 import spread.impl.process.Process_Growth;
 import spread.impl.process.Process_Infestation;
 import spread.impl.process.Process_Monitor;
+import spread.impl.random.RandomGenerator_Alias;
 import spread.impl.random.RandomGenerator_Determined;
 import spread.impl.random.RandomGenerator_Exponential;
-import spread.impl.random.RandomGenerator_Kernel;
 import spread.impl.random.RandomGenerator_Poisson;
 import spread.impl.random.RandomGenerator_Uniform;
+import spread.util.Checkpoint;
+import spread.util.DiscreteKernel;
+import spread.util.MemoryBudget;
+import spread.util.RandomService;
+import spread.util.SweepScheduler;
 
 /**
  * Principal class and entry point for running the SPREAD model. This class is
@@ -57,19 +65,30 @@ public class Spread {
 		// If no arguments are passed, then prompt the user with usage.
 
 		if (args == null || args.length == 0) {
-			System.out.println("Usage:  spread <path to parameters file>");
+			System.out
+					.println("Usage:  spread [--resume] <path to parameters file>");
+			return;
+		}
+
+		// --resume continues an interrupted sweep from its checkpoint.
+
+		boolean resume = args[0].equals("--resume");
+		if (resume && args.length < 2) {
+			System.out
+					.println("Usage:  spread [--resume] <path to parameters file>");
 			return;
 		}
+		String path = resume ? args[1] : args[0];
 
 		// We can add console queries here if desired. ************************
 
 		// Ensure that the parameters file actually exists.
 
-		File parameters = new File(args[0]);
+		File parameters = new File(path);
 		if (!parameters.exists()) {
 			System.out
 					.println("Parameter file: "
-							+ args[0]
+							+ path
 							+ " could not be found.  Please check the path and file name.");
 			return;
 		}
@@ -77,11 +96,11 @@ public class Spread {
 		// Attempt to load the parameters file.
 
 		try {
-			properties.load(new FileReader(new File(args[0])));
+			properties.load(new FileReader(new File(path)));
 		} catch (java.io.IOException ex) {
 			System.out
 					.println("Parameter file: "
-							+ args[0]
+							+ path
 							+ " was found but could not be read.  Please check permissions values.");
 			return;
 		}
@@ -89,14 +108,15 @@ public class Spread {
 		// Begin the main routine
 
 		Spread m = new Spread();
+		m.resume = resume;
 		m.start();
 		m.shutdown();
 	}
 	private Mosaic mosaic;
-	private MosaicWriter mosaicWriter;
 	private static Properties properties = new Properties();
 	private boolean overwrite = false;
 	private boolean savePropertiesFile = true;
+	private boolean resume = false;
 
 	private boolean writeHeader = true;
 
@@ -357,14 +377,38 @@ public class Spread {
 	public void shutdown() {
 		mosaic.shutdown();
 	}
+
+	/**
+	 * Creates the Mosaic implementation corresponding to the given type.
+	 * 
+	 * @param type
+	 *            - the type of Mosaic (Object or Array)
+	 * @return a new Mosaic instance
+	 */
+
+	private Mosaic createMosaic(String type) {
+		if (type.equalsIgnoreCase("Object")) {
+			return new RasterMosaic();
+		}
+		if (type.equalsIgnoreCase("Array")) {
+			return new RasterMosaic_Array();
+		}
+		System.out.println("Mosaic_Type " + type
+				+ " is not recognized.  Options are Object or Array.");
+		System.exit(-1);
+		return null;
+	}
 	
 	/**
 	 * Initializes required objects - e.g. the Mosaic, OutputWriters etc.
 	 */
 
 	public void start() {
-		// Set up the Mosaic (currently only implemented as a raster)
-		mosaic = new RasterMosaic();
+		// Set up the Mosaic (currently only implemented as a raster). The
+		// Mosaic_Type property selects how the cell state is stored: Object
+		// (one Patch object per cell) or Array (primitive layers).
+
+		mosaic = createMosaic(properties.getProperty("Mosaic_Type", "Object"));
 		Mosaic reference = new RasterMosaic();
 
 		// Set the parameters of the mosaic (i.e. raster files)
@@ -464,10 +508,7 @@ public class Spread {
 
 		String outputFolder = properties.getProperty("Output_Folder");
 
-		mosaicWriter = new MosaicWriter_Raster();
-		mosaicWriter.setFolder(outputFolder);
-		ExperimentWriter_Text ew = new ExperimentWriter_Text();
-		StatsWriter_Text sw = new StatsWriter_Text();
+		final ExperimentWriter_Text ew = new ExperimentWriter_Text();
 		ew.setReferenceMosaic(reference);
 
 		if (properties.containsKey("Overwrite_Output")) {
@@ -488,6 +529,47 @@ public class Spread {
 			ew.setWriteRasterHeader(writeHeader);
 		}
 
+		// Progress of the sweep is checkpointed alongside the output tables.
+		// When resuming, the checkpoint of the interrupted sweep is read, and
+		// its seed is used.
+
+		final String checkpointPath = outputFolder + "/"
+				+ properties.getProperty("Output_File") + ".checkpoint";
+		Checkpoint resumed = null;
+
+		if (resume) {
+			try {
+				resumed = Checkpoint.read(checkpointPath);
+			} catch (IOException e) {
+				System.out
+						.println("Checkpoint file "
+								+ checkpointPath
+								+ " could not be read, so the run cannot be resumed.  Please check the path exists and that Output_Folder and Output_File are unchanged.");
+				System.exit(-1);
+			}
+			if (properties.containsKey("Seed")
+					&& Long.parseLong(properties.getProperty("Seed").trim()) != resumed
+							.getSeed()) {
+				System.out.println("ERROR:  Seed (" + properties.getProperty("Seed")
+						+ ") does not match the seed of the checkpoint ("
+						+ resumed.getSeed() + ").");
+				System.exit(-1);
+			}
+			properties.setProperty("Seed", Long.toString(resumed.getSeed()));
+		}
+
+		// The master seed of the random number streams. If none is given, one
+		// is chosen and stored in the properties, so that it is recorded in
+		// the saved properties file and any replicate can be re-run.
+
+		if (!properties.containsKey("Seed")) {
+			properties.setProperty("Seed",
+					Long.toString(RandomService.derive(System.nanoTime(),
+							System.currentTimeMillis())));
+		}
+		long seed = Long.parseLong(properties.getProperty("Seed").trim());
+		System.out.println("Seed " + seed);
+
 		if (properties.containsKey("Save_Properties_File")) {
 			savePropertiesFile = Boolean.parseBoolean(properties
 					.getProperty("Save_Properties_File"));
@@ -520,7 +602,7 @@ public class Spread {
 		ew.setOutputFolder(outputFolder);
 		ew.setOutputFile(outputFile);
 
-		if (!overwrite) {
+		if (!overwrite && !resume) {
 			if (new File(outputPath).exists()) {
 				System.out
 						.println("Overwrite is currently disabled, but output file "
@@ -530,6 +612,10 @@ public class Spread {
 			}
 		}
 
+		if (resumed != null) {
+			ew.restore(resumed);
+		}
+
 		try {
 			ew.open(new TreeSet<String>(speciesList));
 		} catch (IOException e2) {
@@ -541,6 +627,23 @@ public class Spread {
 		}
 
 		int reps = Integer.parseInt(properties.getProperty("Replicates"));
+
+		// Replicates are numbered from Start_Replicate, so that a single
+		// replicate can be re-run with the same Seed.
+
+		int firstReplicate = Integer.parseInt(properties.getProperty(
+				"Start_Replicate", "0").trim());
+
+		// Replicates are run on Threads threads. Output is written in
+		// replicate order regardless.
+
+		int threads = Integer.parseInt(properties.getProperty("Threads", "1")
+				.trim());
+		if (threads < 1) {
+			System.out.println("ERROR:  Number of threads (" + threads
+					+ ") must be at least 1.");
+			System.exit(-1);
+		}
 		long startTime = Long.parseLong(properties.getProperty("Start_Time"));
 		long timeIncrement = Long.parseLong(properties
 				.getProperty("Step_Interval"));
@@ -596,6 +699,17 @@ public class Spread {
 			}
 		}
 		
+		// If Discrete_Kernel is True, paired runs sample dispersal offsets from
+		// a precomputed table of cell offsets, landing propagules on cell
+		// centres and folding the far tail of the distance kernel (beyond 7.6
+		// mean distances) into its last ring. By default distances and angles
+		// are sampled exactly (unless Convolution_Threshold is set, see below).
+		// Calibration runs use fixed distances, so are not affected.
+
+		boolean discreteKernel = properties.containsKey("Discrete_Kernel") ? Boolean
+				.parseBoolean(properties.getProperty("Discrete_Kernel"))
+				: false;
+
 		List<double[]> distances = parseMultiNumericArray(distString);
 		List<double[]> rates = parseMultiNumericArray(rateString);
 		
@@ -778,20 +892,47 @@ public class Spread {
 		processes.add(pcc);
 		processes.add(pcst);
 		processes.add(pg);
-		processes.add(pd);
-		
-		// Adding infestation step
-		
-		processes.add(new Process_Infestation());
-		
-		boolean writeTrace = Boolean.parseBoolean(properties.getProperty("Write_Trace_Files","false"));
 
 		// If the Run-type is Paired, then the arrays of distances and rates are
 		// run as a paired set, therefore there is only one loop.
 
-		if (properties.containsKey("Run_Type")
+		boolean paired = properties.containsKey("Run_Type")
 				&& properties.getProperty("Run_Type")
-						.equalsIgnoreCase("Paired")) {
+						.equalsIgnoreCase("Paired");
+
+		// Adding dispersal and infestation steps. If a convolution threshold
+		// is given, dispersal switches to FFT convolution once the proportion
+		// of infested cells reaches it. Convolution needs the discrete
+		// kernels, so paired runs then sample from them as if Discrete_Kernel
+		// were True, and calibration runs (which have none) ignore it.
+
+		boolean convolution = properties.containsKey("Convolution_Threshold");
+		if (convolution && !paired) {
+			System.out.println("WARNING:  Convolution_Threshold is ignored,"
+					+ " as convolution is only supported by Paired runs.");
+			convolution = false;
+		}
+
+		if (convolution) {
+			Process_Convolution pconv = new Process_Convolution(pd);
+			pconv.setThreshold(Double.parseDouble(properties
+					.getProperty("Convolution_Threshold")));
+			processes.add(pconv);
+		} else {
+			processes.add(pd);
+			processes.add(new Process_Infestation());
+		}
+		
+		boolean writeTrace = Boolean.parseBoolean(properties.getProperty("Write_Trace_Files","false"));
+
+		// The sweep is flattened into replicate tasks, which run on Threads
+		// threads, most expensive parameter sets first.
+
+		SweepScheduler<ParameterSet> sweep = new SweepScheduler<ParameterSet>(
+				threads);
+		sweep.setVerbose(printReplicates);
+
+		if (paired) {
 
 			for (int sp = 0; sp < speciesList.size(); sp++) {
 
@@ -809,8 +950,11 @@ public class Spread {
 
 			for (int i = 0; i < distances.get(0).length; i++) {
 
-				System.out.println("Processing pair set " + (i + 1) + " of "
-						+ distances.get(0).length);
+				// Only the Dispersers of each pair set are kept: they are set
+				// on each replicate's copy of the mosaic when it is submitted
+				// (along with their kernel tables, if any).
+
+				Map<String, Disperser> dispersers = new LinkedHashMap<String, Disperser>();
 
 				for (int j = 0; j < speciesList.size(); j++) {
 
@@ -827,7 +971,7 @@ public class Spread {
 					RandomGenerator angleGenerator = new RandomGenerator_Uniform();
 
 					if (properties.containsKey("Direction_Kernel")) {
-						RandomGenerator_Kernel rk = new RandomGenerator_Kernel();
+						RandomGenerator_Alias rk = new RandomGenerator_Alias();
 						rk.setRotate(true);
 						
 						rk.setWeights(kernels.get(j));
@@ -841,80 +985,36 @@ public class Spread {
 					dc2.setDistanceGenerator(distanceGenerator);
 					dc2.setNumberGenerator(numberGenerator);
 
-					mosaic.setDisperser(speciesList.get(j), dc2);
+					dispersers.put(speciesList.get(j), dc2);
 				}
-				// iterate through the required number of replicates
 
-				for (int n = 0; n < reps; n++) {
-					if (printReplicates) {
-						System.out.println("\t\tReplicate " + (n + 1) + " of "
-								+ reps);
-					}
-					
-					Experiment e = new Experiment();
-					
-					double[] dist_vec = new double[speciesList.size()];
-					double[] rate_vec = new double[speciesList.size()];
+				double[] dist_vec = new double[speciesList.size()];
+				double[] rate_vec = new double[speciesList.size()];
 
-					for (int j = 0; j < speciesList.size(); j++) {
-						dist_vec[j] = distances.get(j)[i];
-						rate_vec[j] = rates.get(j)[i];
-					}
-					
-					if(writeTrace){
-						sw = new StatsWriter_Text();
-						sw.setOutputFolder(outputFolder);
-						sw.setDistances(dist_vec);
-						sw.setRates(rate_vec);
-						sw.setReplicate(n);
-						String sw_output = properties.getProperty("Trace_Base_Name","TraceFile") + "_" + i + "_" + n;
-						sw.setOutputFile(sw_output);
-						try {
-							sw.open(new HashSet<String>(speciesList));
-							sw.setRunID(i*distances.get(0).length +n);
-						} catch (IOException e1) {
-							System.out.println("Could not write statistics to trace file " + outputFolder + "/" + sw_output + ".  Skipping.");
-							continue;
-						}
-						e.setStatsWriter(sw);
-						e.writeTraceFile(writeTrace);
-					}
-					
-					e.setMosaic(mosaic.clone());
-					e.setStartTime(startTime);
-					e.setTimeIncrement(timeIncrement);
-					e.setEndTime(endTime);
-					mosaicWriter.setWriteHeader(writeHeader);
-					e.setOutputWriter(mosaicWriter);
-					e.setProcesses(processes);
-					e.writeEachTimeStep(writeEachTimeStep);
-					e.writeEachMgtStep(writeEachMgtStep);
-					
-
-					int id = (i * reps) + n;
-
-					e.setIdentifier(id + "_" + n);
+				for (int j = 0; j < speciesList.size(); j++) {
+					dist_vec[j] = distances.get(j)[i];
+					rate_vec[j] = rates.get(j)[i];
+				}
 
-					ew.setDistances(dist_vec);
-					ew.setRates(rate_vec);
-					ew.setReplicate(n);
-					ew.setID(id);
+				ParameterSet set = new ParameterSet(dispersers, dist_vec,
+						rate_vec, i, "_" + i, i * distances.get(0).length);
 
-					e.setExperimentWriter(ew);
-
-					e.run();
-					
-					pcst.resetCost();
-					pcst.resetLabour();
-					
-					pm.reset();
+				// Sample cell offsets from a precomputed table unless exact
+				// continuous sampling has been requested.
 
+				if ((discreteKernel || convolution)
+						&& mosaic instanceof RasterMosaic) {
+					set.cellsize = ((RasterMosaic) mosaic).getCellsize();
+					set.directions = new double[speciesList.size()][];
+					for (int j = 0; j < speciesList.size(); j++) {
+						set.directions[j] = properties
+								.containsKey("Direction_Kernel") ? kernels.get(j)
+								: null;
+					}
 				}
+
+				sweep.add(set, reps, cost(dist_vec, rate_vec));
 			}
-			if(writeTrace){
-				sw.close();
-			}
-			ew.close();
 		}
 
 		// Otherwise, we perform a calibration-type run where permutations of
@@ -923,11 +1023,9 @@ public class Spread {
 
 		else {
 			for (int i = 0; i < distances.get(0).length; i++) {
-				System.out.println("Processing distance class " + (i + 1)
-						+ " of " + distances.get(0).length);
 				for (int j = 0; j < rates.get(0).length; j++) {
-					System.out.println("\tProcessing rate class " + (j + 1)
-							+ " of " + rates.get(0).length);
+
+					Map<String, Disperser> dispersers = new LinkedHashMap<String, Disperser>();
 					for (int k = 0; k < speciesList.size(); k++) {
 
 						Disperser_Continuous2D dc2 = new Disperser_Continuous2D();
@@ -938,7 +1036,7 @@ public class Spread {
 						RandomGenerator angleGenerator = new RandomGenerator_Uniform();
 
 						if (properties.containsKey("Direction_Kernel")) {
-							RandomGenerator_Kernel rk = new RandomGenerator_Kernel();
+							RandomGenerator_Alias rk = new RandomGenerator_Alias();
 							rk.setRotate(true);
 							rk.setWeights(parseMultiNumericArray(properties
 									.getProperty("Direction_Kernel")).get(k));
@@ -956,79 +1054,134 @@ public class Spread {
 						dc2.setDistanceGenerator(distanceGenerator);
 						dc2.setNumberGenerator(numberGenerator);
 
-						mosaic.setDisperser(speciesList.get(k), dc2);
+						dispersers.put(speciesList.get(k), dc2);
 					}
 
-					for (int n = 0; n < reps; n++) {
-						if (printReplicates) {
-							System.out.println("\t\tReplicate " + (n + 1)
-									+ " of " + reps);
-						}
-						
-						Experiment e = new Experiment();
-						
-						double[] dist_vec = new double[speciesList.size()];
-						double[] rate_vec = new double[speciesList.size()];
+					double[] dist_vec = new double[speciesList.size()];
+					double[] rate_vec = new double[speciesList.size()];
 
-						for (int k = 0; k < speciesList.size(); k++) {
-							dist_vec[k] = distances.get(k)[i];
-							rate_vec[k] = rates.get(k)[i];
-						}
-						
-						if(writeTrace){
-							sw = new StatsWriter_Text();
-							sw.setOutputFolder(outputFolder);
-							sw.setDistances(dist_vec);
-							sw.setRates(rate_vec);
-							sw.setReplicate(n);
-							String sw_output = properties.getProperty("Trace_Base_Name","TraceFile") + "_" + i + "_" + j + "_" + n;
-							sw.setOutputFile(sw_output);
-							try {
-								sw.open(new HashSet<String>(speciesList));
-								sw.setRunID(i*distances.get(0).length + j*(rates.get(0).length)+n);
-							} catch (IOException e1) {
-								System.out.println("Could not write statistics to trace file " + outputFolder + "/" + sw_output + ".  Skipping.");
-								continue;
-							}
-							e.setStatsWriter(sw);
-							e.writeTraceFile(writeTrace);
-						}
-						
-						e.setMosaic(mosaic.clone());
-						e.setStartTime(startTime);
-						e.setTimeIncrement(timeIncrement);
-						e.setEndTime(endTime);
-						mosaicWriter.setWriteHeader(writeHeader);
-						e.setOutputWriter(mosaicWriter);
-						e.setProcesses(processes);
-						e.writeEachTimeStep(writeEachTimeStep);
-						e.writeEachMgtStep(writeEachMgtStep);
+					for (int k = 0; k < speciesList.size(); k++) {
+						dist_vec[k] = distances.get(k)[i];
+						rate_vec[k] = rates.get(k)[j];
+					}
 
-						int id = (i * reps) + n;
+					sweep.add(new ParameterSet(dispersers, dist_vec,
+							rate_vec, i, "_" + i + "_" + j, i * distances.get(0).length + j
+									* (rates.get(0).length)), reps, cost(
+							dist_vec, rate_vec));
+				}
+			}
+		}
 
-						e.setIdentifier(id + "_" + n);
+		// Replicates are only admitted while their estimated footprints fit
+		// in Memory_Budget megabytes (by default, three quarters of the heap
+		// left once the base mosaic has been loaded; the parameter sets only
+		// hold their Dispersers).
 
-						ew.setDistances(dist_vec);
-						ew.setRates(rate_vec);
-						ew.setReplicate(n);
-						ew.setID(id);
+		MemoryBudget budget = properties.containsKey("Memory_Budget") ? new MemoryBudget(
+				Long.parseLong(properties.getProperty("Memory_Budget").trim()) << 20)
+				: MemoryBudget.fromHeap(0.75);
+		sweep.setBudget(budget);
 
-						e.setExperimentWriter(ew);
+		if (resumed != null && resumed.getTotal() != sweep.getTotal()) {
+			System.out.println("ERROR:  The checkpoint has " + resumed.getTotal()
+					+ " replicates, but the parameters give " + sweep.getTotal()
+					+ ".  Please check the parameters are unchanged.");
+			System.exit(-1);
+		}
 
-						e.run();
-						
-						pcst.resetCost();
-						pcst.resetLabour();
-						
-						if(writeTrace){
-							sw.close();
-						}
-						
+		// Progress is checkpointed at most every Checkpoint_Interval seconds
+		// (by default, five minutes), and when the sweep finishes. An interval
+		// of zero disables checkpoints.
+
+		long checkpointInterval = Long.parseLong(properties.getProperty(
+				"Checkpoint_Interval", "300").trim());
+		if (checkpointInterval > 0) {
+			final Checkpoint checkpoint = new Checkpoint(seed, sweep.getTotal());
+			sweep.setCheckpoint(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						ew.checkpoint(checkpoint);
+						checkpoint.write(checkpointPath);
+					} catch (IOException e) {
+						System.out.println("Unable to write checkpoint file "
+								+ checkpointPath + ".  Continuing.");
 					}
 				}
+			}, checkpointInterval * 1000000000L);
+		}
+
+		System.out.println("Running " + sweep.getTotal() + " replicates on "
+				+ threads + " thread(s)");
+		if (resumed != null) {
+			System.out.println("Resuming with " + resumed.getCompleted()
+					+ " replicates completed");
+		}
+
+		for (SweepScheduler.Task<ParameterSet> task : sweep.getTasks()) {
+
+			if (resumed != null && resumed.isCompleted(task.getSequence())) {
+				sweep.resume(task);
+				continue;
+			}
+
+			ParameterSet set = task.getPoint();
+			int n = task.getReplicate();
+			int replicate = firstReplicate + n;
+
+			Experiment e = new Experiment();
+			StatsWriter_Text sw = null;
+
+			if(writeTrace){
+				sw = new StatsWriter_Text();
+				sw.setOutputFolder(outputFolder);
+				sw.setDistances(set.distances);
+				sw.setRates(set.rates);
+				sw.setReplicate(replicate);
+				String sw_output = properties.getProperty("Trace_Base_Name","TraceFile") + set.label + "_" + replicate;
+				sw.setOutputFile(sw_output);
+				try {
+					sw.open(new HashSet<String>(speciesList));
+					sw.setRunID(set.runID + n);
+				} catch (IOException e1) {
+					System.out.println("Could not write statistics to trace file " + outputFolder + "/" + sw_output + ".  Skipping.");
+					sweep.skip(task);
+					ew.skip(task.getSequence());
+					continue;
+				}
+				e.setStatsWriter(sw);
+				e.writeTraceFile(writeTrace);
 			}
-			
-			ew.close();
+
+			Mosaic replicateMosaic = set.replicate(mosaic);
+			e.setMosaic(replicateMosaic);
+			e.setRandomService(new RandomService(RandomService.derive(seed,
+					parameterKey(set.distances, set.rates), replicate)));
+			e.setStartTime(startTime);
+			e.setTimeIncrement(timeIncrement);
+			e.setEndTime(endTime);
+			MosaicWriter_Raster mw = new MosaicWriter_Raster();
+			mw.setFolder(outputFolder);
+			mw.setWriteHeader(writeHeader);
+			e.setOutputWriter(mw);
+			e.setProcesses(cloneProcesses(processes));
+			e.writeEachTimeStep(writeEachTimeStep);
+			e.writeEachMgtStep(writeEachMgtStep);
+
+			int id = (set.index * reps) + n;
+
+			e.setIdentifier(id + "_" + n);
+
+			sweep.submit(task, e, footprint(replicateMosaic, processes),
+					completion(e, ew, set.distances, set.rates, replicate, id,
+							task.getSequence(), sw));
+		}
+
+		sweep.finish();
+		ew.close();
+
+		if (!paired) {
 
 			// Post-process calibration results
 
@@ -1042,4 +1195,195 @@ public class Spread {
 		System.out.println("\nComplete.");
 
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Derives a key identifying a parameter set, used with the master seed
+	 * and the replicate number to seed the random streams of an Experiment.
+	 *
+	 * @param distances
+	 *            - the dispersal distances of each species.
+	 * @param rates
+	 *            - the dispersal rates of each species.
+	 * @return the key of the parameter set.
+	 */
+
+	private static long parameterKey(double[] distances, double[] rates) {
+		long key = 0;
+		for (double d : distances) {
+			key = RandomService.derive(key, Double.doubleToLongBits(d));
+		}
+		for (double r : rates) {
+			key = RandomService.derive(key, Double.doubleToLongBits(r));
+		}
+		return key;
+	}
+
+	/**
+	 * Clones a List of Processes, so that each replicate has its own
+	 * (independently stateful) Processes.
+	 *
+	 * @param processes
+	 *            - the Processes to be cloned.
+	 * @return the cloned Processes, in the same order.
+	 */
+
+	private static List<Process> cloneProcesses(List<Process> processes) {
+		List<Process> clones = new ArrayList<Process>(processes.size());
+		for (Process process : processes) {
+			clones.add(process.clone());
+		}
+		return clones;
+	}
+
+	/**
+	 * Returns the task that writes the results of a replicate once it has
+	 * run, and closes its trace file.
+	 *
+	 * @param e
+	 *            - the Experiment of the replicate.
+	 * @param ew
+	 *            - the ExperimentWriter shared by all replicates.
+	 * @param distances
+	 *            - the dispersal distances of each species.
+	 * @param rates
+	 *            - the dispersal rates of each species.
+	 * @param replicate
+	 *            - the replicate number.
+	 * @param id
+	 *            - the identifier of the replicate.
+	 * @param sequence
+	 *            - the position of the replicate in the sweep, which
+	 *            determines the order of the output table.
+	 * @param sw
+	 *            - the trace file writer of the replicate, or null.
+	 * @return the task writing the results.
+	 */
+
+	private static Runnable completion(final Experiment e,
+			final ExperimentWriter_Text ew, final double[] distances,
+			final double[] rates, final int replicate, final int id,
+			final int sequence, final StatsWriter_Text sw) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				ew.setDistances(distances);
+				ew.setRates(rates);
+				ew.setReplicate(replicate);
+				ew.setID(id);
+				ew.setSequence(sequence);
+				ew.write(e);
+				if (sw != null) {
+					sw.close();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Estimates the relative cost of a replicate of a parameter set: the
+	 * propagules released per infested cell, weighted by the distance they
+	 * travel, since distant propagules found new infestations that disperse
+	 * in turn.
+	 *
+	 * @param distances
+	 *            - the dispersal distances of each species.
+	 * @param rates
+	 *            - the dispersal rates of each species.
+	 * @return the estimated cost.
+	 */
+
+	private static double cost(double[] distances, double[] rates) {
+		double cost = 0;
+		for (int s = 0; s < rates.length; s++) {
+			cost += rates[s] * Math.max(distances[s], 1);
+		}
+		return cost;
+	}
+
+	/**
+	 * Estimates the heap used by a replicate: that of its mosaic, and the
+	 * work arrays of its Processes.
+	 *
+	 * @param mosaic
+	 *            - the mosaic of the replicate (with its Dispersers set).
+	 * @param processes
+	 *            - the Processes of the replicate.
+	 * @return the estimated footprint in bytes.
+	 */
+
+	private static long footprint(Mosaic mosaic, List<Process> processes) {
+		long footprint = 0;
+		if (mosaic instanceof RasterMosaic) {
+			footprint = ((RasterMosaic) mosaic).estimateFootprint();
+		}
+		for (Process process : processes) {
+			if (process instanceof Process_Convolution) {
+				footprint += ((Process_Convolution) process)
+						.estimateFootprint(mosaic);
+			}
+		}
+		return footprint;
+	}
+
+	/**
+	 * A parameter set of the sweep: the Dispersers (in species order),
+	 * parameters and labels shared by its replicates. The mosaic of each replicate is a copy of the
+	 * base mosaic made when the replicate is submitted, so no copy of the
+	 * mosaic is held for the parameter sets waiting to run. Likewise the
+	 * kernel tables of the Dispersers (if any) are only retrieved for the
+	 * replicates, so that the tables of a parameter set can be released once
+	 * its replicates have run.
+	 */
+
+	private static class ParameterSet {
+		private Map<String, Disperser> dispersers;
+		private double[][] directions;
+		private double cellsize;
+		private double[] distances;
+		private double[] rates;
+		private int index;
+		private String label;
+		private int runID;
+
+		private ParameterSet(Map<String, Disperser> dispersers,
+				double[] distances, double[] rates, int index, String label,
+				int runID) {
+			this.dispersers = dispersers;
+			this.distances = distances;
+			this.rates = rates;
+			this.index = index;
+			this.label = label;
+			this.runID = runID;
+		}
+
+		/**
+		 * Copies the base mosaic for a replicate and sets copies of the
+		 * Dispersers of the parameter set on it, with their kernel tables if
+		 * the parameter set samples cell offsets (the mosaic keeps the
+		 * Disperser it is given as the template for new Infestations, so
+		 * replicates must not share them). Only the infested Patches of the
+		 * copy are visited, and the base mosaic is left unchanged, so other
+		 * replicates may still be copying its Patches.
+		 *
+		 * @param base
+		 *            - the mosaic shared by all parameter sets.
+		 * @return the mosaic of the replicate.
+		 */
+
+		private Mosaic replicate(Mosaic base) {
+			Mosaic mosaic = base.clone();
+			int s = 0;
+			for (String species : dispersers.keySet()) {
+				Disperser d = dispersers.get(species).clone();
+				if (directions != null) {
+					((Disperser_Continuous2D) d).setKernel(DiscreteKernel.get(
+							distances[s], directions[s], true, cellsize),
+							cellsize);
+				}
+				mosaic.setDisperser(species, d);
+				s++;
+			}
+			return mosaic;
+		}
+	}
+}
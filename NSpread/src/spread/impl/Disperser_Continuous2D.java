@@ -9,12 +9,17 @@ import java.util.List;
 
 import spread.Disperser;
 import spread.RandomGenerator;
+import spread.impl.random.RandomGenerator_Uniform;
+import spread.util.DiscreteKernel;
+import spread.util.PropaguleBuffer;
 
 import com.vividsolutions.jts.geom.Coordinate;
 
 /**
  * Generates a spread of Coordinates based on a combination of angle, distance
- * and number distributions.
+ * and number distributions. If a DiscreteKernel is set, propagule buffers are
+ * filled by drawing cell offsets from the kernel instead (the angle and
+ * distance generators are then only used by disperse(int)).
  * 
  */
 
@@ -25,6 +30,11 @@ public class Disperser_Continuous2D implements Disperser {
 	private RandomGenerator distanceGenerator; //= new RandomGenerator_Exponential();
 	private RandomGenerator numberGenerator; //= new RandomGenerator_Poisson();
 	private Coordinate position = new Coordinate(0, 0);
+	private DiscreteKernel kernel;
+	private double cellsize = 1;
+	private RandomGenerator offsetGenerator = new RandomGenerator_Uniform();
+	private double[] angles = new double[16];
+	private double[] distances = new double[16];
 	private final double tau = 2 * Math.PI;
 
 	/**
@@ -53,6 +63,8 @@ public class Disperser_Continuous2D implements Disperser {
 		sd.setDistanceGenerator(distanceGenerator.clone());
 		sd.setNumberGenerator(numberGenerator.clone());
 		sd.setPosition(position);
+		sd.setKernel(kernel, cellsize);
+		sd.offsetGenerator = offsetGenerator.clone();
 		return sd;
 	}
 
@@ -63,7 +75,7 @@ public class Disperser_Continuous2D implements Disperser {
 
 	@Override
 	public List<Coordinate> disperse() {
-		return disperse(numberGenerator.getNext().intValue());
+		return disperse(numberGenerator.nextInt());
 	}
 
 	/**
@@ -77,10 +89,11 @@ public class Disperser_Continuous2D implements Disperser {
 
 	public List<Coordinate> disperse(int n) {
 		List<Coordinate> dispersePoints = new ArrayList<Coordinate>();
+		draw(n);
 
 		for (int i = 0; i < n; i++) {
-			double angle = angleGenerator.getNext().doubleValue() * tau;
-			double distance = distanceGenerator.getNext().doubleValue();
+			double angle = angles[i] * tau;
+			double distance = distances[i];
 			double x = distance * Math.cos(angle);
 			double y = distance * Math.sin(angle);
 
@@ -95,6 +108,66 @@ public class Disperser_Continuous2D implements Disperser {
 		return dispersePoints;
 	}
 
+	/**
+	 * Fills a buffer with propagule locations, the number of which is
+	 * obtained from the numberGenerator.
+	 */
+
+	@Override
+	public void disperse(PropaguleBuffer buffer) {
+		disperse(numberGenerator.nextInt(), buffer);
+	}
+
+	/**
+	 * Fills a buffer with a given number of propagule locations. Without a
+	 * kernel, the random values are drawn as for disperse(int), so both give
+	 * the same locations.
+	 * 
+	 * @param n
+	 *            - the number of propagules to be generated.
+	 * @param buffer
+	 *            - the buffer receiving the propagule locations.
+	 */
+
+	public void disperse(int n, PropaguleBuffer buffer) {
+		buffer.clear();
+		if (kernel != null) {
+			ensureCapacity(n);
+			offsetGenerator.fill(angles, n);
+			for (int i = 0; i < n; i++) {
+				int k = kernel.sample(angles[i]);
+				buffer.add(position.x + kernel.getDx(k) * cellsize, position.y
+						+ kernel.getDy(k) * cellsize);
+			}
+			return;
+		}
+		draw(n);
+		for (int i = 0; i < n; i++) {
+			double angle = angles[i] * tau;
+			double distance = distances[i];
+			buffer.add(position.x + distance * Math.cos(angle), position.y
+					+ distance * Math.sin(angle));
+		}
+	}
+
+	/**
+	 * Draws the angles and distances of n propagules into the scratch arrays,
+	 * each in a single call to its generator.
+	 */
+
+	private void draw(int n) {
+		ensureCapacity(n);
+		angleGenerator.fill(angles, n);
+		distanceGenerator.fill(distances, n);
+	}
+
+	private void ensureCapacity(int n) {
+		if (angles.length < n) {
+			angles = new double[Math.max(n, angles.length << 1)];
+			distances = new double[angles.length];
+		}
+	}
+
 	/**
 	 * Returns the RandomGenerator being used to determine angle values.
 	 * 
@@ -115,6 +188,17 @@ public class Disperser_Continuous2D implements Disperser {
 		return distanceGenerator;
 	}
 
+	/**
+	 * Returns the discrete kernel used to fill propagule buffers, or null if
+	 * locations are generated from the continuous distributions.
+	 * 
+	 * @return - the discrete kernel, or null.
+	 */
+
+	public DiscreteKernel getKernel() {
+		return kernel;
+	}
+
 	/**
 	 * Returns the current level of the Disperser. Used to change parameter
 	 * values using a String.
@@ -167,6 +251,21 @@ public class Disperser_Continuous2D implements Disperser {
 		this.distanceGenerator = distanceGenerator;
 	}
 
+	/**
+	 * Sets the discrete kernel used to fill propagule buffers. Setting a null
+	 * kernel restores exact sampling from the continuous distributions.
+	 * 
+	 * @param kernel
+	 *            - the kernel, built for the given cell size.
+	 * @param cellsize
+	 *            - the size of the raster cells.
+	 */
+
+	public void setKernel(DiscreteKernel kernel, double cellsize) {
+		this.kernel = kernel;
+		this.cellsize = cellsize;
+	}
+
 	/**
 	 * Sets the RandomGenerator being used to determine the number of Coordinate
 	 * values generated per call.
@@ -9,6 +9,7 @@ import java.util.List;
 
 import spread.Disperser;
 import spread.RandomGenerator;
+import spread.util.PropaguleBuffer;
 
 import com.vividsolutions.jts.geom.Coordinate;
 
@@ -53,6 +54,15 @@ public class Disperser_None implements Disperser {
 		return new ArrayList<Coordinate>();
 	}
 
+	/**
+	 * Clears the buffer, since no propagules are generated.
+	 */
+
+	@Override
+	public void disperse(PropaguleBuffer buffer) {
+		buffer.clear();
+	}
+
 	/**
 	 * Returns the RandomGenerator being used to determine angle values.
 	 * 
@@ -0,0 +1,341 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package spread.impl;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import spread.Disperser;
+import spread.Infestation;
+import spread.Patch;
+
+import spread.util.ControlType;
+import spread.util.PropaguleBuffer;
+
+import com.vividsolutions.jts.geom.Coordinate;
+
+/**
+ * An Infestation view over the layers of a RasterMosaic_Array. All state is
+ * read from and written to the layers of the mosaic. Collections returned by
+ * getControls() are copies, and changes to them are not written back.
+ */
+
+class LayerInfestation extends Infestation {
+
+	// Returned for cells that have not dispersed. It is never written to.
+
+	private static final PropaguleBuffer EMPTY = new PropaguleBuffer(1);
+
+	private RasterMosaic_Array mosaic;
+	private int s;
+	private int id;
+
+	LayerInfestation(LayerPatch parent, RasterMosaic_Array mosaic, int s, int id) {
+		super(parent, mosaic.speciesName(s));
+		this.mosaic = mosaic;
+		this.s = s;
+		this.id = id;
+	}
+
+	@Override
+	public void addControl(ControlType control) {
+		int c = mosaic.getControls(s, id);
+		int bit = control.mask();
+		if ((c & bit) == 0) {
+			c |= bit;
+			mosaic.setControlTime(s, control, id, 0);
+			if (control != ControlType.NONE) {
+				setFlag(RasterMosaic_Array.WAS_CONTROLLED, true);
+			}
+			if (control.ordinal() > c >>> RasterMosaic_Array.MAX_CONTROL_SHIFT) {
+				c = (c & RasterMosaic_Array.CONTROL_MASK)
+						| (control.ordinal() << RasterMosaic_Array.MAX_CONTROL_SHIFT);
+			}
+			mosaic.setControls(s, id, c);
+		}
+	}
+
+	@Override
+	public void clearControls() {
+		int c = mosaic.getControls(s, id);
+		for (ControlType control : ControlType.values()) {
+			mosaic.setControlTime(s, control, id, 0);
+		}
+		mosaic.setControls(s, id, c & ~RasterMosaic_Array.CONTROL_MASK);
+	}
+
+	@Override
+	public void clearInfestation() {
+		setFlag(RasterMosaic_Array.INFESTED | RasterMosaic_Array.FROZEN, false);
+		mosaic.setStage(s, id, -8);
+		mosaic.setMaxStage(s, id, 0);
+	}
+
+	@Override
+	public void clearPropagules() {
+		mosaic.setPropagules(s, id, null);
+	}
+
+	/**
+	 * Returns a detached copy of the Infestation.
+	 */
+
+	@Override
+	public Infestation clone() {
+		return new Infestation(this);
+	}
+
+	@Override
+	public void disperse() {
+		try {
+			PropaguleBuffer buffer = mosaic.getPropagules(s, id);
+			if (buffer == null) {
+				buffer = new PropaguleBuffer();
+				mosaic.setPropagules(s, id, buffer);
+			}
+			mosaic.getDisperser(s, id).disperse(buffer);
+		} catch (NullPointerException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public long getAgeOfInfestation() {
+		return mosaic.getAge(s, id);
+	}
+
+	@Override
+	public Map<ControlType, Long> getControls() {
+		Map<ControlType, Long> controls = new TreeMap<ControlType, Long>();
+		int c = mosaic.getControls(s, id);
+		for (ControlType control : ControlType.values()) {
+			if ((c & control.mask()) != 0) {
+				controls.put(control, mosaic.getControlTime(s, control, id));
+			}
+		}
+		return controls;
+	}
+
+	@Override
+	public int getControlMask() {
+		return mosaic.getControls(s, id) & RasterMosaic_Array.CONTROL_MASK;
+	}
+
+	@Override
+	public long getControlTime(ControlType control) {
+		if (hasControl(control)) {
+			return mosaic.getControlTime(s, control, id);
+		}
+		return 0l;
+	}
+
+	@Override
+	public long getCumulativeAgeOfInfestation() {
+		return mosaic.getCumulativeAge(s, id);
+	}
+
+	/**
+	 * Returns the Disperser explicitly assigned to the cell if there is one,
+	 * otherwise a copy of the species template positioned at the centroid of
+	 * the cell.
+	 */
+
+	@Override
+	public Disperser getDisperser() {
+		Disperser d = mosaic.getCellDisperser(s, id);
+		if (d != null) {
+			return d;
+		}
+		d = mosaic.getDisperser(getName());
+		if (d == null) {
+			return null;
+		}
+		d = d.clone();
+		d.setPosition(mosaic.getCentroid(id));
+		return d;
+	}
+
+	@Override
+	public int getMaxControl() {
+		return mosaic.getControls(s, id) >>> RasterMosaic_Array.MAX_CONTROL_SHIFT;
+	}
+
+	@Override
+	public int getMaxInfestation() {
+		return mosaic.getMaxStage(s, id);
+	}
+
+	@Override
+	public List<Coordinate> getPropagules() {
+		return getPropaguleBuffer().toCoordinates();
+	}
+
+	@Override
+	public PropaguleBuffer getPropaguleBuffer() {
+		PropaguleBuffer propagules = mosaic.getPropagules(s, id);
+		if (propagules == null) {
+			return EMPTY;
+		}
+		return propagules;
+	}
+
+	@Override
+	public int getStageOfInfestation() {
+		return mosaic.getStage(s, id);
+	}
+
+	@Override
+	public boolean hasControl(ControlType control) {
+		return (mosaic.getControls(s, id) & control.mask()) != 0;
+	}
+
+	@Override
+	public boolean hasNoData() {
+		return hasFlag(RasterMosaic_Array.INFESTATION_NODATA);
+	}
+
+	@Override
+	public void incrementInfestationTime(long increment) {
+		if (isInfested()) {
+			mosaic.setAge(s, id, mosaic.getAge(s, id) + increment);
+			mosaic.setCumulativeAge(s, id, mosaic.getCumulativeAge(s, id)
+					+ increment);
+		}
+	}
+
+	@Override
+	public boolean isControlled() {
+		return (mosaic.getControls(s, id) & RasterMosaic_Array.CONTROL_MASK
+				& ~ControlType.NONE.mask()) != 0;
+	}
+
+	@Override
+	public boolean isInfested() {
+		return hasFlag(RasterMosaic_Array.INFESTED);
+	}
+
+	@Override
+	public boolean isManagementFrozen() {
+		return hasFlag(RasterMosaic_Array.FROZEN);
+	}
+
+	@Override
+	public boolean isVisited() {
+		return hasFlag(RasterMosaic_Array.INFESTATION_VISITED);
+	}
+
+	@Override
+	public void removeControl(ControlType control) {
+		mosaic.setControls(s, id, mosaic.getControls(s, id)
+				& ~control.mask());
+		mosaic.setControlTime(s, control, id, 0);
+	}
+
+	@Override
+	public void setAgeOfInfestation(long ageOfInfestation) {
+		mosaic.setAge(s, id, ageOfInfestation);
+	}
+
+	@Override
+	public void setControlTime(ControlType control, long controlTime) {
+		mosaic.setControls(s, id, mosaic.getControls(s, id)
+				| control.mask());
+		mosaic.setControlTime(s, control, id, controlTime);
+	}
+
+	@Override
+	public void setDisperser(Disperser disperser) {
+		mosaic.setCellDisperser(s, id, disperser);
+	}
+
+	@Override
+	public void freezeManagement(boolean freezeManagement) {
+		setFlag(RasterMosaic_Array.FROZEN, freezeManagement);
+	}
+
+	@Override
+	public void setInfested(boolean infested) {
+		if (infested) {
+			setFlag(RasterMosaic_Array.INFESTED
+					| RasterMosaic_Array.WAS_INFESTED, true);
+			mosaic.setStage(s, id, 1);
+			mosaic.setMaxStage(s, id, 1);
+		} else {
+			setFlag(RasterMosaic_Array.INFESTED, false);
+			mosaic.setStage(s, id, 0);
+		}
+	}
+
+	/**
+	 * The species of a view is fixed by its layer.
+	 *
+	 * @throws UnsupportedOperationException
+	 *             if the name differs from the current species.
+	 */
+
+	@Override
+	public void setSpecies(String species) {
+		if (!getName().equals(species)) {
+			throw new UnsupportedOperationException(
+					"The species of a layer-backed Infestation cannot be changed.");
+		}
+	}
+
+	@Override
+	public void setNoData(boolean noData) {
+		setFlag(RasterMosaic_Array.INFESTATION_NODATA, noData);
+	}
+
+	/**
+	 * Ignored: the parent of a view is fixed by its cell.
+	 */
+
+	@Override
+	public void setParent(Patch p) {
+	}
+
+	@Override
+	public void setPropagules(List<Coordinate> propagules) {
+		mosaic.setPropagules(s, id, PropaguleBuffer.fromCoordinates(propagules));
+	}
+
+	@Override
+	public void setPropagules(PropaguleBuffer propagules) {
+		mosaic.setPropagules(s, id, propagules);
+	}
+
+	@Override
+	public void setStageOfInfestation(int stageOfInfestation) {
+		mosaic.setStage(s, id, stageOfInfestation);
+		if (stageOfInfestation > mosaic.getMaxStage(s, id)) {
+			mosaic.setMaxStage(s, id, stageOfInfestation);
+		}
+	}
+
+	@Override
+	public void setVisited(boolean visited) {
+		setFlag(RasterMosaic_Array.INFESTATION_VISITED, visited);
+	}
+
+	@Override
+	public boolean wasControlled() {
+		return hasFlag(RasterMosaic_Array.WAS_CONTROLLED);
+	}
+
+	@Override
+	public boolean wasInfested() {
+		return hasFlag(RasterMosaic_Array.WAS_INFESTED);
+	}
+
+	private boolean hasFlag(int flag) {
+		return (mosaic.getFlags(s, id) & flag) != 0;
+	}
+
+	private void setFlag(int flag, boolean value) {
+		int f = mosaic.getFlags(s, id);
+		mosaic.setFlags(s, id, value ? f | flag : f & ~flag);
+	}
+}
@@ -0,0 +1,545 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package spread.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import spread.Disperser;
+import spread.Infestation;
+import spread.Patch;
+
+import spread.util.ControlType;
+import spread.util.SpeciesRegistry;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * A Patch view over a single cell of a RasterMosaic_Array. All state is read
+ * from and written to the layers of the mosaic. Maps and Sets returned by the
+ * view are copies, and changes to them are not written back; the setters
+ * should be used instead.
+ */
+
+class LayerPatch extends Patch {
+
+	private RasterMosaic_Array mosaic;
+
+	LayerPatch(RasterMosaic_Array mosaic, int id) {
+		super(id);
+		this.mosaic = mosaic;
+	}
+
+	@Override
+	public void addControl(ControlType control) {
+		mosaic.setCellControls(getID(), mosaic.getCellControls(getID())
+				| control.mask());
+	}
+
+	@Override
+	public void addControl(ControlType control, String species) {
+		addControl(control, mosaic.indexOf(species));
+	}
+
+	@Override
+	public void addControl(ControlType control, int species) {
+		if (isInfestedBy(species)) {
+			getInfestation(species).addControl(control);
+		}
+	}
+
+	@Override
+	public void clearControls() {
+		mosaic.setCellControls(getID(), 0);
+		for (int s = 0; s < mosaic.numberOfSpecies(); s++) {
+			if (isPresent(s)) {
+				infestation(s).clearControls();
+			}
+		}
+	}
+
+	@Override
+	public ControlType getMaxControl() {
+		int c = mosaic.getCellControls(getID());
+		for (int s = 0; s < mosaic.numberOfSpecies(); s++) {
+			if (isPresent(s)) {
+				c |= mosaic.getControls(s, getID())
+						& RasterMosaic_Array.CONTROL_MASK;
+			}
+		}
+		return ControlType.highest(c);
+	}
+
+	@Override
+	public boolean hasControl(ControlType control) {
+		return (mosaic.getCellControls(getID()) & control.mask()) != 0;
+	}
+
+	@Override
+	public boolean hasControl(ControlType control, String species) {
+		return hasControl(control, mosaic.indexOf(species));
+	}
+
+	@Override
+	public boolean hasControl(ControlType control, int species) {
+		return isPresent(species) && infestation(species).hasControl(control);
+	}
+
+	@Override
+	public void removeControl(ControlType control) {
+		mosaic.setCellControls(getID(), mosaic.getCellControls(getID())
+				& ~control.mask());
+	}
+
+	@Override
+	public Set<String> getControlled(ControlType control) {
+		Set<String> controlled = new TreeSet<String>();
+		for (int s = 0; s < mosaic.numberOfSpecies(); s++) {
+			if (isPresent(s) && infestation(s).hasControl(control)) {
+				controlled.add(mosaic.speciesName(s));
+			}
+		}
+		return controlled;
+	}
+
+	/**
+	 * Copies the state of the Infestation into the layers of the cell.
+	 */
+
+	@Override
+	public void addInfestation(Infestation infestation) {
+		mosaic.store(mosaic.register(infestation.getName()), getID(),
+				infestation);
+	}
+
+	@Override
+	public void addInfestation(String species) {
+		addInfestation(mosaic.register(species));
+	}
+
+	@Override
+	public void addInfestation(int s) {
+		mosaic.register(s);
+		mosaic.resetInfestation(s, getID());
+		mosaic.setFlags(s, getID(), RasterMosaic_Array.PRESENT
+				| RasterMosaic_Array.INFESTED | RasterMosaic_Array.WAS_INFESTED);
+		mosaic.setStage(s, getID(), 1);
+		mosaic.setMaxStage(s, getID(), 1);
+	}
+
+	@Override
+	public void clearInfestation(String species) {
+		clearInfestation(mosaic.indexOf(species));
+	}
+
+	@Override
+	public void clearInfestation(int species) {
+		if (isPresent(species)) {
+			infestation(species).clearInfestation();
+		}
+	}
+
+	/**
+	 * Returns a detached copy of the Patch.
+	 */
+
+	@Override
+	public Patch clone() {
+		return new Patch(this);
+	}
+
+	/**
+	 * Views hold no collections to share, so this is the same as clone().
+	 */
+
+	@Override
+	public Patch shallowClone() {
+		return clone();
+	}
+
+	@Override
+	public Map<String, Long> getAgesOfInfestation() {
+		Map<String, Long> agesOfInfestation = new TreeMap<String, Long>();
+		for (int s = 0; s < mosaic.numberOfSpecies(); s++) {
+			if (isPresent(s)) {
+				agesOfInfestation.put(mosaic.speciesName(s),
+						(long) mosaic.getAge(s, getID()));
+			}
+		}
+		return agesOfInfestation;
+	}
+
+	@Override
+	public long getAgeOfInfestation(String species) {
+		return getAgeOfInfestation(mosaic.indexOf(species));
+	}
+
+	@Override
+	public long getAgeOfInfestation(int species) {
+		if (isPresent(species)) {
+			return mosaic.getAge(species, getID());
+		}
+		return 0l;
+	}
+
+	@Override
+	public Set<ControlType> getControls() {
+		return ControlType.toSet(getControlMask());
+	}
+
+	@Override
+	public Set<ControlType> getControls(String species) {
+		int s = mosaic.indexOf(species);
+		if (isPresent(s)) {
+			return ControlType.toSet(mosaic.getControls(s, getID())
+					& RasterMosaic_Array.CONTROL_MASK);
+		}
+		return ControlType.toSet(0);
+	}
+
+	@Override
+	public int getControlMask() {
+		return mosaic.getCellControls(getID());
+	}
+
+	@Override
+	public Map<String, Long> getCumulativeAgesOfInfestation() {
+		Map<String, Long> cumulativeAgesOfInfestation = new TreeMap<String, Long>();
+		for (int s = 0; s < mosaic.numberOfSpecies(); s++) {
+			if (isPresent(s)) {
+				cumulativeAgesOfInfestation.put(mosaic.speciesName(s),
+						(long) mosaic.getCumulativeAge(s, getID()));
+			}
+		}
+		return cumulativeAgesOfInfestation;
+	}
+
+	@Override
+	public Map<String, Disperser> getDispersers() {
+		Map<String, Disperser> dispersers = new TreeMap<String, Disperser>();
+		for (int s = 0; s < mosaic.numberOfSpecies(); s++) {
+			if (isPresent(s)) {
+				dispersers.put(mosaic.speciesName(s), infestation(s)
+						.getDisperser());
+			}
+		}
+		return dispersers;
+	}
+
+	@Override
+	public Geometry getGeometry() {
+		return mosaic.getGeometry(getID());
+	}
+
+	@Override
+	public Map<String, Double> getHabitatSuitabilities() {
+		Map<String, Double> habitatSuitabilities = new TreeMap<String, Double>();
+		for (int s = 0; s < mosaic.numberOfSpecies(); s++) {
+			if (mosaic.hasSuitability(s, getID())) {
+				habitatSuitabilities.put(mosaic.speciesName(s),
+						mosaic.getSuitability(s, getID()));
+			}
+		}
+		return habitatSuitabilities;
+	}
+
+	@Override
+	public double getHabitatSuitability(String species) {
+		return getHabitatSuitability(mosaic.indexOf(species));
+	}
+
+	@Override
+	public double getHabitatSuitability(int species) {
+		if (!mosaic.isSpecies(species)) {
+			return 0d;
+		}
+		return mosaic.getSuitability(species, getID());
+	}
+
+	@Override
+	public Map<String, Integer> getMaxInfestations() {
+		Map<String, Integer> maxInfestations = new TreeMap<String, Integer>();
+		for (int s = 0; s < mosaic.numberOfSpecies(); s++) {
+			if (isPresent(s)) {
+				maxInfestations.put(mosaic.speciesName(s),
+						mosaic.getMaxStage(s, getID()));
+			}
+		}
+		return maxInfestations;
+	}
+
+	@Override
+	public Infestation getInfestation(String species) {
+		return getInfestation(mosaic.indexOf(species));
+	}
+
+	@Override
+	public Infestation getInfestation(int species) {
+		if (isPresent(species)) {
+			return infestation(species);
+		}
+		return null;
+	}
+
+	@Override
+	public Map<String, Infestation> getInfestation() {
+		Map<String, Infestation> infestations = new TreeMap<String, Infestation>();
+		for (int s = 0; s < mosaic.numberOfSpecies(); s++) {
+			if (isPresent(s)) {
+				infestations.put(mosaic.speciesName(s), infestation(s));
+			}
+		}
+		return infestations;
+	}
+
+	@Override
+	public List<Coordinate> getPropagules(String species) {
+		List<Coordinate> propagules = new ArrayList<Coordinate>();
+		int s = mosaic.indexOf(species);
+		if (isPresent(s)) {
+			propagules.addAll(infestation(s).getPropagules());
+		}
+		return propagules;
+	}
+
+	@Override
+	public SpeciesRegistry getSpeciesRegistry() {
+		return mosaic.getSpeciesRegistry();
+	}
+
+	@Override
+	public Map<String, Integer> getStagesOfInfestation() {
+		Map<String, Integer> stages = new TreeMap<String, Integer>();
+		for (int s = 0; s < mosaic.numberOfSpecies(); s++) {
+			if (isPresent(s)) {
+				stages.put(mosaic.speciesName(s), mosaic.getStage(s, getID()));
+			}
+		}
+		return stages;
+	}
+
+	@Override
+	public boolean hasNoData() {
+		return hasFlag(RasterMosaic_Array.NODATA);
+	}
+
+	@Override
+	public void incrementInfestationTime(long increment) {
+		for (int s = 0; s < mosaic.numberOfSpecies(); s++) {
+			if (isPresent(s)) {
+				infestation(s).incrementInfestationTime(increment);
+			}
+		}
+	}
+
+	@Override
+	public boolean isControlled() {
+		for (int s = 0; s < mosaic.numberOfSpecies(); s++) {
+			if (isPresent(s) && infestation(s).isControlled()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean isMonitored() {
+		return hasFlag(RasterMosaic_Array.MONITORED);
+	}
+
+	@Override
+	public boolean isInfested() {
+		for (int s = 0; s < mosaic.numberOfSpecies(); s++) {
+			if ((mosaic.getFlags(s, getID()) & RasterMosaic_Array.INFESTED) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean isInfestedBy(String species) {
+		return isInfestedBy(mosaic.indexOf(species));
+	}
+
+	@Override
+	public boolean isInfestedBy(int species) {
+		return mosaic.isSpecies(species)
+				&& (mosaic.getFlags(species, getID()) & RasterMosaic_Array.INFESTED) != 0;
+	}
+
+	@Override
+	public boolean isVisited() {
+		return hasFlag(RasterMosaic_Array.VISITED);
+	}
+
+	@Override
+	public Set<String> getCurrentOccupants() {
+		Set<String> occupants = new TreeSet<String>();
+		for (int s = 0; s < mosaic.numberOfSpecies(); s++) {
+			if ((mosaic.getFlags(s, getID()) & RasterMosaic_Array.INFESTED) != 0) {
+				occupants.add(mosaic.speciesName(s));
+			}
+		}
+		return occupants;
+	}
+
+	@Override
+	public void removeInfestation(String key) {
+		removeInfestation(mosaic.indexOf(key));
+	}
+
+	@Override
+	public void removeInfestation(int species) {
+		if (mosaic.isSpecies(species)) {
+			mosaic.resetInfestation(species, getID());
+		}
+	}
+
+	@Override
+	public void setAgeOfInfestation(String species, long ageOfInfestation) {
+		getInfestation(species).setAgeOfInfestation(ageOfInfestation);
+	}
+
+	@Override
+	public void setDisperser(String species, Disperser disperser) {
+		getInfestation(species).setDisperser(disperser);
+	}
+
+	@Override
+	public void setGeometry(Geometry geom) {
+		mosaic.setGeometry(getID(), geom);
+	}
+
+	@Override
+	public void setHabitatSuitability(String species, double habitatSuitability) {
+		setHabitatSuitability(mosaic.register(species), habitatSuitability);
+	}
+
+	@Override
+	public void setHabitatSuitability(int species, double habitatSuitability) {
+		mosaic.register(species);
+		mosaic.setSuitability(species, getID(), habitatSuitability);
+	}
+
+	@Override
+	public void setHabitatSuitabilities(Map<String, Double> habitatSuitabilities) {
+		for (int s = 0; s < mosaic.numberOfSpecies(); s++) {
+			mosaic.clearSuitability(s, getID());
+		}
+		for (String species : habitatSuitabilities.keySet()) {
+			setHabitatSuitability(species, habitatSuitabilities.get(species));
+		}
+	}
+
+	/**
+	 * The ID of a view is fixed by its cell.
+	 *
+	 * @throws UnsupportedOperationException
+	 *             if the id differs from the current ID.
+	 */
+
+	@Override
+	public void setID(int id) {
+		if (id != getID()) {
+			throw new UnsupportedOperationException(
+					"The ID of a layer-backed Patch cannot be changed.");
+		}
+	}
+
+	@Override
+	public void setInfested(String species, boolean infested) {
+		getInfestation(species).setInfested(infested);
+	}
+
+	@Override
+	public void setMonitored(boolean monitored) {
+		setFlag(RasterMosaic_Array.MONITORED, monitored);
+		if (monitored) {
+			setFlag(RasterMosaic_Array.WAS_MONITORED, true);
+		}
+	}
+
+	@Override
+	public void clear() {
+		for (int s = 0; s < mosaic.numberOfSpecies(); s++) {
+			mosaic.resetInfestation(s, getID());
+		}
+		mosaic.setCellControls(getID(), 0);
+		mosaic.setCellFlags(getID(), mosaic.getCellFlags(getID())
+				& RasterMosaic_Array.NODATA);
+	}
+
+	@Override
+	public void setNoData(boolean nodata) {
+		setFlag(RasterMosaic_Array.NODATA, nodata);
+		if (nodata) {
+			clear();
+		}
+	}
+
+	@Override
+	public void setPropagules(String species, List<Coordinate> propagules) {
+		getInfestation(species).setPropagules(propagules);
+	}
+
+	@Override
+	public void setStageOfInfestation(String species, int stageOfInfestation) {
+		getInfestation(species).setStageOfInfestation(stageOfInfestation);
+	}
+
+	@Override
+	public void setVisited(boolean visited) {
+		setFlag(RasterMosaic_Array.VISITED, visited);
+	}
+
+	@Override
+	public boolean wasControlled() {
+		for (int s = 0; s < mosaic.numberOfSpecies(); s++) {
+			if (isPresent(s) && infestation(s).wasControlled()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean wasInfestedBy(String species) {
+		return isPresent(mosaic.indexOf(species));
+	}
+
+	@Override
+	public boolean wasInfestedBy(int species) {
+		return isPresent(species);
+	}
+
+	@Override
+	public boolean wasMonitored() {
+		return hasFlag(RasterMosaic_Array.WAS_MONITORED);
+	}
+
+	private boolean hasFlag(int flag) {
+		return (mosaic.getCellFlags(getID()) & flag) != 0;
+	}
+
+	private Infestation infestation(int s) {
+		return new LayerInfestation(this, mosaic, s, getID());
+	}
+
+	private boolean isPresent(int s) {
+		return mosaic.isSpecies(s)
+				&& (mosaic.getFlags(s, getID()) & RasterMosaic_Array.PRESENT) != 0;
+	}
+
+	private void setFlag(int flag, boolean value) {
+		int f = mosaic.getCellFlags(getID());
+		mosaic.setCellFlags(getID(), value ? f | flag : f & ~flag);
+	}
+}
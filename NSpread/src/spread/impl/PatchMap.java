@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package spread.impl;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import spread.Patch;
+
+/**
+ * A read-only Map view over the cells of a RasterMosaic, keyed by cell id
+ * (row*ncols+column). No entries are stored: lookups are delegated to
+ * RasterMosaic.getPatch(int) and iteration runs over the ids in row-major
+ * order. The view tracks the current size of the mosaic, so it remains valid
+ * if the mosaic is cleared and set up again.
+ */
+
+class PatchMap extends AbstractMap<Integer, Patch> {
+
+	private RasterMosaic mosaic;
+
+	PatchMap(RasterMosaic mosaic) {
+		this.mosaic = mosaic;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		if (!(key instanceof Integer)) {
+			return false;
+		}
+		int id = (Integer) key;
+		return id >= 0 && id < size();
+	}
+
+	@Override
+	public Set<Entry<Integer, Patch>> entrySet() {
+		return new AbstractSet<Entry<Integer, Patch>>() {
+
+			@Override
+			public Iterator<Entry<Integer, Patch>> iterator() {
+				final Iterator<Integer> it = keySet().iterator();
+				return new Iterator<Entry<Integer, Patch>>() {
+
+					@Override
+					public boolean hasNext() {
+						return it.hasNext();
+					}
+
+					@Override
+					public Entry<Integer, Patch> next() {
+						Integer key = it.next();
+						return new SimpleImmutableEntry<Integer, Patch>(key,
+								mosaic.getPatch(key));
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return PatchMap.this.size();
+			}
+		};
+	}
+
+	@Override
+	public Patch get(Object key) {
+		if (!containsKey(key)) {
+			return null;
+		}
+		return mosaic.getPatch((Integer) key);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public Set<Integer> keySet() {
+		return new AbstractSet<Integer>() {
+
+			@Override
+			public boolean contains(Object o) {
+				return containsKey(o);
+			}
+
+			@Override
+			public Iterator<Integer> iterator() {
+				final int n = PatchMap.this.size();
+				return new Iterator<Integer>() {
+
+					private int next = 0;
+
+					@Override
+					public boolean hasNext() {
+						return next < n;
+					}
+
+					@Override
+					public Integer next() {
+						if (next >= n) {
+							throw new NoSuchElementException();
+						}
+						return next++;
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return PatchMap.this.size();
+			}
+		};
+	}
+
+	@Override
+	public int size() {
+		return mosaic.getNumberPatches();
+	}
+
+	@Override
+	public Collection<Patch> values() {
+		return new AbstractCollection<Patch>() {
+
+			@Override
+			public Iterator<Patch> iterator() {
+				final Iterator<Integer> it = keySet().iterator();
+				return new Iterator<Patch>() {
+
+					@Override
+					public boolean hasNext() {
+						return it.hasNext();
+					}
+
+					@Override
+					public Patch next() {
+						return mosaic.getPatch(it.next());
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return PatchMap.this.size();
+			}
+		};
+	}
+}
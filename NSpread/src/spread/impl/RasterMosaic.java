@@ -9,12 +9,11 @@ import java.text.NumberFormat;
 import java.text.ParsePosition;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
@@ -23,12 +22,21 @@ import spread.Disperser;
 import spread.Mosaic;
 import spread.Infestation;
 import spread.Patch;
+import spread.PatchListener;
 
+import spread.util.Components;
 import spread.util.ControlType;
+import spread.util.Layer_Tiled;
+import spread.util.Neighbourhood;
+import spread.util.PropaguleBuffer;
+import spread.util.RandomService;
+import spread.util.RandomStream;
 import spread.util.Raster;
 import spread.util.RasterReader;
+import spread.util.RegionTracker;
+import spread.util.SpeciesRegistry;
 
-import cern.jet.random.Uniform;
+import cern.colt.function.IntProcedure;
 
 import com.vividsolutions.jts.geom.Coordinate;
 
@@ -42,13 +50,16 @@ import com.vividsolutions.jts.geom.Coordinate;
 
 public class RasterMosaic implements Mosaic, Cloneable {
 
+	private static final int INFEST_STREAM = RandomService.register("infest");
+
 	private Raster ageMap;
 	private Raster habitatMap;
 	private Raster presenceMap;
 	private Raster managementMap;
 	RasterReader rr = new RasterReader();
 	private List<String> speciesList = new ArrayList<String>();
-	private Map<String, Disperser> dispersers = new TreeMap<String, Disperser>();
+	private SpeciesRegistry registry = new SpeciesRegistry();
+	private Disperser[] dispersers = new Disperser[0];
 	private Long NO_PRESENCE = 0l;
 	private Long NULL_HABITAT = 0l;
 	private Long NO_MANAGEMENT = 0l;
@@ -57,10 +68,97 @@ public class RasterMosaic implements Mosaic, Cloneable {
 	private double cellsize = 0.0d;
 	private double llx = 0.0d;
 	private double lly = 0.0d;
-	private Map<Integer, Patch> patches = new TreeMap<Integer, Patch>();
+	private Map<Integer, Patch> patchMap = new PatchMap(this);
+
+	// Active sets: the IDs of Patches infested by each species, and of
+	// Patches under each control (patch-level, and per species). These are
+	// kept up to date by the PatchListener so that processes only need to
+	// visit active Patches.
+
+	// Patches are stored densely in row-major order, in tiles of consecutive
+	// IDs. Cloning shares the tiles between both mosaics, and a tile is only
+	// copied (as copy-on-write Patches, see Patch.shallowClone) the first time
+	// a mosaic accesses it. Processes and writers only read the Patches of
+	// the active sets, so replicates only pay for the tiles holding
+	// infested, recorded or controlled cells, and the collections of the
+	// Patches they actually change.
+
+	private static final int TILE_SHIFT = 12;
+	private static final int TILE_MASK = (1 << TILE_SHIFT) - 1;
+
+	// Rough heap sizes used to estimate the footprint of a replicate: a
+	// shallow Patch copy, and the copy-on-write state (Infestation,
+	// Disperser and propagules) of an infested Patch and species.
+
+	static final long PATCH_BYTES = 80;
+	static final long INFESTATION_BYTES = 640;
+	private Patch[][] tiles = new Patch[0][];
+	private boolean[] owned = new boolean[0];
+	private int npatches = 0;
+
+	private BitSet[] infested = new BitSet[0];
+	private BitSet[] recorded = new BitSet[0];
+	private BitSet[][] speciesControlled = new BitSet[0][];
+	private BitSet[] controlled = newControlSets();
+	private BitSet monitored = new BitSet();
+	private BitSet nodata = new BitSet();
+
+	// Counts of the active sets, adjusted as each bit changes so that the
+	// getNumber methods do not scan the mosaic. Per species: infested cells,
+	// infested NoData cells, infested and unmonitored cells, cells with any
+	// control, and for each control the cells with it for the species or
+	// (while infested by the species) at the patch level. Setting checkCounts
+	// compares them with a full scan on each query.
+
+	private int[] infestedCounts = new int[0];
+	private int[] noDataInfestedCounts = new int[0];
+	private int[] undetectedCounts = new int[0];
+	private int[] speciesControlledCounts = new int[0];
+	private int[][] speciesControlCounts = new int[0][];
+	private int[] controlledCounts = new int[ControlType.values().length];
+	private int infestedPatches = 0;
+	private int undetectedPatches = 0;
+	private int monitoredCount = 0;
+	private int noDataCount = 0;
+	private boolean checkCounts = false;
+	// Scratch state of the region searches (see searchRegion): a queue of
+	// cell ids, and the number of the search in which each cell was last
+	// visited. The stamps are tiled, so only the tiles around the regions
+	// searched are allocated, however large the raster.
+
+	private static final int[] STRONG_OFFSETS = { -1, 0, 0, -1, 0, 1, 1, 0 };
+	private static final int MAX_QUEUE = 1 << 16;
+	private int[] queue = new int[0];
+	private Layer_Tiled stamps;
+	private int stamp = 0;
+	private int[] neighbours = new int[8];
+
+	// Neighbour offset tables, built on first use for the current dimensions.
+
+	private Neighbourhood strongNeighbourhood;
+	private Neighbourhood weakNeighbourhood;
+
+	// Infested regions tracked across steps (see getTrackedRegionIds), for
+	// each group of species (as sorted indices) that has been queried. They
+	// are updated with the infested sets, and are not copied by clone().
+
+	private int[][] trackedSpecies = new int[0][];
+	private RegionTracker[] trackers = new RegionTracker[0];
+
+	private PatchListener listener = new PatchListener() {
+
+		@Override
+		public void patchChanged(Patch patch, int species) {
+			updateActive(patch, species);
+		}
+	};
 
 	public void addDisperser(String species, Disperser disperser) {
-		dispersers.put(species, disperser);
+		int s = registry.register(species);
+		if (s >= dispersers.length) {
+			dispersers = Arrays.copyOf(dispersers, s + 1);
+		}
+		dispersers[s] = disperser;
 	}
 
 	/**
@@ -70,14 +168,27 @@ public class RasterMosaic implements Mosaic, Cloneable {
 	@Override
 	public void addSpecies(String species) {
 		speciesList.add(species);
+		registry.register(species);
 	}
 
 	/**
 	 * Used to construct the cells
 	 */
 
-	private void buildPatches() {
-		// Loop across the raster
+	protected void buildPatches() {
+		// Loop across the raster. Patches are stored densely in row-major
+		// order, so the ID of a Patch gives its tile and position in the tile.
+
+		npatches = nrows * ncols;
+		int ntiles = (npatches + TILE_MASK) >>> TILE_SHIFT;
+		tiles = new Patch[ntiles][];
+		owned = new boolean[ntiles];
+
+		for (int t = 0; t < ntiles; t++) {
+			tiles[t] = new Patch[Math.min(TILE_MASK + 1, npatches
+					- (t << TILE_SHIFT))];
+			owned[t] = true;
+		}
 
 		for (int i = 0; i < nrows; i++) {
 			for (int j = 0; j < ncols; j++) {
@@ -85,12 +196,15 @@ public class RasterMosaic implements Mosaic, Cloneable {
 
 				// Generate a new cell
 
-				Patch patch = new Patch();
+				Patch patch = new Patch(registry);
 				patch.setID(id);
+				patch.setListener(listener);
 
-				patches.put(id, patch);
+				tiles[id >>> TILE_SHIFT][id & TILE_MASK] = patch;
 			}
 		}
+
+		clearActive();
 	}
 
 	/**
@@ -116,7 +230,43 @@ public class RasterMosaic implements Mosaic, Cloneable {
 		cellsize = 0.0d;
 		llx = 0.0d;
 		lly = 0.0d;
-		patches = new TreeMap<Integer, Patch>();
+		clearPatches();
+		clearActive();
+	}
+
+	/**
+	 * Removes all Patches.
+	 */
+
+	private void clearPatches() {
+		tiles = new Patch[0][];
+		owned = new boolean[0];
+		npatches = 0;
+	}
+
+	/**
+	 * Clears the active sets.
+	 */
+
+	protected void clearActive() {
+		infested = new BitSet[0];
+		recorded = new BitSet[0];
+		speciesControlled = new BitSet[0][];
+		controlled = newControlSets();
+		trackedSpecies = new int[0][];
+		trackers = new RegionTracker[0];
+		monitored = new BitSet();
+		nodata = new BitSet();
+		infestedCounts = new int[0];
+		noDataInfestedCounts = new int[0];
+		undetectedCounts = new int[0];
+		speciesControlledCounts = new int[0];
+		speciesControlCounts = new int[0][];
+		controlledCounts = new int[ControlType.values().length];
+		infestedPatches = 0;
+		undetectedPatches = 0;
+		monitoredCount = 0;
+		noDataCount = 0;
 	}
 
 	/**
@@ -125,8 +275,8 @@ public class RasterMosaic implements Mosaic, Cloneable {
 
 	@Override
 	public void clearVisited() {
-		for (Integer key : patches.keySet()) {
-			patches.get(key).setVisited(false);
+		for (int key = 0; key < getNumberPatches(); key++) {
+			getPatch(key).setVisited(false);
 		}
 	}
 
@@ -182,48 +332,174 @@ public class RasterMosaic implements Mosaic, Cloneable {
 	}
 
 	/**
-	 * Generates a copy of the class instance.
+	 * Generates a copy of the class instance. The Patches are shared with the
+	 * copy until they are accessed, so cloning does not depend on the size of
+	 * the mosaic. Patches obtained from this instance before it was cloned
+	 * must not be modified afterwards; they should be retrieved again using
+	 * getPatch.
 	 */
 
 	@Override
 	public RasterMosaic clone() {
 		RasterMosaic rm = new RasterMosaic();
+		copySettings(rm);
+
+		// Share the tiles. Neither mosaic may modify the shared Patches, so
+		// both copy a tile before first accessing it. The Patches of the
+		// tiles this instance owned are marked shared here, rather than as
+		// they are copied, since copies may be made on other threads.
+
+		for (int t = 0; t < tiles.length; t++) {
+			if (owned[t]) {
+				for (Patch p : tiles[t]) {
+					p.markShared();
+				}
+			}
+		}
+		rm.tiles = tiles.clone();
+		rm.owned = new boolean[tiles.length];
+		rm.npatches = npatches;
+		Arrays.fill(owned, false);
+
+		return rm;
+	}
+
+	/**
+	 * Estimates the heap used by a replicate run on a clone of this mosaic,
+	 * from the size of the mosaic and the density of infestation: the cell
+	 * sets copied by clone(), the copies of the shared Patches (only the
+	 * tiles holding active cells are copied), and the copy-on-write state of
+	 * the infested Patches. Growth of the infestation during the run is not
+	 * anticipated.
+	 * 
+	 * @return - the estimated footprint in bytes.
+	 */
+
+	public long estimateFootprint() {
+		int sets = 2 + infested.length + recorded.length + controlled.length;
+		for (BitSet[] species : speciesControlled) {
+			sets += species == null ? 0 : species.length;
+		}
+		long footprint = sets * ((long) npatches / 8 + 64);
+		return footprint + estimateCellFootprint();
+	}
+
+	/**
+	 * Estimates the heap used by the cell storage of a replicate run on a
+	 * clone of this mosaic. Subclasses storing cells differently override
+	 * this.
+	 * 
+	 * @return - the estimated footprint in bytes.
+	 */
+
+	protected long estimateCellFootprint() {
+		long cells = Math.min(npatches, (long) countActiveTiles()
+				<< TILE_SHIFT);
+		return cells * PATCH_BYTES + (long) getNumberInfestedPatches()
+				* registry.size() * INFESTATION_BYTES;
+	}
+
+	/**
+	 * @return the number of tiles holding an infested, recorded, controlled
+	 *         or monitored cell, i.e. those a replicate will copy.
+	 */
+
+	protected int countActiveTiles() {
+		BitSet[] sets = new BitSet[infested.length + recorded.length
+				+ controlled.length + 1];
+		System.arraycopy(infested, 0, sets, 0, infested.length);
+		System.arraycopy(recorded, 0, sets, infested.length, recorded.length);
+		System.arraycopy(controlled, 0, sets, infested.length
+				+ recorded.length, controlled.length);
+		sets[sets.length - 1] = monitored;
+		int count = 0;
+		int id = nextSetBit(sets, 0);
+		while (id >= 0) {
+			count++;
+			int next = ((id >>> TILE_SHIFT) + 1) << TILE_SHIFT;
+			if (next >= npatches) {
+				break;
+			}
+			id = nextSetBit(sets, next);
+		}
+		return count;
+	}
+
+	/**
+	 * Copies the raster parameters, species list, (cloned) Dispersers and
+	 * active sets of this instance into another RasterMosaic. Used when
+	 * cloning so that subclasses only need to copy their own cell storage.
+	 * 
+	 * @param rm
+	 *            - the RasterMosaic receiving the settings.
+	 */
+
+	protected void copySettings(RasterMosaic rm) {
 		rm.ageMap = ageMap;
 		rm.habitatMap = habitatMap;
 		rm.presenceMap = presenceMap;
+		rm.managementMap = managementMap;
 		rm.NO_PRESENCE = NO_PRESENCE;
 		rm.NULL_HABITAT = NULL_HABITAT;
+		rm.NO_MANAGEMENT = NO_MANAGEMENT;
 		rm.llx = llx;
 		rm.lly = lly;
 		rm.cellsize = cellsize;
 		rm.nrows = nrows;
 		rm.ncols = ncols;
 
-		Map<Integer, Patch> ccells = new TreeMap<Integer, Patch>();
-
-		for (Integer c : patches.keySet()) {
-			ccells.put(c, patches.get(c).clone());
-		}
-
 		List<String> cspecies = new ArrayList<String>();
 		for (String s : speciesList) {
 			cspecies.add(s);
 		}
 
-		Map<String, Disperser> cdisp = new TreeMap<String, Disperser>();
-		for (String s : dispersers.keySet()) {
-			cdisp.put(s, dispersers.get(s).clone());
+		Disperser[] cdisp = new Disperser[dispersers.length];
+		for (int s = 0; s < dispersers.length; s++) {
+			if (dispersers[s] != null) {
+				cdisp[s] = dispersers[s].clone();
+			}
 		}
 
+		// The registry is append-only, so it is shared rather than copied.
+		// This keeps species indices consistent across replicates.
+
+		rm.registry = registry;
 		rm.dispersers = cdisp;
 		rm.speciesList = cspecies;
-		rm.patches = ccells;
 
-		return rm;
-	}
-
-	/**
-	 * Fills a collection of patches associated with a given species.
+		rm.infested = copy(infested);
+		rm.recorded = copy(recorded);
+		rm.speciesControlled = new BitSet[speciesControlled.length][];
+		for (int s = 0; s < speciesControlled.length; s++) {
+			rm.speciesControlled[s] = speciesControlled[s] == null ? null
+					: copy(speciesControlled[s]);
+		}
+		rm.controlled = copy(controlled);
+		rm.monitored = (BitSet) monitored.clone();
+		rm.nodata = (BitSet) nodata.clone();
+		rm.infestedCounts = infestedCounts.clone();
+		rm.noDataInfestedCounts = noDataInfestedCounts.clone();
+		rm.undetectedCounts = undetectedCounts.clone();
+		rm.speciesControlledCounts = speciesControlledCounts.clone();
+		rm.speciesControlCounts = new int[speciesControlCounts.length][];
+		for (int s = 0; s < speciesControlCounts.length; s++) {
+			rm.speciesControlCounts[s] = speciesControlCounts[s].clone();
+		}
+		rm.controlledCounts = controlledCounts.clone();
+		rm.infestedPatches = infestedPatches;
+		rm.undetectedPatches = undetectedPatches;
+		rm.monitoredCount = monitoredCount;
+		rm.noDataCount = noDataCount;
+		rm.checkCounts = checkCounts;
+	}
+
+	/**
+	 * Fills a collection of patches associated with a given species. Holes
+	 * are the cells within the bounding box of the region that are in the
+	 * opposite infestation state to the region (and not NoData), and are not
+	 * strongly connected to the edge of the box through other such cells.
+	 * They are found by flood-filling from the edge of the box, so the work
+	 * done is linear in the area of the box.
 	 */
 
 	@Override
@@ -231,64 +507,171 @@ public class RasterMosaic implements Mosaic, Cloneable {
 		
 		if(region.isEmpty()){return new TreeSet<Patch>();}
 		
-		List<Patch> plist = new ArrayList<Patch>(region);
-		boolean condition = plist.get(0).isInfestedBy(species);
-
-		Set<Patch> s = new TreeSet<Patch>();
-		s.addAll(region);
+		int s = registry.indexOf(species);
+		boolean condition = region.iterator().next().isInfestedBy(s);
 		int[] bounds = getBounds(region);
-		Set<Patch> block = getBlock(bounds);
-		block.removeAll(region);
-		PriorityQueue<Patch> pq = new PriorityQueue<Patch>(block);
-		Set<Patch> newtiles = new TreeSet<Patch>();
+		int height = bounds[2] - bounds[0] + 1;
+		int width = bounds[3] - bounds[1] + 1;
+
+		// Mark the cells that could be holes, and seed the search with those
+		// on the edge of the box.
+
+		BitSet open = new BitSet(height * width);
+		int[] cells = new int[16];
+		int tail = 0;
+		for (int r = 0; r < height; r++) {
+			for (int c = 0; c < width; c++) {
+				Patch p = getPatch((r + bounds[0]) * ncols + c + bounds[1]);
+				if (p.hasNoData() || p.isInfestedBy(s) == condition) {
+					continue;
+				}
+				int local = r * width + c;
+				if (r == 0 || r == height - 1 || c == 0 || c == width - 1) {
+					if (tail == cells.length) {
+						cells = Arrays.copyOf(cells, tail << 1);
+					}
+					cells[tail++] = local;
+				} else {
+					open.set(local);
+				}
+			}
+		}
 
-		while (!pq.isEmpty()) {
-			Patch seed = pq.poll();
+		// Clear the cells reachable from the edge; those left are enclosed.
 
-			if (seed.hasNoData()) {
-				continue;
+		int head = 0;
+		while (head < tail) {
+			int local = cells[head++];
+			int r = local / width;
+			int c = local - r * width;
+			for (int k = 0; k < STRONG_OFFSETS.length; k += 2) {
+				int nr = r + STRONG_OFFSETS[k];
+				int nc = c + STRONG_OFFSETS[k + 1];
+				if (nr < 0 || nr >= height || nc < 0 || nc >= width) {
+					continue;
+				}
+				int next = nr * width + nc;
+				if (open.get(next)) {
+					open.clear(next);
+					if (tail == cells.length) {
+						cells = Arrays.copyOf(cells, tail << 1);
+					}
+					cells[tail++] = next;
+				}
 			}
+		}
 
-			Set<Patch> tile = getStrongRegion(seed, species, bounds);
-			
-			boolean anytouch = false;
+		Set<Patch> filled = new TreeSet<Patch>(region);
+		for (int local = open.nextSetBit(0); local >= 0; local = open
+				.nextSetBit(local + 1)) {
+			filled.add(getPatch((local / width + bounds[0]) * ncols + local
+					% width + bounds[1]));
+		}
+		return filled;
+	}
 
-			for (Patch p : tile) {
-				
-				int row = p.getID() / ncols;
-				int col = p.getID() % ncols;
+	/**
+	 * Applies a procedure to the IDs of all Patches subject to a patch-level
+	 * control, in ascending order.
+	 */
 
-				// Do any patches touch the edge?
+	@Override
+	public boolean forEachControlled(ControlType control,
+			IntProcedure procedure) {
+		return forEach(new BitSet[] { controlled[control.ordinal()] },
+				procedure);
+	}
 
-				if (row == bounds[0] || row == bounds[2] || col == bounds[1]
-						|| col == bounds[3]) {
-					anytouch = true;
-					break;
-				}
-			}
+	/**
+	 * Applies a procedure to the IDs of all Patches where the Infestation of
+	 * the given species is subject to a control, in ascending order.
+	 */
 
-			if (!anytouch) {
-				newtiles.addAll(tile);
-			}
+	@Override
+	public boolean forEachControlled(String species, ControlType control,
+			IntProcedure procedure) {
+		return forEachControlled(registry.indexOf(species), control,
+				procedure);
+	}
+
+	/**
+	 * Applies a procedure to the IDs of all Patches where the Infestation of
+	 * the given species (by index) is subject to a control, in ascending
+	 * order.
+	 */
+
+	@Override
+	public boolean forEachControlled(int species, ControlType control,
+			IntProcedure procedure) {
+		if (species < 0 || species >= speciesControlled.length
+				|| speciesControlled[species] == null) {
+			return true;
+		}
+		return forEach(
+				new BitSet[] { speciesControlled[species][control.ordinal()] },
+				procedure);
+	}
+
+	/**
+	 * Applies a procedure to the IDs of all Patches holding an Infestation
+	 * record (see Patch.wasInfestedBy) for any species, in ascending order.
+	 */
+
+	@Override
+	public boolean forEachRecorded(IntProcedure procedure) {
+		return forEach(recorded, procedure);
+	}
+
+	/**
+	 * Applies a procedure to the IDs of all Patches infested by any species,
+	 * in ascending order.
+	 */
+
+	@Override
+	public boolean forEachInfested(IntProcedure procedure) {
+		return forEach(infested, procedure);
+	}
+
+	/**
+	 * Applies a procedure to the IDs of all Patches infested by the given
+	 * species, in ascending order.
+	 */
 
-			// regardless, clear the tile to avoid re-processing
+	@Override
+	public boolean forEachInfested(String species, IntProcedure procedure) {
+		return forEachInfested(registry.indexOf(species), procedure);
+	}
 
-			pq.removeAll(tile);
+	/**
+	 * Applies a procedure to the IDs of all Patches infested by the given
+	 * species (by index), in ascending order.
+	 */
 
+	@Override
+	public boolean forEachInfested(int species, IntProcedure procedure) {
+		if (species < 0 || species >= infested.length
+				|| infested[species] == null) {
+			return true;
 		}
-		
-		Set<Patch> del = new HashSet<Patch>();
-		
-		Iterator<Patch> it = newtiles.iterator();
-		while(it.hasNext()){
-			Patch k = it.next();
-			if(k.isInfestedBy(species)==condition){
-				del.add(k);
+		return forEach(new BitSet[] { infested[species] }, procedure);
+	}
+
+	/**
+	 * Applies a procedure to the union of a number of sets of IDs in
+	 * ascending order. The sets are read as the iteration proceeds, so IDs
+	 * added ahead of the current position (or removed) by the procedure are
+	 * taken into account. Null sets are skipped.
+	 */
+
+	private boolean forEach(BitSet[] sets, IntProcedure procedure) {
+		int id = nextSetBit(sets, 0);
+		while (id >= 0) {
+			if (!procedure.apply(id)) {
+				return false;
 			}
+			id = nextSetBit(sets, id + 1);
 		}
-		newtiles.removeAll(del);
-		s.addAll(newtiles);
-		return s;
+		return true;
 	}
 
 	/**
@@ -298,8 +681,8 @@ public class RasterMosaic implements Mosaic, Cloneable {
 	@Override
 	public Map<Integer, Infestation> getActiveInfestations(String species) {
 		Map<Integer, Infestation> Infested = new TreeMap<Integer, Infestation>();
-		for (Integer patch_key : patches.keySet()) {
-			Patch p = patches.get(patch_key);
+		for (int patch_key = 0; patch_key < getNumberPatches(); patch_key++) {
+			Patch p = getPatch(patch_key);
 			if (!p.hasNoData() && p.getInfestation(species).isInfested()) {
 				Infested.put(patch_key, p.getInfestation(species));
 			}
@@ -307,6 +690,31 @@ public class RasterMosaic implements Mosaic, Cloneable {
 		return Infested;
 	}
 
+	/**
+	 * @param species
+	 *            - the species of interest.
+	 * @return the template Disperser registered for the given species (or null
+	 *         if none has been set).
+	 */
+
+	public Disperser getDisperser(String species) {
+		return getDisperser(registry.indexOf(species));
+	}
+
+	/**
+	 * @param species
+	 *            - the index of the species.
+	 * @return the template Disperser registered for the given species (or null
+	 *         if none has been set).
+	 */
+
+	public Disperser getDisperser(int species) {
+		if (species < 0 || species >= dispersers.length) {
+			return null;
+		}
+		return dispersers[species];
+	}
+
 	/**
 	 * Retrieves the area associated with a collection of patches.
 	 */
@@ -368,9 +776,9 @@ public class RasterMosaic implements Mosaic, Cloneable {
 	@Override
 	public Map<Integer, Patch> getControlled(ControlType control) {
 		Map<Integer, Patch> controlled = new TreeMap<Integer, Patch>();
-		for (Integer key : patches.keySet()) {
-			if (patches.get(key).hasControl(control)) {
-				controlled.put(key, patches.get(key));
+		for (int key = 0; key < getNumberPatches(); key++) {
+			if (getPatch(key).hasControl(control)) {
+				controlled.put(key, getPatch(key));
 			}
 		}
 		return controlled;
@@ -383,9 +791,9 @@ public class RasterMosaic implements Mosaic, Cloneable {
 
 	public Map<Integer, Patch> getControlled(String species) {
 		Map<Integer, Patch> controlled = new TreeMap<Integer, Patch>();
-		for (Integer key : patches.keySet()) {
-			if (patches.get(key).getInfestation(species).getControls().size() > 0) {
-				controlled.put(key, patches.get(key));
+		for (int key = 0; key < getNumberPatches(); key++) {
+			if (getPatch(key).getInfestation(species).getControlMask() != 0) {
+				controlled.put(key, getPatch(key));
 			}
 		}
 		return controlled;
@@ -399,8 +807,8 @@ public class RasterMosaic implements Mosaic, Cloneable {
 	@Override
 	public Map<Integer, Patch> getControlled(String species, ControlType control) {
 		Map<Integer, Patch> controlled = new TreeMap<Integer, Patch>();
-		for (Integer key : patches.keySet()) {
-			Patch p = patches.get(key);
+		for (int key = 0; key < getNumberPatches(); key++) {
+			Patch p = getPatch(key);
 			if(p.isInfestedBy(species) && (p.hasControl(control))||p.hasControl(control, species)){
 				controlled.put(key, p);
 			}
@@ -433,8 +841,8 @@ public class RasterMosaic implements Mosaic, Cloneable {
 	@Override
 	public Map<Integer, Infestation> getInfestations(String species) {
 		Map<Integer, Infestation> infestations = new TreeMap<Integer, Infestation>();
-		for (Integer patch_key : patches.keySet()) {
-			Patch p = patches.get(patch_key);
+		for (int patch_key = 0; patch_key < getNumberPatches(); patch_key++) {
+			Patch p = getPatch(patch_key);
 			if (!p.hasNoData() && p.isInfestedBy(species)) {
 				infestations.put(patch_key, p.getInfestation(species));
 			}
@@ -450,12 +858,12 @@ public class RasterMosaic implements Mosaic, Cloneable {
 	@Override
 	public Map<Integer, Patch> getInfestedPatches() {
 		Map<Integer, Patch> infested = new TreeMap<Integer, Patch>();
-		outer: for (Integer patch_key : patches.keySet()) {
-			Patch p = patches.get(patch_key);
+		outer: for (int patch_key = 0; patch_key < getNumberPatches(); patch_key++) {
+			Patch p = getPatch(patch_key);
 			Iterator<String> it = p.getInfestation().keySet().iterator();
 			while (it.hasNext()) {
 				if (p.getInfestation(it.next()).isInfested()) {
-					infested.put(patch_key, patches.get(patch_key));
+					infested.put(patch_key, getPatch(patch_key));
 					continue outer;
 				}
 			}
@@ -470,11 +878,11 @@ public class RasterMosaic implements Mosaic, Cloneable {
 
 	public Map<Integer, Patch> getInfestedPatches(String species) {
 		Map<Integer, Patch> infested = new TreeMap<Integer, Patch>();
-		for (Integer patch_key : patches.keySet()) {
-			Patch p = patches.get(patch_key);
+		for (int patch_key = 0; patch_key < getNumberPatches(); patch_key++) {
+			Patch p = getPatch(patch_key);
 			if (p.isInfestedBy(species)
 					&& p.getInfestation(species).isInfested()) {
-				infested.put(patch_key, patches.get(patch_key));
+				infested.put(patch_key, getPatch(patch_key));
 			}
 		}
 		return infested;
@@ -525,9 +933,9 @@ public class RasterMosaic implements Mosaic, Cloneable {
 
 	public Map<Integer, Patch> getMonitored() {
 		Map<Integer, Patch> monitored = new TreeMap<Integer, Patch>();
-		for (Integer key : patches.keySet()) {
-			if (patches.get(key).isMonitored()) {
-				monitored.put(key, patches.get(key));
+		for (int key = 0; key < getNumberPatches(); key++) {
+			if (getPatch(key).isMonitored()) {
+				monitored.put(key, getPatch(key));
 			}
 		}
 		return monitored;
@@ -548,9 +956,9 @@ public class RasterMosaic implements Mosaic, Cloneable {
 
 	public Map<Integer, Patch> getNoData() {
 		Map<Integer, Patch> nodata = new TreeMap<Integer, Patch>();
-		for (Integer key : patches.keySet()) {
-			if (patches.get(key).hasNoData()) {
-				nodata.put(key, patches.get(key));
+		for (int key = 0; key < getNumberPatches(); key++) {
+			if (getPatch(key).hasNoData()) {
+				nodata.put(key, getPatch(key));
 			}
 		}
 		return nodata;
@@ -571,7 +979,12 @@ public class RasterMosaic implements Mosaic, Cloneable {
 
 	@Override
 	public int getNumberActiveInfestations(String species) {
-		return getActiveInfestations(species).size();
+		int s = registry.indexOf(species);
+		int n = count(infestedCounts, s) - count(noDataInfestedCounts, s);
+		if (checkCounts) {
+			check(n, getActiveInfestations(species).size(), "active infestations of " + species);
+		}
+		return n;
 	}
 
 	/**
@@ -581,8 +994,49 @@ public class RasterMosaic implements Mosaic, Cloneable {
 	 *         species.
 	 */
 
+	@Override
 	public int getNumberControlled(String species) {
-		return getControlled(species).size();
+		int n = count(speciesControlledCounts, registry.indexOf(species));
+		if (checkCounts) {
+			check(n, getControlled(species).size(), "controlled " + species);
+		}
+		return n;
+	}
+
+	/**
+	 * @param species
+	 *            - the species of interest.
+	 * @param control
+	 *            - the control type of interest.
+	 * @return the number of patches under the control for the species, or
+	 *         under the patch-level control and infested by the species.
+	 */
+
+	@Override
+	public int getNumberControlled(String species, ControlType control) {
+		int s = registry.indexOf(species);
+		int n = s >= 0 && s < speciesControlCounts.length ? speciesControlCounts[s][control
+				.ordinal()] : 0;
+		if (checkCounts) {
+			check(n, getControlled(species, control).size(), "controlled "
+					+ species + " " + control);
+		}
+		return n;
+	}
+
+	/**
+	 * @param control
+	 *            - the control type of interest.
+	 * @return the number of patches under the (patch-level) control.
+	 */
+
+	@Override
+	public int getNumberControlled(ControlType control) {
+		int n = controlledCounts[control.ordinal()];
+		if (checkCounts) {
+			check(n, getControlled(control).size(), "controlled " + control);
+		}
+		return n;
 	}
 
 	/**
@@ -592,7 +1046,12 @@ public class RasterMosaic implements Mosaic, Cloneable {
 
 	@Override
 	public int getNumberInfestations(String species) {
-		return getInfestations(species).size();
+		int s = registry.indexOf(species);
+		int n = count(infestedCounts, s) - count(noDataInfestedCounts, s);
+		if (checkCounts) {
+			check(n, getInfestations(species).size(), "infestations of " + species);
+		}
+		return n;
 	}
 
 	/**
@@ -601,7 +1060,10 @@ public class RasterMosaic implements Mosaic, Cloneable {
 
 	@Override
 	public int getNumberInfestedPatches() {
-		return getInfestedPatches().size();
+		if (checkCounts) {
+			check(infestedPatches, getInfestedPatches().size(), "infested patches");
+		}
+		return infestedPatches;
 	}
 
 	/**
@@ -609,8 +1071,21 @@ public class RasterMosaic implements Mosaic, Cloneable {
 	 *         Mosaic.
 	 */
 
+	@Override
 	public int getNumberMonitored() {
-		return getMonitored().size();
+		if (checkCounts) {
+			check(monitoredCount, getMonitored().size(), "monitored patches");
+		}
+		return monitoredCount;
+	}
+
+	/**
+	 * Returns the total number of cells
+	 */
+
+	@Override
+	public int getNumberPatches() {
+		return npatches;
 	}
 
 	/**
@@ -619,7 +1094,10 @@ public class RasterMosaic implements Mosaic, Cloneable {
 
 	@Override
 	public int getNumberNoData() {
-		return getNoData().size();
+		if (checkCounts) {
+			check(noDataCount, getNoData().size(), "NoData patches");
+		}
+		return noDataCount;
 	}
 
 	/**
@@ -629,7 +1107,10 @@ public class RasterMosaic implements Mosaic, Cloneable {
 
 	@Override
 	public int getNumberUndetected() {
-		return getUndetected().size();
+		if (checkCounts) {
+			check(undetectedPatches, getUndetected().size(), "undetected patches");
+		}
+		return undetectedPatches;
 	}
 
 	/**
@@ -639,7 +1120,11 @@ public class RasterMosaic implements Mosaic, Cloneable {
 
 	@Override
 	public int getNumberUndetected(String species) {
-		return getUndetected(species).size();
+		int n = count(undetectedCounts, registry.indexOf(species));
+		if (checkCounts) {
+			check(n, getUndetected(species).size(), "undetected " + species);
+		}
+		return n;
 	}
 
 	/**
@@ -648,7 +1133,11 @@ public class RasterMosaic implements Mosaic, Cloneable {
 
 	@Override
 	public int getNumberUninfested() {
-		return getUninfested().size();
+		int n = getNumberPatches() - infestedPatches;
+		if (checkCounts) {
+			check(n, getUninfested().size(), "uninfested patches");
+		}
+		return n;
 	}
 
 	/**
@@ -658,7 +1147,11 @@ public class RasterMosaic implements Mosaic, Cloneable {
 
 	@Override
 	public int getNumberUninfested(String species) {
-		return getUninfested(species).size();
+		int n = getNumberPatches() - count(infestedCounts, registry.indexOf(species));
+		if (checkCounts) {
+			check(n, getUninfested(species).size(), "uninfested " + species);
+		}
+		return n;
 	}
 
 	/**
@@ -666,22 +1159,94 @@ public class RasterMosaic implements Mosaic, Cloneable {
 	 * 
 	 * @param key
 	 *            - the ID of the Patch object
-	 * @return - the Patch object corresponding to the key provided
+	 * @return - the Patch object corresponding to the key provided, or null
+	 *         if the key is outside of the mosaic.
 	 */
 
 	@Override
 	public Patch getPatch(int key) {
-		return patches.get(key);
+		if (key < 0 || key >= npatches) {
+			return null;
+		}
+		int t = key >>> TILE_SHIFT;
+		if (!owned[t]) {
+			copyTile(t);
+		}
+		return tiles[t][key & TILE_MASK];
+	}
+
+	/**
+	 * Returns whether a Patch has NoData, from the active sets (so that a
+	 * shared tile is not copied).
+	 */
+
+	@Override
+	public boolean hasNoData(int id) {
+		return nodata.get(id);
+	}
+
+	/**
+	 * Returns whether a Patch is infested by a species, from the active sets
+	 * (so that a shared tile is not copied).
+	 */
+
+	@Override
+	public boolean isInfestedBy(int id, String species) {
+		return infested(registry.indexOf(species), id);
+	}
+
+	/**
+	 * Returns whether a Patch holds an Infestation record for any species or
+	 * is subject to a patch-level control, from the active sets. Other
+	 * Patches hold no state beyond their habitat, NoData and monitoring.
+	 * 
+	 * @param id
+	 *            - the ID of the Patch.
+	 * @return whether the Patch holds infestation or control state.
+	 */
+
+	public boolean isManaged(int id) {
+		for (BitSet set : recorded) {
+			if (set != null && set.get(id)) {
+				return true;
+			}
+		}
+		for (BitSet set : controlled) {
+			if (set.get(id)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Replaces a tile shared with another RasterMosaic by copy-on-write
+	 * copies of its Patches, listened to by this instance.
+	 * 
+	 * @param t
+	 *            - the index of the tile.
+	 */
+
+	private void copyTile(int t) {
+		Patch[] shared = tiles[t];
+		Patch[] tile = new Patch[shared.length];
+		for (int i = 0; i < shared.length; i++) {
+			tile[i] = shared[i].shallowClone();
+			tile[i].setListener(listener);
+		}
+		tiles[t] = tile;
+		owned[t] = true;
 	}
 
 	/**
-	 * Retrieves a map of cell objects. Integer value corresponds to the unique
-	 * index of the cell, defined as row*number of columns + column
+	 * Retrieves a (read-only) map view of the cell objects. Integer value
+	 * corresponds to the unique index of the cell, defined as row*number of
+	 * columns + column. Iteration is in row-major order.
 	 */
 
 	@Override
 	public Map<Integer, Patch> getPatches() {
-		return patches;
+		return patchMap;
 	}
 
 	/**
@@ -695,7 +1260,7 @@ public class RasterMosaic implements Mosaic, Cloneable {
 	public Map<Integer, Patch> getPatches(Collection<Integer> indices) {
 		Map<Integer, Patch> map = new TreeMap<Integer, Patch>();
 		for (int i : indices) {
-			Patch p = patches.get(i);
+			Patch p = getPatch(i);
 			map.put(p.getID(), p);
 		}
 		return map;
@@ -721,6 +1286,15 @@ public class RasterMosaic implements Mosaic, Cloneable {
 		return speciesList;
 	}
 
+	/**
+	 * @return the registry assigning an int index to each species.
+	 */
+
+	@Override
+	public SpeciesRegistry getSpeciesRegistry() {
+		return registry;
+	}
+
 	/**
 	 * @param p
 	 *            - The patch to be examined for linkages.
@@ -729,7 +1303,7 @@ public class RasterMosaic implements Mosaic, Cloneable {
 	 */
 
 	public Set<Patch> getStrongAdjacent(Patch p) {
-		return getStrongAdjacent(p, new int[] { 0, 0, nrows - 1, ncols - 1 });
+		return getAdjacent(p, false);
 	}
 
 	/**
@@ -771,6 +1345,25 @@ public class RasterMosaic implements Mosaic, Cloneable {
 		return list;
 	}
 
+	/**
+	 * @param weak
+	 *            - whether cells that only share a corner are neighbours.
+	 * @return the neighbour offset tables for the dimensions of the mosaic.
+	 */
+
+	public Neighbourhood getNeighbourhood(boolean weak) {
+		Neighbourhood n = weak ? weakNeighbourhood : strongNeighbourhood;
+		if (n == null || n.getNrows() != nrows || n.getNcols() != ncols) {
+			n = new Neighbourhood(nrows, ncols, weak);
+			if (weak) {
+				weakNeighbourhood = n;
+			} else {
+				strongNeighbourhood = n;
+			}
+		}
+		return n;
+	}
+
 	/**
 	 * Retrieves an internal core of values that are strongly connected to one
 	 * another - i.e. sharing an edge (in cardinal directions).
@@ -843,39 +1436,11 @@ public class RasterMosaic implements Mosaic, Cloneable {
 
 	public Set<Patch> getStrongRegion(Patch p, Set<String> speciesSet,
 			boolean condition, int[] bnds) {
-		Set<Patch> s = new TreeSet<Patch>();
-
-		if (p.isInfested() == condition) {
-			s.add(p);
-		}
-
-		p.setVisited(true);
-
-		PriorityQueue<Patch> pq = new PriorityQueue<Patch>();
-		Set<Patch> clearSet = new HashSet<Patch>();
-
-		pq.addAll(getStrongAdjacent(p, bnds));
-
-		while (!pq.isEmpty()) {
-			Patch pc = pq.poll();
-
-			if (pc.hasNoData()) {
-				continue;
-			}
-
-			clearSet.add(pc);
-			outer: for (String species : speciesSet) {
-				if (!pc.isVisited() && pc.isInfestedBy(species) == condition
-						&& !pc.hasNoData()) {
-					s.add(pc);
-					pq.addAll(getStrongAdjacent(pc, bnds));
-					break outer;
-				}
-			}
-			pc.setVisited(true);
+		Set<Patch> s = toPatches(searchRegion(p.getID(),
+				regionFilter(indicesOf(speciesSet), condition), false, bnds));
+		if (p.isInfested() != condition) {
+			s.remove(p);
 		}
-
-		clearVisitedPatches(clearSet);
 		return s;
 	}
 	
@@ -891,35 +1456,7 @@ public class RasterMosaic implements Mosaic, Cloneable {
 	 */
 
 	public Set<Patch> getStrongContainment(Patch p, int[] bnds) {
-		Set<Patch> s = new TreeSet<Patch>();
-
-		s.add(p);
-		p.setVisited(true);
-
-		PriorityQueue<Patch> pq = new PriorityQueue<Patch>();
-		Set<Patch> clearSet = new HashSet<Patch>();
-
-		pq.addAll(getStrongAdjacent(p, bnds));
-
-		while (!pq.isEmpty()) {
-			Patch pc = pq.poll();
-
-			if (pc.hasNoData()) {
-				continue;
-			}
-
-			clearSet.add(pc);
-			if (!pc.isVisited()
-					&& ((pc.hasControl(ControlType.CONTAINMENT)||pc.hasControl(ControlType.CONTAINMENT_CORE)))
-					&& !pc.hasNoData()) {
-				s.add(pc);
-				pq.addAll(getStrongAdjacent(pc, bnds));
-			}
-			pc.setVisited(true);
-		}
-
-		clearVisitedPatches(clearSet);
-		return s;
+		return toPatches(getStrongContainmentIds(p.getID(), bnds));
 	}
 
 	/**
@@ -934,35 +1471,8 @@ public class RasterMosaic implements Mosaic, Cloneable {
 	 */
 
 	public Set<Patch> getStrongRegion(Patch p, String species, int[] bnds) {
-		Set<Patch> s = new TreeSet<Patch>();
-
-		s.add(p);
-		p.setVisited(true);
-
-		PriorityQueue<Patch> pq = new PriorityQueue<Patch>();
-		Set<Patch> clearSet = new HashSet<Patch>();
-
-		pq.addAll(getStrongAdjacent(p, bnds));
-
-		while (!pq.isEmpty()) {
-			Patch pc = pq.poll();
-
-			if (pc.hasNoData()) {
-				continue;
-			}
-
-			clearSet.add(pc);
-			if (!pc.isVisited()
-					&& pc.isInfestedBy(species) == p.isInfestedBy(species)
-					&& !pc.hasNoData()) {
-				s.add(pc);
-				pq.addAll(getStrongAdjacent(pc, bnds));
-			}
-			pc.setVisited(true);
-		}
-
-		clearVisitedPatches(clearSet);
-		return s;
+		return toPatches(getStrongRegionIds(p.getID(),
+				registry.indexOf(species), bnds));
 	}
 
 	/**
@@ -976,10 +1486,10 @@ public class RasterMosaic implements Mosaic, Cloneable {
 	@Override
 	public Map<Integer, Patch> getUndetected() {
 		Map<Integer, Patch> undetected = new TreeMap<Integer, Patch>();
-		for (Integer patch_key : patches.keySet()) {
-			Patch p = patches.get(patch_key);
+		for (int patch_key = 0; patch_key < getNumberPatches(); patch_key++) {
+			Patch p = getPatch(patch_key);
 			if (p.isInfested() && !p.isMonitored()) {
-				undetected.put(patch_key, patches.get(patch_key));
+				undetected.put(patch_key, getPatch(patch_key));
 			}
 		}
 		return undetected;
@@ -996,11 +1506,11 @@ public class RasterMosaic implements Mosaic, Cloneable {
 	@Override
 	public Map<Integer, Patch> getUndetected(String species) {
 		Map<Integer, Patch> undetected = new TreeMap<Integer, Patch>();
-		for (Integer patch_key : patches.keySet()) {
-			Patch p = patches.get(patch_key);
+		for (int patch_key = 0; patch_key < getNumberPatches(); patch_key++) {
+			Patch p = getPatch(patch_key);
 
 			if (p.isInfestedBy(species) && !p.isMonitored()) {
-				undetected.put(patch_key, patches.get(patch_key));
+				undetected.put(patch_key, getPatch(patch_key));
 			}
 		}
 		return undetected;
@@ -1017,8 +1527,8 @@ public class RasterMosaic implements Mosaic, Cloneable {
 	@Override
 	public Map<Integer, Patch> getUninfested() {
 		Map<Integer, Patch> uninfested = new TreeMap<Integer, Patch>();
-		outer: for (Integer patch_key : patches.keySet()) {
-			Patch p = patches.get(patch_key);
+		outer: for (int patch_key = 0; patch_key < getNumberPatches(); patch_key++) {
+			Patch p = getPatch(patch_key);
 			Iterator<String> it = p.getInfestation().keySet().iterator();
 			while (it.hasNext()) {
 				if (p.isInfestedBy(it.next())) {
@@ -1042,10 +1552,10 @@ public class RasterMosaic implements Mosaic, Cloneable {
 	@Override
 	public Map<Integer, Patch> getUninfested(String species) {
 		Map<Integer, Patch> uninfested = new TreeMap<Integer, Patch>();
-		for (Integer patch_key : patches.keySet()) {
-			Patch p = patches.get(patch_key);
+		for (int patch_key = 0; patch_key < getNumberPatches(); patch_key++) {
+			Patch p = getPatch(patch_key);
 			if (!p.isInfestedBy(species)) {
-				uninfested.put(patch_key, patches.get(patch_key));
+				uninfested.put(patch_key, getPatch(patch_key));
 			}
 		}
 		return uninfested;
@@ -1058,7 +1568,7 @@ public class RasterMosaic implements Mosaic, Cloneable {
 	 */
 
 	public Set<Patch> getWeakAdjacent(Patch p) {
-		return getWeakAdjacent(p, new int[] { 0, 0, nrows - 1, ncols - 1 });
+		return getAdjacent(p, true);
 	}
 
 	/**
@@ -1173,37 +1683,8 @@ public class RasterMosaic implements Mosaic, Cloneable {
 
 	public Set<Patch> getWeakRegion(Patch p, Set<String> speciesSet,
 			boolean condition, int[] bnds) {
-		Set<Patch> s = new TreeSet<Patch>();
-
-		s.add(p);
-		p.setVisited(true);
-
-		PriorityQueue<Patch> pq = new PriorityQueue<Patch>();
-		Set<Patch> clearSet = new HashSet<Patch>();
-
-		pq.addAll(getWeakAdjacent(p, bnds));
-
-		while (!pq.isEmpty()) {
-			Patch pc = pq.poll();
-
-			if (pc.hasNoData()) {
-				continue;
-			}
-
-			clearSet.add(pc);
-			outer: for (String species : speciesSet) {
-				if (!pc.isVisited() && pc.isInfestedBy(species) == condition
-						&& !pc.hasNoData()) {
-					s.add(pc);
-					pq.addAll(getWeakAdjacent(pc, bnds));
-					break outer;
-				}
-			}
-			pc.setVisited(true);
-		}
-
-		clearVisitedPatches(clearSet);
-		return s;
+		return toPatches(searchRegion(p.getID(),
+				regionFilter(indicesOf(speciesSet), condition), true, bnds));
 	}
 	
 	/**
@@ -1218,35 +1699,7 @@ public class RasterMosaic implements Mosaic, Cloneable {
 	 */
 
 	public Set<Patch> getWeakContainment(Patch p, int[] bnds) {
-		Set<Patch> s = new TreeSet<Patch>();
-
-		s.add(p);
-		p.setVisited(true);
-
-		PriorityQueue<Patch> pq = new PriorityQueue<Patch>();
-		Set<Patch> clearSet = new HashSet<Patch>();
-
-		pq.addAll(getWeakAdjacent(p, bnds));
-
-		while (!pq.isEmpty()) {
-			Patch pc = pq.poll();
-
-			if (pc.hasNoData()) {
-				continue;
-			}
-
-			clearSet.add(pc);
-			if (!pc.isVisited()
-					&& ((pc.hasControl(ControlType.CONTAINMENT)||pc.hasControl(ControlType.CONTAINMENT_CORE)))
-					&& !pc.hasNoData()) {
-				s.add(pc);
-				pq.addAll(getWeakAdjacent(pc, bnds));
-			}
-			pc.setVisited(true);
-		}
-
-		clearVisitedPatches(clearSet);
-		return s;
+		return toPatches(getWeakContainmentIds(p.getID(), bnds));
 	}
 
 	/**
@@ -1261,35 +1714,324 @@ public class RasterMosaic implements Mosaic, Cloneable {
 	 */
 
 	public Set<Patch> getWeakRegion(Patch p, String species, int[] bnds) {
-		Set<Patch> s = new TreeSet<Patch>();
+		return toPatches(getWeakRegionIds(p.getID(),
+				registry.indexOf(species), bnds));
+	}
+
+	/**
+	 * @param id
+	 *            - the id of the starting cell.
+	 * @param bnds
+	 *            - the bounding coordinates (minrow,mincol,maxrow,maxcol)
+	 * @return the ids of the cells under containment that are strongly
+	 *         connected to the starting cell, in ascending order.
+	 */
+
+	public int[] getStrongContainmentIds(int id, int[] bnds) {
+		return searchRegion(id, containmentFilter(), false, bnds);
+	}
+
+	/**
+	 * @param id
+	 *            - the id of the starting cell.
+	 * @param species
+	 *            - the index of the species of interest.
+	 * @param bnds
+	 *            - the bounding coordinates (minrow,mincol,maxrow,maxcol)
+	 * @return the ids of the cells strongly connected to the starting cell
+	 *         that share its infestation state, in ascending order.
+	 */
 
-		s.add(p);
-		p.setVisited(true);
+	public int[] getStrongRegionIds(int id, int species, int[] bnds) {
+		return searchRegion(id,
+				regionFilter(species, getPatch(id).isInfestedBy(species)),
+				false, bnds);
+	}
 
-		PriorityQueue<Patch> pq = new PriorityQueue<Patch>();
-		Set<Patch> clearSet = new HashSet<Patch>();
+	/**
+	 * @param id
+	 *            - the id of the starting cell.
+	 * @param bnds
+	 *            - the bounding coordinates (minrow,mincol,maxrow,maxcol)
+	 * @return the ids of the cells under containment that are weakly
+	 *         connected to the starting cell, in ascending order.
+	 */
 
-		pq.addAll(getWeakAdjacent(p, bnds));
+	public int[] getWeakContainmentIds(int id, int[] bnds) {
+		return searchRegion(id, containmentFilter(), true, bnds);
+	}
 
-		while (!pq.isEmpty()) {
-			Patch pc = pq.poll();
+	/**
+	 * @param id
+	 *            - the id of the starting cell.
+	 * @param species
+	 *            - the index of the species of interest.
+	 * @param bnds
+	 *            - the bounding coordinates (minrow,mincol,maxrow,maxcol)
+	 * @return the ids of the cells weakly connected to the starting cell that
+	 *         share its infestation state, in ascending order.
+	 */
 
-			if (pc.hasNoData()) {
-				continue;
+	public int[] getWeakRegionIds(int id, int species, int[] bnds) {
+		return searchRegion(id,
+				regionFilter(species, getPatch(id).isInfestedBy(species)),
+				true, bnds);
+	}
+
+	/**
+	 * @param id
+	 *            - the id of the starting cell.
+	 * @param species
+	 *            - the index of the species of interest.
+	 * @return the ids of the infested cells weakly connected to the starting
+	 *         cell, in ascending order (empty if the starting cell is NoData
+	 *         or not infested).
+	 */
+
+	public int[] searchInfestationIds(int id, int species) {
+		Patch p = getPatch(id);
+		if (p.hasNoData() || !p.isInfestedBy(species)) {
+			return new int[0];
+		}
+		return searchRegion(id, regionFilter(species, true), true, new int[] {
+				0, 0, nrows - 1, ncols - 1 });
+	}
+
+	/**
+	 * Labels all regions of connected cells under containment.
+	 */
+
+	@Override
+	public Components labelContainment(boolean weak) {
+		return Components.label(nrows, ncols, containmentFilter(), weak);
+	}
+
+	/**
+	 * Labels all regions of connected cells having the given condition for
+	 * any of a set of species.
+	 */
+
+	@Override
+	public Components labelRegions(Set<String> speciesSet, boolean condition,
+			boolean weak) {
+		return Components.label(nrows, ncols,
+				regionFilter(indicesOf(speciesSet), condition), weak);
+	}
+
+	/**
+	 * Returns the region of cells weakly connected to a cell through cells
+	 * infested by any of a set of species (excluding NoData), as for
+	 * getWeakRegion. The regions of each set of species are labelled on the
+	 * first call and then maintained as infestations change (merging regions
+	 * as cells are infested, and splitting them as cells are cleared), so
+	 * repeated lookups do not search the mosaic.
+	 * 
+	 * @param id
+	 *            - the id of the cell.
+	 * @param speciesSet
+	 *            - the Set of species to be considered.
+	 * @return the ids of the cells in the region, in ascending order (empty
+	 *         if the cell is not infested by any of the species).
+	 */
+
+	@Override
+	public int[] getTrackedRegionIds(int id, Set<String> speciesSet) {
+		int[] species = indicesOf(speciesSet);
+		Arrays.sort(species);
+		for (int t = 0; t < trackers.length; t++) {
+			if (Arrays.equals(trackedSpecies[t], species)) {
+				return trackers[t].getIds(id);
 			}
+		}
+		RegionTracker tracker = new RegionTracker(nrows, ncols, regionFilter(
+				species, true), true);
+
+		// The tracker is seeded from the infested sets, rather than by
+		// testing every cell of the mosaic.
 
-			clearSet.add(pc);
-			if (!pc.isVisited()
-					&& pc.isInfestedBy(species) == p.isInfestedBy(species)
-					&& !pc.hasNoData()) {
-				s.add(pc);
-				pq.addAll(getWeakAdjacent(pc, bnds));
+		BitSet seeds = new BitSet();
+		for (int s : species) {
+			if (s < infested.length && infested[s] != null) {
+				seeds.or(infested[s]);
 			}
-			pc.setVisited(true);
 		}
+		for (int i = seeds.nextSetBit(0); i >= 0; i = seeds.nextSetBit(i + 1)) {
+			tracker.update(i);
+		}
+		trackedSpecies = Arrays.copyOf(trackedSpecies, trackers.length + 1);
+		trackedSpecies[trackers.length] = species;
+		trackers = Arrays.copyOf(trackers, trackers.length + 1);
+		trackers[trackers.length - 1] = tracker;
+		return tracker.getIds(id);
+	}
 
-		clearVisitedPatches(clearSet);
-		return s;
+	/**
+	 * Searches for the region of cells connected to a starting cell through
+	 * cells accepted by a filter, within a bounding box. The search runs on a
+	 * primitive queue of cell ids and marks cells as visited by stamping them
+	 * with the number of the search, so no state is kept on (or has to be
+	 * cleared from) the Patches. The stamps only take memory for the tiles
+	 * around the cells visited.
+	 * 
+	 * @param start
+	 *            - the id of the starting cell, which is always included.
+	 * @param filter
+	 *            - returns true for the ids of cells belonging to the region.
+	 * @param weak
+	 *            - whether cells that only share a corner are connected.
+	 * @param bnds
+	 *            - the bounding coordinates (minrow,mincol,maxrow,maxcol)
+	 * @return the ids of the cells in the region, in ascending order.
+	 */
+
+	protected int[] searchRegion(int start, IntProcedure filter,
+			boolean weak, int[] bnds) {
+		int n = getNumberPatches();
+		if (stamps == null || stamps.size() != n) {
+			stamps = new Layer_Tiled(n, 4, ncols, 6);
+			stamp = 0;
+		}
+		if (++stamp == Integer.MAX_VALUE) {
+			stamps.clear();
+			stamp = 1;
+		}
+		int minrow = Math.max(bnds[0], 0);
+		int mincol = Math.max(bnds[1], 0);
+		int maxrow = Math.min(bnds[2], nrows - 1);
+		int maxcol = Math.min(bnds[3], ncols - 1);
+		boolean bounded = minrow > 0 || mincol > 0 || maxrow < nrows - 1
+				|| maxcol < ncols - 1;
+		Neighbourhood neighbourhood = getNeighbourhood(weak);
+
+		if (queue.length == 0) {
+			queue = new int[16];
+		}
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = start;
+		stamps.set(start, stamp);
+
+		while (head < tail) {
+			int count = neighbourhood.getNeighbours(queue[head++], neighbours);
+			for (int k = 0; k < count; k++) {
+				int next = neighbours[k];
+				if (bounded) {
+					int r = next / ncols;
+					int c = next - r * ncols;
+					if (r < minrow || r > maxrow || c < mincol || c > maxcol) {
+						continue;
+					}
+				}
+				if (stamps.get(next) == stamp) {
+					continue;
+				}
+				stamps.set(next, stamp);
+				if (filter.apply(next)) {
+					if (tail == queue.length) {
+						queue = Arrays.copyOf(queue, tail << 1);
+					}
+					queue[tail++] = next;
+				}
+			}
+		}
+
+		int[] region = Arrays.copyOf(queue, tail);
+		Arrays.sort(region);
+
+		// The queue grows with the largest region searched, so a large queue
+		// is released rather than kept for the next search.
+
+		if (queue.length > MAX_QUEUE) {
+			queue = new int[0];
+		}
+		return region;
+	}
+
+	/**
+	 * @param ids
+	 *            - cell ids.
+	 * @return the Patches of the cells.
+	 */
+
+	protected Set<Patch> toPatches(int[] ids) {
+		Set<Patch> patches = new TreeSet<Patch>();
+		for (int id : ids) {
+			patches.add(getPatch(id));
+		}
+		return patches;
+	}
+
+	private IntProcedure containmentFilter() {
+		return new IntProcedure() {
+
+			@Override
+			public boolean apply(int id) {
+				Patch p = getPatch(id);
+				return !p.hasNoData()
+						&& (p.hasControl(ControlType.CONTAINMENT) || p
+								.hasControl(ControlType.CONTAINMENT_CORE));
+			}
+		};
+	}
+
+	private Set<Patch> getAdjacent(Patch p, boolean weak) {
+		Neighbourhood neighbourhood = getNeighbourhood(weak);
+		int[] adjacent = new int[neighbourhood.size()];
+		int n = neighbourhood.getNeighbours(p.getID(), adjacent);
+		Set<Patch> set = new TreeSet<Patch>();
+		for (int k = 0; k < n; k++) {
+			set.add(getPatch(adjacent[k]));
+		}
+		return set;
+	}
+
+	private int[] toIds(Collection<Patch> patches) {
+		int[] ids = new int[patches.size()];
+		int i = 0;
+		for (Patch p : patches) {
+			ids[i++] = p.getID();
+		}
+		return ids;
+	}
+
+	private int[] indicesOf(Set<String> speciesSet) {
+		int[] indices = new int[speciesSet.size()];
+		int i = 0;
+		for (String species : speciesSet) {
+			indices[i++] = registry.indexOf(species);
+		}
+		return indices;
+	}
+
+	private IntProcedure regionFilter(final int species, final boolean infested) {
+		return new IntProcedure() {
+
+			@Override
+			public boolean apply(int id) {
+				Patch p = getPatch(id);
+				return !p.hasNoData() && p.isInfestedBy(species) == infested;
+			}
+		};
+	}
+
+	private IntProcedure regionFilter(final int[] species,
+			final boolean condition) {
+		return new IntProcedure() {
+
+			@Override
+			public boolean apply(int id) {
+				Patch p = getPatch(id);
+				if (p.hasNoData()) {
+					return false;
+				}
+				for (int s : species) {
+					if (p.isInfestedBy(s) == condition) {
+						return true;
+					}
+				}
+				return false;
+			}
+		};
 	}
 
 	/**
@@ -1301,9 +2043,33 @@ public class RasterMosaic implements Mosaic, Cloneable {
 
 	@Override
 	public void infest(String species, List<Coordinate> propagules) {
-		for (Coordinate c : propagules) {
-			int key_x = (int) ((c.x - llx) / cellsize);
-			int key_y = nrows - (1 + (int) ((c.y - lly) / cellsize));
+		infest(registry.register(species), propagules);
+	}
+
+	/**
+	 * Infests the mosaic according to a List of coordinate values, for a
+	 * species given by its index.
+	 */
+
+	@Override
+	public void infest(int species, List<Coordinate> propagules) {
+		infest(species, PropaguleBuffer.fromCoordinates(propagules));
+	}
+
+	/**
+	 * Infests the mosaic according to a buffer of propagule locations, for a
+	 * species given by its index. A Coordinate is only created for the
+	 * propagules that establish an Infestation.
+	 */
+
+	@Override
+	public void infest(int species, PropaguleBuffer propagules) {
+		RandomStream random = RandomService.current().getStream(INFEST_STREAM);
+		for (int i = 0; i < propagules.size(); i++) {
+			double x = propagules.getX(i);
+			double y = propagules.getY(i);
+			int key_x = (int) ((x - llx) / cellsize);
+			int key_y = nrows - (1 + (int) ((y - lly) / cellsize));
 
 			// Handle out of bounds propagules
 			if (key_x < 0 || key_x >= ncols || key_y < 0 || key_y >= nrows) {
@@ -1316,7 +2082,7 @@ public class RasterMosaic implements Mosaic, Cloneable {
 			// If the cells are viable habitat, and it is not already infested,
 			// then set as infested and start the counter.
 
-			Patch patch = patches.get(key);
+			Patch patch = getPatch(key);
 
 			// If the patch has No Data, continue
 
@@ -1336,20 +2102,210 @@ public class RasterMosaic implements Mosaic, Cloneable {
 							species)) {
 				continue;
 			}
-
-			if (!patch.isInfestedBy(species)
-					&& Uniform.staticNextDouble() < patch
-							.getHabitatSuitability(species)) {
+
+			if (!patch.isInfestedBy(species)
+					&& random.raw() < patch
+							.getHabitatSuitability(species)) {
+				patch.addInfestation(species);
+				assignDisperser(patch, species, new Coordinate(x, y));
+				patch.getInfestation(species).setInfested(true);
+				patch.getInfestation(species).setAgeOfInfestation(0);
+			}
+		}
+	}
+
+	/**
+	 * Infests the mosaic according to the expected number of propagules
+	 * landing in each cell, for a species given by its index. As for
+	 * propagule locations, cells that have NoData, are infested or are under
+	 * control cannot be infested. If the number of propagules landing in a
+	 * cell is Poisson distributed and each establishes with probability equal
+	 * to the habitat suitability, the cell is infested with probability
+	 * 1-exp(-pressure*suitability). New Infestations disperse from the
+	 * centre of their cell.
+	 * 
+	 * @param species
+	 *            - the index of the species.
+	 * @param pressure
+	 *            - the expected number of propagules landing in each cell, in
+	 *            row-major order.
+	 */
+
+	public void infest(int species, double[] pressure) {
+		if (pressure.length != nrows * ncols) {
+			throw new IllegalArgumentException("Pressure array of length "
+					+ pressure.length + " does not match the mosaic ("
+					+ nrows + "x" + ncols + ")");
+		}
+		RandomStream random = RandomService.current().getStream(INFEST_STREAM);
+		for (int key = 0; key < pressure.length; key++) {
+			if (pressure[key] <= 0) {
+				continue;
+			}
+			Patch patch = getPatch(key);
+			if (patch.hasNoData() || patch.isInfestedBy(species)) {
+				continue;
+			}
+			if (patch.hasControl(ControlType.GROUND_CONTROL, species)
+					|| patch.hasControl(ControlType.CONTAINMENT)
+					|| patch.hasControl(ControlType.CONTAINMENT_CORE_CONTROL,
+							species)) {
+				continue;
+			}
+			double p = 1 - Math.exp(-pressure[key]
+					* patch.getHabitatSuitability(species));
+			if (random.raw() < p) {
+				int row = key / ncols;
+				int col = key - row * ncols;
 				patch.addInfestation(species);
-				Disperser d = dispersers.get(species);
-				d.setPosition(c);
-				patch.getInfestation(species).setDisperser(d);
+				assignDisperser(patch, species, new Coordinate(llx
+						+ (col + 0.5) * cellsize, lly + (nrows - row - 0.5)
+						* cellsize));
 				patch.getInfestation(species).setInfested(true);
 				patch.getInfestation(species).setAgeOfInfestation(0);
 			}
 		}
 	}
 
+	/**
+	 * Assigns a Disperser to a newly established Infestation.
+	 * 
+	 * @param patch
+	 *            - the newly infested Patch.
+	 * @param species
+	 *            - the index of the species of interest.
+	 * @param position
+	 *            - the location of the propagule that established the
+	 *            Infestation.
+	 */
+
+	protected void assignDisperser(Patch patch, int species,
+			Coordinate position) {
+		Disperser d = getDisperser(species);
+		d.setPosition(position);
+		patch.getInfestation(species).setDisperser(d);
+	}
+
+	/**
+	 * Removes the exterior cells of a region to a given depth, giving the same
+	 * result as nibbling the region depth times (see nibbleStrong), but in a
+	 * single pass. A breadth-first (city-block) distance transform is run
+	 * over the bounding box of the region from the cells outside it, and the
+	 * cells further than depth from the outside are kept. As for nibbling, cells whose neighbours are all
+	 * NoData are never removed, and the edge of the mosaic does not count as
+	 * outside the region.
+	 * 
+	 * @param region
+	 *            - the ids of the cells of the region.
+	 * @param depth
+	 *            - the depth to which exterior cells should be removed.
+	 * @return the ids of the remaining cells, in ascending order.
+	 */
+
+	public int[] erode(int[] region, int depth) {
+		if (depth <= 0 || region.length == 0) {
+			int[] copy = region.clone();
+			Arrays.sort(copy);
+			return copy;
+		}
+
+		// Work within the bounding box of the region, extended by a cell so
+		// that it includes the neighbouring cells outside the region.
+
+		int minrow = nrows;
+		int mincol = ncols;
+		int maxrow = -1;
+		int maxcol = -1;
+		for (int id : region) {
+			int row = id / ncols;
+			int column = id - row * ncols;
+			minrow = Math.min(minrow, row);
+			mincol = Math.min(mincol, column);
+			maxrow = Math.max(maxrow, row);
+			maxcol = Math.max(maxcol, column);
+		}
+		minrow = Math.max(minrow - 1, 0);
+		mincol = Math.max(mincol - 1, 0);
+		maxrow = Math.min(maxrow + 1, nrows - 1);
+		maxcol = Math.min(maxcol + 1, ncols - 1);
+		int width = maxcol - mincol + 1;
+		int[] offsets = STRONG_OFFSETS;
+
+		// Distances: 0 outside the region, and INSIDE until assigned.
+
+		final int INSIDE = Integer.MAX_VALUE;
+		int[] distance = new int[width * (maxrow - minrow + 1)];
+		for (int id : region) {
+			distance[(id / ncols - minrow) * width + id % ncols - mincol] = INSIDE;
+		}
+
+		// Seed with the cells on the exterior of the region.
+
+		int[] cells = new int[region.length];
+		int head = 0;
+		int tail = 0;
+		for (int id : region) {
+			int row = id / ncols;
+			int column = id - row * ncols;
+			boolean exterior = false;
+			boolean data = false;
+			for (int k = 0; k < offsets.length; k += 2) {
+				int r = row + offsets[k];
+				int c = column + offsets[k + 1];
+				if (r < 0 || r >= nrows || c < 0 || c >= ncols) {
+					continue;
+				}
+				data |= !getPatch(r * ncols + c).hasNoData();
+				exterior |= distance[(r - minrow) * width + c - mincol] == 0;
+			}
+			int local = (row - minrow) * width + column - mincol;
+			if (!data) {
+				distance[local] = -1;
+			} else if (exterior) {
+				distance[local] = 1;
+				cells[tail++] = local;
+			}
+		}
+
+		// Propagate the distances inward, stopping once they exceed the depth.
+
+		while (head < tail) {
+			int local = cells[head++];
+			int d = distance[local];
+			if (d >= depth) {
+				continue;
+			}
+			int row = local / width + minrow;
+			int column = local % width + mincol;
+			for (int k = 0; k < offsets.length; k += 2) {
+				int r = row + offsets[k];
+				int c = column + offsets[k + 1];
+				if (r < minrow || r > maxrow || c < mincol || c > maxcol) {
+					continue;
+				}
+				int next = (r - minrow) * width + c - mincol;
+				if (distance[next] == INSIDE) {
+					distance[next] = d + 1;
+					cells[tail++] = next;
+				}
+			}
+		}
+
+		// Keep the cells deeper than the depth (including those that are
+		// never removed).
+
+		int n = 0;
+		int[] core = new int[region.length];
+		for (int local = 0; local < distance.length; local++) {
+			int d = distance[local];
+			if (d == -1 || d > depth) {
+				core[n++] = (local / width + minrow) * ncols + local % width
+						+ mincol;
+			}
+		}
+		return Arrays.copyOf(core, n);
+	}
+
 	/**
 	 * Checks whether a String is a number
 	 * 
@@ -1364,42 +2320,41 @@ public class RasterMosaic implements Mosaic, Cloneable {
 		return str.length() == pos.getIndex();
 	}
 
+	/**
+	 * Eliminates strongly-connected exterior Patches from a region: those
+	 * with a neighbour outside the region, unless all of their neighbours
+	 * are NoData.
+	 * 
+	 * @param region
+	 *            - the region to be nibbled.
+	 * @return the Patches remaining after exterior Patches are removed.
+	 */
+
 	public Set<Patch> nibbleStrong(Collection<Patch> region) {
+		BitSet members = new BitSet();
+		for (Patch p : region) {
+			members.set(p.getID());
+		}
+		Neighbourhood neighbourhood = getNeighbourhood(false);
+		int[] adjacent = new int[neighbourhood.size()];
 		Set<Patch> output = new TreeSet<Patch>(region);
-		Iterator<Patch> it = region.iterator();
-		outer: while (it.hasNext()) {
-			Patch p = it.next();
-			Set<Patch> adjacent = getStrongAdjacent(p);
-			for (Patch inner : adjacent) {
-				if (inner.hasNoData()) {
-					continue;
-				}
-				if (!region.containsAll(adjacent)) {
-					output.remove(p);
-					continue outer;
-				}
+		for (Patch p : region) {
+			int n = neighbourhood.getNeighbours(p.getID(), adjacent);
+			boolean data = false;
+			boolean exterior = false;
+			for (int k = 0; k < n; k++) {
+				data |= !getPatch(adjacent[k]).hasNoData();
+				exterior |= !members.get(adjacent[k]);
+			}
+			if (data && exterior) {
+				output.remove(p);
 			}
 		}
 		return output;
 	}
 	
 	public Set<Patch> nibbleStrong(Collection<Patch> region, String species) {
-		Set<Patch> output = new TreeSet<Patch>(region);
-		Iterator<Patch> it = region.iterator();
-		outer: while (it.hasNext()) {
-			Patch p = it.next();
-			Set<Patch> adjacent = getStrongAdjacent(p);
-			for (Patch inner : adjacent) {
-				if (inner.hasNoData()) {
-					continue;
-				}
-				if (!region.containsAll(adjacent)) {
-					output.remove(p);
-					continue outer;
-				}
-			}
-		}
-		return output;
+		return nibbleStrong(region);
 	}
 	
 	/**
@@ -1417,26 +2372,7 @@ public class RasterMosaic implements Mosaic, Cloneable {
 	 */
 
 	public Set<Patch> nibbleStrong(Collection<Patch> region, int depth) {
-
-		if (depth <= 0) {
-			return new TreeSet<Patch>(region);
-		}
-		if (depth == 1) {
-			return nibbleStrong(region);
-		}
-
-		// Set<Patch> full = new TreeSet<Patch>(region);
-		Set<Patch> output = nibbleStrong(region);
-
-		for (int i = 1; i < depth; i++) {
-			if (output.isEmpty()) {
-				return output;
-			}
-
-			output = nibbleStrong(output);
-		}
-
-		return output;
+		return toPatches(erode(toIds(region), depth));
 	}
 
 
@@ -1456,26 +2392,7 @@ public class RasterMosaic implements Mosaic, Cloneable {
 
 	public Set<Patch> nibbleStrong(Collection<Patch> region, String species,
 			int depth) {
-
-		if (depth <= 0) {
-			return new TreeSet<Patch>(region);
-		}
-		if (depth == 1) {
-			return nibbleStrong(region, species);
-		}
-
-		// Set<Patch> full = new TreeSet<Patch>(region);
-		Set<Patch> output = nibbleStrong(region, species);
-
-		for (int i = 1; i < depth; i++) {
-			if (output.isEmpty()) {
-				return output;
-			}
-
-			output = nibbleStrong(output, species);
-		}
-
-		return output;
+		return toPatches(erode(toIds(region), depth));
 	}
 
 	/**
@@ -1494,18 +2411,16 @@ public class RasterMosaic implements Mosaic, Cloneable {
 
 	public Set<Patch> nibbleStrong(Set<Patch> region, Set<Patch> edgeCells,
 			String species) {
+		Neighbourhood neighbourhood = getNeighbourhood(false);
+		int[] adjacent = new int[neighbourhood.size()];
 		Set<Patch> output = new TreeSet<Patch>(region);
-		Iterator<Patch> it = region.iterator();
-		outer: while (it.hasNext()) {
-			Patch p = it.next();
-			Set<Patch> adjacent = getStrongAdjacent(p);
-			for (Patch inner : adjacent) {
-				if (inner.hasNoData()) {
-					continue;
-				}
-				if (edgeCells.contains(inner)) {
+		for (Patch p : region) {
+			int n = neighbourhood.getNeighbours(p.getID(), adjacent);
+			for (int k = 0; k < n; k++) {
+				Patch inner = getPatch(adjacent[k]);
+				if (!inner.hasNoData() && edgeCells.contains(inner)) {
 					output.remove(p);
-					continue outer;
+					break;
 				}
 			}
 		}
@@ -1524,19 +2439,18 @@ public class RasterMosaic implements Mosaic, Cloneable {
 	 */
 
 	public Set<Patch> nibbleWeak(Collection<Patch> region, String species) {
+		int s = registry.indexOf(species);
+		Neighbourhood neighbourhood = getNeighbourhood(true);
+		int[] adjacent = new int[neighbourhood.size()];
 		Set<Patch> output = new TreeSet<Patch>(region);
-		Iterator<Patch> it = region.iterator();
-		outer: while (it.hasNext()) {
-			Patch p = it.next();
-			Set<Patch> adjacent = getWeakAdjacent(p);
-			for (Patch inner : adjacent) {
-				if (inner.hasNoData()) {
-					continue;
-				}
-				if (p.getInfestation(species).isInfested() != inner
-						.getInfestation(species).isInfested()) {
+		for (Patch p : region) {
+			boolean infested = p.isInfestedBy(s);
+			int n = neighbourhood.getNeighbours(p.getID(), adjacent);
+			for (int k = 0; k < n; k++) {
+				Patch inner = getPatch(adjacent[k]);
+				if (!inner.hasNoData() && inner.isInfestedBy(s) != infested) {
 					output.remove(p);
-					continue outer;
+					break;
 				}
 			}
 		}
@@ -1552,19 +2466,17 @@ public class RasterMosaic implements Mosaic, Cloneable {
 	 * @param species
 	 *            - the species of interest.
 	 * @return the Patches remaining after exterior Patches are removed to the
-	 *         specified depth.
+	 *         specified depth. Exterior cells are those with a neighbour of a
+	 *         different infestation state, which does not depend on the
+	 *         region, so any depth of at least one gives a single nibble.
 	 */
 
 	public Set<Patch> nibbleWeak(Collection<Patch> region, String species,
 			int depth) {
-		Set<Patch> output = new TreeSet<Patch>(region);
-		for (int i = 0; i < depth; i++) {
-			if (output.isEmpty()) {
-				return output;
-			}
-			output = nibbleWeak(output, species);
+		if (depth <= 0) {
+			return new TreeSet<Patch>(region);
 		}
-		return output;
+		return nibbleWeak(region, species);
 	}
 
 	/**
@@ -1604,35 +2516,11 @@ public class RasterMosaic implements Mosaic, Cloneable {
 	 */
 
 	public Set<Patch> searchInfestation(Patch p, String species) {
-		Set<Patch> s = new TreeSet<Patch>();
-
 		if (p.hasNoData()) {
 			return null;
 		}
-
-		if (!p.isInfestedBy(species)) {
-			return s;
-		}
-		s.add(p);
-		p.setVisited(true);
-
-		PriorityQueue<Patch> pq = new PriorityQueue<Patch>();
-		Set<Patch> clearSet = new HashSet<Patch>();
-
-		pq.addAll(getWeakAdjacent(p));
-
-		while (!pq.isEmpty()) {
-			Patch pc = pq.poll();
-			clearSet.add(pc);
-			if (!pc.isVisited() && !pc.hasNoData() && pc.isInfestedBy(species)) {
-				s.add(pc);
-				pq.addAll(getWeakAdjacent(pc));
-			}
-			pc.setVisited(true);
-		}
-
-		clearVisitedPatches(clearSet);
-		return s;
+		return toPatches(searchInfestationIds(p.getID(),
+				registry.indexOf(species)));
 	}
 
 	/**
@@ -1661,9 +2549,9 @@ public class RasterMosaic implements Mosaic, Cloneable {
 
 		if (isNumeric(ageMapPath)) {
 			long num = (long) Double.parseDouble(ageMapPath);
-			for (Integer key : patches.keySet()) {
-				if (patches.get(key).getInfestation(species).isInfested()) {
-					patches.get(key).getInfestation(species)
+			for (int key = 0; key < getNumberPatches(); key++) {
+				if (getPatch(key).getInfestation(species).isInfested()) {
+					getPatch(key).getInfestation(species)
 							.setAgeOfInfestation(num);
 				}
 			}
@@ -1673,7 +2561,7 @@ public class RasterMosaic implements Mosaic, Cloneable {
 
 		// If the cell list is empty, use the raster as a template
 
-		if (patches.isEmpty()) {
+		if (getNumberPatches() == 0) {
 			setup(tmpAgeMap);
 		}
 
@@ -1691,7 +2579,7 @@ public class RasterMosaic implements Mosaic, Cloneable {
 
 		for (int i = 0; i < nrows; i++) {
 			for (int j = 0; j < ncols; j++) {
-				Patch p = patches.get(i * ncols + j);
+				Patch p = getPatch(i * ncols + j);
 
 				if (Double.isNaN(ageMap.getValue(i, j))
 						|| (habitatMap != null && Double.isNaN(habitatMap
@@ -1746,33 +2634,42 @@ public class RasterMosaic implements Mosaic, Cloneable {
 	}
 
 	/**
-	 * Sets a copy of the provided Disperser to all patches in the RasterMosaic.
+	 * Sets a copy of the provided Disperser to all infested patches in the
+	 * RasterMosaic, and registers it as the template for new Infestations.
 	 * We make multiple clones otherwise source positioning would have to be
-	 * handled at the level of the Patch.
+	 * handled at the level of the Patch. Only the infested Patches hold
+	 * Dispersers, so the others are not visited (and the tiles of a clone
+	 * holding only uninfested Patches stay shared).
 	 * 
 	 * @param d
 	 *            - the Disperser object to be used.
 	 */
 
 	@Override
-	public void setDisperser(String species, Disperser d) {
+	public void setDisperser(final String species, final Disperser d) {
 
-		dispersers.put(species, d);
+		addDisperser(species, d);
 
-		for (Integer key : patches.keySet()) {
+		forEachInfested(registry.indexOf(species), new IntProcedure() {
 
-			// We clone because Dispersers must be individual copies because
-			// each has a unique position. As specified elsewhere, Dispersers
-			// must have a unique position since cells could potentially contain
-			// many Dispersers at different positions within the cell.
+			@Override
+			public boolean apply(int key) {
 
-			Disperser dc = d.clone();
+				// We clone because Dispersers must be individual copies
+				// because each has a unique position. As specified elsewhere,
+				// Dispersers must have a unique position since cells could
+				// potentially contain many Dispersers at different positions
+				// within the cell.
 
-			// Calculate the centroid of the cell. Since the cells are raster
-			// cells, this information can be built from their key.
+				Disperser dc = d.clone();
 
-			setDisperser(species, dc, key);
-		}
+				// Calculate the centroid of the cell. Since the cells are
+				// raster cells, this information can be built from their key.
+
+				setDisperser(species, dc, key);
+				return true;
+			}
+		});
 	}
 
 	/**
@@ -1790,7 +2687,7 @@ public class RasterMosaic implements Mosaic, Cloneable {
 	@Override
 	public void setDisperser(String species, Disperser d, Integer key) {
 
-		if (patches.get(key).hasNoData()) {
+		if (getPatch(key).hasNoData()) {
 			return;
 		}
 
@@ -1800,8 +2697,8 @@ public class RasterMosaic implements Mosaic, Cloneable {
 		double x = cellsize * (key % ncols) + llx + (cellsize / 2);
 		d.setPosition(new Coordinate(x, y));
 
-		if (patches.get(key).isInfestedBy(species)) {
-			patches.get(key).getInfestation(species).setDisperser(d);
+		if (getPatch(key).isInfestedBy(species)) {
+			getPatch(key).getInfestation(species).setDisperser(d);
 		}
 	}
 
@@ -1816,8 +2713,8 @@ public class RasterMosaic implements Mosaic, Cloneable {
 		// Convenience option for setting the value of all locations as true
 
 		if (habitatMapPath.equalsIgnoreCase("ALL")) {
-			for (Integer key : patches.keySet()) {
-				patches.get(key).setHabitatSuitability(species, 1d);
+			for (int key = 0; key < getNumberPatches(); key++) {
+				getPatch(key).setHabitatSuitability(species, 1d);
 			}
 			return;
 		}
@@ -1825,8 +2722,8 @@ public class RasterMosaic implements Mosaic, Cloneable {
 		// Convenience option for setting the value of all locations as false
 
 		if (habitatMapPath.equalsIgnoreCase("NONE")) {
-			for (Integer key : patches.keySet()) {
-				patches.get(key).setHabitatSuitability(species, 0d);
+			for (int key = 0; key < getNumberPatches(); key++) {
+				getPatch(key).setHabitatSuitability(species, 0d);
 			}
 			return;
 		}
@@ -1835,7 +2732,7 @@ public class RasterMosaic implements Mosaic, Cloneable {
 
 		// If the cell list is empty, use the raster as a template
 
-		if (patches.isEmpty()) {
+		if (getNumberPatches() == 0) {
 			setup(tmpHabitatMap);
 		}
 
@@ -1853,7 +2750,7 @@ public class RasterMosaic implements Mosaic, Cloneable {
 
 		for (int i = 0; i < nrows; i++) {
 			for (int j = 0; j < ncols; j++) {
-				Patch p = patches.get(i * ncols + j);
+				Patch p = getPatch(i * ncols + j);
 				if (Double.isNaN(habitatMap.getValue(i, j))
 						|| Double.isNaN(ageMap.getValue(i, j))
 						|| Double.isNaN(presenceMap.getValue(i, j))) {
@@ -1903,67 +2800,67 @@ public class RasterMosaic implements Mosaic, Cloneable {
 		// Convenience option for setting the value of all locations as true
 
 		if (managementMapPath.equalsIgnoreCase("ALL")) {
-			for (Integer key : patches.keySet()) {
-				if (patches.get(key).hasNoData()) {
+			for (int key = 0; key < getNumberPatches(); key++) {
+				if (getPatch(key).hasNoData()) {
 					continue;
 				}
-				patches.get(key).getInfestation(species)
+				getPatch(key).getInfestation(species)
 						.addControl(ControlType.GROUND_CONTROL);
-				patches.get(key).getInfestation(species)
+				getPatch(key).getInfestation(species)
 						.addControl(ControlType.CONTAINMENT);
-				patches.get(key).getInfestation(species)
+				getPatch(key).getInfestation(species)
 						.addControl(ControlType.CONTAINMENT_CORE);
-				patches.get(key).setMonitored(true);
-				patches.get(key).getInfestation(species).freezeManagement(true);
+				getPatch(key).setMonitored(true);
+				getPatch(key).getInfestation(species).freezeManagement(true);
 			}
 			return;
 		}
 
 		if (managementMapPath.equalsIgnoreCase("GROUND")) {
-			for (Integer key : patches.keySet()) {
-				if (patches.get(key).hasNoData()) {
+			for (int key = 0; key < getNumberPatches(); key++) {
+				if (getPatch(key).hasNoData()) {
 					continue;
 				}
-				patches.get(key).getInfestation(species)
+				getPatch(key).getInfestation(species)
 						.addControl(ControlType.GROUND_CONTROL);
-				patches.get(key).setMonitored(true);
-				patches.get(key).getInfestation(species).freezeManagement(true);
+				getPatch(key).setMonitored(true);
+				getPatch(key).getInfestation(species).freezeManagement(true);
 			}
 			return;
 		}
 
 		if (managementMapPath.equalsIgnoreCase("CONTAINMENT")) {
-			for (Integer key : patches.keySet()) {
-				if (patches.get(key).hasNoData()) {
+			for (int key = 0; key < getNumberPatches(); key++) {
+				if (getPatch(key).hasNoData()) {
 					continue;
 				}
-				patches.get(key).getInfestation(species)
+				getPatch(key).getInfestation(species)
 						.addControl(ControlType.CONTAINMENT);
-				patches.get(key).setMonitored(true);
+				getPatch(key).setMonitored(true);
 			}
 			return;
 		}
 
 		if (managementMapPath.equalsIgnoreCase("CORE")) {
-			for (Integer key : patches.keySet()) {
-				if (patches.get(key).hasNoData()) {
+			for (int key = 0; key < getNumberPatches(); key++) {
+				if (getPatch(key).hasNoData()) {
 					continue;
 				}
-				patches.get(key).getInfestation(species)
+				getPatch(key).getInfestation(species)
 						.addControl(ControlType.CONTAINMENT_CORE);
-				patches.get(key).setMonitored(true);
+				getPatch(key).setMonitored(true);
 			}
 			return;
 		}
 		// Convenience option for setting the value of all locations as false
 
 		if (managementMapPath.equalsIgnoreCase("NONE")) {
-			for (Integer key : patches.keySet()) {
-				if (patches.get(key).hasNoData()) {
+			for (int key = 0; key < getNumberPatches(); key++) {
+				if (getPatch(key).hasNoData()) {
 					continue;
 				}
-				if (patches.get(key).isInfestedBy(species)) {
-					patches.get(key).getInfestation(species).clearControls();
+				if (getPatch(key).isInfestedBy(species)) {
+					getPatch(key).getInfestation(species).clearControls();
 				}
 			}
 			return;
@@ -1973,7 +2870,7 @@ public class RasterMosaic implements Mosaic, Cloneable {
 
 		// If the cell list is empty, use the raster as a template
 
-		if (patches.isEmpty()) {
+		if (getNumberPatches() == 0) {
 			setup(tmpManagementMap);
 		}
 
@@ -1993,7 +2890,7 @@ public class RasterMosaic implements Mosaic, Cloneable {
 
 		for (int i = 0; i < nrows; i++) {
 			for (int j = 0; j < ncols; j++) {
-				Patch p = patches.get(i * ncols + j);
+				Patch p = getPatch(i * ncols + j);
 
 				double val = managementMap.getValue(i, j);
 
@@ -2094,11 +2991,11 @@ public class RasterMosaic implements Mosaic, Cloneable {
 		// Convenience option for setting the value of all locations as true
 
 		if (presenceMapPath.equalsIgnoreCase("ALL")) {
-			for (Integer key : patches.keySet()) {
-				if (patches.get(key).hasNoData()) {
+			for (int key = 0; key < getNumberPatches(); key++) {
+				if (getPatch(key).hasNoData()) {
 					continue;
 				}
-				patches.get(key).getInfestation(species).setInfested(true);
+				getPatch(key).getInfestation(species).setInfested(true);
 			}
 			return;
 		}
@@ -2106,11 +3003,11 @@ public class RasterMosaic implements Mosaic, Cloneable {
 		// Convenience option for setting the value of all locations as false
 
 		if (presenceMapPath.equalsIgnoreCase("NONE")) {
-			for (Integer key : patches.keySet()) {
-				if (patches.get(key).hasNoData()) {
+			for (int key = 0; key < getNumberPatches(); key++) {
+				if (getPatch(key).hasNoData()) {
 					continue;
 				}
-				patches.get(key).clearInfestation(species);
+				getPatch(key).clearInfestation(species);
 			}
 			return;
 		}
@@ -2119,7 +3016,7 @@ public class RasterMosaic implements Mosaic, Cloneable {
 
 		// If the cell list is empty, use the raster as a template
 
-		if (patches.isEmpty()) {
+		if (getNumberPatches() == 0) {
 			setup(tmpPresenceMap);
 		}
 
@@ -2138,7 +3035,7 @@ public class RasterMosaic implements Mosaic, Cloneable {
 
 		for (int i = 0; i < nrows; i++) {
 			for (int j = 0; j < ncols; j++) {
-				Patch p = patches.get(i * ncols + j);
+				Patch p = getPatch(i * ncols + j);
 
 				// Handle NoData elements
 
@@ -2166,6 +3063,9 @@ public class RasterMosaic implements Mosaic, Cloneable {
 	@Override
 	public void setSpeciesList(List<String> speciesList) {
 		this.speciesList = speciesList;
+		for (String species : speciesList) {
+			registry.register(species);
+		}
 	}
 
 	/**
@@ -2244,7 +3144,266 @@ public class RasterMosaic implements Mosaic, Cloneable {
 
 	@Override
 	public void shutdown() {
-		patches = null;
+		clearPatches();
+		clearActive();
+	}
+
+	/**
+	 * Updates the active sets for a Patch whose state has changed.
+	 * 
+	 * @param patch
+	 *            - the Patch that has changed.
+	 * @param species
+	 *            - the index of the species whose Infestation has changed,
+	 *            or -1 to update the patch-level controls and all species.
+	 */
+
+	protected void updateActive(Patch patch, int species) {
+		int id = patch.getID();
+		if (species >= 0) {
+			updateActive(patch, id, species);
+			return;
+		}
+		for (ControlType control : ControlType.values()) {
+			updateControlled(-1, control, id, patch.hasControl(control));
+		}
+		for (int s = 0; s < registry.size(); s++) {
+			updateActive(patch, id, s);
+		}
+		updateMonitored(id, patch.isMonitored());
+		updateNoData(id, patch.hasNoData());
+	}
+
+	private void updateActive(Patch patch, int id, int species) {
+		updateRecorded(species, id, patch.wasInfestedBy(species));
+		updateInfested(species, id, patch.isInfestedBy(species));
+		for (ControlType control : ControlType.values()) {
+			updateControlled(species, control, id,
+					patch.hasControl(control, species));
+		}
+	}
+
+	/**
+	 * Records whether a Patch is subject to a given control.
+	 * 
+	 * @param species
+	 *            - the index of the species subject to the control, or -1 for
+	 *            a patch-level control.
+	 * @param control
+	 *            - the control.
+	 * @param id
+	 *            - the ID of the Patch.
+	 * @param isControlled
+	 *            - whether the Patch is subject to the control.
+	 */
+
+	protected void updateControlled(int species, ControlType control,
+			int id, boolean isControlled) {
+		BitSet[] sets = controlled;
+		if (species >= 0) {
+			if (species >= speciesControlled.length) {
+				if (!isControlled) {
+					return;
+				}
+				speciesControlled = Arrays.copyOf(speciesControlled,
+						species + 1);
+			}
+			sets = speciesControlled[species];
+			if (sets == null) {
+				if (!isControlled) {
+					return;
+				}
+				sets = newControlSets();
+				speciesControlled[species] = sets;
+			}
+		}
+		BitSet set = sets[control.ordinal()];
+		if (set.get(id) == isControlled) {
+			return;
+		}
+		set.set(id, isControlled);
+		int c = control.ordinal();
+		int d = isControlled ? 1 : -1;
+		if (species < 0) {
+			controlledCounts[c] += d;
+			for (int s = 0; s < infested.length; s++) {
+				if (infested[s] != null && infested[s].get(id)
+						&& !hasSpeciesControl(s, c, id)) {
+					ensureCounts(s);
+					speciesControlCounts[s][c] += d;
+				}
+			}
+			return;
+		}
+		ensureCounts(species);
+		if (!controlled[c].get(id) || !infested(species, id)) {
+			speciesControlCounts[species][c] += d;
+		}
+		for (BitSet other : sets) {
+			if (other != set && other.get(id)) {
+				return;
+			}
+		}
+		speciesControlledCounts[species] += d;
+	}
+
+	/**
+	 * Records whether a Patch is infested by a given species.
+	 * 
+	 * @param species
+	 *            - the index of the species of interest.
+	 * @param id
+	 *            - the ID of the Patch.
+	 * @param isInfested
+	 *            - whether the Patch is infested by the species.
+	 */
+
+	protected void updateInfested(int species, int id, boolean isInfested) {
+		if (species >= infested.length) {
+			if (!isInfested) {
+				return;
+			}
+			infested = Arrays.copyOf(infested, species + 1);
+		}
+		BitSet set = infested[species];
+		if (set == null) {
+			if (!isInfested) {
+				return;
+			}
+			set = new BitSet();
+			infested[species] = set;
+		}
+		if (set.get(id) == isInfested) {
+			return;
+		}
+		set.set(id, isInfested);
+		int d = isInfested ? 1 : -1;
+		boolean undetected = !monitored.get(id);
+		ensureCounts(species);
+		infestedCounts[species] += d;
+		for (int c = 0; c < controlled.length; c++) {
+			if (controlled[c].get(id) && !hasSpeciesControl(species, c, id)) {
+				speciesControlCounts[species][c] += d;
+			}
+		}
+		if (nodata.get(id)) {
+			noDataInfestedCounts[species] += d;
+		}
+		if (undetected) {
+			undetectedCounts[species] += d;
+		}
+		if (!isInfestedByOther(id, species)) {
+			infestedPatches += d;
+			if (undetected) {
+				undetectedPatches += d;
+			}
+		}
+		for (int t = 0; t < trackers.length; t++) {
+			if (Arrays.binarySearch(trackedSpecies[t], species) >= 0) {
+				trackers[t].update(id);
+			}
+		}
+	}
+
+	/**
+	 * Records whether a Patch holds an Infestation record for a given
+	 * species.
+	 * 
+	 * @param species
+	 *            - the index of the species of interest.
+	 * @param id
+	 *            - the ID of the Patch.
+	 * @param isRecorded
+	 *            - whether the Patch holds an Infestation of the species.
+	 */
+
+	protected void updateRecorded(int species, int id, boolean isRecorded) {
+		if (species >= recorded.length) {
+			if (!isRecorded) {
+				return;
+			}
+			recorded = Arrays.copyOf(recorded, species + 1);
+		}
+		if (recorded[species] == null) {
+			if (!isRecorded) {
+				return;
+			}
+			recorded[species] = new BitSet();
+		}
+		recorded[species].set(id, isRecorded);
+	}
+
+	/**
+	 * Records whether a Patch is being monitored.
+	 * 
+	 * @param id
+	 *            - the ID of the Patch.
+	 * @param isMonitored
+	 *            - whether the Patch is monitored.
+	 */
+
+	protected void updateMonitored(int id, boolean isMonitored) {
+		if (monitored.get(id) == isMonitored) {
+			return;
+		}
+		monitored.set(id, isMonitored);
+		monitoredCount += isMonitored ? 1 : -1;
+		int d = isMonitored ? -1 : 1;
+		if (isInfestedByOther(id, -1)) {
+			undetectedPatches += d;
+			for (int s = 0; s < infested.length; s++) {
+				if (infested[s] != null && infested[s].get(id)) {
+					undetectedCounts[s] += d;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Records whether a Patch has NoData.
+	 * 
+	 * @param id
+	 *            - the ID of the Patch.
+	 * @param hasNoData
+	 *            - whether the Patch has NoData.
+	 */
+
+	protected void updateNoData(int id, boolean hasNoData) {
+		if (nodata.get(id) == hasNoData) {
+			return;
+		}
+		nodata.set(id, hasNoData);
+		noDataCount += hasNoData ? 1 : -1;
+		for (int s = 0; s < infested.length; s++) {
+			if (infested[s] != null && infested[s].get(id)) {
+				noDataInfestedCounts[s] += hasNoData ? 1 : -1;
+			}
+		}
+
+		// Tracked regions exclude NoData cells, so those of the species
+		// infesting the cell change with it.
+
+		for (int t = 0; t < trackers.length; t++) {
+			for (int s : trackedSpecies[t]) {
+				if (infested(s, id)) {
+					trackers[t].update(id);
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sets whether the counts of the active sets are compared with a full
+	 * scan of the mosaic each time they are queried (for debugging). A
+	 * mismatch throws an IllegalStateException.
+	 * 
+	 * @param checkCounts
+	 *            - whether to check the counts.
+	 */
+
+	public void setCheckCounts(boolean checkCounts) {
+		this.checkCounts = checkCounts;
 	}
 
 	/**
@@ -2253,14 +3412,14 @@ public class RasterMosaic implements Mosaic, Cloneable {
 
 	public void updateSpeciesList() {
 		Set<String> speciesList = new TreeSet<String>();
-		for (int key : patches.keySet()) {
-			speciesList.addAll(patches.get(key).getInfestation().keySet());
+		for (int key = 0; key < getNumberPatches(); key++) {
+			speciesList.addAll(getPatch(key).getInfestation().keySet());
 		}
 	}
 	
 	public void updateInfestationStages(Map<String, long[]> thresholds) {
 		for (String species:thresholds.keySet()) {
-			for(Patch p:patches.values()){
+			for(Patch p:getPatches().values()){
 				if(p.isInfestedBy(species)&&p.getInfestation(species).getAgeOfInfestation()>0){
 					int stage = Arrays.binarySearch(thresholds.get(species), p.getInfestation(species).getAgeOfInfestation());
 					stage = stage<0?-(stage+1)+1:stage+1;
@@ -2270,4 +3429,102 @@ public class RasterMosaic implements Mosaic, Cloneable {
 		}
 	}
 
-}
\ No newline at end of file
+	private static void check(int count, int scanned, String name) {
+		if (count != scanned) {
+			throw new IllegalStateException("Count of " + name + " (" + count
+					+ ") does not match scan (" + scanned + ").");
+		}
+	}
+
+	private static int count(int[] counts, int species) {
+		return species >= 0 && species < counts.length ? counts[species] : 0;
+	}
+
+	private void ensureCounts(int species) {
+		if (species >= infestedCounts.length) {
+			infestedCounts = Arrays.copyOf(infestedCounts, species + 1);
+			noDataInfestedCounts = Arrays.copyOf(noDataInfestedCounts,
+					species + 1);
+			undetectedCounts = Arrays.copyOf(undetectedCounts, species + 1);
+			speciesControlledCounts = Arrays.copyOf(speciesControlledCounts,
+					species + 1);
+		}
+		if (species >= speciesControlCounts.length) {
+			int n = speciesControlCounts.length;
+			speciesControlCounts = Arrays.copyOf(speciesControlCounts,
+					species + 1);
+			for (int s = n; s <= species; s++) {
+				speciesControlCounts[s] = new int[ControlType.values().length];
+			}
+		}
+	}
+
+	/**
+	 * @return whether a Patch is subject to a control for a species.
+	 */
+
+	private boolean hasSpeciesControl(int species, int control, int id) {
+		return species < speciesControlled.length
+				&& speciesControlled[species] != null
+				&& speciesControlled[species][control].get(id);
+	}
+
+	/**
+	 * @return whether a Patch is infested by a species.
+	 */
+
+	private boolean infested(int species, int id) {
+		return species >= 0 && species < infested.length && infested[species] != null
+				&& infested[species].get(id);
+	}
+
+	/**
+	 * @return whether a Patch is infested by any species other than the one
+	 *         given (or by any species, if -1).
+	 */
+
+	private boolean isInfestedByOther(int id, int species) {
+		for (int s = 0; s < infested.length; s++) {
+			if (s != species && infested[s] != null && infested[s].get(id)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static BitSet[] copy(BitSet[] sets) {
+		BitSet[] copy = new BitSet[sets.length];
+		for (int i = 0; i < sets.length; i++) {
+			copy[i] = sets[i] == null ? null : (BitSet) sets[i].clone();
+		}
+		return copy;
+	}
+
+	private static BitSet[] newControlSets() {
+		BitSet[] sets = new BitSet[ControlType.values().length];
+		for (int i = 0; i < sets.length; i++) {
+			sets[i] = new BitSet();
+		}
+		return sets;
+	}
+
+	/**
+	 * @return the lowest ID at or after the given index that is set in any of
+	 *         the sets, or -1 if there is none.
+	 */
+
+	private static int nextSetBit(BitSet[] sets, int from) {
+		int next = -1;
+		for (BitSet set : sets) {
+			if (set == null) {
+				continue;
+			}
+			int i = set.nextSetBit(from);
+			if (i >= 0 && (next < 0 || i < next)) {
+				next = i;
+			}
+		}
+		return next;
+	}
+
+}
\ No newline at end of file
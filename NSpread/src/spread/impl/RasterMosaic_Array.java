@@ -0,0 +1,760 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package spread.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import spread.Disperser;
+import spread.Infestation;
+import spread.Patch;
+
+import spread.util.ControlType;
+import spread.util.Layer;
+import spread.util.Layer_Array;
+import spread.util.Layer_Mapped;
+import spread.util.PropaguleBuffer;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * A RasterMosaic that keeps its cell state in flat primitive layers indexed by
+ * cell id rather than in one Patch object per cell. Patch-level state is held
+ * in a flag layer (NoData, monitored, visited) and a control bitmask layer.
+ * Each species has its own set of layers: flags (infested, frozen etc.), a
+ * control bitmask, the stage and maximum stage, the age and cumulative age
+ * and the habitat suitability (stored as float bits, so suitabilities are
+ * held to single precision).
+ *
+ * Patch and Infestation objects handed out by this class are lightweight
+ * views that are created on demand and read and write through to the layers,
+ * so the existing Processes and writers can operate on it unchanged. Views
+ * are not cached: two calls to getPatch(int) for the same id return distinct
+ * (but equal) objects.
+ *
+ * Dispersers are not stored per cell. An infestation disperses using the
+ * template Disperser of its species (see setDisperser(String, Disperser))
+ * positioned at the centroid of its cell, unless a Disperser has been
+ * explicitly assigned to the cell with setDisperser(String, Disperser,
+ * Integer). Propagules are held sparsely for the cells that have dispersed.
+ * Ages are held as ints.
+ */
+
+public class RasterMosaic_Array extends RasterMosaic {
+
+	// Patch-level flags
+
+	static final int NODATA = 1;
+	static final int MONITORED = 2;
+	static final int WAS_MONITORED = 4;
+	static final int VISITED = 8;
+
+	// Species-level flags. PRESENT indicates that an Infestation record
+	// exists for the species (i.e. Patch.wasInfestedBy).
+
+	static final int PRESENT = 1;
+	static final int INFESTED = 2;
+	static final int WAS_INFESTED = 4;
+	static final int INFESTATION_VISITED = 8;
+	static final int FROZEN = 16;
+	static final int WAS_CONTROLLED = 32;
+	static final int INFESTATION_NODATA = 64;
+
+	// The species control layer holds the current controls in the lower five
+	// bits (one bit per ControlType ordinal) and the maximum control ever
+	// applied in the upper three bits.
+
+	static final int CONTROL_MASK = 0x1F;
+	static final int MAX_CONTROL_SHIFT = 5;
+
+	private Layer cellFlags;
+	private Layer cellControls;
+	private Layer[] flags = new Layer[0];
+	private Layer[] controls = new Layer[0];
+	private Layer[] stages = new Layer[0];
+	private Layer[] maxStages = new Layer[0];
+	private Layer[] ages = new Layer[0];
+	private Layer[] cumulativeAges = new Layer[0];
+	private Layer[] suitabilities = new Layer[0];
+	private Layer[][] controlTimes = new Layer[0][];
+	private List<Map<Integer, Disperser>> cellDispersers = new ArrayList<Map<Integer, Disperser>>();
+	private List<Map<Integer, PropaguleBuffer>> propagules = new ArrayList<Map<Integer, PropaguleBuffer>>();
+	private Map<Integer, Geometry> geometries = new TreeMap<Integer, Geometry>();
+
+	/**
+	 * Adds a species to the list of species
+	 */
+
+	@Override
+	public void addSpecies(String species) {
+		super.addSpecies(species);
+		register(species);
+	}
+
+	/**
+	 * Allocates the cell layers based on the dimensions of the mosaic.
+	 */
+
+	@Override
+	protected void buildPatches() {
+		int n = size();
+		cellFlags = createLayer(n, 1);
+		cellControls = createLayer(n, 1);
+		for (int s = 0; s < flags.length; s++) {
+			allocateSpecies(s);
+		}
+		clearActive();
+	}
+
+	/**
+	 * Clears the cell information and dimensions from the instance.
+	 */
+
+	@Override
+	public void clear() {
+		super.clear();
+		releaseLayers();
+	}
+
+	/**
+	 * Estimates the heap used by the cell layers of a clone (memory-mapped
+	 * layers are held off the heap) and the propagules of the infested
+	 * cells.
+	 */
+
+	@Override
+	protected long estimateCellFootprint() {
+		long footprint = 0;
+		for (Layer layer : getLayers()) {
+			if (!(layer instanceof Layer_Mapped)) {
+				footprint += (long) layer.size() * layer.getWidth();
+			}
+		}
+		return footprint + (long) getNumberInfestedPatches()
+				* getSpeciesRegistry().size() * INFESTATION_BYTES;
+	}
+
+	/**
+	 * Generates a copy of the class instance.
+	 */
+
+	@Override
+	public RasterMosaic_Array clone() {
+		RasterMosaic_Array rm = newInstance();
+		copySettings(rm);
+		copyLayers(rm);
+		return rm;
+	}
+
+	/**
+	 * Copies the cell layers of this instance into another instance.
+	 *
+	 * @param rm
+	 *            - the instance receiving the copies.
+	 */
+
+	protected void copyLayers(RasterMosaic_Array rm) {
+		rm.cellFlags = copy(cellFlags);
+		rm.cellControls = copy(cellControls);
+		rm.flags = copy(flags);
+		rm.controls = copy(controls);
+		rm.stages = copy(stages);
+		rm.maxStages = copy(maxStages);
+		rm.ages = copy(ages);
+		rm.cumulativeAges = copy(cumulativeAges);
+		rm.suitabilities = copy(suitabilities);
+		rm.controlTimes = new Layer[controlTimes.length][];
+		for (int s = 0; s < controlTimes.length; s++) {
+			rm.controlTimes[s] = copy(controlTimes[s]);
+		}
+
+		rm.cellDispersers = new ArrayList<Map<Integer, Disperser>>();
+		rm.propagules = new ArrayList<Map<Integer, PropaguleBuffer>>();
+		for (int s = 0; s < flags.length; s++) {
+			Map<Integer, Disperser> cdisp = new TreeMap<Integer, Disperser>();
+			for (Integer key : cellDispersers.get(s).keySet()) {
+				cdisp.put(key, cellDispersers.get(s).get(key).clone());
+			}
+			rm.cellDispersers.add(cdisp);
+			Map<Integer, PropaguleBuffer> cprop = new TreeMap<Integer, PropaguleBuffer>();
+			for (Integer key : propagules.get(s).keySet()) {
+				cprop.put(key, new PropaguleBuffer(propagules.get(s).get(key)));
+			}
+			rm.propagules.add(cprop);
+		}
+		rm.geometries = new TreeMap<Integer, Geometry>(geometries);
+	}
+
+	/**
+	 * Creates a new Layer. Subclasses may override this to change where the
+	 * cell state is stored.
+	 *
+	 * @param size
+	 *            - the number of elements in the layer.
+	 * @param width
+	 *            - the element width in bytes (1 or 4).
+	 * @return a new, zero-filled Layer.
+	 */
+
+	protected Layer createLayer(int size, int width) {
+		return new Layer_Array(size, width);
+	}
+
+	/**
+	 * @return all of the cell layers currently allocated.
+	 */
+
+	protected List<Layer> getLayers() {
+		List<Layer> layers = new ArrayList<Layer>();
+		if (cellFlags != null) {
+			layers.add(cellFlags);
+			layers.add(cellControls);
+		}
+		for (Layer[] group : new Layer[][] { flags, controls, stages,
+				maxStages, ages, cumulativeAges, suitabilities }) {
+			for (Layer layer : group) {
+				if (layer != null) {
+					layers.add(layer);
+				}
+			}
+		}
+		for (Layer[] times : controlTimes) {
+			for (Layer layer : times) {
+				if (layer != null) {
+					layers.add(layer);
+				}
+			}
+		}
+		return layers;
+	}
+
+	/**
+	 * Creates a new, empty instance of this class. Used by clone().
+	 */
+
+	protected RasterMosaic_Array newInstance() {
+		return new RasterMosaic_Array();
+	}
+
+	/**
+	 * Does nothing: Dispersers of new infestations are resolved from the
+	 * species template when the infestation disperses.
+	 */
+
+	@Override
+	protected void assignDisperser(Patch patch, int species,
+			Coordinate position) {
+	}
+
+	/**
+	 * Returns the total number of cells
+	 */
+
+	@Override
+	public int getNumberPatches() {
+		return size();
+	}
+
+	/**
+	 * Retrieves a single Patch view using its key.
+	 *
+	 * @param key
+	 *            - the ID of the Patch object
+	 * @return - a view of the Patch corresponding to the key provided, or null
+	 *         if the key is outside of the mosaic.
+	 */
+
+	@Override
+	public Patch getPatch(int key) {
+		if (key < 0 || key >= size()) {
+			return null;
+		}
+		return new LayerPatch(this, key);
+	}
+
+	/**
+	 * Sets the provided Disperser as the template for the given species. No
+	 * per-cell copies are made: infestations disperse using the template
+	 * positioned at the centroid of their cell. Any Dispersers explicitly
+	 * assigned to cells for the species are removed.
+	 *
+	 * @param d
+	 *            - the Disperser object to be used.
+	 */
+
+	@Override
+	public void setDisperser(String species, Disperser d) {
+		addDisperser(species, d);
+		cellDispersers.get(register(species)).clear();
+	}
+
+	/**
+	 * Sets the provided Disperser to a single Patch in the RasterMosaic based
+	 * on its key. Note: the Disperser is *not* cloned. Instead, the reference
+	 * is passed.
+	 *
+	 * @param d
+	 *            - the Disperser object to be used.
+	 * @param key
+	 *            - the key value identifying the Patch to which the Disperser
+	 *            should be applied.
+	 */
+
+	@Override
+	public void setDisperser(String species, Disperser d, Integer key) {
+		if ((cellFlags.get(key) & NODATA) != 0) {
+			return;
+		}
+		d.setPosition(getCentroid(key));
+		int s = register(species);
+		if ((flags[s].get(key) & INFESTED) != 0) {
+			cellDispersers.get(s).put(key, d);
+		}
+	}
+
+	/**
+	 * Sets the List of species, registering each with a layer index.
+	 */
+
+	@Override
+	public void setSpeciesList(List<String> speciesList) {
+		super.setSpeciesList(speciesList);
+		for (String species : speciesList) {
+			register(species);
+		}
+	}
+
+	/**
+	 * Performs teardown functions for the class.
+	 */
+
+	@Override
+	public void shutdown() {
+		releaseLayers();
+		clearActive();
+	}
+
+	// Layer access used by the Patch and Infestation views
+	// ///////////////////////////////////////////////////////////////////
+
+	/**
+	 * @param id
+	 *            - the cell id.
+	 * @return the centroid of the cell.
+	 */
+
+	Coordinate getCentroid(int id) {
+		int ncols = getNcols();
+		double cellsize = getCellsize();
+		double y = cellsize * (getNrows() - (id / ncols) - 1) + getLly()
+				+ (cellsize / 2);
+		double x = cellsize * (id % ncols) + getLlx() + (cellsize / 2);
+		return new Coordinate(x, y);
+	}
+
+	int getCellControls(int id) {
+		return cellControls.get(id) & CONTROL_MASK;
+	}
+
+	int getCellFlags(int id) {
+		return cellFlags.get(id);
+	}
+
+	int getControls(int s, int id) {
+		return controls[s].get(id) & 0xFF;
+	}
+
+	long getControlTime(int s, ControlType control, int id) {
+		Layer times = controlTimes[s][control.ordinal()];
+		return times == null ? 0 : times.get(id);
+	}
+
+	int getCumulativeAge(int s, int id) {
+		return cumulativeAges[s].get(id);
+	}
+
+	int getAge(int s, int id) {
+		return ages[s].get(id);
+	}
+
+	/**
+	 * Retrieves the Disperser explicitly assigned to a cell, if any.
+	 */
+
+	Disperser getCellDisperser(int s, int id) {
+		return cellDispersers.get(s).get(id);
+	}
+
+	/**
+	 * Retrieves the Disperser used when a cell disperses: the explicitly
+	 * assigned Disperser if any, otherwise the species template positioned at
+	 * the centroid of the cell (the template instance is re-used, so the
+	 * position is only valid until the next call).
+	 */
+
+	Disperser getDisperser(int s, int id) {
+		Disperser d = cellDispersers.get(s).get(id);
+		if (d != null) {
+			return d;
+		}
+		d = getDisperser(s);
+		if (d != null) {
+			d.setPosition(getCentroid(id));
+		}
+		return d;
+	}
+
+	int getFlags(int s, int id) {
+		return flags[s].get(id);
+	}
+
+	Geometry getGeometry(int id) {
+		return geometries.get(id);
+	}
+
+	int getMaxStage(int s, int id) {
+		return maxStages[s].get(id);
+	}
+
+	PropaguleBuffer getPropagules(int s, int id) {
+		return propagules.get(s).get(id);
+	}
+
+	int getStage(int s, int id) {
+		return stages[s].get(id);
+	}
+
+	double getSuitability(int s, int id) {
+		float f = Float.intBitsToFloat(suitabilities[s].get(id));
+		return f == 0 ? 0d : f;
+	}
+
+	boolean hasSuitability(int s, int id) {
+		return suitabilities[s].get(id) != 0;
+	}
+
+	/**
+	 * @param species
+	 *            - the species name.
+	 * @return the layer index of the species, or -1 if it has no layers in
+	 *         this instance.
+	 */
+
+	int indexOf(String species) {
+		int s = getSpeciesRegistry().indexOf(species);
+		return isSpecies(s) ? s : -1;
+	}
+
+	/**
+	 * @param s
+	 *            - a species index.
+	 * @return whether the species has layers in this instance. The registry
+	 *         is shared with clones, so it may hold species registered by
+	 *         other instances.
+	 */
+
+	boolean isSpecies(int s) {
+		return s >= 0 && s < flags.length;
+	}
+
+	/**
+	 * @return the number of species with layers in this instance.
+	 */
+
+	int numberOfSpecies() {
+		return flags.length;
+	}
+
+	/**
+	 * Registers a species (if needed), allocating its layers.
+	 *
+	 * @param species
+	 *            - the species name.
+	 * @return the layer index of the species.
+	 */
+
+	int register(String species) {
+		int s = getSpeciesRegistry().register(species);
+		register(s);
+		return s;
+	}
+
+	/**
+	 * Allocates the layers of all species up to and including the given
+	 * (registered) index, if needed.
+	 *
+	 * @param s
+	 *            - the index of the species.
+	 */
+
+	void register(int s) {
+		for (int i = flags.length; i <= s; i++) {
+			flags = Arrays.copyOf(flags, i + 1);
+			controls = Arrays.copyOf(controls, i + 1);
+			stages = Arrays.copyOf(stages, i + 1);
+			maxStages = Arrays.copyOf(maxStages, i + 1);
+			ages = Arrays.copyOf(ages, i + 1);
+			cumulativeAges = Arrays.copyOf(cumulativeAges, i + 1);
+			suitabilities = Arrays.copyOf(suitabilities, i + 1);
+			controlTimes = Arrays.copyOf(controlTimes, i + 1);
+			controlTimes[i] = new Layer[ControlType.values().length];
+			cellDispersers.add(new TreeMap<Integer, Disperser>());
+			propagules.add(new TreeMap<Integer, PropaguleBuffer>());
+			if (cellFlags != null) {
+				allocateSpecies(i);
+			}
+		}
+	}
+
+	/**
+	 * Resets the species-level state of a cell to that of a Patch without an
+	 * Infestation of the species. Habitat suitability is retained.
+	 */
+
+	void resetInfestation(int s, int id) {
+		setFlags(s, id, 0);
+		setControls(s, id, 0);
+		stages[s].set(id, 0);
+		maxStages[s].set(id, 0);
+		ages[s].set(id, 0);
+		cumulativeAges[s].set(id, 0);
+		for (Layer times : controlTimes[s]) {
+			if (times != null) {
+				times.set(id, 0);
+			}
+		}
+		cellDispersers.get(s).remove(id);
+		propagules.get(s).remove(id);
+	}
+
+	void setAge(int s, int id, long age) {
+		ages[s].set(id, (int) age);
+	}
+
+	/**
+	 * Sets the patch-level controls of a cell, updating the active sets.
+	 */
+
+	void setCellControls(int id, int value) {
+		int changed = (cellControls.get(id) ^ value) & CONTROL_MASK;
+		cellControls.set(id, value);
+		if (changed != 0) {
+			updateControls(-1, id, changed, value);
+		}
+	}
+
+	void setCellDisperser(int s, int id, Disperser d) {
+		if (d == null) {
+			cellDispersers.get(s).remove(id);
+		} else {
+			cellDispersers.get(s).put(id, d);
+		}
+	}
+
+	/**
+	 * Sets the flags of a cell, updating the active sets.
+	 */
+
+	void setCellFlags(int id, int value) {
+		int changed = cellFlags.get(id) ^ value;
+		cellFlags.set(id, value);
+		if ((changed & MONITORED) != 0) {
+			updateMonitored(id, (value & MONITORED) != 0);
+		}
+		if ((changed & NODATA) != 0) {
+			updateNoData(id, (value & NODATA) != 0);
+		}
+	}
+
+	/**
+	 * Sets the controls of a species in a cell, updating the active sets.
+	 */
+
+	void setControls(int s, int id, int value) {
+		int changed = (controls[s].get(id) ^ value) & CONTROL_MASK;
+		controls[s].set(id, value);
+		if (changed != 0) {
+			updateControls(s, id, changed, value);
+		}
+	}
+
+	void setControlTime(int s, ControlType control, int id, long time) {
+		Layer[] times = controlTimes[s];
+		if (times[control.ordinal()] == null) {
+			if (time == 0) {
+				return;
+			}
+			times[control.ordinal()] = createLayer(size(), 4);
+		}
+		times[control.ordinal()].set(id, (int) time);
+	}
+
+	void setCumulativeAge(int s, int id, long age) {
+		cumulativeAges[s].set(id, (int) age);
+	}
+
+	/**
+	 * Sets the flags of a species in a cell, updating the active sets.
+	 */
+
+	void setFlags(int s, int id, int value) {
+		int changed = flags[s].get(id) ^ value;
+		flags[s].set(id, value);
+		if ((changed & PRESENT) != 0) {
+			updateRecorded(s, id, (value & PRESENT) != 0);
+		}
+		if ((changed & INFESTED) != 0) {
+			updateInfested(s, id, (value & INFESTED) != 0);
+		}
+	}
+
+	void setGeometry(int id, Geometry geom) {
+		if (geom == null) {
+			geometries.remove(id);
+		} else {
+			geometries.put(id, geom);
+		}
+	}
+
+	void setMaxStage(int s, int id, int stage) {
+		maxStages[s].set(id, stage);
+	}
+
+	void setPropagules(int s, int id, PropaguleBuffer buffer) {
+		if (buffer == null) {
+			propagules.get(s).remove(id);
+		} else {
+			propagules.get(s).put(id, buffer);
+		}
+	}
+
+	void setStage(int s, int id, int stage) {
+		stages[s].set(id, stage);
+	}
+
+	/**
+	 * Sets the habitat suitability of a cell. A zero bit pattern marks an
+	 * unset value, so a suitability of zero is stored as -0.0f.
+	 */
+
+	void setSuitability(int s, int id, double suitability) {
+		float f = (float) suitability;
+		suitabilities[s].set(id, Float.floatToIntBits(f == 0 ? -0.0f : f));
+	}
+
+	void clearSuitability(int s, int id) {
+		suitabilities[s].set(id, 0);
+	}
+
+	/**
+	 * @return the total number of cells in the mosaic.
+	 */
+
+	int size() {
+		return getNrows() * getNcols();
+	}
+
+	/**
+	 * @param s
+	 *            - the layer index of the species.
+	 * @return the name of the species.
+	 */
+
+	String speciesName(int s) {
+		return getSpeciesRegistry().getName(s);
+	}
+
+	// Internal helpers
+	// ///////////////////////////////////////////////////////////////////
+
+	private void allocateSpecies(int s) {
+		int n = size();
+		flags[s] = createLayer(n, 1);
+		controls[s] = createLayer(n, 1);
+		stages[s] = createLayer(n, 1);
+		maxStages[s] = createLayer(n, 1);
+		ages[s] = createLayer(n, 4);
+		cumulativeAges[s] = createLayer(n, 4);
+		suitabilities[s] = createLayer(n, 4);
+		Arrays.fill(controlTimes[s], null);
+		cellDispersers.get(s).clear();
+		propagules.get(s).clear();
+	}
+
+	private Layer copy(Layer layer) {
+		return layer == null ? null : layer.clone();
+	}
+
+	private Layer[] copy(Layer[] layers) {
+		Layer[] copy = new Layer[layers.length];
+		for (int i = 0; i < layers.length; i++) {
+			copy[i] = copy(layers[i]);
+		}
+		return copy;
+	}
+
+	private void updateControls(int species, int id, int changed, int value) {
+		for (ControlType control : ControlType.values()) {
+			int bit = control.mask();
+			if ((changed & bit) != 0) {
+				updateControlled(species, control, id, (value & bit) != 0);
+			}
+		}
+	}
+
+	private void releaseLayers() {
+		cellFlags = null;
+		cellControls = null;
+		for (int s = 0; s < flags.length; s++) {
+			flags[s] = null;
+			controls[s] = null;
+			stages[s] = null;
+			maxStages[s] = null;
+			ages[s] = null;
+			cumulativeAges[s] = null;
+			suitabilities[s] = null;
+			Arrays.fill(controlTimes[s], null);
+			cellDispersers.get(s).clear();
+			propagules.get(s).clear();
+		}
+		geometries.clear();
+	}
+
+	/**
+	 * Copies the state of an Infestation object into the layers of a cell.
+	 */
+
+	void store(int s, int id, Infestation o) {
+		resetInfestation(s, id);
+		int f = PRESENT;
+		f |= o.isInfested() ? INFESTED : 0;
+		f |= o.wasInfested() ? WAS_INFESTED : 0;
+		f |= o.isVisited() ? INFESTATION_VISITED : 0;
+		f |= o.isManagementFrozen() ? FROZEN : 0;
+		f |= o.wasControlled() ? WAS_CONTROLLED : 0;
+		f |= o.hasNoData() ? INFESTATION_NODATA : 0;
+		setFlags(s, id, f);
+		int c = o.getMaxControl() << MAX_CONTROL_SHIFT;
+		for (ControlType control : o.getControls().keySet()) {
+			c |= control.mask();
+			setControlTime(s, control, id, o.getControlTime(control));
+		}
+		setControls(s, id, c);
+		stages[s].set(id, o.getStageOfInfestation());
+		maxStages[s].set(id, o.getMaxInfestation());
+		ages[s].set(id, (int) o.getAgeOfInfestation());
+		cumulativeAges[s].set(id, (int) o.getCumulativeAgeOfInfestation());
+		if (o.getDisperser() != null) {
+			cellDispersers.get(s).put(id, o.getDisperser());
+		}
+		if (!o.getPropaguleBuffer().isEmpty()) {
+			propagules.get(s).put(id, o.getPropaguleBuffer());
+		}
+	}
+}
@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package spread.impl;
+
+import java.io.File;
+
+import spread.util.Layer;
+import spread.util.Layer_Mapped;
+
+/**
+ * A RasterMosaic_Array whose cell layers are held off-heap in memory-mapped
+ * temporary files (see Layer_Mapped) rather than in on-heap arrays. The heap
+ * cost of the mosaic is then independent of the number of cells (apart from
+ * the active-patch bitsets and any sparse per-cell Dispersers, propagules and
+ * geometries), and residency is left to the operating system's page cache.
+ * This allows rasters with hundreds of millions of cells to be modelled.
+ *
+ * Note that the input rasters (e.g. presence and habitat maps) are still read
+ * into memory in full when they are applied to the mosaic.
+ */
+
+public class RasterMosaic_Mapped extends RasterMosaic_Array {
+
+	private File directory = null;
+
+	/**
+	 * Creates a Layer_Mapped in the configured directory.
+	 */
+
+	@Override
+	protected Layer createLayer(int size, int width) {
+		return new Layer_Mapped(size, width, directory);
+	}
+
+	/**
+	 * @return the directory holding the backing files of the layers (null
+	 *         indicates the default temporary directory).
+	 */
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Creates a new, empty instance of this class. Used by clone().
+	 */
+
+	@Override
+	protected RasterMosaic_Array newInstance() {
+		RasterMosaic_Mapped rm = new RasterMosaic_Mapped();
+		rm.directory = directory;
+		return rm;
+	}
+
+	/**
+	 * Sets the directory in which the backing files of the layers are
+	 * created. Only affects layers created after the call.
+	 *
+	 * @param directory
+	 *            - the directory (null for the default temporary directory).
+	 */
+
+	public void setDirectory(File directory) {
+		this.directory = directory;
+	}
+}
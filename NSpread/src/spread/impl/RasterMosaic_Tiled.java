@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package spread.impl;
+
+import java.io.IOException;
+
+import spread.util.Layer;
+import spread.util.Layer_Tiled;
+
+/**
+ * A RasterMosaic_Array whose cell layers are divided into square tiles (see
+ * Layer_Tiled) that are only allocated once a cell in them gains a value that
+ * differs from the rest of the tile. Startup memory and the cost of cloning
+ * then scale with the occupied (non-uniform) area of the raster rather than
+ * its extent. Tiles are 256x256 cells unless set otherwise.
+ *
+ * Since the layers are still indexed by cell id, region queries, fill and
+ * infest operate across tile boundaries unchanged. The layers are compacted
+ * after each map is applied, so that tiles left uniform (e.g. entirely
+ * NoData or of constant suitability) are released again.
+ */
+
+public class RasterMosaic_Tiled extends RasterMosaic_Array {
+
+	private int tileShift = 8;
+
+	/**
+	 * Replaces tiles that hold a single value throughout with constants.
+	 */
+
+	public void compact() {
+		for (Layer layer : getLayers()) {
+			((Layer_Tiled) layer).compact();
+		}
+	}
+
+	/**
+	 * Creates a Layer_Tiled using the configured tile size.
+	 */
+
+	@Override
+	protected Layer createLayer(int size, int width) {
+		return new Layer_Tiled(size, width, getNcols(), tileShift);
+	}
+
+	/**
+	 * @return the number of tiles (across all layers) that are allocated.
+	 */
+
+	public int getAllocatedTiles() {
+		int n = 0;
+		for (Layer layer : getLayers()) {
+			n += ((Layer_Tiled) layer).getAllocatedTiles();
+		}
+		return n;
+	}
+
+	/**
+	 * @return the side length of a tile in cells.
+	 */
+
+	public int getTileSize() {
+		return 1 << tileShift;
+	}
+
+	/**
+	 * Creates a new, empty instance of this class. Used by clone().
+	 */
+
+	@Override
+	protected RasterMosaic_Array newInstance() {
+		RasterMosaic_Tiled rm = new RasterMosaic_Tiled();
+		rm.tileShift = tileShift;
+		return rm;
+	}
+
+	@Override
+	public void setAgeMap(String ageMapPath, String species)
+			throws IOException {
+		super.setAgeMap(ageMapPath, species);
+		compact();
+	}
+
+	@Override
+	public void setHabitatMap(String habitatMapPath, String species)
+			throws IOException {
+		super.setHabitatMap(habitatMapPath, species);
+		compact();
+	}
+
+	@Override
+	public void setManagementMap(String managementMapPath, String species)
+			throws IOException {
+		super.setManagementMap(managementMapPath, species);
+		compact();
+	}
+
+	@Override
+	public void setPresenceMap(String presenceMapPath, String species)
+			throws IOException {
+		super.setPresenceMap(presenceMapPath, species);
+		compact();
+	}
+
+	/**
+	 * Sets the side length of the tiles, which is rounded down to a power of
+	 * two. Only affects layers created after the call.
+	 *
+	 * @param tileSize
+	 *            - the side length of a tile in cells.
+	 */
+
+	public void setTileSize(int tileSize) {
+		if (tileSize < 1) {
+			throw new IllegalArgumentException("Tile size must be positive ("
+					+ tileSize + " was provided).");
+		}
+		this.tileShift = 31 - Integer.numberOfLeadingZeros(tileSize);
+	}
+}
@@ -5,8 +5,10 @@
 package spread.impl.output;
 
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -23,6 +25,7 @@ import spread.Process;
 
 import spread.impl.RasterMosaic;
 import spread.impl.process.Process_Costing;
+import spread.util.Checkpoint;
 import spread.util.RasterWriter;
 import spread.util.Stats;
 
@@ -55,14 +58,54 @@ public class ExperimentWriter_Text implements ExperimentWriter {
 	private boolean writeMonitoredMaps = true;
 	private Map<String, Map<Integer, Long>> tally = new TreeMap<String, Map<Integer, Long>>();
 	private int n_expts = 0;
+	private int sequence = -1;
+	private int nextSequence = 0;
+	private Map<Integer, Map<String, String>> held = new TreeMap<Integer, Map<String, String>>();
+	private Map<String, Long> appendLengths = null;
 	private long nodata = -9999l;
 
+	/**
+	 * Records the state of the output in a checkpoint. The output tables are
+	 * flushed, so that their lengths cover all rows written.
+	 * 
+	 * @param checkpoint
+	 *            - the checkpoint to be updated.
+	 * @throws IOException
+	 */
+
+	public void checkpoint(Checkpoint checkpoint) throws IOException {
+		checkpoint.getTableLengths().clear();
+		for (String species : bw_map.keySet()) {
+			bw_map.get(species).flush();
+			checkpoint.getTableLengths().put(
+					species,
+					new File(outputFolder + "/" + species + "_" + outputFile)
+							.length());
+		}
+		checkpoint.setNext(nextSequence);
+		checkpoint.getPending().clear();
+		checkpoint.getPending().putAll(held);
+		checkpoint.getTally().clear();
+		for (String species : tally.keySet()) {
+			checkpoint.getTally().put(species,
+					new TreeMap<Integer, Long>(tally.get(species)));
+		}
+		checkpoint.setExperiments(n_expts);
+	}
+
 	/**
 	 * Close down the output resources.
 	 */
 	@Override
 	public void close() {
 
+		// Rows held back by missing sequence numbers are written in order.
+
+		for (Map<String, String> rows : held.values()) {
+			writeRows(rows);
+		}
+		held.clear();
+
 		Iterator<String> it = bw_map.keySet().iterator();
 		while (it.hasNext()) {
 			try {
@@ -96,8 +139,28 @@ public class ExperimentWriter_Text implements ExperimentWriter {
 
 		while (it.hasNext()) {
 			String species = it.next();
-			bw_map.put(species, new BufferedWriter(new FileWriter(outputFolder
-					+ "/" + species + "_" + outputFile)));
+			String path = outputFolder + "/" + species + "_" + outputFile;
+
+			// When resuming, rows written after the checkpoint are discarded
+			// (they will be written again) and new rows are appended.
+
+			if (appendLengths != null && appendLengths.containsKey(species)) {
+				RandomAccessFile raf = new RandomAccessFile(path, "rw");
+				try {
+					if (raf.length() < appendLengths.get(species)) {
+						throw new IOException("Output file " + path
+								+ " is shorter than recorded in the checkpoint");
+					}
+					raf.setLength(appendLengths.get(species));
+				} finally {
+					raf.close();
+				}
+				bw_map.put(species, new BufferedWriter(new FileWriter(path,
+						true)));
+				continue;
+			}
+
+			bw_map.put(species, new BufferedWriter(new FileWriter(path)));
 
 			if (writeTableHeader) {
 				StringBuilder sb = new StringBuilder();
@@ -144,6 +207,7 @@ public class ExperimentWriter_Text implements ExperimentWriter {
 		Process_Costing pcst = (Process_Costing) plist.get(idx);
 
 		List<String> speciesList = mosaic.getSpeciesList();
+		Map<String, String> rows = new TreeMap<String, String>();
 
 		for (int i = 0; i < speciesList.size(); i++) {
 
@@ -161,9 +225,8 @@ public class ExperimentWriter_Text implements ExperimentWriter {
 			}
 
 			// calculate the confusion matrix
-			int[][] cf = stats.makeConfusionMatrix(
-					reference.getPatches(),
-					mosaic.getPatches(), species);
+			int[][] cf = stats.makeConfusionMatrix(reference, mosaic,
+					species);
 
 			// generate statistics
 
@@ -191,12 +254,7 @@ public class ExperimentWriter_Text implements ExperimentWriter {
 			}
 
 			sb.append("\n");
-
-			try {
-				bw_map.get(species).write(sb.toString());
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
+			rows.put(species, sb.toString());
 
 			if (writeCoverMaps) {
 				if (writeRasterHeader) {
@@ -229,7 +287,9 @@ public class ExperimentWriter_Text implements ExperimentWriter {
 			}
 
 			if (writeFrequencyMap) {
-				tally.put(species, new TreeMap<Integer, Long>());
+				if (!tally.containsKey(species)) {
+					tally.put(species, new TreeMap<Integer, Long>());
+				}
 				Map<Integer, Infestation> occupancies = mosaic
 						.getInfestations(species);
 				for (Integer key : occupancies.keySet()) {
@@ -250,6 +310,73 @@ public class ExperimentWriter_Text implements ExperimentWriter {
 
 		}
 		n_expts++;
+		hold(rows);
+	}
+
+	/**
+	 * Restores the state of the output from a checkpoint, so that the output
+	 * tables opened are appended to, and the frequency maps include the
+	 * Experiments already completed. Must be called before open.
+	 * 
+	 * @param checkpoint
+	 *            - the checkpoint of an interrupted sweep.
+	 */
+
+	public void restore(Checkpoint checkpoint) {
+		nextSequence = checkpoint.getNext();
+		held.clear();
+		held.putAll(checkpoint.getPending());
+		tally.clear();
+		for (String species : checkpoint.getTally().keySet()) {
+			tally.put(species, new TreeMap<Integer, Long>(checkpoint
+					.getTally().get(species)));
+		}
+		n_expts = checkpoint.getExperiments();
+		appendLengths = new TreeMap<String, Long>(
+				checkpoint.getTableLengths());
+	}
+
+	/**
+	 * Records that the Experiment with the given sequence number will not be
+	 * written, so that the rows of later Experiments are not held back.
+	 * 
+	 * @param sequence
+	 *            - the sequence number of the Experiment skipped.
+	 */
+
+	public void skip(int sequence) {
+		if (sequence >= 0) {
+			this.sequence = sequence;
+			hold(new TreeMap<String, String>());
+		}
+	}
+
+	/**
+	 * Writes the table rows of an Experiment, or holds them until the rows of
+	 * all Experiments with lower sequence numbers have been written.
+	 */
+
+	private void hold(Map<String, String> rows) {
+		if (sequence < 0) {
+			writeRows(rows);
+			return;
+		}
+		held.put(sequence, rows);
+		sequence = -1;
+		while (held.containsKey(nextSequence)) {
+			writeRows(held.remove(nextSequence));
+			nextSequence++;
+		}
+	}
+
+	private void writeRows(Map<String, String> rows) {
+		for (String species : rows.keySet()) {
+			try {
+				bw_map.get(species).write(rows.get(species));
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
 	}
 
 	/**
@@ -338,6 +465,20 @@ public class ExperimentWriter_Text implements ExperimentWriter {
 		this.replicate = replicate;
 	}
 
+	/**
+	 * Sets the sequence number of the next Experiment written. Table rows are
+	 * written in sequence order (starting from zero), whatever the order in
+	 * which Experiments finish. If no sequence number is set, rows are written
+	 * immediately.
+	 * 
+	 * @param sequence
+	 *            - the sequence number of the next Experiment written.
+	 */
+
+	public void setSequence(int sequence) {
+		this.sequence = sequence;
+	}
+
 	public void setWriteRasterHeader(boolean writeRasterHeader) {
 		this.writeRasterHeader = writeRasterHeader;
 	}
@@ -72,8 +72,8 @@ public class MosaicWriter_Raster implements MosaicWriter {
 	 */
 
 	protected double getVal(RasterMosaic rm, int key, String species){
-		if(rm.getPatches().get(key).hasNoData()){return nodata;}
-		else{return rm.getPatches().get(key).isInfestedBy(species) ? 1 : 0;}
+		if(rm.hasNoData(key)){return nodata;}
+		else{return rm.isInfestedBy(key, species) ? 1 : 0;}
 	}
 	
 	/**
@@ -26,12 +26,11 @@ public class MosaicWriter_Raster_Stage extends MosaicWriter_Raster {
 
 	@Override
 	protected double getVal(RasterMosaic rm, int key, String species) {
-		if (rm.getPatches().get(key).hasNoData()) {
+		if (rm.hasNoData(key)) {
 			return super.nodata;
 		} else {
-			return rm.getPatches().get(key).isInfestedBy(species) ? rm
-					.getPatches().get(key).getInfestation(species)
-					.getStageOfInfestation() : 0;
+			return rm.isInfestedBy(key, species) ? rm.getPatch(key)
+					.getInfestation(species).getStageOfInfestation() : 0;
 		}
 	}
 }
@@ -4,8 +4,8 @@
  *******************************************************************************/
 package spread.impl.output;
 
-import spread.Patch;
 import spread.impl.RasterMosaic;
+import spread.util.ControlType;
 
 /**
  * Writes a RasterMosaic object to an ASCII output file.
@@ -27,11 +27,12 @@ public class MosaicWriter_Raster_WasMonitored extends MosaicWriter_Raster {
 
 	@Override
 	protected double getVal(RasterMosaic rm, int key, String species) {
-		Patch p = rm.getPatches().get(key);
-		if (p.hasNoData()) {
+		if (rm.hasNoData(key)) {
 			return super.nodata;
+		} else if (!rm.isManaged(key)) {
+			return ControlType.NONE.ordinal();
 		} else {
-			return p.getMaxControl().ordinal();
+			return rm.getPatch(key).getMaxControl().ordinal();
 		}
 	}
 }
@@ -128,10 +128,10 @@ public class StatsWriter_Text implements StatsWriter {
 			sb.append(mosaic.getNumberInfestations(species) + ",");
 			sb.append(mosaic.getNumberInfestedPatches() + ",");
 			sb.append(mosaic.getNumberUndetected(species) + ",");
-			sb.append(mosaic.getControlled(species, ControlType.GROUND_CONTROL).size() + ",");
-			sb.append(mosaic.getControlled(ControlType.CONTAINMENT).size() + ",");
-			sb.append(mosaic.getControlled(ControlType.CONTAINMENT_CORE).size()+",");
-			sb.append((mosaic.getControlled(ControlType.CONTAINMENT).size()+mosaic.getControlled(ControlType.CONTAINMENT_CORE).size()) + ",");
+			sb.append(mosaic.getNumberControlled(species, ControlType.GROUND_CONTROL) + ",");
+			sb.append(mosaic.getNumberControlled(ControlType.CONTAINMENT) + ",");
+			sb.append(mosaic.getNumberControlled(ControlType.CONTAINMENT_CORE)+",");
+			sb.append((mosaic.getNumberControlled(ControlType.CONTAINMENT)+mosaic.getNumberControlled(ControlType.CONTAINMENT_CORE)) + ",");
 			sb.append(mosaic.getNumberNoData() + ",");
 			
 			sb.append(pcst.getCost(mosaic) + ",");
@@ -13,6 +13,9 @@ import spread.Patch;
 import spread.Process;
 
 import spread.util.ControlType;
+import spread.util.SpeciesRegistry;
+
+import cern.colt.function.IntProcedure;
 
 /**
  * Performs actions relating to containment of infested areas
@@ -51,15 +54,20 @@ public class Process_Containment implements Process, Cloneable{
 	@Override
 	public Process_Containment clone(){
 		Process_Containment clone = new Process_Containment();
+		clone.timeIncrement = timeIncrement;
+		clone.chkFrq = chkFrq;
+		clone.counter = counter;
+		clone.ignore.addAll(ignore);
 		return clone;
 	}
 	
 	/**
-	 * Processes the entire mosaic.
+	 * Processes the Patches of the mosaic under containment (the others are
+	 * unaffected, so need not be retrieved).
 	 */
 	
 	@Override
-	public void process(Mosaic mosaic) {
+	public void process(final Mosaic mosaic) {
 		
 		counter+=timeIncrement;
 		
@@ -69,9 +77,14 @@ public class Process_Containment implements Process, Cloneable{
 		
 		counter = 0;
 		
-		for (Integer key : mosaic.getPatches().keySet()) {
-			process(mosaic.getPatches().get(key));
-		}
+		mosaic.forEachControlled(ControlType.CONTAINMENT, new IntProcedure() {
+
+			@Override
+			public boolean apply(int key) {
+				process(mosaic.getPatch(key));
+				return true;
+			}
+		});
 	}
 	
 	/**
@@ -81,21 +94,23 @@ public class Process_Containment implements Process, Cloneable{
 
 	private void process(Patch patch) {
 		
-		if (patch.hasControl(ControlType.CONTAINMENT_CORE)) {
+		if (patch.hasControl(ControlType.CONTAINMENT_CORE)
+				|| !patch.hasControl(ControlType.CONTAINMENT)) {
 			return;
 		}
 		
-		for (String species : patch.getInfestation().keySet()) {
+		SpeciesRegistry registry = patch.getSpeciesRegistry();
+		
+		for (int s = 0; s < registry.size(); s++) {
 			
-			if(ignore.contains(species)){
+			if (!patch.wasInfestedBy(s)
+					|| ignore.contains(registry.getName(s))) {
 				continue;
 			}
 
 			// I'm gonna break my rusty cage... and run!
 			
-			if (patch.hasControl(ControlType.CONTAINMENT)) {
-				patch.getInfestation(species).clearInfestation();
-			}
+			patch.getInfestation(s).clearInfestation();
 		}
 	}
 	
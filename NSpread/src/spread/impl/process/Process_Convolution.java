@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package spread.impl.process;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import spread.Disperser;
+import spread.Mosaic;
+import spread.Patch;
+import spread.Process;
+import spread.impl.Disperser_Continuous2D;
+import spread.impl.RasterMosaic;
+import spread.impl.random.RandomGenerator_Poisson;
+import spread.util.Convolver;
+import spread.util.DiscreteKernel;
+
+import cern.colt.function.IntProcedure;
+
+/**
+ * Performs dispersal and infestation together, switching between dispersing
+ * individual propagules (using Process_Dispersal and Process_Infestation) and
+ * convolving the dispersing cells with the dispersal kernel. Once the
+ * proportion of infested cells reaches a threshold, the expected number of
+ * propagules landing in each cell is found by FFT convolution, and each cell
+ * is infested with probability 1-exp(-pressure*suitability). This gives the
+ * same distribution of new infestations as dispersing Poisson numbers of
+ * propagules (to the accuracy of the kernel table), at a cost that does not
+ * depend on the number of infested cells.
+ *
+ * Convolution is only used on RasterMosaics where every species has a
+ * Disperser_Continuous2D with a DiscreteKernel and a Poisson number of
+ * propagules; otherwise propagules are always dispersed individually.
+ */
+
+public class Process_Convolution implements Process, Cloneable {
+
+	private Process_Dispersal dispersal;
+	private Process_Infestation infestation = new Process_Infestation();
+	private double threshold = 0.01;
+	private Map<DiscreteKernel, Convolver> convolvers = new IdentityHashMap<DiscreteKernel, Convolver>();
+	private double[] pressure;
+
+	/**
+	 * @param dispersal
+	 *            - the dispersal process giving the wait times of each
+	 *            species, used directly below the threshold.
+	 */
+
+	public Process_Convolution(Process_Dispersal dispersal) {
+		this.dispersal = dispersal;
+	}
+
+	/**
+	 * Returns a clone/copy of the instance. Convolvers hold work arrays, so
+	 * they are not shared with the clone (although the transforms of the
+	 * kernels are).
+	 */
+
+	@Override
+	public Process_Convolution clone() {
+		Process_Convolution pc = new Process_Convolution(dispersal.clone());
+		pc.threshold = threshold;
+		return pc;
+	}
+
+	/**
+	 * Estimates the heap used by the work arrays of a replicate run on a clone
+	 * of a mosaic, if its Dispersers are suitable for convolution: the
+	 * propagule pressure raster, and the work arrays of a Convolver for each
+	 * kernel.
+	 *
+	 * @param mosaic
+	 *            - the mosaic (with its Dispersers set).
+	 * @return the estimated footprint in bytes.
+	 */
+
+	public long estimateFootprint(Mosaic mosaic) {
+		if (!(mosaic instanceof RasterMosaic) || threshold > 1) {
+			return 0;
+		}
+		RasterMosaic rm = (RasterMosaic) mosaic;
+		Map<DiscreteKernel, Boolean> kernels = new IdentityHashMap<DiscreteKernel, Boolean>();
+		long footprint = 8L * rm.getNrows() * rm.getNcols();
+		for (int s = 0; s < mosaic.getSpeciesRegistry().size(); s++) {
+			Disperser d = rm.getDisperser(s);
+			if (getRate(d) < 0) {
+				return 0;
+			}
+			DiscreteKernel kernel = ((Disperser_Continuous2D) d).getKernel();
+			if (kernels.put(kernel, Boolean.TRUE) == null) {
+				footprint += Convolver.estimateFootprint(rm.getNrows(),
+						rm.getNcols(), kernel);
+			}
+		}
+		return footprint;
+	}
+
+	/**
+	 * @return the proportion of (non-NoData) cells that must be infested for
+	 *         convolution to be used.
+	 */
+
+	public double getThreshold() {
+		return threshold;
+	}
+
+	/**
+	 * Returns whether the Mosaic is dense enough, and its Dispersers suitable,
+	 * for dispersal by convolution.
+	 *
+	 * @param mosaic
+	 *            - the mosaic to be processed.
+	 */
+
+	public boolean isConvolving(Mosaic mosaic) {
+		if (!(mosaic instanceof RasterMosaic)) {
+			return false;
+		}
+		int cells = mosaic.getNumberPatches() - mosaic.getNumberNoData();
+		if (cells <= 0
+				|| mosaic.getNumberInfestedPatches() < threshold * cells) {
+			return false;
+		}
+		RasterMosaic rm = (RasterMosaic) mosaic;
+		for (int s = 0; s < mosaic.getSpeciesRegistry().size(); s++) {
+			if (getRate(rm.getDisperser(s)) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Disperses propagules and infests the mosaic, by convolution if the
+	 * mosaic is dense enough and individually otherwise.
+	 */
+
+	@Override
+	public void process(Mosaic mosaic) {
+		if (!isConvolving(mosaic)) {
+			dispersal.process(mosaic);
+			infestation.process(mosaic);
+			return;
+		}
+		final RasterMosaic rm = (RasterMosaic) mosaic;
+		final Long[] wait = dispersal.getWaitTimes(mosaic);
+		int n = rm.getNrows() * rm.getNcols();
+		if (pressure == null || pressure.length != n) {
+			pressure = new double[n];
+		}
+
+		// Each species is convolved and infests in turn: new infestations
+		// do not disperse until the next step, so the order does not matter.
+
+		for (int s = 0; s < wait.length; s++) {
+			final int species = s;
+			Disperser_Continuous2D d = (Disperser_Continuous2D) rm
+					.getDisperser(s);
+			final double rate = getRate(d);
+			final boolean[] any = new boolean[1];
+			Arrays.fill(pressure, 0);
+			rm.forEachInfested(s, new IntProcedure() {
+
+				@Override
+				public boolean apply(int key) {
+					Patch patch = rm.getPatch(key);
+					patch.getInfestation(species).clearPropagules();
+					if (dispersal.isDispersing(patch, species, wait)) {
+						pressure[key] += rate;
+						any[0] = true;
+					}
+					return true;
+				}
+			});
+			if (!any[0]) {
+				continue;
+			}
+			getConvolver(rm, d.getKernel()).convolve(pressure, pressure);
+			rm.infest(s, pressure);
+		}
+	}
+
+	/**
+	 * Resets the process
+	 */
+
+	@Override
+	public void reset() {
+		dispersal.reset();
+		infestation.reset();
+	}
+
+	/**
+	 * Sets the proportion of (non-NoData) cells that must be infested for
+	 * convolution to be used.
+	 *
+	 * @param threshold
+	 *            - the proportion of infested cells (0 always convolves where
+	 *            possible, and values above 1 never do).
+	 */
+
+	public void setThreshold(double threshold) {
+		this.threshold = threshold;
+	}
+
+	private Convolver getConvolver(RasterMosaic rm, DiscreteKernel kernel) {
+		Convolver c = convolvers.get(kernel);
+		if (c == null || c.getNrows() != rm.getNrows()
+				|| c.getNcols() != rm.getNcols()) {
+			c = new Convolver(rm.getNrows(), rm.getNcols(), kernel);
+			convolvers.put(kernel, c);
+		}
+		return c;
+	}
+
+	/**
+	 * @return the mean number of propagules released by a Disperser, or -1 if
+	 *         it cannot be dispersed by convolution.
+	 */
+
+	private static double getRate(Disperser d) {
+		if (!(d instanceof Disperser_Continuous2D)) {
+			return -1;
+		}
+		Disperser_Continuous2D dc = (Disperser_Continuous2D) d;
+		if (dc.getKernel() == null
+				|| !(dc.getNumberGenerator() instanceof RandomGenerator_Poisson)) {
+			return -1;
+		}
+		return ((RandomGenerator_Poisson) dc.getNumberGenerator()).getLambda();
+	}
+}
@@ -5,8 +5,8 @@
 package spread.impl.process;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Map;
-import java.util.Set;
 import java.util.TreeMap;
 
 import spread.Mosaic;
@@ -14,6 +14,9 @@ import spread.Patch;
 import spread.Process;
 
 import spread.util.ControlType;
+import spread.util.SpeciesRegistry;
+
+import cern.colt.function.IntProcedure;
 
 /**
  * Performs actions relating to costing conservation actions related to managing
@@ -52,7 +55,7 @@ public class Process_Costing implements Process, Cloneable {
 					ground_control_costs.get(key).length));
 		}
 
-		for (String key : ground_control_costs.keySet()) {
+		for (String key : ground_control_labour.keySet()) {
 			ground_control_labourc.put(key, Arrays.copyOf(
 					ground_control_labour.get(key),
 					ground_control_labour.get(key).length));
@@ -61,7 +64,10 @@ public class Process_Costing implements Process, Cloneable {
 		clone.setGroundControlCosts(ground_control_costsc);
 		clone.setGroundControlLabour(ground_control_labourc);
 
+		clone.containment_cost = containment_cost;
+		clone.containment_labour = containment_labour;
 		clone.counter = counter;
+		clone.chkFrq = chkFrq;
 		clone.timeIncrement = timeIncrement;
 		return clone;
 	}
@@ -75,9 +81,13 @@ public class Process_Costing implements Process, Cloneable {
 	public double getCost(Mosaic mosaic) {
 
 		double total = 0;
+		BitSet costed = getCostedPatches(mosaic);
+		double[][] costs = bySpecies(ground_control_costs,
+				mosaic.getSpeciesRegistry());
 
-		for (Integer key : mosaic.getPatches().keySet()) {
-			total += getCost(mosaic.getPatches().get(key));
+		for (int key = costed.nextSetBit(0); key >= 0; key = costed
+				.nextSetBit(key + 1)) {
+			total += getCost(mosaic.getPatch(key), costs);
 		}
 
 		return total;
@@ -90,6 +100,19 @@ public class Process_Costing implements Process, Cloneable {
 	 */
 
 	public double getCost(Patch patch) {
+		return getCost(patch,
+				bySpecies(ground_control_costs, patch.getSpeciesRegistry()));
+	}
+
+	/**
+	 * @param patch
+	 *            - the Patch for which the cost will be calculated.
+	 * @param costs
+	 *            - the ground control costs, indexed by species and stage.
+	 * @return the total instantaneous cost of management for a single Patch.
+	 */
+
+	private double getCost(Patch patch, double[][] costs) {
 		double patchCost = 0;
 
 		if (patch.hasNoData()) {
@@ -106,22 +129,19 @@ public class Process_Costing implements Process, Cloneable {
 
 		double max_gc = 0;
 
-		for (String species : patch.getInfestation().keySet()) {
-			Set<ControlType> sp_controls = patch.getControls(species);
+		for (int s = 0; s < costs.length; s++) {
 			
 			// Only add species cost if ground-controlled or core controlled
 
-			if (sp_controls.contains(ControlType.GROUND_CONTROL)
-					|| sp_controls
-							.contains(ControlType.CONTAINMENT_CORE_CONTROL)) {
+			if (patch.hasControl(ControlType.GROUND_CONTROL, s)
+					|| patch.hasControl(ControlType.CONTAINMENT_CORE_CONTROL,
+							s)) {
 
-				int stage = patch.getInfestation(species)
-						.getStageOfInfestation();
+				int stage = patch.getInfestation(s).getStageOfInfestation();
 
 				// Take the maximum cost of the species-level controls
 				
-				max_gc = Math.max(max_gc,
-						ground_control_costs.get(species)[stage - 1]);
+				max_gc = Math.max(max_gc, costs[s][stage - 1]);
 			}
 		}
 
@@ -148,9 +168,13 @@ public class Process_Costing implements Process, Cloneable {
 	public double getLabour(Mosaic mosaic) {
 
 		double total = 0;
+		BitSet costed = getCostedPatches(mosaic);
+		double[][] labour = bySpecies(ground_control_labour,
+				mosaic.getSpeciesRegistry());
 
-		for (Integer key : mosaic.getPatches().keySet()) {
-			total += getLabour(mosaic.getPatches().get(key));
+		for (int key = costed.nextSetBit(0); key >= 0; key = costed
+				.nextSetBit(key + 1)) {
+			total += getLabour(mosaic.getPatch(key), labour);
 		}
 
 		return total;
@@ -164,6 +188,20 @@ public class Process_Costing implements Process, Cloneable {
 	 */
 
 	public double getLabour(Patch patch) {
+		return getLabour(patch,
+				bySpecies(ground_control_labour, patch.getSpeciesRegistry()));
+	}
+
+	/**
+	 * @param patch
+	 *            - the Patch of interest
+	 * @param labour
+	 *            - the ground control labour, indexed by species and stage.
+	 * @return the total instantaneous labour cost of management for a single
+	 *         Patch
+	 */
+
+	private double getLabour(Patch patch, double[][] labour) {
 
 		double patLabor = 0;
 
@@ -181,17 +219,14 @@ public class Process_Costing implements Process, Cloneable {
 
 		double max_gc = 0;
 
-		for (String species : patch.getInfestation().keySet()) {
-			Set<ControlType> sp_controls = patch.getControls(species);
+		for (int s = 0; s < labour.length; s++) {
 
-			if (sp_controls.contains(ControlType.GROUND_CONTROL)
-					|| sp_controls
-							.contains(ControlType.CONTAINMENT_CORE_CONTROL)) {
+			if (patch.hasControl(ControlType.GROUND_CONTROL, s)
+					|| patch.hasControl(ControlType.CONTAINMENT_CORE_CONTROL,
+							s)) {
 
-				int stage = patch.getInfestation(species)
-						.getStageOfInfestation();
-				max_gc = Math.max(max_gc,
-						ground_control_labour.get(species)[stage - 1]);
+				int stage = patch.getInfestation(s).getStageOfInfestation();
+				max_gc = Math.max(max_gc, labour[s][stage - 1]);
 			}
 		}
 
@@ -224,18 +259,68 @@ public class Process_Costing implements Process, Cloneable {
 
 		counter = 0;
 
-		for (Integer key : mosaic.getPatches().keySet()) {
-			process(mosaic.getPatches().get(key));
+		BitSet costed = getCostedPatches(mosaic);
+		SpeciesRegistry registry = mosaic.getSpeciesRegistry();
+		double[][] costs = bySpecies(ground_control_costs, registry);
+		double[][] labour = bySpecies(ground_control_labour, registry);
+
+		for (int key = costed.nextSetBit(0); key >= 0; key = costed
+				.nextSetBit(key + 1)) {
+			process(mosaic.getPatch(key), costs, labour);
+		}
+	}
+
+	/**
+	 * @param values
+	 *            - per-stage values keyed by species name.
+	 * @param registry
+	 *            - the registry used to index the species.
+	 * @return the values indexed by species (null for species without values).
+	 */
+
+	private double[][] bySpecies(Map<String, double[]> values,
+			SpeciesRegistry registry) {
+		return registry.toArray(values, new double[registry.size()][]);
+	}
+
+	/**
+	 * @param mosaic
+	 *            - the Mosaic of interest
+	 * @return the IDs of the Patches subject to controls that incur a cost
+	 *         (containment, ground control or core control). All other
+	 *         Patches have zero cost.
+	 */
+
+	private BitSet getCostedPatches(Mosaic mosaic) {
+		final BitSet costed = new BitSet();
+		IntProcedure add = new IntProcedure() {
+
+			@Override
+			public boolean apply(int key) {
+				costed.set(key);
+				return true;
+			}
+		};
+		mosaic.forEachControlled(ControlType.CONTAINMENT, add);
+		for (String species : mosaic.getSpeciesList()) {
+			mosaic.forEachControlled(species, ControlType.GROUND_CONTROL, add);
+			mosaic.forEachControlled(species,
+					ControlType.CONTAINMENT_CORE_CONTROL, add);
 		}
+		return costed;
 	}
 
 	/**
 	 * Processes an individual patch
 	 * 
 	 * @param patch
+	 * @param costs
+	 *            - the ground control costs, indexed by species and stage.
+	 * @param labour
+	 *            - the ground control labour, indexed by species and stage.
 	 */
 
-	private void process(Patch patch) {
+	private void process(Patch patch, double[][] costs, double[][] labour) {
 
 		// If a Patch has NoData, ignore it
 
@@ -243,8 +328,8 @@ public class Process_Costing implements Process, Cloneable {
 			return;
 		}
 
-		costTotal += getCost(patch);
-		labourTotal += getLabour(patch);
+		costTotal += getCost(patch, costs);
+		labourTotal += getLabour(patch, labour);
 
 	}
 
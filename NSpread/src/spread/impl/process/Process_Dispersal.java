@@ -5,7 +5,6 @@
 package spread.impl.process;
 
 import java.util.Collection;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -18,6 +17,8 @@ import spread.Infestation;
 import spread.Patch;
 import spread.Process;
 
+import cern.colt.function.IntProcedure;
+
 /**
  * Performs operations on a Mosaic pertaining to dispersing propagules. Chiefly,
  * calls the disperse() method if a patch is infested.
@@ -36,49 +37,86 @@ public class Process_Dispersal implements Process, Cloneable {
 	@Override
 	public Process_Dispersal clone() {
 		Process_Dispersal pd = new Process_Dispersal();
-		Map<String, Long> c_waitTimes = new TreeMap<String, Long>();
-		for (String s : waitTimes.keySet()) {
-			c_waitTimes.put(s, waitTimes.get(s));
+		if (waitTimes != null) {
+			pd.setWaitTimes(new TreeMap<String, Long>(waitTimes));
 		}
-		pd.setWaitTimes(waitTimes);
+		pd.coreControl.addAll(coreControl);
 		return pd;
 	}
 
 	/**
-	 * Processes all patches in the Mosaic
+	 * Processes all infested patches in the Mosaic (only infested patches
+	 * disperse)
 	 */
 
 	@Override
-	public void process(Mosaic mosaic) {
-		for (Integer key : mosaic.getPatches().keySet()) {
-			process(mosaic.getPatches().get(key));
-		}
+	public void process(final Mosaic mosaic) {
+		final Long[] wait = getWaitTimes(mosaic);
+		mosaic.forEachInfested(new IntProcedure() {
+
+			@Override
+			public boolean apply(int key) {
+				process(mosaic.getPatch(key), wait);
+				return true;
+			}
+		});
 	}
 
 	/**
-	 * Calls the disperse() method on the provided Patch object
+	 * Calls the disperse() method on the provided Patch object. Species
+	 * without a wait time do not disperse.
 	 * 
 	 * @param patch
 	 *            - The patch to be processed
+	 * @param wait
+	 *            - the wait times, indexed by species.
 	 */
 
-	private void process(Patch patch) {
-		Iterator<String> it = patch.getInfestation().keySet().iterator();
-		while (it.hasNext()) {
-			String species = it.next();
-			Infestation o = patch.getInfestation(species);
-			if (o.isInfested()
-					&& o.getAgeOfInfestation() >= waitTimes.get(species)
-					&& !o.hasControl(ControlType.GROUND_CONTROL)
-					&& !patch.hasControl(ControlType.CONTAINMENT)
-					&& !patch.hasControl(ControlType.CONTAINMENT_CORE_CONTROL,species)
-					&& !patch.hasControl(ControlType.GROUND_CONTROL,species)){
-				
-					o.disperse();
+	private void process(Patch patch, Long[] wait) {
+		for (int s = 0; s < wait.length; s++) {
+			if (isDispersing(patch, s, wait)) {
+				patch.getInfestation(s).disperse();
 			}
 		}
 	}
 
+	/**
+	 * Returns whether a species disperses from a Patch: it must have been
+	 * infested for at least the wait time of the species, and neither the
+	 * Infestation nor the Patch may be under control.
+	 * 
+	 * @param patch
+	 *            - The patch to be checked
+	 * @param s
+	 *            - the index of the species.
+	 * @param wait
+	 *            - the wait times, indexed by species.
+	 */
+
+	boolean isDispersing(Patch patch, int s, Long[] wait) {
+		if (wait[s] == null || !patch.isInfestedBy(s)) {
+			return false;
+		}
+		Infestation o = patch.getInfestation(s);
+		return o.getAgeOfInfestation() >= wait[s]
+				&& !o.hasControl(ControlType.GROUND_CONTROL)
+				&& !patch.hasControl(ControlType.CONTAINMENT)
+				&& !patch.hasControl(ControlType.CONTAINMENT_CORE_CONTROL, s)
+				&& !patch.hasControl(ControlType.GROUND_CONTROL, s);
+	}
+
+	/**
+	 * Returns the wait times of the species of a Mosaic, indexed by species.
+	 * 
+	 * @param mosaic
+	 *            - the mosaic whose species registry gives the indices.
+	 */
+
+	Long[] getWaitTimes(Mosaic mosaic) {
+		return mosaic.getSpeciesRegistry().toArray(waitTimes,
+				new Long[mosaic.getSpeciesRegistry().size()]);
+	}
+
 	/**
 	 * Sets the amount of time before the onset of dispersion.
 	 * 
@@ -15,6 +15,8 @@ import spread.Infestation;
 import spread.Patch;
 import spread.Process;
 
+import cern.colt.function.IntProcedure;
+
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
 
@@ -117,6 +119,9 @@ public class Process_GroundControl implements Process, Cloneable {
 		Process_GroundControl pgc = new Process_GroundControl();
 		pgc.timeIncrement=timeIncrement;
 		pgc.counter=counter;
+		pgc.chkFrq=chkFrq;
+		pgc.ignore.addAll(ignore);
+		pgc.coreControl.addAll(coreControl);
 		return pgc;
 	}
 
@@ -125,7 +130,7 @@ public class Process_GroundControl implements Process, Cloneable {
 	 */
 
 	@Override
-	public void process(Mosaic mosaic) {
+	public void process(final Mosaic mosaic) {
 		
 		counter+=timeIncrement;
 		
@@ -135,83 +140,93 @@ public class Process_GroundControl implements Process, Cloneable {
 		
 		counter = 0;
 		
-		for (Integer key : mosaic.getPatches().keySet()) {
-			process(mosaic.getPatches().get(key));
+		// Only Patches under ground control for a species are affected, so
+		// only those are visited.
+		
+		for (final String species : mosaic.getSpeciesList()) {
+			
+			if(ignore.contains(species)){
+				continue;
+			}
+			
+			mosaic.forEachControlled(species, ControlType.GROUND_CONTROL,
+					new IntProcedure() {
+
+						@Override
+						public boolean apply(int key) {
+							process(mosaic.getPatch(key), species);
+							return true;
+						}
+					});
 		}
 	}
 
 	/**
-	 * Performs actions associated with ground control-based management for a single Patch.
+	 * Performs actions associated with ground control-based management for a single Patch
+	 * and species.
 	 */
 	
-	private void process(Patch patch) {
+	private void process(Patch patch, String species) {
 		
-		for (String species : patch.getInfestation().keySet()) {
-			
-			if(ignore.contains(species)){
-				continue;
-			}
-			
-			if(!patch.isInfestedBy(species)){
-				patch.getInfestation(species).removeControl(ControlType.GROUND_CONTROL);
-				continue;
-			}
+		if(!patch.isInfestedBy(species)){
+			patch.getInfestation(species).removeControl(ControlType.GROUND_CONTROL);
+			return;
+		}
 
-			// Can you hear me Major Tom? Can you hear me Major Tom?
+		// Can you hear me Major Tom? Can you hear me Major Tom?
 
-			if (patch.getInfestation(species).hasControl(ControlType.GROUND_CONTROL)) {
-				
-				// Retrieve and sort time indices
-				
-				Set<Long> s = table.columnKeySet();
-				
-				// We use max infestation here because it corresponds to the
-				// initial stage upon discovery (because afterwards it won't
-				// increase - at least in the present implementation)
-				
-				int stage = patch.getInfestation(species).getMaxInfestation();
-				ArrayList<Long> times = new ArrayList<Long>(s);
-				Collections.sort(times);
-				
-				// Find the time nearest to the amount of time spent in ground control
+		if (patch.getInfestation(species).hasControl(ControlType.GROUND_CONTROL)) {
+			
+			// Retrieve and sort time indices
+			
+			Set<Long> s = table.columnKeySet();
+			
+			// We use max infestation here because it corresponds to the
+			// initial stage upon discovery (because afterwards it won't
+			// increase - at least in the present implementation)
+			
+			int stage = patch.getInfestation(species).getMaxInfestation();
+			ArrayList<Long> times = new ArrayList<Long>(s);
+			Collections.sort(times);
+			
+			// Find the time nearest to the amount of time spent in ground control
 
-				long ctime = patch.getInfestation(species).getControlTime(ControlType.GROUND_CONTROL);
-				int nearest_idx = Collections.binarySearch(times, ctime);
-				
-				// if index value is negative, get -value+1, otherwise it is an exact match
-				
-				nearest_idx = nearest_idx < 0 ? -(nearest_idx + 1)
-						: nearest_idx;
-				
-				// If the value goes beyond the end of the array, use the last value
-				
-				nearest_idx = Math.min(times.size()-1,nearest_idx);
-				
-				// Get the conditioned value for the nearest time
-				
-				long nearest = times.get(nearest_idx);
-				Infestation o = patch.getInfestation(species);
-				
-				// update stage of infestation
-				
-				o.setStageOfInfestation(
-						table.get(stage, nearest));
-				
-				// if the stage has reached 0, clear the infestation
+			long ctime = patch.getInfestation(species).getControlTime(ControlType.GROUND_CONTROL);
+			int nearest_idx = Collections.binarySearch(times, ctime);
+			
+			// if index value is negative, get -value+1, otherwise it is an exact match
+			
+			nearest_idx = nearest_idx < 0 ? -(nearest_idx + 1)
+					: nearest_idx;
+			
+			// If the value goes beyond the end of the array, use the last value
+			
+			nearest_idx = Math.min(times.size()-1,nearest_idx);
+			
+			// Get the conditioned value for the nearest time
+			
+			long nearest = times.get(nearest_idx);
+			Infestation o = patch.getInfestation(species);
+			
+			// update stage of infestation
+			
+			o.setStageOfInfestation(
+					table.get(stage, nearest));
+			
+			// if the stage has reached 0, clear the infestation
+			
+			if (o.getStageOfInfestation() == 0) {
+				o.removeControl(ControlType.GROUND_CONTROL);
+				o.clearInfestation();
 				
-				if (o.getStageOfInfestation() == 0) {
-					o.removeControl(ControlType.GROUND_CONTROL);
-					o.clearInfestation();
+				if(patch.getCurrentOccupants().size()==1&&patch.getCurrentOccupants().contains(species)){
 					
-					if(patch.getCurrentOccupants().size()==1&&patch.getCurrentOccupants().contains(species)){
-						
-					}
-				}
-				
-				else{
-					o.setControlTime(ControlType.GROUND_CONTROL, o.getControlTime(ControlType.GROUND_CONTROL)+chkFrq);
 				}
 			}
+			
+			else{
+				o.setControlTime(ControlType.GROUND_CONTROL, o.getControlTime(ControlType.GROUND_CONTROL)+chkFrq);
+			}
 		}
 	}
 	
@@ -14,6 +14,8 @@ import spread.Infestation;
 import spread.Patch;
 import spread.Process;
 
+import cern.colt.function.IntProcedure;
+
 import spread.util.ControlType;
 
 /**
@@ -42,60 +44,79 @@ public class Process_Growth implements Process, Cloneable {
 					thresholds.get(key).length));
 		}
 
+		pg.setThresholds(c_thresholds);
 		pg.timeIncrement = timeIncrement;
 		return pg;
 	}
 
 	/**
-	 * Processes all patches in the Mosaic
+	 * Processes all infested patches in the Mosaic (growth has no effect on
+	 * uninfested patches)
 	 */
 
 	@Override
-	public void process(Mosaic mosaic) {
-		for (Integer key : mosaic.getPatches().keySet()) {
-			process(mosaic.getPatches().get(key));
+	public void process(final Mosaic mosaic) {
+
+		// Resolve the thresholds by species index once per step, terminated
+		// so that the stage search does not run off the end.
+
+		final long[][] th = mosaic.getSpeciesRegistry().toArray(thresholds,
+				new long[mosaic.getSpeciesRegistry().size()][]);
+		for (int s = 0; s < th.length; s++) {
+			if (th[s] != null) {
+				th[s] = Arrays.copyOf(th[s], th[s].length + 1);
+				th[s][th[s].length - 1] = Long.MAX_VALUE;
+			}
 		}
+
+		mosaic.forEachInfested(new IntProcedure() {
+
+			@Override
+			public boolean apply(int key) {
+				process(mosaic.getPatch(key), th);
+				return true;
+			}
+		});
 	}
 
 	/**
 	 * Increments the infestation time of the patch (if infested) and adjusts
-	 * their level of infestation correspondingly.
+	 * their level of infestation correspondingly. Species without thresholds
+	 * are aged but keep their stage.
 	 * 
 	 * @param patch
 	 *            - The patch to be processed
+	 * @param th
+	 *            - the terminated thresholds, indexed by species.
 	 */
 
-	private void process(Patch patch) {
+	private void process(Patch patch, long[][] th) {
 
-		Iterator<String> it = patch.getInfestation().keySet().iterator();
-		while (it.hasNext()) {
+		for (int s = 0; s < th.length; s++) {
 
-			String species = it.next();
+			if (!patch.wasInfestedBy(s)) {
+				continue;
+			}
 
-			long[] th = Arrays.copyOf(thresholds.get(species),
-					thresholds.get(species).length + 1);
-			th[th.length - 1] = Long.MAX_VALUE;
-			Infestation o = patch.getInfestation(species);
+			Infestation o = patch.getInfestation(s);
 
 			o.incrementInfestationTime(timeIncrement);
 
-			if (o.isInfested()
+			if (th[s] != null
+					&& o.isInfested()
 					&& !patch.hasControl(ControlType.CONTAINMENT)
-					&& !patch.hasControl(ControlType.GROUND_CONTROL, species)
+					&& !patch.hasControl(ControlType.GROUND_CONTROL, s)
 					&& !patch.hasControl(ControlType.CONTAINMENT_CORE_CONTROL,
-							species)) {
+							s)) {
 
-				for (int j = 0; j < th.length; j++) {
+				long aoi = o.getAgeOfInfestation();
+				int ct = 0;
 
-					long aoi = o.getAgeOfInfestation();
-					int ct = 0;
-
-					while (aoi > th[ct]) {
-						ct++;
-					}
-
-					o.setStageOfInfestation(ct + 1);
+				while (aoi > th[s][ct]) {
+					ct++;
 				}
+
+				o.setStageOfInfestation(ct + 1);
 			}
 		}
 	}
@@ -4,12 +4,12 @@
  *******************************************************************************/
 package spread.impl.process;
 
-import java.util.Iterator;
-
 import spread.Mosaic;
-import spread.Infestation;
+import spread.Patch;
 import spread.Process;
 
+import cern.colt.function.IntProcedure;
+
 
 /**
  * Performs operations on a Mosaic pertaining to infesting Patches. Chiefly,
@@ -31,27 +31,30 @@ public class Process_Infestation implements Process, Cloneable {
 
 	/**
 	 * Calls the calls the infest(List<Coordinate> propagules) method for all
-	 * cells in the Mosaic.
+	 * infested cells in the Mosaic.
 	 * 
 	 * @param mosaic
 	 *            - The mosaic to be processed
 	 */
 
 	@Override
-	public void process(Mosaic mosaic) {
-		for (Integer key : mosaic.getPatches().keySet()) {
-
-			Iterator<String> it = mosaic.getPatch(key).getInfestation().keySet()
-					.iterator();
-			while (it.hasNext()) {
-				Infestation o = mosaic.getPatch(key).getInfestation(it.next());
+	public void process(final Mosaic mosaic) {
+		mosaic.forEachInfested(new IntProcedure() {
 
-				if (o.isInfested()) {
-					mosaic.infest(o.getName(), o.getPropagules());
+			@Override
+			public boolean apply(int key) {
+				int n = mosaic.getSpeciesRegistry().size();
+				for (int s = 0; s < n; s++) {
+					Patch patch = mosaic.getPatch(key);
+					if (patch.isInfestedBy(s)) {
+						mosaic.infest(s, patch.getInfestation(s)
+								.getPropaguleBuffer());
+					}
+					// mosaic.getPatch(key).getPropagules().clear();
 				}
-				// mosaic.getPatch(key).getPropagules().clear();
+				return true;
 			}
-		}
+		});
 	}
 	
 	/**
@@ -4,13 +4,13 @@
  *******************************************************************************/
 package spread.impl.process;
 
-import java.util.Iterator;
-
 import spread.Mosaic;
 import spread.Infestation;
 import spread.Patch;
 import spread.Process;
 
+import cern.colt.function.IntProcedure;
+
 
 /**
  * Performs management operations on a Mosaic. Chiefly, detects if the age of
@@ -35,14 +35,20 @@ public class Process_ManageAge implements Process, Cloneable {
 	}
 
 	/**
-	 * Processes all patches in the Mosaic
+	 * Processes all patches in the Mosaic that hold an Infestation (the
+	 * others are unaffected, so need not be retrieved).
 	 */
 
 	@Override
-	public void process(Mosaic mosaic) {
-		for (Integer key : mosaic.getPatches().keySet()) {
-			process(mosaic.getPatches().get(key));
-		}
+	public void process(final Mosaic mosaic) {
+		mosaic.forEachRecorded(new IntProcedure() {
+
+			@Override
+			public boolean apply(int key) {
+				process(mosaic.getPatch(key));
+				return true;
+			}
+		});
 	}
 
 	/**
@@ -55,9 +61,12 @@ public class Process_ManageAge implements Process, Cloneable {
 
 	public void process(Patch patch) {
 
-		Iterator<String> it = patch.getInfestation().keySet().iterator();
-		while (it.hasNext()) {
-			Infestation o = patch.getInfestation(it.next());
+		int n = patch.getSpeciesRegistry().size();
+		for (int s = 0; s < n; s++) {
+			if (!patch.wasInfestedBy(s)) {
+				continue;
+			}
+			Infestation o = patch.getInfestation(s);
 
 			if (o.getAgeOfInfestation() >= ageThreshold.longValue()) {
 				o.setInfested(false);
@@ -18,8 +18,11 @@ import spread.Infestation;
 import spread.Patch;
 import spread.Process;
 
-import cern.jet.random.Uniform;
+import spread.util.Components;
 import spread.util.ControlType;
+import spread.util.RandomService;
+
+import cern.colt.function.IntProcedure;
 
 /**
  * Performs operations on a Mosaic pertaining to monitoring infestation status.
@@ -28,7 +31,10 @@ import spread.util.ControlType;
 
 public class Process_Monitor implements Process, Cloneable {
 
+	private static final int STREAM = RandomService.register("monitor");
+
 	private Map<String, double[]> p_discovery;
+	private double[][] discovery;
 	private Mosaic ms;
 	private double containmentCutoff = 8;
 	private double coreBufferSize = 3;
@@ -37,7 +43,6 @@ public class Process_Monitor implements Process, Cloneable {
 	private long chkFrq = 1;
 
 	private Map<String, Set<Patch>> visited;
-	private Set<Patch> dissolveVisited;
 	private Set<String> groundControlIgnore = new TreeSet<String>();
 	private Set<String> containmentIgnore = new TreeSet<String>();
 	private Set<String> coreControl = new TreeSet<String>();
@@ -64,24 +69,25 @@ public class Process_Monitor implements Process, Cloneable {
 		clone.coreBufferSize = coreBufferSize;
 		clone.timeIncrement = timeIncrement;
 		clone.counter = counter;
-		clone.ms = ms;
-		clone.visited = visited;
+		clone.chkFrq = chkFrq;
 		Set<String> ci = new TreeSet<String>();
 		Set<String> gci = new TreeSet<String>();
 		ci.addAll(containmentIgnore);
 		gci.addAll(groundControlIgnore);
 		clone.containmentIgnore = ci;
 		clone.groundControlIgnore = gci;
+		clone.coreControl.addAll(coreControl);
 
 		return clone;
 	}
 	
 	/**
-	 * Processes all patches in the Mosaic
+	 * Processes all patches in the Mosaic that hold an Infestation (the
+	 * others are skipped by process(Patch), so need not be retrieved).
 	 */
 
 	@Override
-	public void process(Mosaic mosaic) {
+	public void process(final Mosaic mosaic) {
 
 		visited = new TreeMap<String, Set<Patch>>();
 		co_managed = new TreeSet<String>();
@@ -102,10 +108,17 @@ public class Process_Monitor implements Process, Cloneable {
 		counter = 0;
 
 		this.ms = mosaic;
+		discovery = mosaic.getSpeciesRegistry().toArray(p_discovery,
+				new double[mosaic.getSpeciesRegistry().size()][]);
 
-		for (Integer key : mosaic.getPatches().keySet()) {
-			process(mosaic.getPatches().get(key));
-		}
+		mosaic.forEachRecorded(new IntProcedure() {
+
+			@Override
+			public boolean apply(int key) {
+				process(mosaic.getPatch(key));
+				return true;
+			}
+		});
 
 		visited.clear();
 		
@@ -113,22 +126,18 @@ public class Process_Monitor implements Process, Cloneable {
 	}
 	
 	/**
-	 * Performs dissolve operations on Patches undergoing containment
+	 * Performs dissolve operations on Patches undergoing containment. The
+	 * containment zones are labelled in a single pass, since assigning cores
+	 * does not change which Patches are under containment.
 	 */
 	
 	private void dissolveContainment(){
 		
-		dissolveVisited = new TreeSet<Patch>();
+		Components zones = ms.labelContainment(true);
 
-		for (Integer key : ms.getPatches().keySet()) {
-		
-			Patch patch = ms.getPatch(key);
+		for (int label = 1; label <= zones.getCount(); label++) {
 			
-			if (patch.hasNoData()||dissolveVisited.contains(patch)||!(patch.hasControl(ControlType.CONTAINMENT)||patch.hasControl(ControlType.CONTAINMENT_CORE))) {
-				continue;
-			}
-			
-			Set<Patch> containmentZone = ms.getWeakContainment(patch);
+			Set<Patch> containmentZone = toPatches(zones.getIds(label));
 		
 		// Get the core and assign as Core area and remove Containment label
 		// to keep management options exclusive.
@@ -150,7 +159,6 @@ public class Process_Monitor implements Process, Cloneable {
 			}
 		}
 
-		dissolveVisited.addAll(containmentZone);
 		}
 	}
 
@@ -168,11 +176,13 @@ public class Process_Monitor implements Process, Cloneable {
 			return;
 		}
 
-		Iterator<String> it = patch.getInfestation().keySet().iterator();
+		for (int s = 0; s < discovery.length; s++) {
 
-		while (it.hasNext()) {
+			if (!patch.wasInfestedBy(s)) {
+				continue;
+			}
 
-			String species = it.next();
+			String species = ms.getSpeciesRegistry().getName(s);
 
 			// If this Patch has been processed already as part of a chain,
 			// continue
@@ -181,7 +191,7 @@ public class Process_Monitor implements Process, Cloneable {
 				continue;
 			}
 
-			Infestation o = patch.getInfestation(species);
+			Infestation o = patch.getInfestation(s);
 
 			// If the patch is not infested, but is under ground control, then remove ground control
 			
@@ -202,14 +212,14 @@ public class Process_Monitor implements Process, Cloneable {
 				// detection.
 
 				if (!o.isControlled()) {
-					p = Uniform.staticNextDouble();
+					p = RandomService.current().getStream(STREAM).raw();
 				}
 
 				int stage = o.getStageOfInfestation();
 
 				// If there is something that needs managing
 
-				if (p <= p_discovery.get(species)[stage - 1]) {
+				if (p <= discovery[s][stage - 1]) {
 					patch.setMonitored(true);
 
 					// Detect the region of infestation, and fill to get the
@@ -251,8 +261,11 @@ public class Process_Monitor implements Process, Cloneable {
 			sp_group.add(species);
 		}
 
-		Set<Patch> comanaged = ms.getWeakRegion(patch, sp_group,
-				patch.isInfestedBy(species));
+		// The Mosaic keeps the infested regions of each species group up to
+		// date between steps, so looking up the region is cheap.
+
+		Set<Patch> comanaged = toPatches(ms.getTrackedRegionIds(patch.getID(),
+				sp_group));
 
 		Set<Patch> filled = ms.fill(comanaged, species);
 
@@ -363,6 +376,20 @@ public class Process_Monitor implements Process, Cloneable {
 		return controlled;
 	}
 
+	/**
+	 * @param ids
+	 *            - Patch IDs.
+	 * @return the Patches of the Mosaic with the given IDs.
+	 */
+
+	private Set<Patch> toPatches(int[] ids) {
+		Set<Patch> patches = new TreeSet<Patch>();
+		for (int id : ids) {
+			patches.add(ms.getPatch(id));
+		}
+		return patches;
+	}
+
 	/**
 	 * Sets the frequency with which costing actions occur.
 	 * 
@@ -417,11 +444,17 @@ public class Process_Monitor implements Process, Cloneable {
 	}
 
 	/**
-	 * Resets the process
+	 * Resets the process, discarding the state of the previous run (the
+	 * management cycle and the Mosaic last processed).
 	 */
 
 	@Override
 	public void reset() {
+		counter = 0;
+		ms = null;
+		discovery = null;
+		visited = null;
+		co_managed = null;
 	}
 
 	public void addToContainmentIgnore(Collection<String> species) {
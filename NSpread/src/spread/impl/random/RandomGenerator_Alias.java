@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package spread.impl.random;
+
+import java.util.Arrays;
+
+import spread.RandomGenerator;
+import spread.util.AliasTable;
+import spread.util.RandomService;
+import spread.util.RandomStream;
+
+/**
+ * Number generator that implements the RandomGenerator interface, and returns
+ * pseudo-random numbers drawn from the same binned distribution as
+ * RandomGenerator_Kernel (each bin is chosen in proportion to its weight, and
+ * values are uniform within the bin). Bins are drawn from an alias table in
+ * constant time, and the table is immutable, so clones share it rather than
+ * copying the distribution.
+ *
+ */
+
+public class RandomGenerator_Alias implements RandomGenerator, Cloneable {
+
+	private static final int STREAM = RandomService.register("alias");
+
+	private double[] weights = new double[] { .125, .250, .375, .5, .625, .75,
+			.875, 1 };
+	private AliasTable table = new AliasTable(weights);
+	private boolean rotate = true;
+	private double inc = 1d / (weights.length * 2d);
+
+	/**
+	 * Returns a clone/copy of the instance. The alias table is shared.
+	 */
+
+	@Override
+	public RandomGenerator_Alias clone() {
+		RandomGenerator_Alias rga = new RandomGenerator_Alias();
+		rga.weights = weights;
+		rga.table = table;
+		rga.rotate = rotate;
+		rga.inc = inc;
+		return rga;
+	}
+
+	/**
+	 * Returns the next pseudo-random value from the generator. If the rotate
+	 * parameter is true, then the value is rotated such that the midpoint of
+	 * the first bin falls at zero, as for RandomGenerator_Kernel.
+	 */
+
+	@Override
+	public Number getNext() {
+		return nextDouble();
+	}
+
+	/**
+	 * Returns the next pseudo-random value from the generator as a double.
+	 */
+
+	@Override
+	public double nextDouble() {
+		return next(RandomService.current().getStream(STREAM));
+	}
+
+	/**
+	 * Returns the next pseudo-random value from the generator, truncated to an
+	 * int.
+	 */
+
+	@Override
+	public int nextInt() {
+		return (int) nextDouble();
+	}
+
+	/**
+	 * Fills the first n elements of an array with pseudo-random values.
+	 */
+
+	@Override
+	public void fill(double[] out, int n) {
+		RandomStream random = RandomService.current().getStream(STREAM);
+		for (int i = 0; i < n; i++) {
+			out[i] = next(random);
+		}
+	}
+
+	/**
+	 * Fills the first n elements of an array with pseudo-random values,
+	 * truncated to ints.
+	 */
+
+	@Override
+	public void fill(int[] out, int n) {
+		RandomStream random = RandomService.current().getStream(STREAM);
+		for (int i = 0; i < n; i++) {
+			out[i] = (int) next(random);
+		}
+	}
+
+	private double next(RandomStream random) {
+		int bin = table.sample(random.raw());
+		double val = (bin + random.raw()) / weights.length;
+		return rotate ? (1 + (val - inc)) % 1d : val;
+	}
+
+	/**
+	 * Returns the alias table used to draw bins.
+	 *
+	 * @return - the alias table.
+	 */
+
+	public AliasTable getTable() {
+		return table;
+	}
+
+	/**
+	 * Returns a copy of the bin weights.
+	 *
+	 * @return - the weights of the bins.
+	 */
+
+	public double[] getWeights() {
+		return Arrays.copyOf(weights, weights.length);
+	}
+
+	/**
+	 * Returns whether values are rotated so that the midpoint of the first bin
+	 * falls on zero.
+	 *
+	 * @return - whether values are rotated.
+	 */
+
+	public boolean isRotate() {
+		return rotate;
+	}
+
+	/**
+	 * Sets whether values should be rotated so that the midpoint of the first
+	 * bin falls on zero.
+	 *
+	 * @param rotate
+	 *            - indicates whether values should be rotated.
+	 */
+
+	public void setRotate(boolean rotate) {
+		this.rotate = rotate;
+	}
+
+	/**
+	 * Sets the weights (and number) of the bins, building a new alias table.
+	 *
+	 * @param weights
+	 *            - the pdf to be used to weight the bins
+	 */
+
+	public void setWeights(double[] weights) {
+		this.weights = Arrays.copyOf(weights, weights.length);
+		table = new AliasTable(this.weights);
+		inc = 1d / (weights.length * 2d);
+	}
+}
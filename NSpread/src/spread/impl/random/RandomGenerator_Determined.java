@@ -4,6 +4,8 @@
  *******************************************************************************/
 package spread.impl.random;
 
+import java.util.Arrays;
+
 import spread.RandomGenerator;
 
 /**
@@ -54,6 +56,44 @@ public class RandomGenerator_Determined implements RandomGenerator, Cloneable {
 		return value;
 	}
 
+	/**
+	 * Returns the value to be returned by the generator.
+	 */
+
+	@Override
+	public double nextDouble() {
+		return value;
+	}
+
+	/**
+	 * Returns the next pseudo-random value from the generator, truncated to an
+	 * int.
+	 */
+
+	@Override
+	public int nextInt() {
+		return (int) value;
+	}
+
+	/**
+	 * Fills the first n elements of an array with pseudo-random values.
+	 */
+
+	@Override
+	public void fill(double[] out, int n) {
+		Arrays.fill(out, 0, n, value);
+	}
+
+	/**
+	 * Fills the first n elements of an array with pseudo-random values,
+	 * truncated to ints.
+	 */
+
+	@Override
+	public void fill(int[] out, int n) {
+		Arrays.fill(out, 0, n, (int) value);
+	}
+
 	/**
 	 * Sets the value to be returned by the generator.
 	 * 
@@ -4,18 +4,23 @@
  *******************************************************************************/
 package spread.impl.random;
 
+import java.util.Arrays;
+
 import spread.RandomGenerator;
-import cern.jet.random.Exponential;
+import spread.util.RandomService;
+import spread.util.RandomStream;
 
 /**
  * Number generator that implements the RandomGenerator interface, and returns
- * pseudo-random numbers drawn from an exponential distribution. This class is
- * primarily a wrapper for the Colt package's Exponential class.
+ * pseudo-random numbers drawn from an exponential distribution (by inversion),
+ * using the exponential stream of the current RandomService.
  * 
  */
 
 public class RandomGenerator_Exponential implements RandomGenerator, Cloneable {
 
+	private static final int STREAM = RandomService.register("exponential");
+
 	public double lambda = 1;
 
 	/**
@@ -68,7 +73,63 @@ public class RandomGenerator_Exponential implements RandomGenerator, Cloneable {
 		if(lambda==Double.POSITIVE_INFINITY){
 			return 0;
 		}
-		return Exponential.staticNextDouble(lambda);
+		return nextDouble();
+	}
+
+	/**
+	 * Returns the next pseudo-random value from the generator as a double.
+	 */
+
+	@Override
+	public double nextDouble() {
+		if (lambda == Double.POSITIVE_INFINITY) {
+			return 0;
+		}
+		return -Math.log(RandomService.current().getStream(STREAM).raw())
+				/ lambda;
+	}
+
+	/**
+	 * Returns the next pseudo-random value from the generator, truncated to an
+	 * int.
+	 */
+
+	@Override
+	public int nextInt() {
+		return (int) nextDouble();
+	}
+
+	/**
+	 * Fills the first n elements of an array with pseudo-random values.
+	 */
+
+	@Override
+	public void fill(double[] out, int n) {
+		if (lambda == Double.POSITIVE_INFINITY) {
+			Arrays.fill(out, 0, n, 0d);
+			return;
+		}
+		RandomStream random = RandomService.current().getStream(STREAM);
+		for (int i = 0; i < n; i++) {
+			out[i] = -Math.log(random.raw()) / lambda;
+		}
+	}
+
+	/**
+	 * Fills the first n elements of an array with pseudo-random values,
+	 * truncated to ints.
+	 */
+
+	@Override
+	public void fill(int[] out, int n) {
+		if (lambda == Double.POSITIVE_INFINITY) {
+			Arrays.fill(out, 0, n, 0);
+			return;
+		}
+		RandomStream random = RandomService.current().getStream(STREAM);
+		for (int i = 0; i < n; i++) {
+			out[i] = (int) (-Math.log(random.raw()) / lambda);
+		}
 	}
 
 	/**
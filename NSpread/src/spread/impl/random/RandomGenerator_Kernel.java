@@ -7,23 +7,27 @@ package spread.impl.random;
 import java.util.Arrays;
 
 import spread.RandomGenerator;
+import spread.util.RandomService;
+import spread.util.RandomStream;
 
 import cern.jet.random.Empirical;
-import cern.jet.random.engine.RandomEngine;
 
 /**
  * Number generator that implements the RandomGenerator interface, and returns
  * pseudo-random numbers drawn from an empirical distribution. This class is
- * primarily a wrapper for the Colt package's Empirical class.
+ * primarily a wrapper for the Colt package's Empirical class, driven by the
+ * kernel stream of the current RandomService.
  * 
  */
 
 public class RandomGenerator_Kernel implements RandomGenerator, Cloneable {
 
+	private static final int STREAM = RandomService.register("kernel");
+
 	private double[] weights = new double[] { .125, .250, .375, .5, .625, .75,
 			.875, 1 };
-	private Empirical emp = new Empirical(weights,
-			Empirical.LINEAR_INTERPOLATION, RandomEngine.makeDefault());
+	private Empirical emp;
+	private RandomStream engine;
 	private boolean rotate = true;
 	private double inc = 1d / (weights.length * 2d);
 
@@ -35,7 +39,6 @@ public class RandomGenerator_Kernel implements RandomGenerator, Cloneable {
 	public RandomGenerator_Kernel clone() {
 		RandomGenerator_Kernel rgk = new RandomGenerator_Kernel();
 		rgk.weights = Arrays.copyOf(this.weights, weights.length);
-		rgk.emp = (Empirical) emp.clone();
 		rgk.rotate = rotate;
 		rgk.inc = inc;
 		return rgk;
@@ -53,8 +56,56 @@ public class RandomGenerator_Kernel implements RandomGenerator, Cloneable {
 
 	@Override
 	public Number getNext() {
-		double val = emp.nextDouble();
-		return rotate ? (1+(val - inc)) % 1d : val;
+		return nextDouble();
+	}
+
+	/**
+	 * Returns the next pseudo-random value from the generator as a double.
+	 */
+
+	@Override
+	public double nextDouble() {
+		double val = distribution().nextDouble();
+		return rotate ? (1 + (val - inc)) % 1d : val;
+	}
+
+	/**
+	 * Returns the next pseudo-random value from the generator, truncated to an
+	 * int.
+	 */
+
+	@Override
+	public int nextInt() {
+		return (int) nextDouble();
+	}
+
+	/**
+	 * Fills the first n elements of an array with pseudo-random values.
+	 */
+
+	@Override
+	public void fill(double[] out, int n) {
+		Empirical e = distribution();
+		for (int i = 0; i < n; i++) {
+			out[i] = e.nextDouble();
+		}
+		if (rotate) {
+			for (int i = 0; i < n; i++) {
+				out[i] = (1 + (out[i] - inc)) % 1d;
+			}
+		}
+	}
+
+	/**
+	 * Fills the first n elements of an array with pseudo-random values,
+	 * truncated to ints.
+	 */
+
+	@Override
+	public void fill(int[] out, int n) {
+		for (int i = 0; i < n; i++) {
+			out[i] = (int) nextDouble();
+		}
 	}
 
 	/**
@@ -78,6 +129,20 @@ public class RandomGenerator_Kernel implements RandomGenerator, Cloneable {
 	public void setWeights(double[] weights) {
 		this.weights = weights;
 		inc = 1d / (weights.length * 2d);
-		emp.setState(weights, Empirical.LINEAR_INTERPOLATION);
+		emp = null;
+	}
+
+	/**
+	 * Returns the distribution, rebuilt when the current stream changes
+	 * (i.e. when another Experiment runs).
+	 */
+
+	private Empirical distribution() {
+		RandomStream stream = RandomService.current().getStream(STREAM);
+		if (emp == null || stream != engine) {
+			emp = new Empirical(weights, Empirical.LINEAR_INTERPOLATION, stream);
+			engine = stream;
+		}
+		return emp;
 	}
 }
@@ -5,17 +5,24 @@
 package spread.impl.random;
 
 import spread.RandomGenerator;
+import spread.util.RandomService;
+import spread.util.RandomStream;
 import cern.jet.random.Poisson;
 
 /**
  * Number generator that implements the RandomGenerator interface, and returns
  * pseudo-random numbers drawn from a Poisson distribution. This class is
- * primarily a wrapper for the Colt package's Poisson class.
+ * primarily a wrapper for the Colt package's Poisson class, driven by the
+ * Poisson stream of the current RandomService.
  * 
  */
 
 public class RandomGenerator_Poisson implements RandomGenerator, Cloneable {
+	private static final int STREAM = RandomService.register("poisson");
+
 	private double lambda = 1.0d;
+	private Poisson poisson;
+	private RandomStream engine;
 
 	/**
 	 * No-argument constructor
@@ -63,7 +70,51 @@ public class RandomGenerator_Poisson implements RandomGenerator, Cloneable {
 
 	@Override
 	public Number getNext() {
-		return Poisson.staticNextInt(lambda);
+		return nextInt();
+	}
+
+	/**
+	 * Returns the next pseudo-random value from the generator as a double.
+	 */
+
+	@Override
+	public double nextDouble() {
+		return nextInt();
+	}
+
+	/**
+	 * Returns the next pseudo-random value from the generator, truncated to an
+	 * int.
+	 */
+
+	@Override
+	public int nextInt() {
+		return distribution().nextInt();
+	}
+
+	/**
+	 * Fills the first n elements of an array with pseudo-random values.
+	 */
+
+	@Override
+	public void fill(double[] out, int n) {
+		Poisson p = distribution();
+		for (int i = 0; i < n; i++) {
+			out[i] = p.nextInt();
+		}
+	}
+
+	/**
+	 * Fills the first n elements of an array with pseudo-random values,
+	 * truncated to ints.
+	 */
+
+	@Override
+	public void fill(int[] out, int n) {
+		Poisson p = distribution();
+		for (int i = 0; i < n; i++) {
+			out[i] = p.nextInt();
+		}
 	}
 
 	/**
@@ -79,6 +130,20 @@ public class RandomGenerator_Poisson implements RandomGenerator, Cloneable {
 							+ lambda + ".");
 		}
 		this.lambda = lambda;
+		poisson = null;
 	}
 
+	/**
+	 * Returns the distribution, rebuilt when the current stream changes
+	 * (i.e. when another Experiment runs).
+	 */
+
+	private Poisson distribution() {
+		RandomStream stream = RandomService.current().getStream(STREAM);
+		if (poisson == null || stream != engine) {
+			poisson = new Poisson(lambda, stream);
+			engine = stream;
+		}
+		return poisson;
+	}
 }
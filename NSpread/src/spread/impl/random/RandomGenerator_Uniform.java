@@ -5,17 +5,20 @@
 package spread.impl.random;
 
 import spread.RandomGenerator;
-import cern.jet.random.Uniform;
+import spread.util.RandomService;
+import spread.util.RandomStream;
 
 /**
  * Number generator that implements the RandomGenerator interface, and returns
- * pseudo-random numbers drawn from a Uniform distribution. This class is
- * primarily a wrapper for the Colt package's Uniform class.
+ * pseudo-random numbers drawn from a Uniform distribution on (0,1), using
+ * the uniform stream of the current RandomService.
  * 
  */
 
 public class RandomGenerator_Uniform implements RandomGenerator, Cloneable {
 
+	private static final int STREAM = RandomService.register("uniform");
+
 	/**
 	 * Returns a clone/copy of the instance.
 	 */
@@ -31,6 +34,50 @@ public class RandomGenerator_Uniform implements RandomGenerator, Cloneable {
 
 	@Override
 	public Number getNext() {
-		return Uniform.staticNextDouble();
+		return nextDouble();
+	}
+
+	/**
+	 * Returns the next pseudo-random value from the generator as a double.
+	 */
+
+	@Override
+	public double nextDouble() {
+		return RandomService.current().getStream(STREAM).raw();
+	}
+
+	/**
+	 * Returns the next pseudo-random value from the generator, truncated to an
+	 * int.
+	 */
+
+	@Override
+	public int nextInt() {
+		return (int) nextDouble();
+	}
+
+	/**
+	 * Fills the first n elements of an array with pseudo-random values.
+	 */
+
+	@Override
+	public void fill(double[] out, int n) {
+		RandomStream random = RandomService.current().getStream(STREAM);
+		for (int i = 0; i < n; i++) {
+			out[i] = random.raw();
+		}
+	}
+
+	/**
+	 * Fills the first n elements of an array with pseudo-random values,
+	 * truncated to ints.
+	 */
+
+	@Override
+	public void fill(int[] out, int n) {
+		RandomStream random = RandomService.current().getStream(STREAM);
+		for (int i = 0; i < n; i++) {
+			out[i] = (int) random.raw();
+		}
 	}
 }
@@ -5,15 +5,20 @@
 package spread.impl.random;
 
 import spread.RandomGenerator;
+import spread.util.RandomService;
+import spread.util.RandomStream;
 
 /**
  * Number generator that implements the RandomGenerator interface, and returns
- * pseudo-random numbers drawn from a Von Mises distribution.
+ * pseudo-random numbers drawn from a Von Mises distribution, using the Von
+ * Mises stream of the current RandomService.
  * 
  */
 
 public class RandomGenerator_VonMises implements RandomGenerator, Cloneable {
 
+	private static final int STREAM = RandomService.register("vonmises");
+
 	private double mean = 0;
 	private double k = 0;
 
@@ -78,7 +83,49 @@ public class RandomGenerator_VonMises implements RandomGenerator, Cloneable {
 
 	@Override
 	public Number getNext() {
-		return getNext(mean, k);
+		return next(mean, k);
+	}
+
+	/**
+	 * Returns the next pseudo-random value from the generator as a double.
+	 */
+
+	@Override
+	public double nextDouble() {
+		return next(mean, k);
+	}
+
+	/**
+	 * Returns the next pseudo-random value from the generator, truncated to an
+	 * int.
+	 */
+
+	@Override
+	public int nextInt() {
+		return (int) next(mean, k);
+	}
+
+	/**
+	 * Fills the first n elements of an array with pseudo-random values.
+	 */
+
+	@Override
+	public void fill(double[] out, int n) {
+		for (int i = 0; i < n; i++) {
+			out[i] = next(mean, k);
+		}
+	}
+
+	/**
+	 * Fills the first n elements of an array with pseudo-random values,
+	 * truncated to ints.
+	 */
+
+	@Override
+	public void fill(int[] out, int n) {
+		for (int i = 0; i < n; i++) {
+			out[i] = (int) next(mean, k);
+		}
 	}
 
 	/**
@@ -87,9 +134,14 @@ public class RandomGenerator_VonMises implements RandomGenerator, Cloneable {
 	 */
 
 	public Number getNext(double mean, double k) {
+		return next(mean, k);
+	}
+
+	private double next(double mean, double k) {
+		RandomStream random = RandomService.current().getStream(STREAM);
 
 		if (k == 0) {
-			return Math.random() * 2 * Math.PI - Math.PI;
+			return random.raw() * 2 * Math.PI - Math.PI;
 		}
 
 		double result = 0.0;
@@ -99,14 +151,14 @@ public class RandomGenerator_VonMises implements RandomGenerator, Cloneable {
 		double r = (1.0 + b * b) / (2.0 * b);
 
 		while (true) {
-			double U1 = Math.random();
+			double U1 = random.raw();
 			double z = Math.cos(Math.PI * U1);
 			double f = (1.0 + r * z) / (r + z);
 			double c = k * (r - f);
-			double U2 = Math.random();
+			double U2 = random.raw();
 
 			if (c * (2.0 - c) - U2 > 0.0) {
-				double U3 = Math.random();
+				double U3 = random.raw();
 				double sign = 0.0;
 				if (U3 - 0.5 < 0.0)
 					sign = -1.0;
@@ -118,7 +170,7 @@ public class RandomGenerator_VonMises implements RandomGenerator, Cloneable {
 				break;
 			} else {
 				if (Math.log(c / U2) + 1.0 - c >= 0.0) {
-					double U3 = Math.random();
+					double U3 = random.raw();
 					double sign = 0.0;
 					if (U3 - 0.5 < 0.0)
 						sign = -1.0;
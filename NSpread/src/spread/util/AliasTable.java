@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package spread.util;
+
+/**
+ * Walker's alias table for drawing from a discrete distribution in constant
+ * time, built with Vose's method. Each slot holds the probability of keeping
+ * its own index and the index to use otherwise, so a draw needs one uniform
+ * value and one comparison. Tables are immutable and may be shared.
+ */
+
+public class AliasTable {
+
+	private double[] prob;
+	private int[] alias;
+
+	/**
+	 * @param weights
+	 *            - the (non-negative, not necessarily normalised) weight of
+	 *            each index.
+	 */
+
+	public AliasTable(double[] weights) {
+		int n = weights.length;
+		double total = 0;
+		for (double w : weights) {
+			if (w < 0) {
+				throw new IllegalArgumentException(
+						"Alias table weights cannot be negative (" + w + ")");
+			}
+			total += w;
+		}
+		if (n == 0 || total <= 0) {
+			throw new IllegalArgumentException(
+					"Alias table weights must have a positive sum");
+		}
+		prob = new double[n];
+		alias = new int[n];
+		int[] small = new int[n];
+		int[] large = new int[n];
+		int ns = 0;
+		int nl = 0;
+		double[] scaled = new double[n];
+		for (int i = 0; i < n; i++) {
+			scaled[i] = weights[i] * n / total;
+			if (scaled[i] < 1) {
+				small[ns++] = i;
+			} else {
+				large[nl++] = i;
+			}
+		}
+		while (ns > 0 && nl > 0) {
+			int s = small[--ns];
+			int l = large[--nl];
+			prob[s] = scaled[s];
+			alias[s] = l;
+			scaled[l] = (scaled[l] + scaled[s]) - 1;
+			if (scaled[l] < 1) {
+				small[ns++] = l;
+			} else {
+				large[nl++] = l;
+			}
+		}
+		while (nl > 0) {
+			prob[large[--nl]] = 1;
+		}
+
+		// Entries left over through rounding error are certain.
+
+		while (ns > 0) {
+			prob[small[--ns]] = 1;
+		}
+	}
+
+	/**
+	 * Draws an index using a single uniform random value.
+	 *
+	 * @param u
+	 *            - a uniform random value in [0,1).
+	 * @return the index drawn.
+	 */
+
+	public int sample(double u) {
+		double v = u * prob.length;
+		int i = Math.min((int) v, prob.length - 1);
+		return v - i < prob[i] ? i : alias[i];
+	}
+
+	/**
+	 * @return the number of indices in the table.
+	 */
+
+	public int size() {
+		return prob.length;
+	}
+}
@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package spread.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Records the progress of a parameter sweep, so that an interrupted sweep can
+ * be resumed. A checkpoint holds the master seed and size of the sweep, and
+ * the state of the output: the sequence numbers of the replicates completed,
+ * the lengths of the output tables (which hold the rows of all replicates
+ * below the next sequence number), the rows of completed replicates not yet
+ * written, and the frequency tallies.
+ *
+ * Since the random streams of each replicate are derived from the master
+ * seed, its parameters and its replicate number, no generator state is
+ * stored: replicates that were in flight are simply run again, and produce
+ * the same results.
+ *
+ * Checkpoints are written in a compact binary form to a temporary file, which
+ * then replaces the previous checkpoint, so that an interruption while writing
+ * leaves the previous checkpoint intact.
+ */
+
+public class Checkpoint {
+
+	private static final int MAGIC = 0x53505243;
+	private static final int VERSION = 1;
+
+	private long seed;
+	private int total;
+	private int next = 0;
+	private int experiments = 0;
+	private Map<Integer, Map<String, String>> pending = new TreeMap<Integer, Map<String, String>>();
+	private Map<String, Long> tableLengths = new TreeMap<String, Long>();
+	private Map<String, Map<Integer, Long>> tally = new TreeMap<String, Map<Integer, Long>>();
+
+	/**
+	 * @param seed
+	 *            - the master seed of the sweep.
+	 * @param total
+	 *            - the total number of replicates in the sweep.
+	 */
+
+	public Checkpoint(long seed, int total) {
+		this.seed = seed;
+		this.total = total;
+	}
+
+	/**
+	 * Reads a checkpoint from file.
+	 *
+	 * @param path
+	 *            - the path of the checkpoint file.
+	 * @return the checkpoint.
+	 * @throws IOException
+	 */
+
+	public static Checkpoint read(String path) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(path)));
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException(path + " is not a checkpoint file");
+			}
+			Checkpoint checkpoint = new Checkpoint(in.readLong(), in.readInt());
+			checkpoint.next = in.readInt();
+			checkpoint.experiments = in.readInt();
+			int n = in.readInt();
+			for (int i = 0; i < n; i++) {
+				int sequence = in.readInt();
+				Map<String, String> rows = new TreeMap<String, String>();
+				int m = in.readInt();
+				for (int j = 0; j < m; j++) {
+					rows.put(in.readUTF(), in.readUTF());
+				}
+				checkpoint.pending.put(sequence, rows);
+			}
+			n = in.readInt();
+			for (int i = 0; i < n; i++) {
+				checkpoint.tableLengths.put(in.readUTF(), in.readLong());
+			}
+			n = in.readInt();
+			for (int i = 0; i < n; i++) {
+				Map<Integer, Long> counts = new TreeMap<Integer, Long>();
+				checkpoint.tally.put(in.readUTF(), counts);
+				int m = in.readInt();
+				for (int j = 0; j < m; j++) {
+					counts.put(in.readInt(), in.readLong());
+				}
+			}
+			return checkpoint;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes the checkpoint to file, replacing any previous checkpoint.
+	 *
+	 * @param path
+	 *            - the path of the checkpoint file.
+	 * @throws IOException
+	 */
+
+	public void write(String path) throws IOException {
+		File tmp = new File(path + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(tmp)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(seed);
+			out.writeInt(total);
+			out.writeInt(next);
+			out.writeInt(experiments);
+			out.writeInt(pending.size());
+			for (Integer sequence : pending.keySet()) {
+				Map<String, String> rows = pending.get(sequence);
+				out.writeInt(sequence);
+				out.writeInt(rows.size());
+				for (String species : rows.keySet()) {
+					out.writeUTF(species);
+					out.writeUTF(rows.get(species));
+				}
+			}
+			out.writeInt(tableLengths.size());
+			for (String species : tableLengths.keySet()) {
+				out.writeUTF(species);
+				out.writeLong(tableLengths.get(species));
+			}
+			out.writeInt(tally.size());
+			for (String species : tally.keySet()) {
+				Map<Integer, Long> counts = tally.get(species);
+				out.writeUTF(species);
+				out.writeInt(counts.size());
+				for (Integer key : counts.keySet()) {
+					out.writeInt(key);
+					out.writeLong(counts.get(key));
+				}
+			}
+		} finally {
+			out.close();
+		}
+		Files.move(tmp.toPath(), new File(path).toPath(),
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * @return the number of replicates completed.
+	 */
+
+	public int getCompleted() {
+		return next + pending.size();
+	}
+
+	/**
+	 * @return the number of Experiments counted in the frequency tallies.
+	 */
+
+	public int getExperiments() {
+		return experiments;
+	}
+
+	/**
+	 * @return the sequence number below which all replicates have been
+	 *         written to the output tables.
+	 */
+
+	public int getNext() {
+		return next;
+	}
+
+	/**
+	 * @return the table rows of completed replicates not yet written, by
+	 *         sequence number and species.
+	 */
+
+	public Map<Integer, Map<String, String>> getPending() {
+		return pending;
+	}
+
+	/**
+	 * @return the master seed of the sweep.
+	 */
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * @return the lengths of the output tables in bytes, by species.
+	 */
+
+	public Map<String, Long> getTableLengths() {
+		return tableLengths;
+	}
+
+	/**
+	 * @return the frequency tallies, by species and cell.
+	 */
+
+	public Map<String, Map<Integer, Long>> getTally() {
+		return tally;
+	}
+
+	/**
+	 * @return the total number of replicates in the sweep.
+	 */
+
+	public int getTotal() {
+		return total;
+	}
+
+	/**
+	 * @param sequence
+	 *            - the sequence number of a replicate.
+	 * @return whether the replicate has been completed.
+	 */
+
+	public boolean isCompleted(int sequence) {
+		return sequence < next || pending.containsKey(sequence);
+	}
+
+	public void setExperiments(int experiments) {
+		this.experiments = experiments;
+	}
+
+	public void setNext(int next) {
+		this.next = next;
+	}
+}
@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package spread.util;
+
+import java.util.Arrays;
+
+import cern.colt.function.IntProcedure;
+
+/**
+ * The connected components of the cells of a raster that satisfy a predicate,
+ * as found by a two-pass union-find labeller. Components are labelled from 1
+ * in order of their first cell (in row-major order), and cells that do not
+ * satisfy the predicate have label 0. The size and bounding box of each
+ * component are recorded, and the cells of each component can be retrieved
+ * without searching the raster again.
+ */
+
+public class Components {
+
+	private int ncols;
+	private int count;
+	private int[] labels;
+	private int[] sizes;
+	private int[] bounds;
+	private int[] offsets;
+	private int[] members;
+
+	private Components() {
+	}
+
+	/**
+	 * Labels the connected components of the cells accepted by a predicate.
+	 * The work done is linear in the number of cells.
+	 *
+	 * @param nrows
+	 *            - the number of rows of the raster.
+	 * @param ncols
+	 *            - the number of columns of the raster.
+	 * @param predicate
+	 *            - returns true for the ids of cells that belong to a
+	 *            component.
+	 * @param weak
+	 *            - whether cells that only share a corner are connected
+	 *            (8-connectivity) or not (4-connectivity).
+	 * @return the labelled components.
+	 */
+
+	public static Components label(int nrows, int ncols, IntProcedure predicate,
+			boolean weak) {
+		int n = nrows * ncols;
+		int[] labels = new int[n];
+		int[] parent = new int[16];
+		int next = 1;
+
+		// First pass: give each accepted cell a provisional label from its
+		// previously scanned neighbours, recording equivalent labels.
+
+		for (int row = 0; row < nrows; row++) {
+			for (int col = 0; col < ncols; col++) {
+				int id = row * ncols + col;
+				if (!predicate.apply(id)) {
+					continue;
+				}
+				int label = 0;
+				if (col > 0) {
+					label = union(parent, label, labels[id - 1]);
+				}
+				if (row > 0) {
+					label = union(parent, label, labels[id - ncols]);
+					if (weak && col > 0) {
+						label = union(parent, label, labels[id - ncols - 1]);
+					}
+					if (weak && col < ncols - 1) {
+						label = union(parent, label, labels[id - ncols + 1]);
+					}
+				}
+				if (label == 0) {
+					if (next == parent.length) {
+						parent = Arrays.copyOf(parent, next << 1);
+					}
+					parent[next] = next;
+					label = next++;
+				}
+				labels[id] = label;
+			}
+		}
+
+		// Second pass: resolve each provisional label to its root, and
+		// number the roots in order of their first cell.
+
+		int[] compact = new int[next];
+		Components c = new Components();
+		c.ncols = ncols;
+		c.sizes = new int[next];
+		c.bounds = new int[next * 4];
+		for (int id = 0; id < n; id++) {
+			if (labels[id] == 0) {
+				continue;
+			}
+			int root = find(parent, labels[id]);
+			if (compact[root] == 0) {
+				compact[root] = ++c.count;
+				int b = c.count * 4;
+				c.bounds[b] = Integer.MAX_VALUE;
+				c.bounds[b + 1] = Integer.MAX_VALUE;
+				c.bounds[b + 2] = -1;
+				c.bounds[b + 3] = -1;
+			}
+			int label = compact[root];
+			labels[id] = label;
+			c.sizes[label]++;
+			int row = id / ncols;
+			int col = id - row * ncols;
+			int b = label * 4;
+			c.bounds[b] = Math.min(c.bounds[b], row);
+			c.bounds[b + 1] = Math.min(c.bounds[b + 1], col);
+			c.bounds[b + 2] = Math.max(c.bounds[b + 2], row);
+			c.bounds[b + 3] = Math.max(c.bounds[b + 3], col);
+		}
+		c.labels = labels;
+		c.sizes = Arrays.copyOf(c.sizes, c.count + 1);
+		c.bounds = Arrays.copyOf(c.bounds, (c.count + 1) * 4);
+		return c;
+	}
+
+	/**
+	 * @param label
+	 *            - the label of a component.
+	 * @return the bounding box of the component (minrow,mincol,maxrow,maxcol).
+	 */
+
+	public int[] getBounds(int label) {
+		return Arrays.copyOfRange(bounds, label * 4, label * 4 + 4);
+	}
+
+	/**
+	 * @return the number of components.
+	 */
+
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * @param label
+	 *            - the label of a component.
+	 * @return the ids of the cells of the component, in ascending order.
+	 */
+
+	public int[] getIds(int label) {
+		if (members == null) {
+			index();
+		}
+		return Arrays.copyOfRange(members, offsets[label], offsets[label + 1]);
+	}
+
+	/**
+	 * @param id
+	 *            - the id of a cell.
+	 * @return the label of the component containing the cell, or 0 if the cell
+	 *         does not belong to a component.
+	 */
+
+	public int getLabel(int id) {
+		return labels[id];
+	}
+
+	/**
+	 * @return the label of each cell (0 for cells not in a component), in
+	 *         row-major order. The array is not copied.
+	 */
+
+	public int[] getLabels() {
+		return labels;
+	}
+
+	/**
+	 * @return the number of columns of the labelled raster.
+	 */
+
+	public int getNcols() {
+		return ncols;
+	}
+
+	/**
+	 * @param label
+	 *            - the label of a component.
+	 * @return the number of cells in the component.
+	 */
+
+	public int getSize(int label) {
+		return sizes[label];
+	}
+
+	/**
+	 * Groups the cell ids by label (a counting sort), so that the cells of
+	 * any component can be listed directly.
+	 */
+
+	private void index() {
+		offsets = new int[count + 2];
+		for (int label = 1; label <= count; label++) {
+			offsets[label + 1] = offsets[label] + sizes[label];
+		}
+		int[] fill = Arrays.copyOf(offsets, count + 1);
+		members = new int[offsets[count + 1]];
+		for (int id = 0; id < labels.length; id++) {
+			if (labels[id] != 0) {
+				members[fill[labels[id]]++] = id;
+			}
+		}
+	}
+
+	private static int find(int[] parent, int label) {
+		while (parent[label] != label) {
+			parent[label] = parent[parent[label]];
+			label = parent[label];
+		}
+		return label;
+	}
+
+	/**
+	 * Merges the sets of two labels, either of which may be 0 (none).
+	 *
+	 * @return the root of the merged set.
+	 */
+
+	private static int union(int[] parent, int a, int b) {
+		if (b == 0) {
+			return a == 0 ? 0 : find(parent, a);
+		}
+		b = find(parent, b);
+		if (a == 0) {
+			return b;
+		}
+		a = find(parent, a);
+		if (a < b) {
+			parent[b] = a;
+			return a;
+		}
+		parent[a] = b;
+		return b;
+	}
+}
@@ -4,17 +4,25 @@
  *******************************************************************************/
 package spread.util;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 /**
  * An enumeration of different management control types
  * 
  * Note, the ordering is important as it used by the Occupant class to determine
  * the maximum control applied (which is in turn used by Patch)
+ * 
+ * Sets of controls are held as int bitmasks, with one bit per ordinal (see
+ * mask()), so the maximum control of a set is its highest bit.
  */
 
 public enum ControlType {
 	NONE("None"), GROUND_CONTROL("Ground Control"), CONTAINMENT("Containment"), CONTAINMENT_CORE(
 			"Containment Core"), CONTAINMENT_CORE_CONTROL("Core Control");
 
+	private static final ControlType[] VALUES = values();
+
 	private String displayName;
 
 	ControlType(String displayName) {
@@ -29,6 +37,43 @@ public enum ControlType {
 		return displayName;
 	}
 	
+	/**
+	 * @return the bit representing the control type in a control bitmask.
+	 */
+
+	public int mask() {
+		return 1 << ordinal();
+	}
+
+	/**
+	 * @param mask
+	 *            - a control bitmask.
+	 * @return the highest control type in the mask, or NONE if it is empty.
+	 */
+
+	public static ControlType highest(int mask) {
+		if (mask == 0) {
+			return NONE;
+		}
+		return VALUES[31 - Integer.numberOfLeadingZeros(mask)];
+	}
+
+	/**
+	 * @param mask
+	 *            - a control bitmask.
+	 * @return the control types in the mask, as a new Set.
+	 */
+
+	public static Set<ControlType> toSet(int mask) {
+		Set<ControlType> controls = EnumSet.noneOf(ControlType.class);
+		for (ControlType control : VALUES) {
+			if ((mask & control.mask()) != 0) {
+				controls.add(control);
+			}
+		}
+		return controls;
+	}
+
 	/**
 	 * Returns the control type as a String.
 	 */
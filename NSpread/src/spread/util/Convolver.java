@@ -0,0 +1,293 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package spread.util;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Convolves rasters of a fixed size with a DiscreteKernel using a radix-2 fast
+ * Fourier transform. Given the expected number of propagules released from
+ * each cell, the convolution gives the expected number landing in each cell,
+ * at a cost of O(n log n) in the number of cells regardless of how many cells
+ * are sources. Propagules that land outside the raster are lost.
+ *
+ * The raster is padded (to powers of two at least the kernel radius larger
+ * than each dimension) so that the circular convolution of the transform
+ * does not wrap propagules around the edges.
+ *
+ * The transform of the kernel is immutable, so it is computed once for each
+ * kernel and raster size and shared by all Convolvers (in particular, those of
+ * the replicates of a parameter set) while any of them is in use. Each
+ * instance only holds its own work arrays, which are reused between calls, so
+ * an instance must not be shared between threads.
+ */
+
+public class Convolver {
+
+	private static final Map<DiscreteKernel, List<WeakReference<Spectrum>>> cache = new HashMap<DiscreteKernel, List<WeakReference<Spectrum>>>();
+
+	private int nrows;
+	private int ncols;
+	private Spectrum spectrum;
+	private double[] re;
+	private double[] im;
+
+	/**
+	 * @param nrows
+	 *            - the number of rows of the raster.
+	 * @param ncols
+	 *            - the number of columns of the raster.
+	 * @param kernel
+	 *            - the kernel giving the probability of landing at each cell
+	 *            offset.
+	 */
+
+	public Convolver(int nrows, int ncols, DiscreteKernel kernel) {
+		this.nrows = nrows;
+		this.ncols = ncols;
+		spectrum = getSpectrum(nrows, ncols, kernel);
+		re = new double[spectrum.prows * spectrum.pcols];
+		im = new double[spectrum.prows * spectrum.pcols];
+	}
+
+	/**
+	 * Estimates the heap used by the work arrays of a Convolver. The shared
+	 * transform of the kernel is not included.
+	 *
+	 * @param nrows
+	 *            - the number of rows of the raster.
+	 * @param ncols
+	 *            - the number of columns of the raster.
+	 * @param kernel
+	 *            - the kernel.
+	 * @return the estimated footprint in bytes.
+	 */
+
+	public static long estimateFootprint(int nrows, int ncols,
+			DiscreteKernel kernel) {
+		int radius = radius(kernel);
+		return 2L * 8 * power(nrows + radius) * power(ncols + radius);
+	}
+
+	/**
+	 * Retrieves the transform of a kernel from the cache, computing it if no
+	 * Convolver of the same kernel and raster size is still reachable.
+	 */
+
+	private static Spectrum getSpectrum(int nrows, int ncols,
+			DiscreteKernel kernel) {
+		synchronized (cache) {
+			List<WeakReference<Spectrum>> spectra = cache.get(kernel);
+			if (spectra == null) {
+				spectra = new ArrayList<WeakReference<Spectrum>>();
+				cache.put(kernel, spectra);
+			}
+			for (Iterator<WeakReference<Spectrum>> it = spectra.iterator(); it
+					.hasNext();) {
+				Spectrum s = it.next().get();
+				if (s == null) {
+					it.remove();
+				} else if (s.nrows == nrows && s.ncols == ncols) {
+					return s;
+				}
+			}
+			Spectrum s = new Spectrum(nrows, ncols, kernel);
+			spectra.add(new WeakReference<Spectrum>(s));
+			return s;
+		}
+	}
+
+	/**
+	 * Convolves a raster with the kernel.
+	 *
+	 * @param source
+	 *            - the expected number of propagules released from each cell,
+	 *            in row-major order.
+	 * @param result
+	 *            - receives the expected number of propagules landing in each
+	 *            cell, in row-major order (may be the source array).
+	 */
+
+	public void convolve(double[] source, double[] result) {
+		int pcols = spectrum.pcols;
+		double[] kernelRe = spectrum.re;
+		double[] kernelIm = spectrum.im;
+		Arrays.fill(re, 0);
+		Arrays.fill(im, 0);
+		for (int row = 0; row < nrows; row++) {
+			System.arraycopy(source, row * ncols, re, row * pcols, ncols);
+		}
+		spectrum.transform(re, im, false);
+		for (int i = 0; i < re.length; i++) {
+			double r = re[i] * kernelRe[i] - im[i] * kernelIm[i];
+			im[i] = re[i] * kernelIm[i] + im[i] * kernelRe[i];
+			re[i] = r;
+		}
+		spectrum.transform(re, im, true);
+
+		// Clamp the rounding error of cells that receive nothing.
+
+		double scale = 1d / re.length;
+		for (int row = 0; row < nrows; row++) {
+			for (int col = 0; col < ncols; col++) {
+				result[row * ncols + col] = Math.max(0, re[row * pcols + col]
+						* scale);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of columns of the raster.
+	 */
+
+	public int getNcols() {
+		return ncols;
+	}
+
+	/**
+	 * @return the number of rows of the raster.
+	 */
+
+	public int getNrows() {
+		return nrows;
+	}
+
+	/**
+	 * An in-place iterative radix-2 transform of n strided elements.
+	 */
+
+	private static void fft(double[] re, double[] im, int offset, int stride,
+			int n, double[] cos, double[] sin, boolean inverse) {
+		for (int i = 1, j = 0; i < n; i++) {
+			int bit = n >> 1;
+			for (; (j & bit) != 0; bit >>= 1) {
+				j ^= bit;
+			}
+			j ^= bit;
+			if (i < j) {
+				int a = offset + i * stride;
+				int b = offset + j * stride;
+				double t = re[a];
+				re[a] = re[b];
+				re[b] = t;
+				t = im[a];
+				im[a] = im[b];
+				im[b] = t;
+			}
+		}
+		double sign = inverse ? 1 : -1;
+		for (int len = 2; len <= n; len <<= 1) {
+			int half = len >> 1;
+			int step = n / len;
+			for (int i = 0; i < n; i += len) {
+				for (int k = 0; k < half; k++) {
+					double wr = cos[k * step];
+					double wi = sign * sin[k * step];
+					int a = offset + (i + k) * stride;
+					int b = a + half * stride;
+					double xr = re[b] * wr - im[b] * wi;
+					double xi = re[b] * wi + im[b] * wr;
+					re[b] = re[a] - xr;
+					im[b] = im[a] - xi;
+					re[a] += xr;
+					im[a] += xi;
+				}
+			}
+		}
+	}
+
+	private static int radius(DiscreteKernel kernel) {
+		int radius = 0;
+		for (int k = 0; k < kernel.size(); k++) {
+			radius = Math.max(radius, Math.abs(kernel.getDx(k)));
+			radius = Math.max(radius, Math.abs(kernel.getDy(k)));
+		}
+		return radius;
+	}
+
+	private static int power(int n) {
+		int p = 1;
+		while (p < n) {
+			p <<= 1;
+		}
+		return p;
+	}
+
+	private static void twiddles(double[] cos, double[] sin, int n) {
+		for (int k = 0; k < cos.length; k++) {
+			cos[k] = Math.cos(2 * Math.PI * k / n);
+			sin[k] = Math.sin(2 * Math.PI * k / n);
+		}
+	}
+
+	/**
+	 * The (immutable) transform of a kernel padded for a raster size, with the
+	 * twiddle factors of the padded transform.
+	 */
+
+	private static class Spectrum {
+		private int nrows;
+		private int ncols;
+		private int prows;
+		private int pcols;
+		private double[] re;
+		private double[] im;
+		private double[] rowCos;
+		private double[] rowSin;
+		private double[] colCos;
+		private double[] colSin;
+
+		private Spectrum(int nrows, int ncols, DiscreteKernel kernel) {
+			this.nrows = nrows;
+			this.ncols = ncols;
+			int radius = radius(kernel);
+			prows = power(nrows + radius);
+			pcols = power(ncols + radius);
+			if ((long) prows * pcols > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Raster of " + nrows
+						+ " by " + ncols
+						+ " cells is too large to convolve with a kernel of radius "
+						+ radius);
+			}
+			rowCos = new double[pcols / 2];
+			rowSin = new double[pcols / 2];
+			twiddles(rowCos, rowSin, pcols);
+			colCos = new double[prows / 2];
+			colSin = new double[prows / 2];
+			twiddles(colCos, colSin, prows);
+
+			// Kernel rows increase southward, whereas dy is positive northward.
+
+			re = new double[prows * pcols];
+			im = new double[prows * pcols];
+			for (int k = 0; k < kernel.size(); k++) {
+				int row = (-kernel.getDy(k) + prows) % prows;
+				int col = (kernel.getDx(k) + pcols) % pcols;
+				re[row * pcols + col] += kernel.getProbability(k);
+			}
+			transform(re, im, false);
+		}
+
+		/**
+		 * Applies the (unscaled) two-dimensional transform to padded arrays,
+		 * by transforming each row and then each column.
+		 */
+
+		private void transform(double[] re, double[] im, boolean inverse) {
+			for (int row = 0; row < prows; row++) {
+				fft(re, im, row * pcols, 1, pcols, rowCos, rowSin, inverse);
+			}
+			for (int col = 0; col < pcols; col++) {
+				fft(re, im, col, pcols, prows, colCos, colSin, inverse);
+			}
+		}
+	}
+}
@@ -0,0 +1,269 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package spread.util;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * The dispersal distribution of an exponential distance and a binned
+ * direction kernel, discretised to the cells of a raster. Each entry holds a
+ * cell offset (dx columns east, dy cells north) and the probability that a
+ * propagule released from the centre of a cell lands in the cell at that
+ * offset. Offsets are drawn in constant time with Walker's alias method, so
+ * that no trigonometry is needed per propagule.
+ *
+ * The probability of each cell is found by integrating the distribution over
+ * the area of the cell, by midpoint quadrature over polar elements (rings of
+ * distance divided into arcs of direction) no larger than a quarter of a cell
+ * (or a quarter of the mean distance) in either dimension. Every cell within
+ * reach therefore receives the mass of the elements it contains, however far
+ * it lies from the source. The far tail of the distance distribution (beyond
+ * 7.6 mean distances, a probability of 1/2000) is folded into the last ring.
+ *
+ * Kernels are immutable, so the instances returned by get are shared by all
+ * Dispersers (and their clones) with the same parameters. The cache only
+ * holds kernels weakly, so a kernel is released once no Disperser uses it.
+ */
+
+public class DiscreteKernel {
+
+	private static final double TAIL = Math.log(2000);
+	private static final double STEP = 0.25;
+	private static final double FINE = 0.01;
+	private static final int MIN_ARCS = 8;
+	private static final int MAX_CELLS = 1 << 22;
+	private static final Map<String, WeakReference<DiscreteKernel>> cache = new HashMap<String, WeakReference<DiscreteKernel>>();
+
+	private int[] dx;
+	private int[] dy;
+	private double[] p;
+	private AliasTable table;
+
+	private DiscreteKernel() {
+	}
+
+	/**
+	 * Retrieves a kernel from the cache, building it if it has not been
+	 * requested before (or has since been released).
+	 *
+	 * @param meanDistance
+	 *            - the mean of the exponential dispersal distance.
+	 * @param weights
+	 *            - the direction kernel weights, as used by
+	 *            RandomGenerator_Kernel, or null for uniform directions.
+	 * @param rotate
+	 *            - whether the direction bins are rotated so that the midpoint
+	 *            of the first bin falls at zero.
+	 * @param cellsize
+	 *            - the size of the raster cells.
+	 * @return the kernel, or null if it would span more than 2^22 cells.
+	 */
+
+	public static DiscreteKernel get(double meanDistance, double[] weights,
+			boolean rotate, double cellsize) {
+		if (meanDistance < 0 || cellsize <= 0) {
+			throw new IllegalArgumentException(
+					"Mean distance must be non-negative and cell size positive ("
+							+ meanDistance + "," + cellsize + ")");
+		}
+		String key = meanDistance + ";" + Arrays.toString(weights) + ";"
+				+ rotate + ";" + cellsize;
+		synchronized (cache) {
+			WeakReference<DiscreteKernel> ref = cache.get(key);
+			DiscreteKernel kernel = ref == null ? null : ref.get();
+			if (kernel != null) {
+				return kernel;
+			}
+			for (Iterator<WeakReference<DiscreteKernel>> it = cache.values()
+					.iterator(); it.hasNext();) {
+				if (it.next().get() == null) {
+					it.remove();
+				}
+			}
+			kernel = build(meanDistance, weights, rotate, cellsize);
+			if (kernel != null) {
+				cache.put(key, new WeakReference<DiscreteKernel>(kernel));
+			}
+			return kernel;
+		}
+	}
+
+	private static DiscreteKernel build(double meanDistance, double[] weights,
+			boolean rotate, double cellsize) {
+
+		// Distances are measured in cells, from the centre of the source cell.
+
+		double mean = meanDistance / cellsize;
+		double reach = TAIL * mean;
+		int radius = (int) Math.ceil(reach) + 1;
+		long width = 2L * radius + 1;
+		if (width * width > MAX_CELLS) {
+			return null;
+		}
+		int w = (int) width;
+		double[] grid = new double[w * w];
+		if (mean == 0) {
+			grid[radius * w + radius] = 1;
+			return fromGrid(grid, w, radius);
+		}
+
+		double[] cdf = cdf(weights);
+		double inc = rotate && weights != null ? 1d / (weights.length * 2d) : 0;
+		double r0 = 0;
+		while (r0 < reach) {
+
+			// Near the source the density varies steeply across a cell, so
+			// the rings are narrower there (in proportion to the distance).
+
+			double step = Math.min(Math.min(STEP, mean * STEP), Math.max(
+					FINE, r0 * STEP / 5));
+			boolean last = r0 + step >= reach;
+			double r1 = last ? reach : r0 + step;
+			double mass = Math.exp(-r0 / mean)
+					- (last ? 0 : Math.exp(-r1 / mean));
+			double r = (r0 + r1) / 2;
+
+			// Directions are measured from the start of the (rotated) first
+			// bin, so the arcs are integrated from the bins shifted by inc.
+
+			int arcs = Math.max(MIN_ARCS,
+					(int) Math.ceil(2 * Math.PI * r / step));
+			double previous = cumulative(cdf, inc);
+			for (int j = 0; j < arcs; j++) {
+				double next = cumulative(cdf, (j + 1d) / arcs + inc);
+				double a = (j + 0.5) / arcs * 2 * Math.PI;
+				int col = (int) Math.floor(0.5 + r * Math.cos(a)) + radius;
+				int row = (int) Math.floor(0.5 + r * Math.sin(a)) + radius;
+				grid[row * w + col] += mass * (next - previous);
+				previous = next;
+			}
+			r0 = r1;
+		}
+		return fromGrid(grid, w, radius);
+	}
+
+	/**
+	 * Builds a kernel from the non-zero cells of a square grid centred on the
+	 * source cell.
+	 */
+
+	private static DiscreteKernel fromGrid(double[] grid, int w, int radius) {
+		int n = 0;
+		for (double g : grid) {
+			if (g > 0) {
+				n++;
+			}
+		}
+		DiscreteKernel kernel = new DiscreteKernel();
+		kernel.dx = new int[n];
+		kernel.dy = new int[n];
+		kernel.p = new double[n];
+		int k = 0;
+		for (int id = 0; id < grid.length; id++) {
+			if (grid[id] > 0) {
+				kernel.dx[k] = id % w - radius;
+				kernel.dy[k] = id / w - radius;
+				kernel.p[k] = grid[id];
+				k++;
+			}
+		}
+		kernel.table = new AliasTable(kernel.p);
+		return kernel;
+	}
+
+	/**
+	 * @return the cumulative distribution of the direction weights, or null
+	 *         if directions are uniform.
+	 */
+
+	private static double[] cdf(double[] weights) {
+		if (weights == null) {
+			return null;
+		}
+		double[] cdf = new double[weights.length + 1];
+		for (int i = 0; i < weights.length; i++) {
+			cdf[i + 1] = cdf[i] + weights[i];
+		}
+		for (int i = 1; i < cdf.length; i++) {
+			cdf[i] /= cdf[weights.length];
+		}
+		return cdf;
+	}
+
+	/**
+	 * Evaluates the piecewise-linear cumulative distribution used by the Colt
+	 * Empirical distribution (with linear interpolation), extended
+	 * periodically so that directions may be measured from any origin.
+	 *
+	 * @return the probability of a direction (as a fraction of a revolution)
+	 *         below a.
+	 */
+
+	private static double cumulative(double[] cdf, double a) {
+		double turns = Math.floor(a);
+		double q = a - turns;
+		if (cdf == null) {
+			return turns + q;
+		}
+		int nbins = cdf.length - 1;
+		int bin = Math.min((int) (q * nbins), nbins - 1);
+		return turns + cdf[bin] + (q * nbins - bin)
+				* (cdf[bin + 1] - cdf[bin]);
+	}
+
+	/**
+	 * @param i
+	 *            - the index of an entry.
+	 * @return the column offset (positive eastward) of the entry.
+	 */
+
+	public int getDx(int i) {
+		return dx[i];
+	}
+
+	/**
+	 * @param i
+	 *            - the index of an entry.
+	 * @return the cell offset (positive northward) of the entry.
+	 */
+
+	public int getDy(int i) {
+		return dy[i];
+	}
+
+	/**
+	 * @param i
+	 *            - the index of an entry.
+	 * @return the probability of the entry.
+	 */
+
+	public double getProbability(int i) {
+		return p[i];
+	}
+
+	/**
+	 * Draws an entry using a single uniform random value.
+	 *
+	 * @param u
+	 *            - a uniform random value in [0,1).
+	 * @return the index of the entry.
+	 */
+
+	public int sample(double u) {
+		return table.sample(u);
+	}
+
+	/**
+	 * @return the number of entries (distinct cell offsets) in the kernel.
+	 */
+
+	public int size() {
+		return p.length;
+	}
+}
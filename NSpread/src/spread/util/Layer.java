@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package spread.util;
+
+/**
+ * A fixed-length run of primitive integer values indexed by cell id. Layers
+ * are used to hold per-cell state as flat primitive arrays rather than as
+ * individual objects. Each layer has an element width (in bytes) which bounds
+ * the range of values that can be stored: 1-byte layers hold signed bytes,
+ * 4-byte layers hold ints (floats can be stored using their raw int bits).
+ * Unset elements are always 0.
+ */
+
+public interface Layer extends Cloneable {
+
+	/**
+	 * Sets all elements of the layer to 0.
+	 */
+
+	public void clear();
+
+	/**
+	 * Generates an independent copy of the layer.
+	 */
+
+	public Layer clone();
+
+	/**
+	 * @param index
+	 *            - the index of the element.
+	 * @return the value stored at the given index.
+	 */
+
+	public int get(int index);
+
+	/**
+	 * @return the element width of the layer in bytes.
+	 */
+
+	public int getWidth();
+
+	/**
+	 * Stores a value at the given index. Values are narrowed to the element
+	 * width of the layer.
+	 * 
+	 * @param index
+	 *            - the index of the element.
+	 * @param value
+	 *            - the value to be stored.
+	 */
+
+	public void set(int index, int value);
+
+	/**
+	 * @return the number of elements in the layer.
+	 */
+
+	public int size();
+}
@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package spread.util;
+
+import java.util.Arrays;
+
+/**
+ * A Layer backed by a single on-heap primitive array (byte[] or int[]
+ * depending on the element width). Clones share the array until either of
+ * them is first written to.
+ */
+
+public class Layer_Array implements Layer {
+
+	private byte[] bytes;
+	private int[] ints;
+	private int size;
+	private boolean shared = false;
+
+	/**
+	 * @param size
+	 *            - the number of elements in the layer.
+	 * @param width
+	 *            - the element width in bytes (1 or 4).
+	 */
+
+	public Layer_Array(int size, int width) {
+		this.size = size;
+		if (width == 1) {
+			bytes = new byte[size];
+		} else if (width == 4) {
+			ints = new int[size];
+		} else {
+			throw new IllegalArgumentException("Layer width must be 1 or 4 bytes ("
+					+ width + " was provided).");
+		}
+	}
+
+	private Layer_Array() {
+	}
+
+	@Override
+	public void clear() {
+		if (shared) {
+			if (bytes != null) {
+				bytes = new byte[size];
+			} else {
+				ints = new int[size];
+			}
+			shared = false;
+		} else if (bytes != null) {
+			Arrays.fill(bytes, (byte) 0);
+		} else {
+			Arrays.fill(ints, 0);
+		}
+	}
+
+	@Override
+	public Layer_Array clone() {
+		Layer_Array la = new Layer_Array();
+		la.size = size;
+		la.bytes = bytes;
+		la.ints = ints;
+		la.shared = true;
+		shared = true;
+		return la;
+	}
+
+	@Override
+	public int get(int index) {
+		if (bytes != null) {
+			return bytes[index];
+		}
+		return ints[index];
+	}
+
+	@Override
+	public int getWidth() {
+		return bytes != null ? 1 : 4;
+	}
+
+	@Override
+	public void set(int index, int value) {
+		if (shared) {
+			own();
+		}
+		if (bytes != null) {
+			bytes[index] = (byte) value;
+		} else {
+			ints[index] = value;
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Copies an array that is shared with a clone, before it is modified.
+	 */
+
+	private void own() {
+		if (bytes != null) {
+			bytes = bytes.clone();
+		} else {
+			ints = ints.clone();
+		}
+		shared = false;
+	}
+}
@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package spread.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A Layer held off-heap in a memory-mapped temporary file, so that the
+ * operating system's page cache (rather than the Java heap) determines how
+ * much of the layer is resident. The file is split into segments of at most
+ * SEGMENT_SIZE bytes, each mapped by its own MappedByteBuffer, since a single
+ * buffer cannot address more than 2GB.
+ *
+ * The temporary file is deleted as soon as it has been mapped where the
+ * platform allows it (otherwise on exit). The mapping itself is released
+ * when the layer is garbage collected. Clones share the mapping until either
+ * of them is first written to.
+ */
+
+public class Layer_Mapped implements Layer {
+
+	public static final int SEGMENT_SHIFT = 30;
+	public static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+	private static final int SEGMENT_MASK = (int) SEGMENT_SIZE - 1;
+
+	private MappedByteBuffer[] segments;
+	private File directory;
+	private int size;
+	private int width;
+	private int shift;
+	private boolean shared = false;
+	private boolean dirty = false;
+
+	/**
+	 * @param size
+	 *            - the number of elements in the layer.
+	 * @param width
+	 *            - the element width in bytes (1 or 4).
+	 * @param directory
+	 *            - the directory in which the backing file is created, or
+	 *            null for the default temporary directory.
+	 */
+
+	public Layer_Mapped(int size, int width, File directory) {
+		if (width != 1 && width != 4) {
+			throw new IllegalArgumentException("Layer width must be 1 or 4 bytes ("
+					+ width + " was provided).");
+		}
+		this.size = size;
+		this.width = width;
+		this.shift = width == 1 ? 0 : 2;
+		this.directory = directory;
+		segments = map(size, width, directory);
+	}
+
+	private Layer_Mapped() {
+	}
+
+	@Override
+	public void clear() {
+		if (shared) {
+			segments = map(size, width, directory);
+			shared = false;
+		} else if (dirty) {
+			byte[] zeros = new byte[64 * 1024];
+			for (MappedByteBuffer segment : segments) {
+				segment.clear();
+				while (segment.hasRemaining()) {
+					segment.put(zeros, 0,
+							Math.min(zeros.length, segment.remaining()));
+				}
+			}
+		}
+		dirty = false;
+	}
+
+	@Override
+	public Layer_Mapped clone() {
+		Layer_Mapped lm = new Layer_Mapped();
+		lm.segments = segments;
+		lm.directory = directory;
+		lm.size = size;
+		lm.width = width;
+		lm.shift = shift;
+		lm.dirty = dirty;
+		lm.shared = true;
+		shared = true;
+		return lm;
+	}
+
+	@Override
+	public int get(int index) {
+		long offset = (long) index << shift;
+		MappedByteBuffer segment = segments[(int) (offset >>> SEGMENT_SHIFT)];
+		int position = (int) offset & SEGMENT_MASK;
+		if (width == 1) {
+			return segment.get(position);
+		}
+		return segment.getInt(position);
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public void set(int index, int value) {
+		if (shared) {
+			own();
+		}
+		long offset = (long) index << shift;
+		MappedByteBuffer segment = segments[(int) (offset >>> SEGMENT_SHIFT)];
+		int position = (int) offset & SEGMENT_MASK;
+		if (width == 1) {
+			segment.put(position, (byte) value);
+		} else {
+			segment.putInt(position, value);
+		}
+		dirty = true;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Maps a new zero-filled temporary file large enough to hold the layer.
+	 *
+	 * @param size
+	 *            - the number of elements.
+	 * @param width
+	 *            - the element width in bytes.
+	 * @param directory
+	 *            - the directory of the file, or null for the default.
+	 * @return the segments mapping the file.
+	 */
+
+	private static MappedByteBuffer[] map(int size, int width, File directory) {
+		long length = (long) size * width;
+		int nsegments = (int) ((length + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+		MappedByteBuffer[] segments = new MappedByteBuffer[nsegments];
+		try {
+			File file = File.createTempFile("layer", ".bin", directory);
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.setLength(length);
+				FileChannel channel = raf.getChannel();
+				for (int i = 0; i < nsegments; i++) {
+					long start = (long) i << SEGMENT_SHIFT;
+					segments[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+							start, Math.min(SEGMENT_SIZE, length - start));
+				}
+			} finally {
+				raf.close();
+			}
+			if (!file.delete()) {
+				file.deleteOnExit();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(
+					"Unable to map a layer of " + length + " bytes.", e);
+		}
+		return segments;
+	}
+
+	/**
+	 * Copies a mapping that is shared with a clone, before it is modified.
+	 */
+
+	private void own() {
+		MappedByteBuffer[] copy = map(size, width, directory);
+		for (int i = 0; i < segments.length; i++) {
+			ByteBuffer source = segments[i].duplicate();
+			source.clear();
+			copy[i].put(source);
+		}
+		segments = copy;
+		shared = false;
+	}
+}
@@ -0,0 +1,222 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package spread.util;
+
+import java.util.Arrays;
+
+/**
+ * A Layer over a raster that is divided into square tiles (of 2^shift cells
+ * per side), where a tile's array is only allocated once one of its cells is
+ * set to a value that differs from the rest of the tile. Until then the tile
+ * is represented by a single constant fill value (initially 0), so that
+ * large uniform areas (e.g. NoData or uninfested areas) cost no memory.
+ * compact() returns tiles that have become uniform to constants.
+ *
+ * Elements are indexed by cell id in row-major order, as for other Layers.
+ * Clones share tile arrays until either of them first writes to a tile, so
+ * the cost of cloning scales with the number of tiles rather than cells.
+ */
+
+public class Layer_Tiled implements Layer {
+
+	private byte[][] byteTiles;
+	private int[][] intTiles;
+	private int[] fills;
+	private boolean[] owned;
+	private int size;
+	private int nrows;
+	private int ncols;
+	private int shift;
+	private int mask;
+	private int tileCols;
+
+	/**
+	 * @param size
+	 *            - the number of elements in the layer.
+	 * @param width
+	 *            - the element width in bytes (1 or 4).
+	 * @param ncols
+	 *            - the number of columns of the raster.
+	 * @param shift
+	 *            - the side length of a tile as a power of two (e.g. 8 for
+	 *            256x256 tiles).
+	 */
+
+	public Layer_Tiled(int size, int width, int ncols, int shift) {
+		if (width != 1 && width != 4) {
+			throw new IllegalArgumentException("Layer width must be 1 or 4 bytes ("
+					+ width + " was provided).");
+		}
+		if (shift < 0 || shift > 15) {
+			throw new IllegalArgumentException("Tile shift must be between 0 and 15 ("
+					+ shift + " was provided).");
+		}
+		this.size = size;
+		this.ncols = Math.max(ncols, 1);
+		this.shift = shift;
+		this.mask = (1 << shift) - 1;
+		this.nrows = (size + this.ncols - 1) / this.ncols;
+		tileCols = (this.ncols + mask) >>> shift;
+		int ntiles = tileCols * ((nrows + mask) >>> shift);
+		if (width == 1) {
+			byteTiles = new byte[ntiles][];
+		} else {
+			intTiles = new int[ntiles][];
+		}
+		fills = new int[ntiles];
+		owned = new boolean[ntiles];
+	}
+
+	private Layer_Tiled() {
+	}
+
+	@Override
+	public void clear() {
+		if (byteTiles != null) {
+			Arrays.fill(byteTiles, null);
+		} else {
+			Arrays.fill(intTiles, null);
+		}
+		Arrays.fill(fills, 0);
+		Arrays.fill(owned, false);
+	}
+
+	@Override
+	public Layer_Tiled clone() {
+		Layer_Tiled lt = new Layer_Tiled();
+		lt.byteTiles = byteTiles == null ? null : byteTiles.clone();
+		lt.intTiles = intTiles == null ? null : intTiles.clone();
+		lt.fills = fills.clone();
+		lt.owned = new boolean[owned.length];
+		Arrays.fill(owned, false);
+		lt.size = size;
+		lt.nrows = nrows;
+		lt.ncols = ncols;
+		lt.shift = shift;
+		lt.mask = mask;
+		lt.tileCols = tileCols;
+		return lt;
+	}
+
+	/**
+	 * Replaces the arrays of tiles whose elements all hold the same value with
+	 * that value as a constant, releasing their memory.
+	 */
+
+	public void compact() {
+		for (int t = 0; t < fills.length; t++) {
+			if (byteTiles != null ? byteTiles[t] == null : intTiles[t] == null) {
+				continue;
+			}
+
+			// Tiles on the bottom and right edges extend past the raster, so
+			// only the cells inside it are compared.
+
+			int rows = Math.min(mask + 1, nrows - (t / tileCols << shift));
+			int cols = Math.min(mask + 1, ncols - (t % tileCols << shift));
+			int value = byteTiles != null ? byteTiles[t][0] : intTiles[t][0];
+			boolean uniform = true;
+			for (int r = 0; r < rows && uniform; r++) {
+				for (int c = 0; c < cols && uniform; c++) {
+					int offset = (r << shift) | c;
+					uniform = (byteTiles != null ? byteTiles[t][offset]
+							: intTiles[t][offset]) == value;
+				}
+			}
+			if (uniform) {
+				if (byteTiles != null) {
+					byteTiles[t] = null;
+				} else {
+					intTiles[t] = null;
+				}
+				fills[t] = value;
+				owned[t] = false;
+			}
+		}
+	}
+
+	@Override
+	public int get(int index) {
+		int row = index / ncols;
+		int col = index - row * ncols;
+		int t = (row >>> shift) * tileCols + (col >>> shift);
+		int offset = ((row & mask) << shift) | (col & mask);
+		if (byteTiles != null) {
+			byte[] tile = byteTiles[t];
+			return tile == null ? fills[t] : tile[offset];
+		}
+		int[] tile = intTiles[t];
+		return tile == null ? fills[t] : tile[offset];
+	}
+
+	/**
+	 * @return the number of tiles that have an allocated array.
+	 */
+
+	public int getAllocatedTiles() {
+		int n = 0;
+		for (int t = 0; t < fills.length; t++) {
+			if (byteTiles != null ? byteTiles[t] != null : intTiles[t] != null) {
+				n++;
+			}
+		}
+		return n;
+	}
+
+	@Override
+	public int getWidth() {
+		return byteTiles != null ? 1 : 4;
+	}
+
+	@Override
+	public void set(int index, int value) {
+		int row = index / ncols;
+		int col = index - row * ncols;
+		int t = (row >>> shift) * tileCols + (col >>> shift);
+		int offset = ((row & mask) << shift) | (col & mask);
+		if (byteTiles != null) {
+			byte[] tile = byteTiles[t];
+			if (tile == null) {
+				if ((byte) value == fills[t]) {
+					return;
+				}
+				tile = new byte[1 << (shift << 1)];
+				if (fills[t] != 0) {
+					Arrays.fill(tile, (byte) fills[t]);
+				}
+				byteTiles[t] = tile;
+				owned[t] = true;
+			} else if (!owned[t]) {
+				tile = tile.clone();
+				byteTiles[t] = tile;
+				owned[t] = true;
+			}
+			tile[offset] = (byte) value;
+		} else {
+			int[] tile = intTiles[t];
+			if (tile == null) {
+				if (value == fills[t]) {
+					return;
+				}
+				tile = new int[1 << (shift << 1)];
+				if (fills[t] != 0) {
+					Arrays.fill(tile, fills[t]);
+				}
+				intTiles[t] = tile;
+				owned[t] = true;
+			} else if (!owned[t]) {
+				tile = tile.clone();
+				intTiles[t] = tile;
+				owned[t] = true;
+			}
+			tile[offset] = value;
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+}
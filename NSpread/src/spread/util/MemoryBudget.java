@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package spread.util;
+
+/**
+ * Tracks the estimated heap used by the Experiments in flight, so that
+ * Experiments are only admitted while their estimated footprint fits in a
+ * fixed budget. An Experiment is always admitted when none are in flight, so
+ * an Experiment larger than the budget still runs (on its own).
+ */
+
+public class MemoryBudget {
+
+	private long capacity;
+	private long used = 0;
+
+	/**
+	 * @param capacity
+	 *            - the budget in bytes.
+	 */
+
+	public MemoryBudget(long capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException(
+					"Memory budget must be positive (" + capacity + ")");
+		}
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Creates a budget from a fraction of the heap not currently in use.
+	 *
+	 * @param fraction
+	 *            - the fraction of the free heap to use.
+	 * @return the budget.
+	 */
+
+	public static MemoryBudget fromHeap(double fraction) {
+		Runtime rt = Runtime.getRuntime();
+		long free = rt.maxMemory() - (rt.totalMemory() - rt.freeMemory());
+		return new MemoryBudget(Math.max(1, (long) (free * fraction)));
+	}
+
+	/**
+	 * @param bytes
+	 *            - the estimated footprint of an Experiment.
+	 * @return whether the Experiment can be admitted.
+	 */
+
+	public boolean fits(long bytes) {
+		return used == 0 || used + bytes <= capacity;
+	}
+
+	/**
+	 * @return the budget in bytes.
+	 */
+
+	public long getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the estimated footprint of the Experiments in flight, in bytes.
+	 */
+
+	public long getUsed() {
+		return used;
+	}
+
+	/**
+	 * Returns the footprint of an Experiment that has completed to the
+	 * budget.
+	 *
+	 * @param bytes
+	 *            - the estimated footprint of the Experiment.
+	 */
+
+	public void release(long bytes) {
+		used -= bytes;
+	}
+
+	/**
+	 * Takes the footprint of an admitted Experiment from the budget.
+	 *
+	 * @param bytes
+	 *            - the estimated footprint of the Experiment.
+	 */
+
+	public void reserve(long bytes) {
+		used += bytes;
+	}
+}
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package spread.util;
+
+import cern.colt.function.IntProcedure;
+
+/**
+ * The 4- (strong) or 8- (weak) neighbourhood of the cells of a raster, as
+ * precomputed id offsets. Cells away from the edge of the raster use every
+ * offset without bounds checks; cells on the edge use a mask of the offsets
+ * that stay within the raster, chosen by which of the four edges the cell
+ * lies on. Neighbours are visited without allocation, in row-major order.
+ */
+
+public class Neighbourhood {
+
+	private static final int[] STRONG_OFFSETS = { -1, 0, 0, -1, 0, 1, 1, 0 };
+	private static final int[] WEAK_OFFSETS = { -1, -1, -1, 0, -1, 1, 0, -1,
+			0, 1, 1, -1, 1, 0, 1, 1 };
+
+	private static final int TOP = 1;
+	private static final int BOTTOM = 2;
+	private static final int LEFT = 4;
+	private static final int RIGHT = 8;
+
+	private int nrows;
+	private int ncols;
+	private int[] deltas;
+	private int[] masks = new int[16];
+
+	/**
+	 * @param nrows
+	 *            - the number of rows of the raster.
+	 * @param ncols
+	 *            - the number of columns of the raster.
+	 * @param weak
+	 *            - whether cells that only share a corner are neighbours.
+	 */
+
+	public Neighbourhood(int nrows, int ncols, boolean weak) {
+		this.nrows = nrows;
+		this.ncols = ncols;
+		int[] offsets = weak ? WEAK_OFFSETS : STRONG_OFFSETS;
+		deltas = new int[offsets.length / 2];
+		for (int k = 0; k < deltas.length; k++) {
+			int dr = offsets[2 * k];
+			int dc = offsets[2 * k + 1];
+			deltas[k] = dr * ncols + dc;
+			for (int edges = 0; edges < masks.length; edges++) {
+				if ((dr < 0 && (edges & TOP) != 0)
+						|| (dr > 0 && (edges & BOTTOM) != 0)
+						|| (dc < 0 && (edges & LEFT) != 0)
+						|| (dc > 0 && (edges & RIGHT) != 0)) {
+					continue;
+				}
+				masks[edges] |= 1 << k;
+			}
+		}
+	}
+
+	/**
+	 * Applies a procedure to the ids of the neighbours of a cell.
+	 *
+	 * @param id
+	 *            - the id of the cell.
+	 * @param procedure
+	 *            - the procedure to apply, which may return false to stop.
+	 * @return false if the procedure stopped the iteration, true otherwise.
+	 */
+
+	public boolean forEachNeighbour(int id, IntProcedure procedure) {
+		int edges = edges(id);
+		if (edges == 0) {
+			for (int delta : deltas) {
+				if (!procedure.apply(id + delta)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		int mask = masks[edges];
+		for (int k = 0; k < deltas.length; k++) {
+			if ((mask & (1 << k)) != 0 && !procedure.apply(id + deltas[k])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the ids of the neighbours of a cell into an array.
+	 *
+	 * @param id
+	 *            - the id of the cell.
+	 * @param neighbours
+	 *            - the array receiving the ids, of at least size() elements.
+	 * @return the number of neighbours written.
+	 */
+
+	public int getNeighbours(int id, int[] neighbours) {
+		int edges = edges(id);
+		if (edges == 0) {
+			for (int k = 0; k < deltas.length; k++) {
+				neighbours[k] = id + deltas[k];
+			}
+			return deltas.length;
+		}
+		int mask = masks[edges];
+		int n = 0;
+		for (int k = 0; k < deltas.length; k++) {
+			if ((mask & (1 << k)) != 0) {
+				neighbours[n++] = id + deltas[k];
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * @return the number of columns of the raster.
+	 */
+
+	public int getNcols() {
+		return ncols;
+	}
+
+	/**
+	 * @return the number of rows of the raster.
+	 */
+
+	public int getNrows() {
+		return nrows;
+	}
+
+	/**
+	 * @return the largest number of neighbours of a cell (4 or 8).
+	 */
+
+	public int size() {
+		return deltas.length;
+	}
+
+	private int edges(int id) {
+		int row = id / ncols;
+		int col = id - row * ncols;
+		int edges = 0;
+		if (row == 0) {
+			edges |= TOP;
+		}
+		if (row == nrows - 1) {
+			edges |= BOTTOM;
+		}
+		if (col == 0) {
+			edges |= LEFT;
+		}
+		if (col == ncols - 1) {
+			edges |= RIGHT;
+		}
+		return edges;
+	}
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package spread.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.vividsolutions.jts.geom.Coordinate;
+
+/**
+ * A growable buffer of propagule locations, held as parallel arrays of x and
+ * y coordinates. A buffer is cleared and refilled each time its Infestation
+ * disperses, so once it has grown to the usual number of propagules no
+ * further objects are allocated.
+ */
+
+public class PropaguleBuffer {
+
+	private double[] xs;
+	private double[] ys;
+	private int size = 0;
+
+	public PropaguleBuffer() {
+		this(16);
+	}
+
+	/**
+	 * @param capacity
+	 *            - the initial number of propagules that can be held.
+	 */
+
+	public PropaguleBuffer(int capacity) {
+		xs = new double[Math.max(capacity, 1)];
+		ys = new double[xs.length];
+	}
+
+	/**
+	 * Creates a copy of another buffer.
+	 *
+	 * @param buffer
+	 *            - the buffer to be copied.
+	 */
+
+	public PropaguleBuffer(PropaguleBuffer buffer) {
+		xs = Arrays.copyOf(buffer.xs, Math.max(buffer.size, 1));
+		ys = Arrays.copyOf(buffer.ys, xs.length);
+		size = buffer.size;
+	}
+
+	/**
+	 * Creates a buffer holding the locations of a List of Coordinates.
+	 *
+	 * @param coordinates
+	 *            - the propagule locations.
+	 * @return a new buffer.
+	 */
+
+	public static PropaguleBuffer fromCoordinates(List<Coordinate> coordinates) {
+		PropaguleBuffer buffer = new PropaguleBuffer(coordinates.size());
+		for (Coordinate c : coordinates) {
+			buffer.add(c.x, c.y);
+		}
+		return buffer;
+	}
+
+	/**
+	 * Appends a propagule location, growing the buffer if needed.
+	 */
+
+	public void add(double x, double y) {
+		if (size == xs.length) {
+			xs = Arrays.copyOf(xs, size << 1);
+			ys = Arrays.copyOf(ys, size << 1);
+		}
+		xs[size] = x;
+		ys[size] = y;
+		size++;
+	}
+
+	/**
+	 * Removes all propagules, keeping the allocated capacity.
+	 */
+
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * @return the x coordinate of the i'th propagule.
+	 */
+
+	public double getX(int i) {
+		return xs[i];
+	}
+
+	/**
+	 * @return the y coordinate of the i'th propagule.
+	 */
+
+	public double getY(int i) {
+		return ys[i];
+	}
+
+	/**
+	 * @return whether the buffer holds no propagules.
+	 */
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return the number of propagules in the buffer.
+	 */
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the propagule locations as a new List of Coordinates.
+	 */
+
+	public List<Coordinate> toCoordinates() {
+		List<Coordinate> coordinates = new ArrayList<Coordinate>(size);
+		for (int i = 0; i < size; i++) {
+			coordinates.add(new Coordinate(xs[i], ys[i]));
+		}
+		return coordinates;
+	}
+}
@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package spread.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Provides the random number streams of an Experiment. Each class that draws
+ * random numbers registers a named stream once, and draws from that stream of
+ * the service bound to the current thread, so that Dispersers, generators and
+ * processes shared between Experiments draw from the streams of whichever
+ * Experiment is running. The seed of each stream is derived from the seed of
+ * the service and the stream name, and the seed of the service is derived
+ * from the master seed, the parameter set and the replicate, so any replicate
+ * can be reproduced on its own.
+ *
+ * A thread with no bound service draws from a service with a fixed default
+ * seed.
+ */
+
+public class RandomService {
+
+	/**
+	 * The seed of the service used by threads with no bound service.
+	 */
+
+	public static final long DEFAULT_SEED = 0x5EED5EEDL;
+
+	private static final List<String> names = new ArrayList<String>();
+	private static final ThreadLocal<RandomService> current = new ThreadLocal<RandomService>() {
+		@Override
+		protected RandomService initialValue() {
+			return new RandomService(DEFAULT_SEED);
+		}
+	};
+
+	private long seed;
+	private RandomStream[] streams = new RandomStream[0];
+
+	/**
+	 * @param seed
+	 *            - the seed from which all streams are derived.
+	 */
+
+	public RandomService(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Binds a service to the current thread.
+	 *
+	 * @param service
+	 *            - the service to bind, or null to restore the default.
+	 */
+
+	public static void bind(RandomService service) {
+		if (service == null) {
+			current.remove();
+		} else {
+			current.set(service);
+		}
+	}
+
+	/**
+	 * @return the service bound to the current thread.
+	 */
+
+	public static RandomService current() {
+		return current.get();
+	}
+
+	/**
+	 * Derives a seed from a master seed and a sequence of keys (for example,
+	 * a parameter set and a replicate number).
+	 *
+	 * @param seed
+	 *            - the master seed.
+	 * @param keys
+	 *            - the keys distinguishing the derived seed.
+	 * @return the derived seed.
+	 */
+
+	public static long derive(long seed, long... keys) {
+		for (long key : keys) {
+			seed = RandomStream.mix(seed, key);
+		}
+		return seed;
+	}
+
+	/**
+	 * Registers a named stream.
+	 *
+	 * @param name
+	 *            - the name of the stream, which determines its seed.
+	 * @return the index by which the stream is retrieved.
+	 */
+
+	public static int register(String name) {
+		synchronized (names) {
+			int index = names.indexOf(name);
+			if (index < 0) {
+				names.add(name);
+				index = names.size() - 1;
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * @return the seed from which all streams of the service are derived.
+	 */
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Retrieves a stream, creating it on first use.
+	 *
+	 * @param index
+	 *            - the index returned when the stream was registered.
+	 * @return the stream.
+	 */
+
+	public RandomStream getStream(int index) {
+		if (index >= streams.length) {
+			streams = Arrays.copyOf(streams, index + 1);
+		}
+		RandomStream stream = streams[index];
+		if (stream == null) {
+			String name;
+			synchronized (names) {
+				name = names.get(index);
+			}
+			stream = new RandomStream(RandomStream.mix(seed, hash(name)));
+			streams[index] = stream;
+		}
+		return stream;
+	}
+
+	/**
+	 * A 64-bit FNV-1a hash, so that stream seeds do not depend on the order
+	 * in which streams are registered.
+	 */
+
+	private static long hash(String name) {
+		long h = 0xCBF29CE484222325L;
+		for (int i = 0; i < name.length(); i++) {
+			h ^= name.charAt(i);
+			h *= 0x100000001B3L;
+		}
+		return h;
+	}
+}
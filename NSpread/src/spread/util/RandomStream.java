@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package spread.util;
+
+import cern.jet.random.engine.RandomEngine;
+
+/**
+ * A seeded xoroshiro128+ pseudo-random number engine. The 128 bits of state
+ * are expanded from a 64-bit seed with SplitMix64, so nearby seeds give
+ * unrelated streams, and independent child streams can be split off. As a
+ * Colt RandomEngine, it can drive the Colt distributions directly.
+ */
+
+public class RandomStream extends RandomEngine {
+
+	private static final long serialVersionUID = 1L;
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+	private static final double DOUBLE_UNIT = 1d / (1L << 53);
+
+	private long s0;
+	private long s1;
+
+	/**
+	 * @param seed
+	 *            - the seed of the stream.
+	 */
+
+	public RandomStream(long seed) {
+		setSeed(seed);
+	}
+
+	/**
+	 * Mixes a key into a seed, giving the seed of a derived stream.
+	 *
+	 * @param seed
+	 *            - the parent seed.
+	 * @param key
+	 *            - the key distinguishing the derived stream.
+	 * @return the derived seed.
+	 */
+
+	public static long mix(long seed, long key) {
+		return splitMix(seed ^ splitMix(key + GOLDEN_GAMMA));
+	}
+
+	/**
+	 * The SplitMix64 finaliser, applied to a value advanced by the golden
+	 * gamma.
+	 */
+
+	static long splitMix(long z) {
+		z += GOLDEN_GAMMA;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Returns a uniform value in the open interval (0,1), with 53 bits of
+	 * precision.
+	 */
+
+	@Override
+	public double nextDouble() {
+		return ((nextLong() >>> 11) + 0.5) * DOUBLE_UNIT;
+	}
+
+	@Override
+	public int nextInt() {
+		return (int) (nextLong() >>> 32);
+	}
+
+	@Override
+	public long nextLong() {
+		long a = s0;
+		long b = s1;
+		long result = a + b;
+		b ^= a;
+		s0 = Long.rotateLeft(a, 24) ^ b ^ (b << 16);
+		s1 = Long.rotateLeft(b, 37);
+		return result;
+	}
+
+	/**
+	 * Returns a uniform value in the open interval (0,1), as required of Colt
+	 * engines.
+	 */
+
+	@Override
+	public double raw() {
+		return nextDouble();
+	}
+
+	/**
+	 * Resets the state of the stream from a seed.
+	 *
+	 * @param seed
+	 *            - the seed of the stream.
+	 */
+
+	public void setSeed(long seed) {
+		s0 = splitMix(seed);
+		s1 = splitMix(seed + GOLDEN_GAMMA);
+		if (s0 == 0 && s1 == 0) {
+			s1 = GOLDEN_GAMMA;
+		}
+	}
+
+	/**
+	 * Splits off an independent stream, seeded from this one.
+	 *
+	 * @return the new stream.
+	 */
+
+	public RandomStream split() {
+		return new RandomStream(mix(nextLong(), nextLong()));
+	}
+}
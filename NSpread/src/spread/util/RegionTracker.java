@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package spread.util;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import cern.colt.function.IntProcedure;
+
+/**
+ * The connected components of the cells of a raster that satisfy a predicate,
+ * maintained as cells enter and leave the set rather than relabelled from
+ * scratch. Cells that enter are merged with their neighbours in a union-find
+ * structure, and the cells of each component are kept in a circular list so
+ * that components can be listed (and lists joined) without scanning the
+ * raster. Cells that leave only mark their component as dirty: it is split
+ * when next queried, by rebuilding it from its own list, so the work is
+ * proportional to the size of the changed components.
+ *
+ * The predicate is re-evaluated for a cell whenever update is called, so the
+ * owner must call it for every cell whose state may have changed. A tracker
+ * starts empty, so the owner also calls update for the cells initially
+ * accepted.
+ *
+ * The links between cells are held in tiled layers, so only the tiles
+ * around the cells that have been in a component take memory, however large
+ * the raster.
+ */
+
+public class RegionTracker {
+
+	private static final int TILE_SHIFT = 6;
+
+	private Neighbourhood neighbourhood;
+	private int[] neighbours;
+	private IntProcedure predicate;
+
+	// parent holds the parent of each cell plus one, so that cells that are
+	// not linked into a component hold 0. Cells that have left keep their
+	// links until their component is rebuilt.
+
+	private BitSet members = new BitSet();
+	private BitSet dirty = new BitSet();
+	private Layer_Tiled parent;
+	private Layer_Tiled next;
+	private int[] scratch = new int[16];
+
+	/**
+	 * Creates an empty tracker of the cells accepted by a predicate.
+	 *
+	 * @param nrows
+	 *            - the number of rows of the raster.
+	 * @param ncols
+	 *            - the number of columns of the raster.
+	 * @param predicate
+	 *            - returns true for the ids of cells that belong to a
+	 *            component.
+	 * @param weak
+	 *            - whether cells that only share a corner are connected.
+	 */
+
+	public RegionTracker(int nrows, int ncols, IntProcedure predicate,
+			boolean weak) {
+		this.predicate = predicate;
+		neighbourhood = new Neighbourhood(nrows, ncols, weak);
+		neighbours = new int[neighbourhood.size()];
+		parent = new Layer_Tiled(nrows * ncols, 4, ncols, TILE_SHIFT);
+		next = new Layer_Tiled(nrows * ncols, 4, ncols, TILE_SHIFT);
+	}
+
+	/**
+	 * @param id
+	 *            - the id of a cell.
+	 * @return the ids of the cells in the component containing the cell, in
+	 *         ascending order (empty if the cell is not in a component).
+	 */
+
+	public int[] getIds(int id) {
+		if (!members.get(id)) {
+			return new int[0];
+		}
+		repair();
+		int n = 0;
+		int c = id;
+		do {
+			if (n == scratch.length) {
+				scratch = Arrays.copyOf(scratch, n << 1);
+			}
+			scratch[n++] = c;
+			c = next.get(c);
+		} while (c != id);
+		int[] ids = Arrays.copyOf(scratch, n);
+		Arrays.sort(ids);
+		return ids;
+	}
+
+	/**
+	 * @param id
+	 *            - the id of a cell.
+	 * @return whether the cell is in a component.
+	 */
+
+	public boolean isMember(int id) {
+		return members.get(id);
+	}
+
+	/**
+	 * Re-evaluates the predicate for a cell, adding it to (and merging it
+	 * with the components of its neighbours) or removing it from the set.
+	 *
+	 * @param id
+	 *            - the id of the cell that may have changed.
+	 */
+
+	public void update(int id) {
+		boolean member = predicate.apply(id);
+		if (member == members.get(id)) {
+			return;
+		}
+		if (member) {
+			add(id);
+		} else {
+			members.clear(id);
+			dirty.set(id);
+		}
+	}
+
+	private void add(int id) {
+		members.set(id);
+		if (parent.get(id) == 0) {
+			parent.set(id, id + 1);
+			next.set(id, id);
+		}
+		int n = neighbourhood.getNeighbours(id, neighbours);
+		for (int k = 0; k < n; k++) {
+			if (members.get(neighbours[k])) {
+				union(id, neighbours[k]);
+			}
+		}
+	}
+
+	private int find(int id) {
+		int p = parent.get(id) - 1;
+		while (p != id) {
+			int gp = parent.get(p) - 1;
+			parent.set(id, gp + 1);
+			id = gp;
+			p = parent.get(id) - 1;
+		}
+		return id;
+	}
+
+	/**
+	 * Rebuilds the components that have lost cells: all cells in their lists
+	 * are unlinked, and those still accepted are added back.
+	 */
+
+	private void repair() {
+		for (int d = dirty.nextSetBit(0); d >= 0; d = dirty.nextSetBit(d + 1)) {
+			if (parent.get(d) == 0) {
+				continue;
+			}
+			int n = 0;
+			int c = d;
+			do {
+				if (n == scratch.length) {
+					scratch = Arrays.copyOf(scratch, n << 1);
+				}
+				scratch[n++] = c;
+				c = next.get(c);
+			} while (c != d);
+			int m = 0;
+			for (int i = 0; i < n; i++) {
+				parent.set(scratch[i], 0);
+				if (members.get(scratch[i])) {
+					members.clear(scratch[i]);
+					scratch[m++] = scratch[i];
+				}
+			}
+			for (int i = 0; i < m; i++) {
+				add(scratch[i]);
+			}
+		}
+		dirty.clear();
+	}
+
+	/**
+	 * Merges the components of two cells, joining their lists.
+	 */
+
+	private void union(int a, int b) {
+		a = find(a);
+		b = find(b);
+		if (a == b) {
+			return;
+		}
+		int t = next.get(a);
+		next.set(a, next.get(b));
+		next.set(b, t);
+		if (a < b) {
+			parent.set(b, a + 1);
+		} else {
+			parent.set(a, b + 1);
+		}
+	}
+}
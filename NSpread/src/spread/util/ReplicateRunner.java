@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package spread.util;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import spread.Experiment;
+
+/**
+ * Runs replicate Experiments on a work-stealing pool of threads. Each
+ * Experiment must have its own Mosaic, Processes and writers. Once an
+ * Experiment has run, its completion task (typically writing its results) is
+ * executed on the submitting thread, in the order in which the Experiments
+ * finish, so that results are written (and Mosaics released) as soon as
+ * possible. Writers that require a fixed order must restore it themselves. At
+ * most twice as many Experiments as threads are held at once, which bounds
+ * the number of Mosaics in memory. If a MemoryBudget is set, Experiments are
+ * also only admitted while their estimated footprints fit in the budget; the
+ * footprint of an Experiment is held until its completion task has run.
+ *
+ * With a single thread, Experiments are run and completed immediately on the
+ * submitting thread.
+ */
+
+public class ReplicateRunner {
+
+	private ForkJoinPool pool;
+	private int window;
+	private int running = 0;
+	private long lastRunTime = 0;
+	private MemoryBudget budget;
+	private BlockingQueue<Replicate> finished = new LinkedBlockingQueue<Replicate>();
+
+	/**
+	 * @param threads
+	 *            - the number of threads on which Experiments are run.
+	 */
+
+	public ReplicateRunner(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException(
+					"Number of threads must be at least 1 (" + threads + ")");
+		}
+		if (threads > 1) {
+			pool = new ForkJoinPool(threads);
+		}
+		window = 2 * threads;
+	}
+
+	/**
+	 * Submits an Experiment to be run.
+	 *
+	 * @param experiment
+	 *            - the Experiment to be run.
+	 * @param completion
+	 *            - the task to execute on the submitting thread once the
+	 *            Experiment has run, or null.
+	 */
+
+	public void submit(Experiment experiment, Runnable completion) {
+		submit(experiment, 0, completion);
+	}
+
+	/**
+	 * Submits an Experiment to be run, once its estimated footprint fits in
+	 * the memory budget.
+	 *
+	 * @param experiment
+	 *            - the Experiment to be run.
+	 * @param footprint
+	 *            - the estimated heap used by the Experiment, in bytes.
+	 * @param completion
+	 *            - the task to execute on the submitting thread once the
+	 *            Experiment has run, or null.
+	 */
+
+	public void submit(Experiment experiment, long footprint,
+			Runnable completion) {
+		final Replicate replicate = new Replicate(experiment, completion);
+		if (pool == null) {
+			replicate.run();
+			complete(replicate);
+			return;
+		}
+		if (budget != null) {
+			while (running > 0 && !budget.fits(footprint)) {
+				complete(take());
+			}
+			budget.reserve(footprint);
+			replicate.footprint = footprint;
+		}
+		replicate.future = pool.submit(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					replicate.run();
+				} finally {
+					finished.add(replicate);
+				}
+			}
+		});
+		running++;
+		while (running >= window) {
+			complete(take());
+		}
+	}
+
+	/**
+	 * Waits for all submitted Experiments to run, and executes their
+	 * completion tasks.
+	 */
+
+	public void flush() {
+		while (running > 0) {
+			complete(take());
+		}
+	}
+
+	/**
+	 * Returns the time taken to run the Experiment whose completion task is
+	 * being (or was last) executed.
+	 *
+	 * @return - the run time in nanoseconds.
+	 */
+
+	public long getLastRunTime() {
+		return lastRunTime;
+	}
+
+	/**
+	 * Sets the budget limiting the estimated heap used by the Experiments in
+	 * flight.
+	 *
+	 * @param budget
+	 *            - the memory budget, or null for no limit.
+	 */
+
+	public void setBudget(MemoryBudget budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * Completes any submitted Experiments and stops the threads.
+	 */
+
+	public void shutdown() {
+		try {
+			flush();
+		} finally {
+			if (pool != null) {
+				pool.shutdownNow();
+			}
+		}
+	}
+
+	private Replicate take() {
+		try {
+			Replicate replicate = finished.take();
+			running--;
+			replicate.future.get();
+			return replicate;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(
+					"Interrupted while waiting for a replicate", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Replicate failed", e.getCause());
+		}
+	}
+
+	private void complete(Replicate replicate) {
+		lastRunTime = replicate.runTime;
+		try {
+			if (replicate.completion != null) {
+				replicate.completion.run();
+			}
+		} finally {
+			if (budget != null) {
+				budget.release(replicate.footprint);
+			}
+		}
+	}
+
+	private static class Replicate {
+		private Experiment experiment;
+		private Runnable completion;
+		private Future<?> future;
+		private long runTime;
+		private long footprint;
+
+		private Replicate(Experiment experiment, Runnable completion) {
+			this.experiment = experiment;
+			this.completion = completion;
+		}
+
+		private void run() {
+			long start = System.nanoTime();
+			experiment.run();
+			runTime = System.nanoTime() - start;
+		}
+	}
+}
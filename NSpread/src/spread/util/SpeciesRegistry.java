@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package spread.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns each species name a dense int index, so that per-species state can
+ * be held in arrays rather than String-keyed maps. Indices are assigned in
+ * order of registration and never change or get reused, so a registry can be
+ * shared between a Mosaic, its Patches and its clones. Lookups do not lock;
+ * registration is synchronized.
+ */
+
+public class SpeciesRegistry {
+
+	private volatile String[] names = new String[0];
+	private volatile Map<String, Integer> indices = Collections.emptyMap();
+
+	/**
+	 * @param index
+	 *            - the index of the species.
+	 * @return the name of the species.
+	 */
+
+	public String getName(int index) {
+		return names[index];
+	}
+
+	/**
+	 * @return the names of all registered species, in order of their index.
+	 */
+
+	public List<String> getNames() {
+		return Collections.unmodifiableList(Arrays.asList(names));
+	}
+
+	/**
+	 * @param species
+	 *            - the name of the species.
+	 * @return the index of the species, or -1 if it has not been registered.
+	 */
+
+	public int indexOf(String species) {
+		Integer index = indices.get(species);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Registers a species if it has not been registered already.
+	 *
+	 * @param species
+	 *            - the name of the species.
+	 * @return the index of the species.
+	 */
+
+	public synchronized int register(String species) {
+		Integer index = indices.get(species);
+		if (index != null) {
+			return index;
+		}
+		if (species == null) {
+			throw new IllegalArgumentException(
+					"Species name must not be null.");
+		}
+		int n = names.length;
+		String[] cnames = Arrays.copyOf(names, n + 1);
+		cnames[n] = species;
+		Map<String, Integer> cindices = new HashMap<String, Integer>(indices);
+		cindices.put(species, n);
+
+		// Publish the names first so that any index that can be looked up
+		// also has a name.
+
+		names = cnames;
+		indices = cindices;
+		return n;
+	}
+
+	/**
+	 * Copies the values of a species-keyed map into an array indexed by
+	 * species. Species that have not been registered are ignored, and
+	 * elements for species without a value are left unchanged.
+	 *
+	 * @param values
+	 *            - the values, keyed by species name.
+	 * @param array
+	 *            - the array to be filled (usually of length size()).
+	 * @return the array.
+	 */
+
+	public <T> T[] toArray(Map<String, ? extends T> values, T[] array) {
+		for (Map.Entry<String, ? extends T> entry : values.entrySet()) {
+			int index = indexOf(entry.getKey());
+			if (index >= 0 && index < array.length) {
+				array[index] = entry.getValue();
+			}
+		}
+		return array;
+	}
+
+	/**
+	 * @return the number of registered species.
+	 */
+
+	public int size() {
+		return names.length;
+	}
+}
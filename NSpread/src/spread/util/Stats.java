@@ -10,6 +10,7 @@ import java.util.Set;
 import java.util.TreeSet;
 
 import spread.Infestation;
+import spread.Mosaic;
 import spread.Patch;
 
 
@@ -131,6 +132,43 @@ public class Stats {
 		return c_matrix;
 	}
 
+	/**
+	 * Reads the Mosaics through their id-level queries, so that shared
+	 * Patches are not copied.
+	 * 
+	 * @param reference - the reference Mosaic
+	 * @param comparison - the comparison Mosaic
+	 * @param species - the species compared
+	 * @return a (2x2) confusion matrix laid out as for occupant Maps.
+	 */
+
+	public int[][] makeConfusionMatrix(Mosaic reference, Mosaic comparison,
+			String species) {
+		if (reference == null) {
+			throw new IllegalArgumentException("Reference mosaic is null");
+		}
+		if (comparison == null) {
+			throw new IllegalArgumentException("Observed mosaic is null");
+		}
+		if (reference.getNumberPatches() != comparison.getNumberPatches()) {
+			throw new IllegalArgumentException(
+					"Reference and observed mosaics differ in size");
+		}
+
+		int[][] c_matrix = new int[2][2];
+
+		for (int key = 0; key < reference.getNumberPatches(); key++) {
+			if (comparison.hasNoData(key) || reference.hasNoData(key)) {
+				continue;
+			}
+			int comp = comparison.isInfestedBy(key, species) ? 1 : 0;
+			int ref = reference.isInfestedBy(key, species) ? 1 : 0;
+			c_matrix[comp][ref]++;
+		}
+
+		return c_matrix;
+	}
+
 	/**
 	 * Return statistics based on Pontius' Excel spreadsheet
 	 * 
@@ -0,0 +1,362 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package spread.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import spread.Experiment;
+
+/**
+ * Schedules the replicates of a parameter sweep. Each point of the sweep (a
+ * parameter set) is added with its number of replicates and an estimate of
+ * the relative cost of running one of them. The replicates are flattened into
+ * a single list of tasks, ordered so that the most expensive points come
+ * first (points of equal cost keep the order in which they were added), so
+ * that long replicates do not hold up the end of the sweep. Tasks are run by
+ * a ReplicateRunner and their results stream to the writers as they finish.
+ *
+ * Progress is reported with an estimate of the time remaining, based on the
+ * observed run times: the mean run time of the completed replicates of a
+ * point, or for points with none completed, the observed time per unit of
+ * estimated cost over all completed replicates.
+ *
+ * A checkpoint task may be set, which is run on the submitting thread after
+ * a replicate completes (at most once per checkpoint interval), and once more
+ * when the sweep finishes.
+ *
+ * @param <T>
+ *            - the type describing a point of the sweep.
+ */
+
+public class SweepScheduler<T> {
+
+	private static final long REPORT_INTERVAL = 10000000000L;
+
+	private ReplicateRunner runner;
+	private int threads;
+	private List<Point<T>> points = new ArrayList<Point<T>>();
+	private int total = 0;
+	private int completed = 0;
+	private long lastReport;
+	private boolean verbose = false;
+	private Runnable checkpoint;
+	private long checkpointInterval;
+	private long lastCheckpoint;
+
+	/**
+	 * @param threads
+	 *            - the number of threads on which replicates are run.
+	 */
+
+	public SweepScheduler(int threads) {
+		runner = new ReplicateRunner(threads);
+		this.threads = threads;
+	}
+
+	/**
+	 * Adds a point to the sweep.
+	 *
+	 * @param value
+	 *            - the value describing the point.
+	 * @param replicates
+	 *            - the number of replicates of the point.
+	 * @param cost
+	 *            - the estimated relative cost of a replicate of the point.
+	 */
+
+	public void add(T value, int replicates, double cost) {
+		Point<T> point = new Point<T>(value, total, replicates, cost);
+		points.add(point);
+		total += replicates;
+	}
+
+	/**
+	 * Completes any running replicates and stops the threads.
+	 */
+
+	public void finish() {
+		runner.shutdown();
+		if (checkpoint != null) {
+			checkpoint.run();
+		}
+		report(true);
+	}
+
+	/**
+	 * @return the number of replicates completed.
+	 */
+
+	public int getCompleted() {
+		return completed;
+	}
+
+	/**
+	 * Estimates the time remaining to complete the sweep from the observed
+	 * run times.
+	 *
+	 * @return - the estimated time remaining in nanoseconds, or -1 if no
+	 *         replicate has completed.
+	 */
+
+	public long getRemainingTime() {
+		double observedCost = 0;
+		double observedTime = 0;
+		for (Point<T> point : points) {
+			observedCost += point.completed * point.cost;
+			observedTime += point.time;
+		}
+		if (observedTime == 0) {
+			return -1;
+		}
+		double timePerCost = observedCost > 0 ? observedTime / observedCost
+				: 0;
+		double remaining = 0;
+		for (Point<T> point : points) {
+			int left = point.replicates - point.completed - point.skipped;
+			if (left <= 0) {
+				continue;
+			}
+			double each = point.completed > 0 ? point.time / point.completed
+					: point.cost * timePerCost;
+			remaining += left * each;
+		}
+		return (long) (remaining / threads);
+	}
+
+	/**
+	 * Returns the tasks of the sweep in the order in which they should be
+	 * run: points by descending cost, and the replicates of each point in
+	 * order.
+	 *
+	 * @return the scheduled tasks.
+	 */
+
+	public List<Task<T>> getTasks() {
+		List<Point<T>> order = new ArrayList<Point<T>>(points);
+		Collections.sort(order, new Comparator<Point<T>>() {
+			@Override
+			public int compare(Point<T> a, Point<T> b) {
+				return Double.compare(b.cost, a.cost);
+			}
+		});
+		List<Task<T>> tasks = new ArrayList<Task<T>>(total);
+		for (Point<T> point : order) {
+			for (int n = 0; n < point.replicates; n++) {
+				tasks.add(new Task<T>(point, n));
+			}
+		}
+		return tasks;
+	}
+
+	/**
+	 * @return the total number of replicates in the sweep.
+	 */
+
+	public int getTotal() {
+		return total;
+	}
+
+	/**
+	 * Records that a task was completed before the sweep was resumed, so that
+	 * it is counted as completed but not run.
+	 *
+	 * @param task
+	 *            - the task completed.
+	 */
+
+	public void resume(Task<T> task) {
+		task.point.skipped++;
+		completed++;
+	}
+
+	/**
+	 * Sets the budget limiting the estimated heap used by the replicates in
+	 * flight.
+	 *
+	 * @param budget
+	 *            - the memory budget, or null for no limit.
+	 */
+
+	public void setBudget(MemoryBudget budget) {
+		runner.setBudget(budget);
+	}
+
+	/**
+	 * Sets the task recording the progress of the sweep.
+	 *
+	 * @param checkpoint
+	 *            - the checkpoint task, or null for none.
+	 * @param interval
+	 *            - the minimum time between checkpoints in nanoseconds.
+	 */
+
+	public void setCheckpoint(Runnable checkpoint, long interval) {
+		this.checkpoint = checkpoint;
+		this.checkpointInterval = interval;
+	}
+
+	/**
+	 * Sets whether progress should be reported as each replicate completes,
+	 * rather than periodically.
+	 *
+	 * @param verbose
+	 *            - whether to report each replicate.
+	 */
+
+	public void setVerbose(boolean verbose) {
+		this.verbose = verbose;
+	}
+
+	/**
+	 * Records that a task will not be run, so that it is not counted in the
+	 * time remaining.
+	 *
+	 * @param task
+	 *            - the task skipped.
+	 */
+
+	public void skip(Task<T> task) {
+		task.point.skipped++;
+	}
+
+	/**
+	 * Submits the Experiment of a task to be run.
+	 *
+	 * @param task
+	 *            - the task.
+	 * @param experiment
+	 *            - the Experiment running the replicate of the task.
+	 * @param completion
+	 *            - the task writing the results of the Experiment, executed
+	 *            on the submitting thread once it has run, or null.
+	 */
+
+	public void submit(final Task<T> task, Experiment experiment,
+			final Runnable completion) {
+		submit(task, experiment, 0, completion);
+	}
+
+	/**
+	 * Submits the Experiment of a task to be run, once its estimated
+	 * footprint fits in the memory budget.
+	 *
+	 * @param task
+	 *            - the task.
+	 * @param experiment
+	 *            - the Experiment running the replicate of the task.
+	 * @param footprint
+	 *            - the estimated heap used by the Experiment, in bytes.
+	 * @param completion
+	 *            - the task writing the results of the Experiment, executed
+	 *            on the submitting thread once it has run, or null.
+	 */
+
+	public void submit(final Task<T> task, Experiment experiment,
+			long footprint, final Runnable completion) {
+		if (lastReport == 0) {
+			lastReport = System.nanoTime();
+			lastCheckpoint = lastReport;
+		}
+		runner.submit(experiment, footprint, new Runnable() {
+			@Override
+			public void run() {
+				if (completion != null) {
+					completion.run();
+				}
+				task.point.completed++;
+				task.point.time += runner.getLastRunTime();
+				completed++;
+				report(verbose);
+				if (checkpoint != null
+						&& System.nanoTime() - lastCheckpoint >= checkpointInterval) {
+					lastCheckpoint = System.nanoTime();
+					checkpoint.run();
+				}
+			}
+		});
+	}
+
+	private void report(boolean force) {
+		long now = System.nanoTime();
+		if (!force && now - lastReport < REPORT_INTERVAL) {
+			return;
+		}
+		lastReport = now;
+		StringBuilder sb = new StringBuilder();
+		sb.append("\tCompleted " + completed + " of " + total + " replicates");
+		long remaining = getRemainingTime();
+		if (remaining >= 0 && completed < total) {
+			long seconds = remaining / 1000000000L;
+			sb.append(String.format(".  Estimated time remaining %d:%02d:%02d",
+					seconds / 3600, (seconds / 60) % 60, seconds % 60));
+		}
+		System.out.println(sb.toString());
+	}
+
+	/**
+	 * A point of the sweep, with the run times observed for its replicates.
+	 */
+
+	private static class Point<T> {
+		private T value;
+		private int first;
+		private int replicates;
+		private double cost;
+		private int completed = 0;
+		private int skipped = 0;
+		private double time = 0;
+
+		private Point(T value, int first, int replicates, double cost) {
+			this.value = value;
+			this.first = first;
+			this.replicates = replicates;
+			this.cost = cost;
+		}
+	}
+
+	/**
+	 * A single replicate of a point of the sweep.
+	 */
+
+	public static class Task<T> {
+		private Point<T> point;
+		private int replicate;
+
+		private Task(Point<T> point, int replicate) {
+			this.point = point;
+			this.replicate = replicate;
+		}
+
+		/**
+		 * @return the value describing the point of the task.
+		 */
+
+		public T getPoint() {
+			return point.value;
+		}
+
+		/**
+		 * @return the replicate number of the task within its point
+		 *         (counting from zero).
+		 */
+
+		public int getReplicate() {
+			return replicate;
+		}
+
+		/**
+		 * @return the position of the task in the unscheduled sweep (points
+		 *         in the order added, then replicates in order), which
+		 *         identifies its results.
+		 */
+
+		public int getSequence() {
+			return point.first + replicate;
+		}
+	}
+}
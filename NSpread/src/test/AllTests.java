@@ -9,18 +9,27 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 import test.output.OutputWriter_RasterCoverTest;
+import test.process.Process_ConvolutionTest;
 import test.process.Process_CostingTest;
 import test.process.Process_DispersalTest;
 import test.process.Process_GrowthTest;
 import test.process.Process_InfestationTest;
 import test.process.Process_MonitorTest;
+import test.random.RandomGenerator_AliasTest;
+import test.util.CheckpointTest;
+import test.util.NeighbourhoodTest;
+import test.util.RandomServiceTest;
+import test.util.ReplicateRunnerTest;
 import test.util.StatsTest;
+import test.util.SweepSchedulerTest;
 
 @RunWith(Suite.class)
-@SuiteClasses({ RasterMosaicTest.class, Process_CostingTest.class, 
-	    Process_GrowthTest.class, Process_DispersalTest.class, 
+@SuiteClasses({ RasterMosaicTest.class, RasterMosaic_ArrayTest.class, RasterMosaic_MappedTest.class, RasterMosaic_TiledTest.class, Process_CostingTest.class, 
+	    Process_GrowthTest.class, Process_DispersalTest.class, Process_ConvolutionTest.class, 
 	    Process_InfestationTest.class, Process_MonitorTest.class, 
-	    OutputWriter_RasterCoverTest.class,	ExperimentTest.class, StatsTest.class })
+	    OutputWriter_RasterCoverTest.class,	ExperimentTest.class, StatsTest.class, RandomGenerator_AliasTest.class,
+	    RandomServiceTest.class, ReplicateRunnerTest.class,
+	    SweepSchedulerTest.class, CheckpointTest.class, NeighbourhoodTest.class })
 public class AllTests {
 
 }
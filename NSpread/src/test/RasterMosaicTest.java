@@ -8,9 +8,11 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -22,6 +24,8 @@ import spread.impl.Disperser_Continuous2D;
 import spread.impl.Disperser_None;
 import spread.impl.RasterMosaic;
 import spread.impl.random.RandomGenerator_Determined;
+import spread.util.Components;
+import spread.util.ControlType;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -30,15 +34,25 @@ import spread.Disperser;
 import spread.Patch;
 import spread.RandomGenerator;
 
+import cern.colt.function.IntProcedure;
+
 import com.vividsolutions.jts.geom.Coordinate;
 
 public class RasterMosaicTest {
 
-	RasterMosaic re = new RasterMosaic();
+	RasterMosaic re = createMosaic();
 	String species = "Test_1";
 	String species2 = "Test_2";
 	String species3 = "Test_3";
 	
+	/**
+	 * @return the RasterMosaic implementation under test.
+	 */
+
+	protected RasterMosaic createMosaic() {
+		return new RasterMosaic();
+	}
+
 	@Before
 	public void setup(){
 		List<String> speciesList = new ArrayList<String>();
@@ -205,6 +219,209 @@ public class RasterMosaicTest {
 		}
 	}
 	
+	@Test
+	public void testForEachControlled(){
+		re.clear();
+		try {
+			re.setPresenceMap("./resource files/Age.txt",species);
+			re.getPatch(21).addControl(ControlType.GROUND_CONTROL, species);
+			re.getPatch(42).addControl(ControlType.GROUND_CONTROL, species);
+			re.getPatch(0).addControl(ControlType.GROUND_CONTROL, species);
+			re.getPatch(63).addControl(ControlType.CONTAINMENT);
+			assertEquals(setOf(21, 42), collectControlled(species, ControlType.GROUND_CONTROL));
+			assertEquals(setOf(63), collectControlled(null, ControlType.CONTAINMENT));
+
+			re.getPatch(21).getInfestation(species).removeControl(ControlType.GROUND_CONTROL);
+			re.getPatch(63).removeControl(ControlType.CONTAINMENT);
+			assertEquals(setOf(42), collectControlled(species, ControlType.GROUND_CONTROL));
+			assertEquals(setOf(), collectControlled(null, ControlType.CONTAINMENT));
+
+			re.getPatch(42).clearControls();
+			assertEquals(setOf(), collectControlled(species, ControlType.GROUND_CONTROL));
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Test
+	public void testForEachInfested(){
+		re.clear();
+		try {
+			re.setPresenceMap("./resource files/Age.txt",species);
+			Set<Integer> expected = new TreeSet<Integer>();
+			for (int key = 0; key < re.getNumberPatches(); key++) {
+				if (re.getPatch(key).isInfestedBy(species)) {
+					expected.add(key);
+				}
+			}
+			assertTrue(expected.contains(21));
+			assertEquals(expected, collectInfested(species));
+			assertEquals(expected, collectInfested(null));
+			assertEquals(setOf(), collectInfested(species2));
+
+			RasterMosaic copy = re.clone();
+			re.getPatch(21).getInfestation(species).clearInfestation();
+			re.getPatch(42).removeInfestation(species);
+			re.getPatch(63).setNoData(true);
+			re.getPatch(0).addInfestation(species2);
+			expected.remove(21);
+			expected.remove(42);
+			expected.remove(63);
+			assertEquals(expected, collectInfested(species));
+			assertEquals(setOf(0), collectInfested(species2));
+			expected.add(0);
+			assertEquals(expected, collectInfested(null));
+
+			// The clone keeps its own active sets
+
+			RasterMosaic original = re;
+			re = copy;
+			assertTrue(collectInfested(species).contains(21));
+			assertEquals(setOf(), collectInfested(species2));
+			re = original;
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Test
+	public void testCloneCopyOnWrite(){
+		re.clear();
+		try {
+			re.setPresenceMap("./resource files/Age.txt",species);
+			re.setHabitatMap("ALL",species);
+			RasterMosaic copy = re.clone();
+			RasterMosaic copy2 = copy.clone();
+
+			// Changes to the clone are not seen by the original
+
+			copy.getPatch(21).addControl(ControlType.GROUND_CONTROL, species);
+			copy.getPatch(21).setHabitatSuitability(species, 0.5);
+			copy.getPatch(42).removeInfestation(species);
+			assertTrue(copy.getPatch(21).hasControl(ControlType.GROUND_CONTROL, species));
+			assertFalse(re.getPatch(21).hasControl(ControlType.GROUND_CONTROL, species));
+			assertEquals(1.0, re.getPatch(21).getHabitatSuitability(species), 1E-9);
+			assertTrue(re.getPatch(42).isInfestedBy(species));
+
+			// Changes to the original are not seen by the clones
+
+			re.getPatch(21).getInfestation(species).clearInfestation();
+			re.getPatch(63).addInfestation(species2);
+			assertTrue(copy.getPatch(21).isInfestedBy(species));
+			assertTrue(copy2.getPatch(21).isInfestedBy(species));
+			assertFalse(copy.getPatch(63).isInfestedBy(species2));
+			assertFalse(copy2.getPatch(42).getInfestation().isEmpty());
+			assertFalse(copy2.getPatch(21).hasControl(ControlType.GROUND_CONTROL, species));
+			assertEquals(re.getNumberPatches(), copy2.getNumberPatches());
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Test
+	public void testForEachRecorded(){
+		re.clear();
+		re.setup(10, 10, 1, 0, 0);
+		try {
+			re.setHabitatMap("ALL", species);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		re.getPatch(5).addInfestation(species);
+		re.getPatch(7).addInfestation(species2);
+		re.getPatch(9).addInfestation(species);
+		re.getPatch(9).getInfestation(species).clearInfestation();
+		assertEquals(setOf(5, 7, 9), collectRecorded());
+		assertTrue(re.isManaged(9));
+		assertFalse(re.isManaged(8));
+
+		// Removing the Infestation drops the record
+
+		re.getPatch(5).removeInfestation(species);
+		assertEquals(setOf(7, 9), collectRecorded());
+
+		// Controls at the patch level make a Patch managed
+
+		re.getPatch(8).addControl(ControlType.CONTAINMENT);
+		assertTrue(re.isManaged(8));
+		assertEquals(setOf(7, 9), collectRecorded());
+	}
+
+	private Set<Integer> collectRecorded() {
+		final Set<Integer> ids = new TreeSet<Integer>();
+		re.forEachRecorded(new IntProcedure() {
+
+			@Override
+			public boolean apply(int key) {
+				ids.add(key);
+				return true;
+			}
+		});
+		return ids;
+	}
+
+	private Set<Integer> collectControlled(String sp, ControlType control) {
+		final Set<Integer> ids = new TreeSet<Integer>();
+		IntProcedure add = new IntProcedure() {
+
+			@Override
+			public boolean apply(int key) {
+				ids.add(key);
+				return true;
+			}
+		};
+		if (sp == null) {
+			re.forEachControlled(control, add);
+		} else {
+			re.forEachControlled(sp, control, add);
+		}
+		return ids;
+	}
+
+	private Set<Integer> collectInfested(String sp) {
+		final Set<Integer> ids = new TreeSet<Integer>();
+		IntProcedure add = new IntProcedure() {
+
+			@Override
+			public boolean apply(int key) {
+				ids.add(key);
+				return true;
+			}
+		};
+		if (sp == null) {
+			re.forEachInfested(add);
+		} else {
+			re.forEachInfested(sp, add);
+		}
+		return ids;
+	}
+
+	private Set<Integer> setOf(Integer... ids) {
+		return new TreeSet<Integer>(Arrays.asList(ids));
+	}
+
+	@Test
+	public void testGetPatches(){
+		re.clear();
+		try {
+			re.setPresenceMap("./resource files/Age.txt",species);
+			Map<Integer, Patch> cells = re.getPatches();
+			assertEquals(200, re.getNumberPatches());
+			assertEquals(200, cells.size());
+			int expected = 0;
+			for (Integer key : cells.keySet()) {
+				assertEquals(expected, key.intValue());
+				assertEquals(expected, cells.get(key).getID());
+				expected++;
+			}
+			assertEquals(200, expected);
+			Assert.assertNull(cells.get(200));
+			Assert.assertNull(re.getPatch(-1));
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
 	@Test
 	public void testGetStrongAdjacent(){
 		re.clear();
@@ -391,11 +608,60 @@ public class RasterMosaicTest {
 			expected.add(87);
 			assertEquals(expected,keys);
 
+			// The id-based search gives the same region, and leaves the
+			// Patches unvisited.
+			
+			int s = re.getSpeciesRegistry().indexOf(species);
+			assertArrayEquals(new int[] { 7, 26, 28, 46, 48, 66, 68, 87 },
+					re.getWeakRegionIds(7, s, new int[] { 0, 0,
+							re.getNrows() - 1, re.getNcols() - 1 }));
+			for (int key : expected) {
+				assertFalse(re.getPatch(key).isVisited());
+			}
+
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
 	}
 	
+	@Test
+	public void testLabelRegions(){
+		re.clear();
+
+		try {
+			re.setPresenceMap("./resource files/Patchtest.txt",species);
+			Set<String> group = new TreeSet<String>();
+			group.add(species);
+			
+			// Every infested Patch is labelled with the region found by a
+			// search from it, for both connectivities.
+			
+			for (boolean weak : new boolean[] { true, false }) {
+				Components labels = re.labelRegions(group, true, weak);
+				int total = 0;
+				for (int label = 1; label <= labels.getCount(); label++) {
+					int[] ids = labels.getIds(label);
+					Patch p = re.getPatch(ids[0]);
+					Set<Patch> region = weak ? re.getWeakRegion(p, species)
+							: re.getStrongRegion(p, species);
+					assertEquals(re.getKeys(region).size(), ids.length);
+					assertEquals(region.size(), labels.getSize(label));
+					for (Patch q : region) {
+						assertEquals(label, labels.getLabel(q.getID()));
+					}
+					total += ids.length;
+				}
+				int infested = 0;
+				for (Patch p : re.getInfestedPatches(species).values()) {
+					infested += p.hasNoData() ? 0 : 1;
+				}
+				assertEquals(infested, total);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
 	@Test
 	public void testHabitat(){
 		try {
@@ -529,6 +795,179 @@ public class RasterMosaicTest {
 		}
 	}
 
+	@Test
+	public void testCounts(){
+		re.clear();
+		re.setCheckCounts(true);
+		try {
+			re.setPresenceMap("./resource files/Patchtest.txt",species);
+			re.setPresenceMap("./resource files/Patchtest2.txt",species2);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		java.util.Random random = new java.util.Random(3);
+		String[] all = { species, species2, species3 };
+		for (int i = 0; i < 300; i++) {
+			Patch p = re.getPatch(random.nextInt(re.getNumberPatches()));
+			String sp = all[random.nextInt(3)];
+			switch (random.nextInt(9)) {
+			case 0:
+				p.addInfestation(sp);
+				break;
+			case 1:
+				p.removeInfestation(sp);
+				break;
+			case 2:
+				p.setMonitored(!p.isMonitored());
+				break;
+			case 3:
+				p.addControl(ControlType.CONTAINMENT);
+				break;
+			case 4:
+				if (p.isInfestedBy(sp)) {
+					p.addControl(ControlType.GROUND_CONTROL, sp);
+				}
+				break;
+			case 5:
+				p.addControl(ControlType.GROUND_CONTROL);
+				break;
+			case 6:
+				p.removeControl(ControlType.GROUND_CONTROL);
+				break;
+			case 7:
+				if (p.isInfestedBy(sp)) {
+					p.getInfestation(sp).removeControl(
+							ControlType.GROUND_CONTROL);
+				}
+				break;
+			default:
+				p.setNoData(random.nextInt(4) == 0);
+			}
+
+			// Each query is compared with a full scan.
+
+			re.getNumberInfestedPatches();
+			re.getNumberUndetected();
+			re.getNumberUninfested();
+			re.getNumberMonitored();
+			re.getNumberNoData();
+			re.getNumberControlled(ControlType.CONTAINMENT);
+			for (String s : all) {
+				re.getNumberInfestations(s);
+				re.getNumberUndetected(s);
+				re.getNumberUninfested(s);
+				re.getNumberControlled(s, ControlType.GROUND_CONTROL);
+			}
+		}
+		RasterMosaic copy = re.clone();
+		assertEquals(re.getNumberInfestations(species),
+				copy.getNumberInfestations(species));
+		assertEquals(re.getNumberMonitored(), copy.getNumberMonitored());
+		assertEquals(re.getNumberControlled(species, ControlType.GROUND_CONTROL),
+				copy.getNumberControlled(species, ControlType.GROUND_CONTROL));
+	}
+
+	@Test
+	public void testTrackedRegions(){
+		re.setup(15, 15, 1, 0, 0);
+		java.util.Random random = new java.util.Random(11);
+		Set<String> group = new TreeSet<String>();
+		group.add(species);
+		group.add(species2);
+		String[] all = { species, species2, species3 };
+		for (int id = 0; id < 225; id++) {
+			if (random.nextInt(8) == 0) {
+				re.getPatch(id).setNoData(true);
+			} else if (random.nextInt(3) == 0) {
+				re.getPatch(id).addInfestation(all[random.nextInt(3)]);
+			}
+		}
+		re.getTrackedRegionIds(0, group);
+
+		// Infest and clear cells and toggle NoData at random (NoData cells
+		// may hold infestations, but are not part of any region), checking
+		// the tracked regions against a fresh search after each change.
+
+		for (int i = 0; i < 400; i++) {
+			Patch p = re.getPatch(random.nextInt(225));
+			String sp = all[random.nextInt(3)];
+			if (random.nextInt(5) == 0) {
+				p.setNoData(!p.hasNoData());
+			} else if (p.isInfestedBy(sp)) {
+				p.removeInfestation(sp);
+			} else {
+				p.addInfestation(sp);
+			}
+			Patch q = re.getPatch(random.nextInt(225));
+			Set<Integer> expected = new TreeSet<Integer>();
+			if (!q.hasNoData() && (q.isInfestedBy(species) || q.isInfestedBy(species2))) {
+				expected = re.getKeys(re.getWeakRegion(q, group, true));
+			}
+			Set<Integer> keys = new TreeSet<Integer>();
+			for (int id : re.getTrackedRegionIds(q.getID(), group)) {
+				keys.add(id);
+			}
+			assertEquals(expected, keys);
+		}
+	}
+
+	@Test
+	public void testNibbleStrongDepth(){
+		re.setup(20, 20, 1, 0, 0);
+		java.util.Random random = new java.util.Random(7);
+		Set<Patch> region = new TreeSet<Patch>();
+		for (int id = 0; id < 400; id++) {
+			Patch p = re.getPatch(id);
+			int row = id / 20;
+			int col = id % 20;
+			if (random.nextInt(10) == 0) {
+				p.setNoData(true);
+			} else if (row > 1 && row < 17 && col > 2 && col < 19
+					&& random.nextInt(12) != 0) {
+				region.add(p);
+			}
+		}
+
+		// Erosion to depth n should match n successive single nibbles.
+
+		Set<Patch> nibbled = region;
+		for (int depth = 1; depth <= 6; depth++) {
+			nibbled = re.nibbleStrong(nibbled);
+			assertEquals(re.getKeys(nibbled),
+					re.getKeys(re.nibbleStrong(region, depth)));
+		}
+		assertEquals(re.getKeys(region), re.getKeys(re.nibbleStrong(region, 0)));
+	}
+
+	@Test
+	public void testNibbleWeakDepth(){
+		re.setup(20, 20, 1, 0, 0);
+		java.util.Random random = new java.util.Random(11);
+		Set<Patch> region = new TreeSet<Patch>();
+		for (int id = 0; id < 400; id++) {
+			Patch p = re.getPatch(id);
+			if (random.nextInt(10) == 0) {
+				p.setNoData(true);
+			} else if (random.nextInt(3) != 0) {
+				p.addInfestation(species);
+			}
+			if (random.nextInt(4) != 0) {
+				region.add(p);
+			}
+		}
+
+		// Nibbling to any depth gives a single nibble.
+
+		Set<Integer> once = re.getKeys(re.nibbleWeak(region, species));
+		assertTrue(once.size() < region.size());
+		for (int depth = 1; depth <= 4; depth++) {
+			assertEquals(once,
+					re.getKeys(re.nibbleWeak(region, species, depth)));
+		}
+		assertEquals(re.getKeys(region),
+				re.getKeys(re.nibbleWeak(region, species, 0)));
+	}
+
 	//@Test
 	public void testNibbleWeak(){
 		re.clear();
@@ -668,6 +1107,50 @@ public class RasterMosaicTest {
 		}
 	}
 	
+	@Test
+	public void testEstimateFootprint() {
+		re.clear();
+
+		try {
+			re.setPresenceMap("./resource files/Age.txt", species);
+			long infested = re.estimateFootprint();
+			assertTrue(infested > re.getNumberPatches());
+
+			// Fewer infestations give a smaller footprint.
+
+			re.getPatch(21).getInfestation(species).clearInfestation();
+			assertTrue(re.estimateFootprint() < infested);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Test
+	public void testEstimateFootprintSparse() {
+
+		// Only the tiles of Patches holding active cells are copied by a
+		// replicate (the array subclasses store cells in layers instead).
+
+		assumeTrue(re.getClass() == RasterMosaic.class);
+		re.clear();
+		re.setup(400, 400, 1, 0, 0);
+		try {
+			re.setHabitatMap("ALL", species);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		re.getPatch(200 * 400 + 200).addInfestation(species);
+		long sparse = re.estimateFootprint();
+		assertTrue(sparse < 16L * re.getNumberPatches());
+
+		// An infested cell every ten rows makes almost every tile active.
+
+		for (int row = 0; row < 400; row += 10) {
+			re.getPatch(row * 400).addInfestation(species);
+		}
+		assertTrue(re.estimateFootprint() > 10 * sparse);
+	}
+
 	@Test
 	public void testSetPresenceMap() {
 		// Clear the mosaic
@@ -690,4 +1173,4 @@ public class RasterMosaicTest {
 			e.printStackTrace();
 		}
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import spread.Patch;
+import spread.Process;
+import spread.RandomGenerator;
+import spread.impl.Disperser_Continuous2D;
+import spread.impl.RasterMosaic;
+import spread.impl.RasterMosaic_Array;
+import spread.impl.process.Process_Dispersal;
+import spread.impl.process.Process_Growth;
+import spread.impl.process.Process_Infestation;
+import spread.impl.random.RandomGenerator_Determined;
+import spread.util.ControlType;
+
+import org.junit.Test;
+
+/**
+ * Runs the RasterMosaic tests against the layer-backed implementation, and
+ * checks that a process chain produces the same state as RasterMosaic.
+ */
+
+public class RasterMosaic_ArrayTest extends RasterMosaicTest {
+
+	@Override
+	protected RasterMosaic createMosaic() {
+		return new RasterMosaic_Array();
+	}
+
+	@Test
+	public void testClone() {
+		re.clear();
+		try {
+			re.setPresenceMap("./resource files/Age.txt", species);
+			re.getPatch(21).addControl(ControlType.GROUND_CONTROL, species);
+			RasterMosaic copy = re.clone();
+			re.getPatch(21).removeInfestation(species);
+			re.getPatch(42).setMonitored(true);
+			assertTrue(copy.getPatch(21).isInfestedBy(species));
+			assertTrue(copy.getPatch(21).hasControl(ControlType.GROUND_CONTROL,
+					species));
+			assertFalse(copy.getPatch(42).isMonitored());
+			assertFalse(re.getPatch(21).isInfestedBy(species));
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Test
+	public void testProcessChain() {
+		RasterMosaic rm = new RasterMosaic();
+		rm.setSpeciesList(re.getSpeciesList());
+		re.clear();
+		try {
+			rm.setPresenceMap("./resource files/test.txt", species);
+			rm.setHabitatMap("ALL", species);
+			re.setPresenceMap("./resource files/test.txt", species);
+			re.setHabitatMap("ALL", species);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+		rm.setDisperser(species, createDisperser());
+		re.setDisperser(species, createDisperser());
+
+		Map<String, long[]> thresholds = new TreeMap<String, long[]>();
+		thresholds.put(species, new long[] { 1, 2 });
+		Map<String, Long> waitTimes = new TreeMap<String, Long>();
+		waitTimes.put(species, 0l);
+
+		Process_Growth pg = new Process_Growth();
+		pg.setThresholds(thresholds);
+		Process_Dispersal pd = new Process_Dispersal();
+		pd.setWaitTimes(waitTimes);
+
+		// Only a single round of dispersal is compared: RasterMosaic
+		// disperses newly established infestations from the last propagule
+		// position, whereas RasterMosaic_Array uses the centroid of the cell.
+
+		Process[] chain = new Process[] { pg, pd, new Process_Infestation(),
+				pg, pg };
+
+		for (Process p : chain) {
+			p.process(rm);
+			p.process(re);
+			for (Integer key : rm.getPatches().keySet()) {
+				Patch a = rm.getPatch(key);
+				Patch b = re.getPatch(key);
+				assertEquals(a.isInfestedBy(species), b.isInfestedBy(species));
+				assertEquals(a.getAgeOfInfestation(species),
+						b.getAgeOfInfestation(species));
+				assertEquals(a.getStagesOfInfestation(),
+						b.getStagesOfInfestation());
+				assertEquals(a.getPropagules(species), b.getPropagules(species));
+			}
+		}
+	}
+
+	private Disperser_Continuous2D createDisperser() {
+		Disperser_Continuous2D d2 = new Disperser_Continuous2D();
+		RandomGenerator east = new RandomGenerator_Determined(0);
+		RandomGenerator one = new RandomGenerator_Determined(1);
+		d2.setDistanceGenerator(one);
+		d2.setAngleGenerator(east);
+		d2.setNumberGenerator(one);
+		return d2;
+	}
+}
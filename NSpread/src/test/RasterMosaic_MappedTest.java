@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import spread.impl.RasterMosaic;
+import spread.impl.RasterMosaic_Mapped;
+import spread.impl.process.Process_Monitor;
+import spread.util.Layer_Mapped;
+
+import org.junit.Test;
+
+/**
+ * Runs the RasterMosaic_Array tests against the memory-mapped implementation,
+ * and compares its heap usage with that of RasterMosaic.
+ */
+
+public class RasterMosaic_MappedTest extends RasterMosaic_ArrayTest {
+
+	@Override
+	protected RasterMosaic createMosaic() {
+		return new RasterMosaic_Mapped();
+	}
+
+	@Test
+	public void testHeapUsage() {
+		int n = 1000;
+
+		long base = usedHeap();
+		RasterMosaic rm = new RasterMosaic();
+		rm.setSpeciesList(re.getSpeciesList());
+		rm.setup(n, n, 1, 0, 0);
+		long onHeap = usedHeap() - base;
+		assertEquals(n * n, rm.getNumberPatches());
+		rm = null;
+
+		base = usedHeap();
+		RasterMosaic_Mapped mm = new RasterMosaic_Mapped();
+		mm.setSpeciesList(re.getSpeciesList());
+		mm.setup(n, n, 1, 0, 0);
+		assertEquals(n * n, mm.getNumberPatches());
+
+		// A monitoring step looks up the regions of a small infestation,
+		// which must not allocate state for every cell.
+
+		for (int row = 500; row < 503; row++) {
+			for (int col = 500; col < 503; col++) {
+				mm.getPatch(row * n + col).addInfestation(species);
+			}
+		}
+		Process_Monitor pm = new Process_Monitor();
+		Map<String, double[]> p_discovery = new TreeMap<String, double[]>();
+		p_discovery.put(species, new double[] { 1, 1, 1, 1 });
+		pm.setPDiscovery(p_discovery);
+		pm.process(mm);
+		assertEquals(9, mm.getTrackedRegionIds(500 * n + 500,
+				Collections.singleton(species)).length);
+		assertEquals(9, mm.getNumberMonitored());
+		long offHeap = usedHeap() - base;
+
+		// The remaining heap cost is mostly the active-patch bitsets.
+
+		assertTrue("RasterMosaic: " + onHeap + " bytes, RasterMosaic_Mapped: "
+				+ offHeap + " bytes", offHeap * 10 < onHeap);
+		mm.shutdown();
+	}
+
+	@Test
+	public void testLayer() {
+		Layer_Mapped lm = new Layer_Mapped(100, 4, null);
+		lm.set(99, -7);
+		Layer_Mapped copy = lm.clone();
+		lm.set(0, 3);
+		assertEquals(-7, copy.get(99));
+		assertEquals(0, copy.get(0));
+		assertEquals(3, lm.get(0));
+		copy.clear();
+		assertEquals(0, copy.get(99));
+		assertEquals(-7, lm.get(99));
+	}
+
+	private long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
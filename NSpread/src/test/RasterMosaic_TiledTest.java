@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import spread.impl.RasterMosaic;
+import spread.impl.RasterMosaic_Tiled;
+
+import org.junit.Test;
+
+/**
+ * Runs the RasterMosaic_Array tests against the tiled implementation (with
+ * small tiles, so that regions span several tiles), and checks that tiles are
+ * only allocated where cells hold non-uniform state.
+ */
+
+public class RasterMosaic_TiledTest extends RasterMosaic_ArrayTest {
+
+	@Override
+	protected RasterMosaic createMosaic() {
+		RasterMosaic_Tiled rm = new RasterMosaic_Tiled();
+		rm.setTileSize(4);
+		return rm;
+	}
+
+	@Test
+	public void testAllocation() {
+		RasterMosaic_Tiled rm = new RasterMosaic_Tiled();
+		rm.setSpeciesList(re.getSpeciesList());
+		rm.setup(1000, 1000, 1, 0, 0);
+		assertEquals(0, rm.getAllocatedTiles());
+
+		rm.getPatch(0).addInfestation(species);
+		int allocated = rm.getAllocatedTiles();
+		assertTrue(allocated > 0);
+
+		RasterMosaic_Tiled copy = (RasterMosaic_Tiled) rm.clone();
+		copy.getPatch(999999).addInfestation(species);
+		assertTrue(copy.getPatch(0).isInfestedBy(species));
+		assertFalse(rm.getPatch(999999).isInfestedBy(species));
+		assertEquals(allocated, rm.getAllocatedTiles());
+
+		rm.getPatch(0).clearInfestation(species);
+		rm.getPatch(0).removeInfestation(species);
+		rm.compact();
+		assertEquals(0, rm.getAllocatedTiles());
+	}
+
+	@Test
+	public void testUniformMap() {
+		RasterMosaic_Tiled rm = new RasterMosaic_Tiled();
+		rm.setSpeciesList(re.getSpeciesList());
+		rm.setup(300, 300, 1, 0, 0);
+		try {
+			rm.setHabitatMap("ALL", species);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		assertEquals(0, rm.getAllocatedTiles());
+		assertEquals(1d, rm.getPatch(299 * 300 + 299).getHabitatSuitability(
+				species), 0);
+	}
+}
@@ -0,0 +1,233 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package test.process;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import spread.impl.Disperser_Continuous2D;
+import spread.impl.RasterMosaic;
+import spread.impl.process.Process_Convolution;
+import spread.impl.process.Process_Dispersal;
+import spread.impl.process.Process_Infestation;
+import spread.impl.random.RandomGenerator_Exponential;
+import spread.impl.random.RandomGenerator_Poisson;
+import spread.impl.random.RandomGenerator_Uniform;
+import spread.util.Convolver;
+import spread.util.DiscreteKernel;
+import spread.util.RandomService;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import cern.colt.function.IntProcedure;
+
+public class Process_ConvolutionTest {
+
+	RasterMosaic rm = new RasterMosaic();
+	Process_Dispersal pd = new Process_Dispersal();
+	String species = "Test_1";
+
+	@Before
+	public void setup() {
+		List<String> speciesList = new ArrayList<String>();
+		speciesList.add(species);
+		rm.setSpeciesList(speciesList);
+		rm.setup(40, 40, 1, 0, 0);
+
+		Map<String, Long> waitTimes = new TreeMap<String, Long>();
+		waitTimes.put(species, 0l);
+		pd.setWaitTimes(waitTimes);
+	}
+
+	@Test
+	public void testConvolver() {
+		int nrows = 9;
+		int ncols = 7;
+		DiscreteKernel kernel = DiscreteKernel.get(1.2, null, false, 1);
+		Convolver c = new Convolver(nrows, ncols, kernel);
+		Random random = new Random(7);
+		double[] source = new double[nrows * ncols];
+		for (int i = 0; i < source.length; i++) {
+			source[i] = random.nextInt(3) == 0 ? random.nextDouble() : 0;
+		}
+
+		// Direct convolution, dropping propagules that leave the raster.
+
+		double[] expected = new double[source.length];
+		for (int id = 0; id < source.length; id++) {
+			for (int k = 0; k < kernel.size(); k++) {
+				int row = id / ncols - kernel.getDy(k);
+				int col = id % ncols + kernel.getDx(k);
+				if (row >= 0 && row < nrows && col >= 0 && col < ncols) {
+					expected[row * ncols + col] += source[id]
+							* kernel.getProbability(k);
+				}
+			}
+		}
+
+		double[] result = new double[source.length];
+		c.convolve(source, result);
+		for (int i = 0; i < result.length; i++) {
+			assertEquals(expected[i], result[i], 1E-9);
+		}
+
+		// A Convolver sharing the transform of the kernel gives the same
+		// result, without disturbing the first.
+
+		double[] shared = new double[source.length];
+		new Convolver(nrows, ncols, kernel).convolve(source, shared);
+		c.convolve(source, result);
+		for (int i = 0; i < result.length; i++) {
+			assertEquals(expected[i], shared[i], 1E-9);
+			assertEquals(expected[i], result[i], 1E-9);
+		}
+	}
+
+	@Test
+	public void testProcess() {
+		try {
+			rm.setHabitatMap("ALL", species);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		int source = 20 * 40 + 20;
+		rm.getPatch(source).addInfestation(species);
+
+		Disperser_Continuous2D d2 = new Disperser_Continuous2D();
+		d2.setAngleGenerator(new RandomGenerator_Uniform());
+		d2.setDistanceGenerator(new RandomGenerator_Exponential(0.5));
+		d2.setNumberGenerator(new RandomGenerator_Poisson(20));
+		final DiscreteKernel kernel = DiscreteKernel.get(2, null, false, 1);
+		d2.setKernel(kernel, 1);
+		rm.setDisperser(species, d2);
+
+		// Below the threshold, propagules are dispersed individually.
+
+		Process_Convolution pc = new Process_Convolution(pd);
+		pc.setThreshold(2);
+		assertFalse(pc.isConvolving(rm));
+		assertEquals(0, pc.estimateFootprint(rm));
+		pc.process(rm);
+		assertFalse(rm.getPatch(source).getInfestation(species)
+				.getPropaguleBuffer().isEmpty());
+
+		pc.setThreshold(0);
+		assertTrue(pc.isConvolving(rm));
+		assertEquals(8 * 40 * 40 + Convolver.estimateFootprint(40, 40, kernel),
+				pc.estimateFootprint(rm));
+		int before = rm.getNumberInfestations(species);
+		pc.process(rm);
+		assertTrue(rm.getPatch(source).getInfestation(species)
+				.getPropaguleBuffer().isEmpty());
+		assertTrue(rm.getNumberInfestations(species) > before);
+
+		// New infestations lie within the reach of the kernel.
+
+		int reach = 0;
+		for (int k = 0; k < kernel.size(); k++) {
+			reach = Math.max(reach, Math.abs(kernel.getDx(k)));
+			reach = Math.max(reach, Math.abs(kernel.getDy(k)));
+		}
+		final int limit = 2 * reach;
+		rm.forEachInfested(species, new IntProcedure() {
+
+			@Override
+			public boolean apply(int key) {
+				assertTrue(Math.abs(key / 40 - 20) <= limit);
+				assertTrue(Math.abs(key % 40 - 20) <= limit);
+				return true;
+			}
+		});
+	}
+
+	@Test
+	public void testEquivalence() {
+		try {
+			rm.setHabitatMap("ALL", species);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		int source = 20 * 40 + 20;
+		rm.getPatch(source).addInfestation(species);
+
+		Disperser_Continuous2D d2 = new Disperser_Continuous2D();
+		d2.setAngleGenerator(new RandomGenerator_Uniform());
+		d2.setDistanceGenerator(new RandomGenerator_Exponential(1 / 1.5));
+		d2.setNumberGenerator(new RandomGenerator_Poisson(2));
+		d2.setKernel(DiscreteKernel.get(1.5, null, false, 1), 1);
+		rm.setDisperser(species, d2);
+
+		Process_Convolution pc = new Process_Convolution(pd);
+		pc.setThreshold(0);
+		Process_Infestation pi = new Process_Infestation();
+
+		// Count how often each cell is colonised from the source in a single
+		// step, by convolution and by dispersing propagules individually
+		// (enough trials to reject a rate or distance 10% out).
+
+		int trials = 16000;
+		int[] convolved = new int[40 * 40];
+		int[] individual = new int[40 * 40];
+		RandomService.bind(new RandomService(11));
+		try {
+			for (int t = 0; t < trials; t++) {
+				RasterMosaic copy = rm.clone();
+				pc.process(copy);
+				count(copy, convolved);
+				copy = rm.clone();
+				pd.process(copy);
+				pi.process(copy);
+				count(copy, individual);
+			}
+		} finally {
+			RandomService.bind(null);
+		}
+
+		// The numbers of propagules landing in each cell are independent
+		// Poisson variates, so each cell contributes a 2x2 chi-square term
+		// (comparing two samples of equal size). Rarely colonised cells are
+		// left out.
+
+		double chi = 0;
+		int df = 0;
+		for (int id = 0; id < convolved.length; id++) {
+			int a = convolved[id];
+			int b = individual[id];
+			if (id == source || a + b < 20) {
+				continue;
+			}
+			chi += 2d * trials * (a - b) * (a - b)
+					/ ((double) (a + b) * (2 * trials - a - b));
+			df++;
+		}
+		assertTrue(df > 20);
+
+		// The critical value at p = 0.001, by the Wilson-Hilferty
+		// approximation.
+
+		double z = 2 / (9d * df);
+		double critical = df * Math.pow(1 - z + 3.09 * Math.sqrt(z), 3);
+		assertTrue("chi-square " + chi + " on " + df + " df", chi < critical);
+	}
+
+	private void count(RasterMosaic mosaic, final int[] counts) {
+		mosaic.forEachInfested(species, new IntProcedure() {
+
+			@Override
+			public boolean apply(int key) {
+				counts[key]++;
+				return true;
+			}
+		});
+	}
+}
@@ -5,6 +5,8 @@
 package test.process;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -16,6 +18,10 @@ import spread.impl.Disperser_Continuous2D;
 import spread.impl.RasterMosaic;
 import spread.impl.process.Process_Dispersal;
 import spread.impl.random.RandomGenerator_Determined;
+import spread.impl.random.RandomGenerator_Exponential;
+import spread.impl.random.RandomGenerator_Kernel;
+import spread.util.DiscreteKernel;
+import spread.util.PropaguleBuffer;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -45,6 +51,123 @@ public class Process_DispersalTest {
 		pd.setWaitTimes(waitTimes);
 	}
 	
+	@Test
+	public void testPropaguleBuffer() {
+		d2 = new Disperser_Continuous2D();
+		d2.setDistanceGenerator(new RandomGenerator_Determined(2));
+		d2.setAngleGenerator(new RandomGenerator_Determined(0.25));
+		d2.setNumberGenerator(new RandomGenerator_Determined(3));
+		d2.setPosition(new Coordinate(5, 5));
+
+		PropaguleBuffer buffer = new PropaguleBuffer(1);
+		buffer.add(-1, -1);
+		d2.disperse(buffer);
+		List<Coordinate> expected = d2.disperse();
+		assertEquals(3, buffer.size());
+		assertEquals(expected, buffer.toCoordinates());
+		assertEquals(5, buffer.getX(0), 1E-9);
+		assertEquals(7, buffer.getY(0), 1E-9);
+
+		// The buffer is refilled rather than appended to.
+
+		d2.disperse(buffer);
+		assertEquals(3, buffer.size());
+	}
+
+	@Test
+	public void testDiscreteKernel() {
+		double[] weights = new double[] { 1, 2, 3, 4, 4, 3, 2, 1 };
+		DiscreteKernel kernel = DiscreteKernel.get(3, weights, true, 1);
+		assertSame(kernel, DiscreteKernel.get(3, weights.clone(), true, 1));
+
+		double total = 0;
+		Map<String, Double> expected = new TreeMap<String, Double>();
+		for (int i = 0; i < kernel.size(); i++) {
+			total += kernel.getProbability(i);
+			expected.put(kernel.getDx(i) + "," + kernel.getDy(i),
+					kernel.getProbability(i));
+		}
+		assertEquals(1, total, 1E-9);
+
+		// Compare the table with the frequencies of the cells reached by
+		// exact continuous sampling from the centre of a cell.
+
+		d2 = new Disperser_Continuous2D();
+		RandomGenerator_Kernel rk = new RandomGenerator_Kernel();
+		rk.setRotate(true);
+		rk.setWeights(weights);
+		d2.setAngleGenerator(rk);
+		d2.setDistanceGenerator(new RandomGenerator_Exponential(1d / 3));
+		d2.setNumberGenerator(new RandomGenerator_Determined(0));
+		d2.setPosition(new Coordinate(0.5, 0.5));
+
+		int n = 200000;
+		PropaguleBuffer buffer = new PropaguleBuffer(n);
+		d2.disperse(n, buffer);
+		Map<String, Integer> counts = new TreeMap<String, Integer>();
+		for (int i = 0; i < n; i++) {
+			String key = (int) Math.floor(buffer.getX(i)) + ","
+					+ (int) Math.floor(buffer.getY(i));
+			counts.put(key, counts.containsKey(key) ? counts.get(key) + 1 : 1);
+		}
+		for (String key : expected.keySet()) {
+			double observed = counts.containsKey(key) ? counts.get(key)
+					/ (double) n : 0;
+			assertEquals(key, expected.get(key), observed, 0.005);
+		}
+
+		// With the kernel set, propagules land on whole cell offsets, and
+		// clones share the table.
+
+		d2.setKernel(kernel, 1);
+		d2.disperse(n, buffer);
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(0.5, buffer.getX(i) - Math.floor(buffer.getX(i)), 1E-9);
+			assertEquals(0.5, buffer.getY(i) - Math.floor(buffer.getY(i)), 1E-9);
+		}
+		assertSame(kernel, d2.clone().getKernel());
+	}
+
+	@Test
+	public void testDiscreteKernelTail() {
+		double mean = 30;
+		DiscreteKernel kernel = DiscreteKernel.get(mean, null, false, 1);
+
+		// Every cell within six mean distances can be reached, and the mass
+		// of each band of distance is that of the exponential distribution
+		// (to within the cells straddling the edges of the band).
+
+		double[] edges = { 0, 1, 2, 3, 4.5, 6 };
+		double[] mass = new double[edges.length - 1];
+		int reached = 0;
+		for (int i = 0; i < kernel.size(); i++) {
+			double d = Math.hypot(kernel.getDx(i), kernel.getDy(i)) / mean;
+			assertTrue(kernel.getProbability(i) > 0);
+			if (d <= edges[edges.length - 1]) {
+				reached++;
+			}
+			for (int b = 0; b < mass.length; b++) {
+				if (d >= edges[b] && d < edges[b + 1]) {
+					mass[b] += kernel.getProbability(i);
+				}
+			}
+		}
+		int cells = 0;
+		int r = (int) (edges[edges.length - 1] * mean);
+		for (int dx = -r; dx <= r; dx++) {
+			for (int dy = -r; dy <= r; dy++) {
+				if (Math.hypot(dx, dy) / mean <= edges[edges.length - 1]) {
+					cells++;
+				}
+			}
+		}
+		assertEquals(cells, reached);
+		for (int b = 0; b < mass.length; b++) {
+			double expected = Math.exp(-edges[b]) - Math.exp(-edges[b + 1]);
+			assertEquals("band " + b, expected, mass[b], 0.01 * expected);
+		}
+	}
+
 	@Test
 	public void testProcess() {
 		d2 = new Disperser_Continuous2D();
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package test.random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import spread.RandomGenerator;
+import spread.impl.random.RandomGenerator_Alias;
+import spread.impl.random.RandomGenerator_Determined;
+import spread.impl.random.RandomGenerator_Exponential;
+import spread.impl.random.RandomGenerator_Kernel;
+import spread.impl.random.RandomGenerator_Poisson;
+
+import org.junit.Test;
+
+public class RandomGenerator_AliasTest {
+
+	double[] weights = new double[] { 3.6, 15.4, 51.5, 18.4, 5.0, 3.1, 2.0, 0.9 };
+	int n = 200000;
+
+	@Test
+	public void testEquivalence() {
+		for (boolean rotate : new boolean[] { false, true }) {
+			RandomGenerator_Kernel rk = new RandomGenerator_Kernel();
+			rk.setRotate(rotate);
+			rk.setWeights(weights);
+			RandomGenerator_Alias ra = new RandomGenerator_Alias();
+			ra.setRotate(rotate);
+			ra.setWeights(weights);
+
+			// Compare histograms on a finer grid than the bins, so that the
+			// within-bin distribution and the rotation are checked too.
+
+			double[] expected = histogram(rk, 32);
+			double[] observed = histogram(ra, 32);
+			double chi = 0;
+			for (int i = 0; i < expected.length; i++) {
+				if (expected[i] > 0) {
+					chi += Math.pow(observed[i] - expected[i], 2)
+							/ expected[i];
+				}
+			}
+
+			// Two samples of equal size: the statistic is scaled by two.
+			// 31 degrees of freedom, p = 0.001 gives 61.1.
+
+			assertTrue("chi-square " + chi, chi / 2 < 61.1);
+		}
+	}
+
+	@Test
+	public void testClone() {
+		RandomGenerator_Alias ra = new RandomGenerator_Alias();
+		ra.setWeights(weights);
+		RandomGenerator_Alias clone = ra.clone();
+		assertSame(ra.getTable(), clone.getTable());
+		assertEquals(ra.isRotate(), clone.isRotate());
+		for (int i = 0; i < 1000; i++) {
+			double v = clone.getNext().doubleValue();
+			assertTrue(v >= 0 && v < 1);
+		}
+	}
+
+	@Test
+	public void testFill() {
+		double[] d = new double[10];
+		int[] k = new int[10];
+
+		RandomGenerator_Determined rd = new RandomGenerator_Determined(2.5);
+		rd.fill(d, 4);
+		rd.fill(k, 4);
+		for (int i = 0; i < 4; i++) {
+			assertEquals(2.5, d[i], 0);
+			assertEquals(2, k[i]);
+		}
+		assertEquals(0, d[4], 0);
+		assertEquals(rd.getNext().intValue(), rd.nextInt());
+
+		RandomGenerator_Exponential re = new RandomGenerator_Exponential(
+				Double.POSITIVE_INFINITY);
+		re.fill(d, d.length);
+		for (double v : d) {
+			assertEquals(0, v, 0);
+		}
+
+		RandomGenerator_Poisson rp = new RandomGenerator_Poisson(3);
+		rp.fill(k, k.length);
+		for (int v : k) {
+			assertTrue(v >= 0);
+		}
+
+		RandomGenerator_Alias ra = new RandomGenerator_Alias();
+		ra.setWeights(weights);
+		ra.fill(d, d.length);
+		for (double v : d) {
+			assertTrue(v >= 0 && v < 1);
+		}
+	}
+
+	private double[] histogram(RandomGenerator rg, int bins) {
+		double[] counts = new double[bins];
+		for (int i = 0; i < n; i++) {
+			int bin = (int) (rg.nextDouble() * bins);
+			counts[Math.min(bin, bins - 1)]++;
+		}
+		return counts;
+	}
+}
@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package test.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import spread.util.Checkpoint;
+
+public class CheckpointTest {
+
+	@Test
+	public void testReadWrite() throws IOException {
+		Checkpoint checkpoint = new Checkpoint(-1234567890123L, 40);
+		checkpoint.setNext(7);
+		checkpoint.setExperiments(9);
+		Map<String, String> rows = new TreeMap<String, String>();
+		rows.put("a", "9,1.0,2.0,0\n");
+		rows.put("b", "9,3.0,4.0,0\n");
+		checkpoint.getPending().put(9, rows);
+		checkpoint.getTableLengths().put("a", 1024L);
+		checkpoint.getTableLengths().put("b", 2048L);
+		Map<Integer, Long> counts = new TreeMap<Integer, Long>();
+		counts.put(3, 5L);
+		counts.put(12, -9999L);
+		checkpoint.getTally().put("a", counts);
+
+		File file = File.createTempFile("spread", ".checkpoint");
+		file.deleteOnExit();
+		checkpoint.write(file.getPath());
+
+		// Writing again replaces the previous checkpoint.
+
+		checkpoint.write(file.getPath());
+		assertFalse(new File(file.getPath() + ".tmp").exists());
+
+		Checkpoint read = Checkpoint.read(file.getPath());
+		assertEquals(-1234567890123L, read.getSeed());
+		assertEquals(40, read.getTotal());
+		assertEquals(7, read.getNext());
+		assertEquals(9, read.getExperiments());
+		assertEquals(8, read.getCompleted());
+		assertEquals(checkpoint.getPending(), read.getPending());
+		assertEquals(checkpoint.getTableLengths(), read.getTableLengths());
+		assertEquals(checkpoint.getTally(), read.getTally());
+
+		for (int i = 0; i < 7; i++) {
+			assertTrue(read.isCompleted(i));
+		}
+		assertFalse(read.isCompleted(7));
+		assertFalse(read.isCompleted(8));
+		assertTrue(read.isCompleted(9));
+		assertFalse(read.isCompleted(10));
+	}
+
+	@Test(expected = IOException.class)
+	public void testNotCheckpoint() throws IOException {
+		File file = File.createTempFile("spread", ".checkpoint");
+		file.deleteOnExit();
+		Checkpoint.read(file.getPath());
+	}
+}
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package test.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import spread.Patch;
+import spread.impl.RasterMosaic;
+import spread.util.Neighbourhood;
+import cern.colt.function.IntProcedure;
+
+public class NeighbourhoodTest {
+
+	// Corners, edges and interiors, and rasters of a single row or column
+	// (or cell), in which a cell lies on opposite edges at once.
+
+	private static final int[][] SIZES = { { 4, 5 }, { 2, 2 }, { 1, 6 },
+			{ 6, 1 }, { 1, 1 }, { 1, 2 }, { 3, 1 } };
+
+	@Test
+	public void testStrong() {
+		for (int[] size : SIZES) {
+			compare(size[0], size[1], false);
+		}
+	}
+
+	@Test
+	public void testWeak() {
+		for (int[] size : SIZES) {
+			compare(size[0], size[1], true);
+		}
+	}
+
+	@Test
+	public void testStop() {
+		Neighbourhood neighbourhood = new Neighbourhood(3, 3, true);
+		final List<Integer> visited = new ArrayList<Integer>();
+		assertFalse(neighbourhood.forEachNeighbour(4, new IntProcedure() {
+			@Override
+			public boolean apply(int id) {
+				visited.add(id);
+				return visited.size() < 3;
+			}
+		}));
+		assertEquals(3, visited.size());
+		assertEquals(Integer.valueOf(0), visited.get(0));
+	}
+
+	/**
+	 * Compares the neighbours of every cell with those given by the bounded
+	 * adjacency searches of RasterMosaic, which check the bounds explicitly.
+	 */
+
+	private void compare(int nrows, int ncols, boolean weak) {
+		RasterMosaic rm = new RasterMosaic();
+		rm.setup(nrows, ncols, 1, 0, 0);
+		int[] bnds = { 0, 0, nrows - 1, ncols - 1 };
+		Neighbourhood neighbourhood = new Neighbourhood(nrows, ncols, weak);
+		assertEquals(weak ? 8 : 4, neighbourhood.size());
+		int[] neighbours = new int[neighbourhood.size()];
+
+		for (int id = 0; id < nrows * ncols; id++) {
+			Patch p = rm.getPatch(id);
+			Set<Integer> expected = new TreeSet<Integer>();
+			for (Patch q : weak ? rm.getWeakAdjacent(p, bnds) : rm
+					.getStrongAdjacent(p, bnds)) {
+				expected.add(q.getID());
+			}
+			String cell = nrows + "x" + ncols + " cell " + id;
+
+			// Neighbours are given in row-major (ascending) order.
+
+			int n = neighbourhood.getNeighbours(id, neighbours);
+			List<Integer> listed = new ArrayList<Integer>();
+			for (int k = 0; k < n; k++) {
+				listed.add(neighbours[k]);
+			}
+			assertEquals(cell, new ArrayList<Integer>(expected), listed);
+
+			final List<Integer> visited = new ArrayList<Integer>();
+			neighbourhood.forEachNeighbour(id, new IntProcedure() {
+				@Override
+				public boolean apply(int id) {
+					visited.add(id);
+					return true;
+				}
+			});
+			assertEquals(cell, listed, visited);
+		}
+	}
+}
@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package test.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Test;
+
+import spread.impl.random.RandomGenerator_Poisson;
+import spread.impl.random.RandomGenerator_Uniform;
+import spread.util.RandomService;
+import spread.util.RandomStream;
+
+public class RandomServiceTest {
+
+	@After
+	public void tearDown() {
+		RandomService.bind(null);
+	}
+
+	@Test
+	public void testStream() {
+		RandomStream a = new RandomStream(42);
+		RandomStream b = new RandomStream(42);
+		RandomStream c = new RandomStream(43);
+		boolean differs = false;
+		for (int i = 0; i < 1000; i++) {
+			double v = a.nextDouble();
+			assertTrue(v > 0 && v < 1);
+			assertEquals(v, b.nextDouble(), 0);
+			differs |= v != c.nextDouble();
+		}
+		assertTrue(differs);
+	}
+
+	@Test
+	public void testReplicate() {
+		long seed = 1234;
+		double[] first = draw(RandomService.derive(seed, 7, 3));
+		double[] second = draw(RandomService.derive(seed, 7, 4));
+
+		// Drawing another replicate in between must not change the result.
+
+		assertArrayEquals(first, draw(RandomService.derive(seed, 7, 3)), 0);
+		assertFalse(Arrays.equals(first, second));
+	}
+
+	private double[] draw(long seed) {
+		RandomService.bind(new RandomService(seed));
+		RandomGenerator_Uniform ru = new RandomGenerator_Uniform();
+		RandomGenerator_Poisson rp = new RandomGenerator_Poisson(5);
+		double[] values = new double[200];
+		for (int i = 0; i < values.length; i += 2) {
+			values[i] = ru.nextDouble();
+			values[i + 1] = rp.nextInt();
+		}
+		return values;
+	}
+}
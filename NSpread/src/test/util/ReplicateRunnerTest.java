@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package test.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import spread.Experiment;
+import spread.util.MemoryBudget;
+import spread.util.ReplicateRunner;
+
+public class ReplicateRunnerTest {
+
+	@Test
+	public void testCompletion() {
+		for (int threads : new int[] { 1, 4 }) {
+			final List<Integer> ran = Collections
+					.synchronizedList(new ArrayList<Integer>());
+			final List<Integer> completed = new ArrayList<Integer>();
+			ReplicateRunner runner = new ReplicateRunner(threads);
+			for (int n = 0; n < 20; n++) {
+				final int replicate = n;
+				Experiment e = new Experiment() {
+					@Override
+					public void run() {
+
+						// Later replicates finish first.
+
+						try {
+							Thread.sleep(20 - replicate);
+						} catch (InterruptedException ex) {
+							Thread.currentThread().interrupt();
+						}
+						ran.add(replicate);
+					}
+				};
+				runner.submit(e, new Runnable() {
+					@Override
+					public void run() {
+						assertTrue(ran.contains(replicate));
+						completed.add(replicate);
+					}
+				});
+			}
+			runner.shutdown();
+			assertEquals(20, completed.size());
+
+			// Replicates complete as they finish, which is in order only
+			// when they run on the submitting thread.
+
+			if (threads == 1) {
+				for (int n = 0; n < 20; n++) {
+					assertEquals(n, completed.get(n).intValue());
+				}
+			}
+			Collections.sort(completed);
+			for (int n = 0; n < 20; n++) {
+				assertEquals(n, completed.get(n).intValue());
+			}
+		}
+	}
+
+	@Test
+	public void testBudget() {
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger peak = new AtomicInteger();
+		ReplicateRunner runner = new ReplicateRunner(4);
+		MemoryBudget budget = new MemoryBudget(100);
+		runner.setBudget(budget);
+		for (int n = 0; n < 8; n++) {
+			runner.submit(new Experiment() {
+				@Override
+				public void run() {
+					int r = running.incrementAndGet();
+					synchronized (peak) {
+						peak.set(Math.max(peak.get(), r));
+					}
+					try {
+						Thread.sleep(5);
+					} catch (InterruptedException ex) {
+						Thread.currentThread().interrupt();
+					}
+					running.decrementAndGet();
+				}
+			}, 40, null);
+		}
+		runner.shutdown();
+
+		// Two footprints of 40 fit in the budget of 100, but not three.
+
+		assertTrue("peak " + peak.get(), peak.get() <= 2);
+		assertEquals(0, budget.getUsed());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testFailure() {
+		ReplicateRunner runner = new ReplicateRunner(2);
+		runner.submit(new Experiment() {
+			@Override
+			public void run() {
+				throw new IllegalArgumentException("failed");
+			}
+		}, null);
+		runner.shutdown();
+	}
+}
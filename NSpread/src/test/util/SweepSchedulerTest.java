@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright Charles Darwin University 2014. All Rights Reserved.  
+ * For review only, not for distribution.
+ *******************************************************************************/
+package test.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import spread.Experiment;
+import spread.util.SweepScheduler;
+
+public class SweepSchedulerTest {
+
+	@Test
+	public void testTasks() {
+		SweepScheduler<String> sweep = new SweepScheduler<String>(1);
+		sweep.add("cheap", 2, 1);
+		sweep.add("dear", 3, 10);
+		sweep.add("cheap2", 1, 1);
+		List<SweepScheduler.Task<String>> tasks = sweep.getTasks();
+		assertEquals(6, tasks.size());
+		assertEquals(6, sweep.getTotal());
+
+		// Most expensive first, ties in the order added.
+
+		String[] points = { "dear", "dear", "dear", "cheap", "cheap", "cheap2" };
+		int[] replicates = { 0, 1, 2, 0, 1, 0 };
+		int[] sequences = { 2, 3, 4, 0, 1, 5 };
+		for (int i = 0; i < tasks.size(); i++) {
+			assertEquals(points[i], tasks.get(i).getPoint());
+			assertEquals(replicates[i], tasks.get(i).getReplicate());
+			assertEquals(sequences[i], tasks.get(i).getSequence());
+		}
+	}
+
+	@Test
+	public void testRemainingTime() {
+		SweepScheduler<String> sweep = new SweepScheduler<String>(1);
+		sweep.add("a", 2, 1);
+		sweep.add("b", 2, 4);
+		assertEquals(-1, sweep.getRemainingTime());
+		List<SweepScheduler.Task<String>> tasks = sweep.getTasks();
+		for (int i = 0; i < 3; i++) {
+			sweep.submit(tasks.get(i), new Experiment() {
+				@Override
+				public void run() {
+					try {
+						Thread.sleep(5);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}, null);
+		}
+		assertEquals(3, sweep.getCompleted());
+
+		// Both replicates of b and one of a have run: the remaining replicate
+		// of a is estimated from its own observed run time.
+
+		long remaining = sweep.getRemainingTime();
+		assertTrue("remaining " + remaining, remaining >= 5000000L
+				&& remaining < 1000000000L);
+		sweep.skip(tasks.get(3));
+		assertEquals(0, sweep.getRemainingTime());
+		sweep.finish();
+	}
+
+	@Test
+	public void testResume() {
+		SweepScheduler<String> sweep = new SweepScheduler<String>(2);
+		sweep.add("a", 4, 1);
+		final AtomicInteger checkpoints = new AtomicInteger();
+		sweep.setCheckpoint(new Runnable() {
+			@Override
+			public void run() {
+				checkpoints.incrementAndGet();
+			}
+		}, 0);
+		List<SweepScheduler.Task<String>> tasks = sweep.getTasks();
+		sweep.resume(tasks.get(0));
+		sweep.resume(tasks.get(1));
+		assertEquals(2, sweep.getCompleted());
+		for (int i = 2; i < 4; i++) {
+			sweep.submit(tasks.get(i), new Experiment(), null);
+		}
+		sweep.finish();
+		assertEquals(4, sweep.getCompleted());
+		assertEquals(0, sweep.getRemainingTime());
+
+		// One checkpoint per completion with no interval, and one on finish.
+
+		assertEquals(3, checkpoints.get());
+	}
+}